@@ -0,0 +1,41 @@
+package net.osmand.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Test data of benchmarks, obf file could be changed with -Dosmand.benchmark.obf=path (relative to OsmAnd-java)
+ */
+class BenchmarkFiles {
+
+	static final String OBF = System.getProperty("osmand.benchmark.obf", "src/test/resources/Routing_test.obf");
+
+	static BinaryMapIndexReader openReader() throws IOException {
+		File f = new File(OBF);
+		return new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f);
+	}
+
+	static int loadAllRouteTiles(BinaryMapIndexReader reader) throws IOException {
+		int tiles = 0;
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+			List<RouteSubregion> subregs = reader.searchRouteIndexTree(request,
+					new ArrayList<RouteSubregion>(reg.getSubregions()));
+			for (RouteSubregion s : subregs) {
+				reader.loadRouteIndexData(s);
+				tiles++;
+			}
+		}
+		return tiles;
+	}
+}
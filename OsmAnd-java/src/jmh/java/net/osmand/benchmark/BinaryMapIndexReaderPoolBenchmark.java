@@ -0,0 +1,70 @@
+package net.osmand.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReaderPool;
+import net.osmand.binary.BinaryMapIndexReaderPool.ReaderTask;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention of threads loading all routing tiles of the same file
+ * through one synchronized reader and through {@link BinaryMapIndexReaderPool}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class BinaryMapIndexReaderPoolBenchmark {
+
+	private static final ReaderTask<Integer> LOAD_ALL_TILES = new ReaderTask<Integer>() {
+		@Override
+		public Integer run(BinaryMapIndexReader reader) throws IOException {
+			return BenchmarkFiles.loadAllRouteTiles(reader);
+		}
+	};
+
+	private BinaryMapIndexReader shared;
+	private BinaryMapIndexReaderPool pool;
+
+	@Setup
+	public void setUp() throws IOException {
+		shared = BenchmarkFiles.openReader();
+		pool = new BinaryMapIndexReaderPool(BenchmarkFiles.openReader(), Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		pool.close();
+		pool.getReference().close();
+		shared.close();
+	}
+
+	@Benchmark
+	public int synchronizedReader() throws IOException {
+		synchronized (shared) {
+			return BenchmarkFiles.loadAllRouteTiles(shared);
+		}
+	}
+
+	@Benchmark
+	public int readerPool() throws IOException, InterruptedException {
+		return pool.query(LOAD_ALL_TILES);
+	}
+}
@@ -0,0 +1,90 @@
+package net.osmand.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.osm.AbstractPoiType;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.osm.PoiCategory;
+import net.osmand.osm.PoiType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of default poi types by key, as done for every decoded amenity, and translated names search
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapPoiTypesBenchmark {
+
+	private MapPoiTypes poiTypes;
+	private String[] typeKeys;
+	private String[] additionalKeys;
+
+	@Setup
+	public void setUp() {
+		poiTypes = MapPoiTypes.getDefault();
+		List<String> types = new ArrayList<String>();
+		List<String> additionals = new ArrayList<String>();
+		for (PoiCategory pc : poiTypes.getCategories(false)) {
+			for (PoiType pt : pc.getPoiTypes()) {
+				types.add(pt.getKeyName());
+				for (PoiType a : pt.getPoiAdditionals()) {
+					additionals.add(a.getKeyName());
+				}
+			}
+		}
+		typeKeys = types.toArray(new String[types.size()]);
+		additionalKeys = additionals.toArray(new String[additionals.size()]);
+	}
+
+	@Benchmark
+	public int getAnyPoiTypeByKey() {
+		int found = 0;
+		for (String key : typeKeys) {
+			if (poiTypes.getAnyPoiTypeByKey(key) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int getAnyPoiAdditionalTypeByKey() {
+		int found = 0;
+		for (String key : additionalKeys) {
+			if (poiTypes.getAnyPoiAdditionalTypeByKey(key) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public Map<String, PoiType> getAllTranslatedNames() {
+		return poiTypes.getAllTranslatedNames(true);
+	}
+
+	@Benchmark
+	public List<AbstractPoiType> getAllTypesTranslatedNames() {
+		return poiTypes.getAllTypesTranslatedNames(
+				new CollatorStringMatcher("caf", StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+	}
+}
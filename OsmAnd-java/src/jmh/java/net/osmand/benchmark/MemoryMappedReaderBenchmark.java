@@ -0,0 +1,71 @@
+package net.osmand.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of all routing tiles through raf reads and through memory mapped file,
+ * fileSystemCalls counter reports read/seek/skip calls made on the file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryMappedReaderBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean memoryMapped;
+
+	private BinaryMapIndexReader reader;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class FileOperations {
+		public long fileSystemCalls;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			fileSystemCalls = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		File file = new File(BenchmarkFiles.OBF);
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, true, memoryMapped);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public int loadAllRouteTiles(FileOperations operations) throws IOException {
+		long before = reader.getFileOperationsCount();
+		int tiles = BenchmarkFiles.loadAllRouteTiles(reader);
+		operations.fileSystemCalls += reader.getFileOperationsCount() - before;
+		return tiles;
+	}
+}
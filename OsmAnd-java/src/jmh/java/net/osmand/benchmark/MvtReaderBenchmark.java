@@ -0,0 +1,117 @@
+package net.osmand.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmd;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmdHdr;
+import com.wdtinc.mapbox_vector_tile.encoding.ZigZag;
+
+import net.osmand.binary.MvtStreamReader;
+import net.osmand.binary.MvtStreamReader.Feature;
+import net.osmand.binary.MvtStreamReader.FeatureVisitor;
+import net.osmand.binary.VectorTile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of a synthetic vector tile (3 layers of lines and polygons) with the object-building
+ * MvtReader compared to the streaming reader
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MvtReaderBenchmark {
+
+	private static final int LAYERS = 3;
+	private static final int FEATURES = 500;
+
+	private final GeometryFactory geomFactory = new GeometryFactory();
+	private final MvtStreamReader streamReader = new MvtStreamReader();
+	private byte[] tile;
+	private long checksum;
+
+	@Setup
+	public void setUp() {
+		Random rnd = new Random(1);
+		VectorTile.Tile.Builder tb = VectorTile.Tile.newBuilder();
+		for (int l = 0; l < LAYERS; l++) {
+			VectorTile.Tile.Layer.Builder lb = VectorTile.Tile.Layer.newBuilder()
+					.setName("layer" + l).setVersion(2).setExtent(4096);
+			for (int k = 0; k < 8; k++) {
+				lb.addKeys("key" + k);
+				lb.addValues(VectorTile.Tile.Value.newBuilder().setStringValue("value" + k));
+			}
+			for (int f = 0; f < FEATURES; f++) {
+				VectorTile.Tile.Feature.Builder fb = VectorTile.Tile.Feature.newBuilder().setId(f);
+				fb.addTags(rnd.nextInt(8)).addTags(rnd.nextInt(8));
+				int x = rnd.nextInt(4000);
+				int y = rnd.nextInt(4000);
+				fb.addGeometry(GeomCmdHdr.cmdHdr(GeomCmd.MoveTo, 1));
+				fb.addGeometry(ZigZag.encode(x)).addGeometry(ZigZag.encode(y));
+				if (f % 2 == 0) {
+					fb.setType(VectorTile.Tile.GeomType.LINESTRING);
+					int n = 2 + rnd.nextInt(20);
+					fb.addGeometry(GeomCmdHdr.cmdHdr(GeomCmd.LineTo, n));
+					for (int i = 0; i < n; i++) {
+						fb.addGeometry(ZigZag.encode(rnd.nextInt(64) - 32));
+						fb.addGeometry(ZigZag.encode(rnd.nextInt(64) - 32));
+					}
+				} else {
+					fb.setType(VectorTile.Tile.GeomType.POLYGON);
+					int s = 8 + rnd.nextInt(64);
+					fb.addGeometry(GeomCmdHdr.cmdHdr(GeomCmd.LineTo, 3));
+					fb.addGeometry(ZigZag.encode(0)).addGeometry(ZigZag.encode(s));
+					fb.addGeometry(ZigZag.encode(s)).addGeometry(ZigZag.encode(0));
+					fb.addGeometry(ZigZag.encode(0)).addGeometry(ZigZag.encode(-s));
+					fb.addGeometry(GeomCmdHdr.cmdHdr(GeomCmd.ClosePath, 1));
+				}
+				lb.addFeatures(fb);
+			}
+			tb.addLayers(lb);
+		}
+		tile = tb.build().toByteArray();
+	}
+
+	@Benchmark
+	public List<Geometry> mvtReader() throws IOException {
+		return MvtReader.loadMvt(new ByteArrayInputStream(tile), geomFactory, new TagKeyValueMapConverter());
+	}
+
+	@Benchmark
+	public List<Geometry> streamReaderGeometries() throws IOException {
+		return streamReader.loadMvt(new ByteArrayInputStream(tile), geomFactory, MvtReader.RING_CLASSIFIER_V2_1);
+	}
+
+	@Benchmark
+	public long streamReaderCoordinates() throws IOException {
+		checksum = 0;
+		streamReader.read(tile, 0, tile.length, new FeatureVisitor() {
+			@Override
+			public void visitFeature(Feature feature) {
+				int parts = feature.decodeCoordinates();
+				checksum += parts + feature.getTagsCount();
+			}
+		});
+		return checksum;
+	}
+}
@@ -0,0 +1,59 @@
+package net.osmand.benchmark;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.util.OpeningHoursParser;
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpeningHoursBenchmark {
+
+	@Param({ "Mo-Fr 08:00-20:00; Sa 09:00-14:00",
+			"Mo-Th 10:00-24:00, Fr 10:00-02:00; Sa 12:00-02:00; Su 12:00-24:00; PH off",
+			"Jan-Mar, Oct-Dec: Mo-Su 09:00-17:00; Apr-Sep: Mo-Su 09:00-19:00; Dec 25 off",
+			"24/7" })
+	public String format;
+
+	private OpeningHours hours;
+	private Calendar calendar;
+
+	@Setup
+	public void setUp() {
+		hours = OpeningHoursParser.parseOpenedHours(format);
+		calendar = Calendar.getInstance();
+		calendar.set(2018, Calendar.MARCH, 16, 13, 30);
+	}
+
+	@Benchmark
+	public OpeningHours parseOpenedHours() {
+		return OpeningHoursParser.parseOpenedHours(format);
+	}
+
+	@Benchmark
+	public boolean isOpenedForTime() {
+		return hours.isOpenedForTime(calendar);
+	}
+
+	@Benchmark
+	public boolean isOpenedForTimeCompiled() {
+		return hours.getCompiled().isOpenedForTime(calendar);
+	}
+}
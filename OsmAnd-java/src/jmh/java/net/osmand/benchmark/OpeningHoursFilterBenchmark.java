@@ -0,0 +1,110 @@
+package net.osmand.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.util.OpeningHoursParser;
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * "Open now" filter over opening hours of poi search result (values are repeated as in real data).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpeningHoursFilterBenchmark {
+
+	private static final String[] CORPUS = {
+			"Mo-Fr 08:00-20:00; Sa 09:00-14:00",
+			"Mo-Sa 08:00-20:00",
+			"Mo-Fr 09:00-18:00",
+			"24/7",
+			"Mo-Su 07:00-23:00",
+			"Mo-Fr 09:00-12:00,13:00-18:00; Sa 10:00-13:00; Su off",
+			"Mo-Fr 08:00-18:00; Sa 08:00-13:00",
+			"Mo-Sa 07:00-21:00; Su 08:00-20:00",
+			"Mo-Su 10:00-22:00",
+			"Mo-Th 11:00-23:00; Fr-Sa 11:00-01:00; Su 12:00-22:00",
+			"Mo-Th 10:00-24:00, Fr 10:00-02:00; Sa 12:00-02:00; Su 12:00-24:00; PH off",
+			"Mo-Fr 07:30-19:00; Sa 08:00-13:00; Su 09:00-12:00",
+			"Mo-Su 00:00-24:00",
+			"Tu-Su 18:00-03:00; Mo off",
+			"Mo-Fr 10:00-20:00; Sa-Su 10:00-18:00; May 1 off",
+			"Mo-Fr 08:00-12:00; We 14:00-18:00",
+			"Mo,We,Fr 10:00-14:00",
+			"Mo-Sa 09:00-20:00; PH off",
+			"Mo-Fr 08:00-18:00; Jan 1 off; Dec 24-26 off",
+			"Apr-Sep: Mo-Su 08:00-22:00; Oct-Mar: Mo-Su 09:00-18:00",
+			"Jan-Mar, Oct-Dec: Mo-Su 09:00-17:00; Apr-Sep: Mo-Su 09:00-19:00; Dec 25 off",
+			"Jul-Aug Mo-Su 10:00-19:00",
+			"Mo-Su 12:00-15:00, 18:00-23:00; Mo off",
+			"Mo-Fr 06:00-22:00; Sa 08:00-22:00; Su 10:00-20:00",
+			"Mo-Fr 11:30-14:30,17:30-22:30; Sa-Su 17:30-23:00",
+			"Mo-Fr 09:00-19:00; Sa 09:00-17:00",
+			"Mo-Su 06:00-24:00",
+			"Mo-Fr 07:00-16:00",
+			"Tu-Sa 10:00-18:00; Su 10:00-16:00",
+			"sunrise-sunset" };
+
+	@Param({ "5000" })
+	public int amenities;
+
+	private List<String> openingHours;
+	private Calendar calendar;
+
+	@Setup
+	public void setUp() {
+		Random rnd = new Random(amenities);
+		openingHours = new ArrayList<String>(amenities);
+		for (int i = 0; i < amenities; i++) {
+			// most popular values are the first ones
+			int ind = Math.min(rnd.nextInt(CORPUS.length), rnd.nextInt(CORPUS.length));
+			// strings of different objects are different instances
+			openingHours.add(new String(CORPUS[ind]));
+		}
+		calendar = Calendar.getInstance();
+		calendar.set(2018, Calendar.MARCH, 16, 13, 30);
+	}
+
+	@Benchmark
+	public int filterOpened() {
+		int opened = 0;
+		for (String s : openingHours) {
+			OpeningHours rs = OpeningHoursParser.parseOpenedHours(s);
+			if (rs != null && rs.isOpenedForTime(calendar)) {
+				opened++;
+			}
+		}
+		return opened;
+	}
+
+	@Benchmark
+	public int filterOpenedCompiled() {
+		int opened = 0;
+		for (String s : openingHours) {
+			OpeningHours rs = OpeningHoursParser.parseOpenedHoursCached(s);
+			if (rs != null && rs.getCompiled().isOpenedForTime(calendar)) {
+				opened++;
+			}
+		}
+		return opened;
+	}
+}
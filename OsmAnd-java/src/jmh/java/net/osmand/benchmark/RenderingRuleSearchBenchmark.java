@@ -0,0 +1,97 @@
+package net.osmand.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.render.RenderingRuleSearchRequest;
+import net.osmand.render.RenderingRulesStorage;
+import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Rule search of default style for common tags (as done by renderer for each object)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingRuleSearchBenchmark {
+
+	private static final String[][] TAGS = {
+			{ "highway", "primary" }, { "highway", "residential" }, { "highway", "footway" },
+			{ "building", "yes" }, { "landuse", "forest" }, { "natural", "water" },
+			{ "amenity", "restaurant" }, { "shop", "supermarket" }, { "waterway", "river" },
+			{ "railway", "rail" } };
+	private static final int[] RULES = { RenderingRulesStorage.POINT_RULES, RenderingRulesStorage.LINE_RULES,
+			RenderingRulesStorage.POLYGON_RULES, RenderingRulesStorage.TEXT_RULES, RenderingRulesStorage.ORDER_RULES };
+
+	private RenderingRulesStorage storage;
+	private RenderingRuleSearchRequest request;
+	private RenderingRuleSearchRequest uncachedRequest;
+
+	@Setup
+	public void setUp() throws XmlPullParserException, IOException {
+		storage = loadStyle("default");
+		request = new RenderingRuleSearchRequest(storage);
+		uncachedRequest = new RenderingRuleSearchRequest(storage);
+		uncachedRequest.setResultCacheEnabled(false);
+	}
+
+	private static RenderingRulesStorage loadStyle(String name) throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage(name, null);
+		RenderingRulesStorageResolver resolver = new RenderingRulesStorageResolver() {
+			@Override
+			public RenderingRulesStorage resolve(String dependency, RenderingRulesStorageResolver ref)
+					throws XmlPullParserException, IOException {
+				return loadStyle(dependency);
+			}
+		};
+		InputStream is = RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml");
+		try {
+			storage.parseRulesFromXmlInputStream(is, resolver);
+		} finally {
+			is.close();
+		}
+		return storage;
+	}
+
+	@Benchmark
+	public void search(Blackhole bh) {
+		search(request, bh);
+	}
+
+	@Benchmark
+	public void searchUncached(Blackhole bh) {
+		search(uncachedRequest, bh);
+	}
+
+	private void search(RenderingRuleSearchRequest request, Blackhole bh) {
+		for (int zoom = 11; zoom <= 17; zoom += 3) {
+			for (String[] tag : TAGS) {
+				for (int rules : RULES) {
+					request.clearState();
+					request.setStringFilter(storage.PROPS.R_TAG, tag[0]);
+					request.setStringFilter(storage.PROPS.R_VALUE, tag[1]);
+					request.setIntFilter(storage.PROPS.R_MINZOOM, zoom);
+					request.setIntFilter(storage.PROPS.R_MAXZOOM, zoom);
+					bh.consume(request.search(rules));
+				}
+			}
+		}
+	}
+}
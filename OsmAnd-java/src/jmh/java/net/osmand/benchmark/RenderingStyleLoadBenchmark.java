@@ -0,0 +1,84 @@
+package net.osmand.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.render.RenderingRulesStorage;
+import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+import net.osmand.render.RenderingRulesStorageCache;
+import net.osmand.render.RenderingRulesStorageCache.SourceProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Loading of default style from xml compared to loading from compiled cache (as done on startup)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingStyleLoadBenchmark {
+
+	private static final SourceProvider RESOURCES = new SourceProvider() {
+		@Override
+		public InputStream getInputStream(String name) throws IOException {
+			return RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml");
+		}
+	};
+
+	private File cache;
+
+	@Setup
+	public void setUp() throws XmlPullParserException, IOException {
+		cache = File.createTempFile("default", ".render.cache");
+		RenderingRulesStorageCache.write(loadStyle("default"), cache);
+	}
+
+	@TearDown
+	public void tearDown() {
+		cache.delete();
+	}
+
+	private static RenderingRulesStorage loadStyle(String name) throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage(name, null);
+		RenderingRulesStorageResolver resolver = new RenderingRulesStorageResolver() {
+			@Override
+			public RenderingRulesStorage resolve(String dependency, RenderingRulesStorageResolver ref)
+					throws XmlPullParserException, IOException {
+				return loadStyle(dependency);
+			}
+		};
+		InputStream is = RESOURCES.getInputStream(name);
+		try {
+			storage.parseRulesFromXmlInputStream(is, resolver);
+		} finally {
+			is.close();
+		}
+		return storage;
+	}
+
+	@Benchmark
+	public RenderingRulesStorage parseXml() throws XmlPullParserException, IOException {
+		return loadStyle("default");
+	}
+
+	@Benchmark
+	public RenderingRulesStorage loadCache() throws IOException {
+		return RenderingRulesStorageCache.load(cache, RESOURCES);
+	}
+}
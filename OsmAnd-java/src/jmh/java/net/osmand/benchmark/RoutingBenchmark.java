@@ -0,0 +1,71 @@
+package net.osmand.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RouteSegmentResult;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route between 2 points on diagonal of routing index bbox (calculated with new routing context, so tiles are loaded)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RoutingBenchmark {
+
+	@Param({ "car", "bicycle", "pedestrian" })
+	public String profile;
+
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+	private LatLon start;
+	private LatLon end;
+
+	@Setup
+	public void setUp() throws IOException {
+		reader = BenchmarkFiles.openReader();
+		config = RoutingConfiguration.getDefault().build(profile, RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3);
+		RouteRegion region = reader.getRoutingIndexes().get(0);
+		double lat = region.getTopLatitude() - region.getBottomLatitude();
+		double lon = region.getRightLongitude() - region.getLeftLongitude();
+		start = new LatLon(region.getBottomLatitude() + lat * 0.3, region.getLeftLongitude() + lon * 0.3);
+		end = new LatLon(region.getBottomLatitude() + lat * 0.7, region.getLeftLongitude() + lon * 0.7);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> searchRoute() throws IOException, InterruptedException {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		return fe.searchRoute(ctx, start, end, null);
+	}
+}
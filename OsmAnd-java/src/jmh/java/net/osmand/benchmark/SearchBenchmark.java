@@ -0,0 +1,82 @@
+package net.osmand.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.core.SearchCoreFactory.SearchAddressByNameAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchAmenityByNameAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.MapUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search of the main search apis, apis are called directly by shallow search (without delay of
+ * {@link SearchUICore#search} before search)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({ "cafe", "Main", "10 Main" })
+	public String text;
+
+	private BinaryMapIndexReader reader;
+	private SearchUICore core;
+
+	@Setup
+	public void setUp() throws IOException {
+		reader = BenchmarkFiles.openReader();
+		MapRoot root = reader.getMapIndexes().get(0).getRoots().get(0);
+		LatLon center = new LatLon(MapUtils.get31LatitudeY((root.getTop() + root.getBottom()) / 2),
+				MapUtils.get31LongitudeX((root.getLeft() + root.getRight()) / 2));
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+		SearchSettings settings = new SearchSettings(Collections.singletonList(reader)).setOriginalLocation(center)
+				.setLang("en", false);
+		core.updateSettings(settings);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public SearchResultCollection shallowSearchAmenityByName() throws IOException {
+		return core.shallowSearch(SearchAmenityByNameAPI.class, text, null);
+	}
+
+	@Benchmark
+	public SearchResultCollection shallowSearchAddressByName() throws IOException {
+		return core.shallowSearch(SearchAddressByNameAPI.class, text, null);
+	}
+
+	@Benchmark
+	public SearchResultCollection shallowSearchAmenityTypes() throws IOException {
+		return core.shallowSearch(SearchAmenityTypesAPI.class, text, null);
+	}
+}
@@ -0,0 +1,95 @@
+package net.osmand.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RouteSegmentResult;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.router.TileEvictionStrategy;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route on diagonal of routing index bbox with small memory limit, so tiles are unloaded during search.
+ * Tile reloads of every eviction strategy are reported as tileReloads counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TileEvictionBenchmark {
+
+	@Param({ "access_count", "frontier_distance" })
+	public String strategy;
+
+	// MB
+	@Param({ "2", "5" })
+	public int memoryLimit;
+
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+	private LatLon start;
+	private LatLon end;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class TileLoads {
+		public long tileReloads;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tileReloads = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		reader = BenchmarkFiles.openReader();
+		config = RoutingConfiguration.getDefault().build("car", memoryLimit);
+		RouteRegion region = reader.getRoutingIndexes().get(0);
+		double lat = region.getTopLatitude() - region.getBottomLatitude();
+		double lon = region.getRightLongitude() - region.getLeftLongitude();
+		start = new LatLon(region.getBottomLatitude() + lat * 0.1, region.getLeftLongitude() + lon * 0.1);
+		end = new LatLon(region.getBottomLatitude() + lat * 0.9, region.getLeftLongitude() + lon * 0.9);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> searchRoute(TileLoads loads) throws IOException, InterruptedException {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		if ("frontier_distance".equals(strategy)) {
+			ctx.setTileEvictionStrategy(new TileEvictionStrategy.FrontierDistanceStrategy(config, 2));
+		}
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, start, end, null);
+		loads.tileReloads += ctx.reloadedTiles;
+		return res;
+	}
+}
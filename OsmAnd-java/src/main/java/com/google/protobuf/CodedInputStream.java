@@ -30,9 +30,14 @@
 
 package com.google.protobuf;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +73,55 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading the file through read-only memory mapped
+   * windows of its channel instead of {@link RandomAccessFile#readFully}, so seeks and
+   * buffer refills don't cost a system call each.
+   */
+  public static CodedInputStream newMappedInstance(RandomAccessFile raf) throws IOException {
+    return newMappedInstance(raf, mapWindows(raf));
+  }
+
+  /**
+   * Create a new CodedInputStream over windows already mapped by {@link #mapWindows(RandomAccessFile)}.
+   * Windows could be shared between streams of the same file, every stream keeps its own view.
+   */
+  public static CodedInputStream newMappedInstance(RandomAccessFile raf, MappedByteBuffer[] windows) {
+    CodedInputStream cis = new CodedInputStream(raf);
+    cis.mappedWindows = new ByteBuffer[windows.length];
+    long length = 0;
+    for (int i = 0; i < windows.length; i++) {
+      cis.mappedWindows[i] = windows[i].duplicate();
+      length += windows[i].capacity();
+    }
+    cis.mappedLength = length;
+    return cis;
+  }
+
+  public static MappedByteBuffer[] mapWindows(RandomAccessFile raf) throws IOException {
+    FileChannel channel = raf.getChannel();
+    long length = channel.size();
+    int windows = (int) ((length + MAPPED_WINDOW_SIZE - 1) / MAPPED_WINDOW_SIZE);
+    MappedByteBuffer[] res = new MappedByteBuffer[windows];
+    for (int i = 0; i < windows; i++) {
+      long start = i * MAPPED_WINDOW_SIZE;
+      res[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPED_WINDOW_SIZE, length - start));
+    }
+    return res;
+  }
+
+  public boolean isMemoryMapped() {
+    return mappedWindows != null;
+  }
+
+  /**
+   * Number of system calls made on the underlying file (read, skip, seek, length, position).
+   * Reads of memory mapped streams are memory copies and are not counted.
+   */
+  public long getSourceOperations() {
+    return sourceOperations;
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -568,6 +622,13 @@ public final class CodedInputStream {
   private static final int DEFAULT_SIZE_LIMIT = 64 << 20;  // 64MB
   private static final int BUFFER_SIZE = 5 * 1024;
 
+  // osmand change : optional memory mapped view of raf (windows as one buffer can't exceed 2 GB)
+  private static final long MAPPED_WINDOW_SIZE = 1 << 30;
+  private ByteBuffer[] mappedWindows;
+  private long mappedLength;
+  private long mappedPointer;
+  private long sourceOperations;
+
   private CodedInputStream(final byte[] buffer, final int off, final int len) {
     this.buffer = buffer;
     bufferSize = off + len;
@@ -753,11 +814,11 @@ public final class CodedInputStream {
     bufferPos = 0;
     if (raf != null) {
     	// osmand change
-     totalBytesRetired = (int) raf.getFilePointer();
-    	long remain = raf.length() - raf.getFilePointer();
+     totalBytesRetired = (int) sourcePointer();
+    	long remain = sourceLength() - sourcePointer();
     	bufferSize = (int) Math.min(remain, buffer.length);
     	if(bufferSize > 0) {
-    		raf.readFully(buffer, 0, bufferSize);
+    		sourceReadFully(buffer, 0, bufferSize);
     	} else {
     		bufferSize = -1;
     	}
@@ -880,7 +941,7 @@ public final class CodedInputStream {
         	final int n;
         	// osmand change
         	if(raf != null) {
-        		raf.readFully(chunk, pos, chunk.length - pos);
+        		sourceReadFully(chunk, pos, chunk.length - pos);
         		n = chunk.length - pos;
         	} else {
         		n = (input == null) ? -1 :
@@ -944,8 +1005,8 @@ public final class CodedInputStream {
       if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
-      	 int n = raf.skipBytes(size - pos);
-        totalBytesRetired = (int) raf.getFilePointer();
+      	 int n = sourceSkipBytes(size - pos);
+        totalBytesRetired = (int) sourcePointer();
       	 if (n <= 0) {
              throw InvalidProtocolBufferException.truncatedMessage();
          }
@@ -975,9 +1036,67 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  sourceSeek(pointer);
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
   }
+
+  // osmand change : file access either through raf or through mapped windows
+  private long sourcePointer() throws IOException {
+    if (mappedWindows != null) {
+      return mappedPointer;
+    }
+    sourceOperations++;
+    return raf.getFilePointer();
+  }
+
+  private long sourceLength() throws IOException {
+    if (mappedWindows != null) {
+      return mappedLength;
+    }
+    sourceOperations++;
+    return raf.length();
+  }
+
+  private void sourceSeek(long pointer) throws IOException {
+    if (mappedWindows != null) {
+      mappedPointer = pointer;
+    } else {
+      sourceOperations++;
+      raf.seek(pointer);
+    }
+  }
+
+  private int sourceSkipBytes(int n) throws IOException {
+    if (mappedWindows == null) {
+      sourceOperations++;
+      return raf.skipBytes(n);
+    }
+    int skipped = (int) Math.max(0, Math.min(n, mappedLength - mappedPointer));
+    mappedPointer += skipped;
+    return skipped;
+  }
+
+  private void sourceReadFully(byte[] b, int off, int len) throws IOException {
+    if (mappedWindows == null) {
+      sourceOperations++;
+      raf.readFully(b, off, len);
+      return;
+    }
+    if (mappedPointer + len > mappedLength) {
+      throw new EOFException();
+    }
+    while (len > 0) {
+      ByteBuffer window = mappedWindows[(int) (mappedPointer / MAPPED_WINDOW_SIZE)];
+      int windowPos = (int) (mappedPointer % MAPPED_WINDOW_SIZE);
+      int read = Math.min(len, window.capacity() - windowPos);
+      // cast keeps java 8 / android binary compatibility (covariant Buffer methods)
+      ((Buffer) window).position(windowPos);
+      window.get(b, off, read);
+      mappedPointer += read;
+      off += read;
+      len -= read;
+    }
+  }
 }
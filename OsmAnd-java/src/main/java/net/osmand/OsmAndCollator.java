@@ -5,13 +5,20 @@ import java.util.Locale;
 public class OsmAndCollator {
 
 	public static net.osmand.Collator primaryCollator() {
+		return wrapCollator(primaryInstance());
+	}
+
+	/**
+	 * Collator wrapped by {@link #primaryCollator()}
+	 */
+	public static java.text.Collator primaryInstance() {
 		// romanian locale encounters diacritics as different symbols
 		final java.text.Collator instance = Locale.getDefault().getLanguage().equals("ro")  ||
 				Locale.getDefault().getLanguage().equals("cs") ||
 				Locale.getDefault().getLanguage().equals("sk")? java.text.Collator.getInstance(Locale.US)
 				: java.text.Collator.getInstance();
 		instance.setStrength(java.text.Collator.PRIMARY);
-		return wrapCollator(instance);
+		return instance;
 	}
 	
 	public static net.osmand.Collator wrapCollator(final java.text.Collator instance) {
@@ -114,13 +114,44 @@ public class TspAnt {
             l.add(end);
         }
         n = l.size() ;
+        double[][] costs = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 1; j < n; j++) {
+                costs[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+            }
+        }
+        return initGraph(costs, keepEndPoint);
+    }
+
+    // Read in graph from the cost matrix of start, intermediates and end (if keepEndPoint),
+    // for example road time from RouteMatrixCalculator. Infinite costs (not reachable) are replaced with big value.
+    public TspAnt readGraph(float[][] costs, boolean keepEndPoint) {
+        n = costs.length;
+        double maxCost = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (!Float.isInfinite(costs[i][j])) {
+                    maxCost = Math.max(maxCost, costs[i][j]);
+                }
+            }
+        }
+        double[][] c = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                c[i][j] = Float.isInfinite(costs[i][j]) ? (maxCost + 1) * n : costs[i][j];
+            }
+        }
+        return initGraph(c, keepEndPoint);
+    }
+
+    private TspAnt initGraph(double[][] costs, boolean keepEndPoint) {
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = Math.rint(costs[i][j]) + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
@@ -43,6 +43,34 @@ public class TspHeldKarp {
 		
 		return this;
 	}
+
+	// cost matrix between points, for example road time from RouteMatrixCalculator
+	// (infinite costs of not reachable points are replaced with big value)
+	public TspHeldKarp readInput(float[][] costs, boolean returnToInitialPoint) {
+		n = costs.length;
+		order = new int[n];
+		cost = new double[n][n];
+		double maxCost = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (!Float.isInfinite(costs[i][j])) {
+					maxCost = Math.max(maxCost, costs[i][j]);
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (!returnToInitialPoint && (j == 0)) {
+					cost[i][j] = 0;
+				} else if (Float.isInfinite(costs[i][j])) {
+					cost[i][j] = Math.rint((maxCost + 1) * n);
+				} else {
+					cost[i][j] = Math.rint(costs[i][j]);
+				}
+			}
+		}
+		return this;
+	}
   //
   
 
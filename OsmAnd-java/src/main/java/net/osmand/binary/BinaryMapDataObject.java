@@ -22,6 +22,9 @@ public class BinaryMapDataObject {
 	
 	protected TIntObjectHashMap<String> objectNames = null;
 	protected TIntArrayList namesOrder = null;
+	// compact names: indexes in stringTable of the block parallel to namesOrder (objectNames is null)
+	protected int[] nameIndexes = null;
+	protected String[] stringTable = null;
 	protected long id = 0;
 	
 	protected MapIndex mapIndex = null;
@@ -49,10 +52,10 @@ public class BinaryMapDataObject {
 	
 	
 	public String getName(){
-		if(objectNames == null){
+		if(objectNames == null && nameIndexes == null){
 			return "";
 		}
-		String name = objectNames.get(mapIndex.nameEncodingType);
+		String name = getNameValue(mapIndex.nameEncodingType);
 		if(name == null){
 			return "";
 		}
@@ -60,10 +63,49 @@ public class BinaryMapDataObject {
 	}
 	
 	
+	/**
+	 * For compact names returns new map on every call (it is not kept by object),
+	 * use {@link #getNamesOrder()} and {@link #getNameByType(int)} to iterate names without creating map
+	 */
 	public TIntObjectHashMap<String> getObjectNames() {
+		if (objectNames == null && nameIndexes != null) {
+			return createObjectNames();
+		}
 		return objectNames;
 	}
 	
+	private TIntObjectHashMap<String> createObjectNames() {
+		TIntObjectHashMap<String> map = new TIntObjectHashMap<String>(namesOrder.size());
+		for (int i = 0; i < namesOrder.size(); i++) {
+			map.put(namesOrder.get(i), getNameValue(namesOrder.get(i)));
+		}
+		return map;
+	}
+	
+	/**
+	 * Sets names as indexes in the string table shared by all objects of the map data block
+	 */
+	protected void setNames(TIntArrayList namesOrder, int[] nameIndexes, String[] stringTable) {
+		this.namesOrder = namesOrder;
+		this.nameIndexes = nameIndexes;
+		this.stringTable = stringTable;
+		this.objectNames = null;
+	}
+	
+	private String getNameValue(int type) {
+		if (objectNames != null) {
+			return objectNames.get(type);
+		}
+		if (nameIndexes != null && stringTable != null) {
+			for (int i = 0; i < nameIndexes.length; i++) {
+				if (namesOrder.get(i) == type) {
+					return stringTable[nameIndexes[i]];
+				}
+			}
+		}
+		return null;
+	}
+	
 	public Map<Integer, String> getOrderedObjectNames() {
 		if (namesOrder == null) {
 			return null;
@@ -71,12 +113,17 @@ public class BinaryMapDataObject {
 		LinkedHashMap<Integer, String> lm = new LinkedHashMap<Integer, String> ();
 		for (int i = 0; i < namesOrder.size(); i++) {
 			int nm = namesOrder.get(i);
-			lm.put(nm, objectNames.get(nm));
+			lm.put(nm, getNameValue(nm));
 		}
 		return lm;
 	}
 	
 	public void putObjectName(int type, String name){
+		if (objectNames == null && nameIndexes != null) {
+			objectNames = createObjectNames();
+			nameIndexes = null;
+			stringTable = null;
+		}
 		if(objectNames == null){
 			objectNames = new TIntObjectHashMap<String>();
 			namesOrder = new TIntArrayList();
@@ -116,8 +163,8 @@ public class BinaryMapDataObject {
 	}
 	
 	public String getNameByType(int type) {
-		if(type != -1 && objectNames != null) {
-			return objectNames.get(type);
+		if(type != -1) {
+			return getNameValue(type);
 		}
 		return null;
 	}
@@ -269,14 +316,10 @@ public class BinaryMapDataObject {
 			}
 			if(equals) {
 				// here we know that name indexes are equal & it is enough to check the value sets
-				if(objectNames == null || thatObj.objectNames == null) {
-					equals = objectNames == thatObj.objectNames; 
-				} else if(objectNames.size() != thatObj.objectNames.size()){
-					equals = false;
-				} else {
+				if(namesOrder != null) {
 					for(int i = 0; i < namesOrder.size() && equals; i++) {
-						String o = objectNames.get(namesOrder.get(i));
-						String s = thatObj.objectNames.get(thatObj.namesOrder.get(i));
+						String o = getNameValue(namesOrder.get(i));
+						String s = thatObj.getNameValue(thatObj.namesOrder.get(i));
 						equals = Algorithms.objectEquals(o, s);
 					}
 				}
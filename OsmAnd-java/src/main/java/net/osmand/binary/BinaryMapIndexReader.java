@@ -16,6 +16,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -25,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,6 +49,7 @@ import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.binary.MapDataBlockCache.CachedBlock;
 import net.osmand.binary.OsmandOdb.MapDataBlock;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
@@ -109,6 +112,12 @@ public class BinaryMapIndexReader {
 	/*private*/ List<BinaryIndexPart> indexes = new ArrayList<BinaryIndexPart>();
 
 	protected CodedInputStream codedIS;
+	// shared between readers of the same file, null if file is read through raf
+	private MappedByteBuffer[] mappedWindows;
+	private MapDataBlockCache mapDataBlockCache;
+	// name index tables by file offset, shared between readers of the same file and cleared when reader is closed
+	private static final int STRING_TABLES_MEMORY_LIMIT = 8 * 1024 * 1024;
+	private CollatedStringTable.Cache stringTables = new CollatedStringTable.Cache(STRING_TABLES_MEMORY_LIMIT);
 
 	private final BinaryMapTransportReaderAdapter transportAdapter;
 	private final BinaryMapPoiReaderAdapter poiAdapter;
@@ -119,21 +128,26 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		init();
+		this(raf, file, true, false);
 	}
 
 	/*private */BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read the file through memory mapped windows (FileChannel.map) 
+	 * instead of buffered raf reads, each seek and buffer refill doesn't cost system call then
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (memoryMapped) {
+			mappedWindows = CodedInputStream.mapWindows(raf);
+			codedIS = CodedInputStream.newMappedInstance(raf, mappedWindows);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -147,10 +161,16 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (referenceToSameFile.mappedWindows != null) {
+			mappedWindows = referenceToSameFile.mappedWindows;
+			codedIS = CodedInputStream.newMappedInstance(raf, mappedWindows);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
+		stringTables = referenceToSameFile.stringTables;
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
 		poiAdapter = new BinaryMapPoiReaderAdapter(this);
@@ -387,6 +407,28 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	/**
+	 * Decoded map data blocks are taken from the cache by searchMapIndex, null disables caching
+	 */
+	public void setMapDataBlockCache(MapDataBlockCache mapDataBlockCache) {
+		this.mapDataBlockCache = mapDataBlockCache;
+	}
+
+	public MapDataBlockCache getMapDataBlockCache() {
+		return mapDataBlockCache;
+	}
+
+	public boolean isMemoryMapped() {
+		return mappedWindows != null;
+	}
+
+	/**
+	 * @return number of read/skip/seek system calls made on the file (reads of memory mapped file are not counted)
+	 */
+	public long getFileOperationsCount() {
+		return codedIS == null ? 0 : codedIS.getSourceOperations();
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -902,6 +944,10 @@ public class BinaryMapIndexReader {
 					});
 					for (MapTree tree : foundSubtrees) {
 						if (!req.isCancelled()) {
+							if (mapDataBlockCache != null && !READ_STATS) {
+								readCachedMapDataBlocks(req, tree, mapIndex);
+								continue;
+							}
 							codedIS.seek(tree.mapDataBlock);
 							int length = codedIS.readRawVarint32();
 							int oldLimit = codedIS.pushLimit(length);
@@ -923,6 +969,25 @@ public class BinaryMapIndexReader {
 
 	
 
+	private void readCachedMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
+		CachedBlock block = mapDataBlockCache.get(this, tree.mapDataBlock);
+		if (block == null) {
+			req.stat.blockCacheMisses++;
+			// whole block is decoded, bbox and search filter are applied to cached objects
+			SearchRequest<BinaryMapDataObject> blockReq = buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE,
+					req.zoom, null);
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(length);
+			readMapDataBlocks(blockReq, tree, root);
+			codedIS.popLimit(oldLimit);
+			block = mapDataBlockCache.put(this, tree.mapDataBlock, blockReq.getSearchResults());
+		} else {
+			req.stat.blockCacheHits++;
+		}
+		MapDataBlockCache.publish(block, req, root);
+	}
+
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
 		List<BinaryMapDataObject> tempResults = null;
 		long baseId = 0;
@@ -975,13 +1040,11 @@ public class BinaryMapIndexReader {
 				}
 				if (tempResults != null) {
 					List<String> stringTable = readStringTable();
+					String[] stringTableArray = stringTable.toArray(new String[stringTable.size()]);
 					for (int i = 0; i < tempResults.size(); i++) {
 						BinaryMapDataObject rs = tempResults.get(i);
-						if (rs.objectNames != null) {
-							int[] keys = rs.objectNames.keys();
-							for (int j = 0; j < keys.length; j++) {
-								rs.objectNames.put(keys[j], stringTable.get(rs.objectNames.get(keys[j]).charAt(0)));
-							}
+						if (rs.nameIndexes != null) {
+							rs.stringTable = stringTableArray;
 						}
 					}
 				} else {
@@ -1125,8 +1188,8 @@ public class BinaryMapIndexReader {
 
 		List<TIntArrayList> innercoordinates = null;
 		TIntArrayList additionalTypes = null;
-		TIntObjectHashMap<String> stringNames = null;
 		TIntArrayList stringOrder = null;
+		TIntArrayList stringIndexes = null;
 		long id = 0;
 
 		boolean loop = true;
@@ -1208,15 +1271,13 @@ public class BinaryMapIndexReader {
 				}
 				break;
 			case OsmandOdb.MapData.STRINGNAMES_FIELD_NUMBER:
-				stringNames = new TIntObjectHashMap<String>();
 				stringOrder = new TIntArrayList();
+				stringIndexes = new TIntArrayList();
 				sizeL = codedIS.readRawVarint32();
 				old = codedIS.pushLimit(sizeL);
 				while (codedIS.getBytesUntilLimit() > 0) {
-					int stag = codedIS.readRawVarint32();
-					int pId = codedIS.readRawVarint32();
-					stringNames.put(stag, ((char)pId)+"");
-					stringOrder.add(stag);
+					stringOrder.add(codedIS.readRawVarint32());
+					stringIndexes.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 				if(READ_STATS) {
@@ -1232,8 +1293,10 @@ public class BinaryMapIndexReader {
 		BinaryMapDataObject dataObject = new BinaryMapDataObject();
 		dataObject.area = area;
 		dataObject.coordinates = req.cacheCoordinates.toArray();
-		dataObject.objectNames = stringNames;
-		dataObject.namesOrder = stringOrder;
+		if (stringOrder != null) {
+			// string table is set when the whole block is read
+			dataObject.setNames(stringOrder, stringIndexes.toArray(), null);
+		}
 		if (innercoordinates == null) {
 			dataObject.polygonInnerCoordinates = new int[0][0];
 		} else {
@@ -1280,6 +1343,9 @@ public class BinaryMapIndexReader {
 			throw new IllegalArgumentException();
 		}
 		for (PoiRegion poiIndex : poiIndexes) {
+			if (req.isTopKPruned(poiIndex.left31, poiIndex.top31, poiIndex.right31, poiIndex.bottom31)) {
+				continue;
+			}
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
 			int old = codedIS.pushLimit(poiIndex.length);
@@ -1525,10 +1591,45 @@ public class BinaryMapIndexReader {
 		return request;
 	}
 
+	/**
+	 * Reads all lazily initialized parts of index structure (encoding rules, map trees, route trees headers, 
+	 * poi categories), so they are not modified anymore while readers sharing them with this reader search in parallel.
+	 */
+	public void initSharedIndexes() throws IOException {
+		for (MapIndex mapIndex : mapIndexes) {
+			if (mapIndex.encodingRules.isEmpty()) {
+				codedIS.seek(mapIndex.filePointer);
+				int oldLimit = codedIS.pushLimit(mapIndex.length);
+				readMapIndex(mapIndex, true);
+				codedIS.popLimit(oldLimit);
+			}
+			for (MapRoot index : mapIndex.getRoots()) {
+				if (index.trees == null) {
+					index.trees = new ArrayList<MapTree>();
+					codedIS.seek(index.filePointer);
+					int oldLimit = codedIS.pushLimit(index.length);
+					readMapLevel(index);
+					codedIS.popLimit(oldLimit);
+				}
+			}
+		}
+		SearchRequest<RouteDataObject> req = buildSearchRouteRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+		for (RouteRegion routeReg : routingIndexes) {
+			initRouteRegion(routeReg);
+			searchRouteIndexTree(req, routeReg.getSubregions());
+			searchRouteIndexTree(req, routeReg.getBaseSubregions());
+		}
+		for (PoiRegion poiIndex : poiIndexes) {
+			initCategories(poiIndex);
+		}
+	}
+
 	public void close() throws IOException {
 		if (codedIS != null) {
 			raf.close();
 			codedIS = null;
+			mappedWindows = null;
+			stringTables.clear();
 			mapIndexes.clear();
 			addressIndexes.clear();
 			transportIndexes.clear();
@@ -1548,6 +1649,56 @@ public class BinaryMapIndexReader {
 		public boolean isEmpty();
 	}
 
+	/**
+	 * Score of search results for top-K search, lower is better (see {@link SearchRequest#setTopK(int, SearchResultScore)})
+	 */
+	public static interface SearchResultScore<T> {
+
+		public double getScore(T object);
+
+		/**
+		 * Lower bound of scores of objects located in the bbox (31 tile numbers)
+		 */
+		public double getMinScore(int left31, int top31, int right31, int bottom31);
+	}
+
+	/**
+	 * Approximate distance in meters from the point (map is treated as plane scaled at the point latitude)
+	 */
+	public static class AmenityDistanceScore implements SearchResultScore<Amenity> {
+		private static final double EQUATOR_METERS_PER_31 = 40075016.686 / (1L << 31);
+
+		private final int x31;
+		private final int y31;
+		private final double metersPer31;
+
+		public AmenityDistanceScore(double lat, double lon) {
+			this.x31 = MapUtils.get31TileNumberX(lon);
+			this.y31 = MapUtils.get31TileNumberY(lat);
+			this.metersPer31 = EQUATOR_METERS_PER_31 * Math.cos(Math.toRadians(lat));
+		}
+
+		@Override
+		public double getScore(Amenity object) {
+			LatLon l = object.getLocation();
+			return distance(MapUtils.get31TileNumberX(l.getLongitude()), MapUtils.get31TileNumberY(l.getLatitude()));
+		}
+
+		@Override
+		public double getMinScore(int left31, int top31, int right31, int bottom31) {
+			// nearest point of the bbox
+			int x = Math.max(left31, Math.min(right31, x31));
+			int y = Math.max(top31, Math.min(bottom31, y31));
+			return distance(x, y);
+		}
+
+		private double distance(int x, int y) {
+			double dx = (double) x - x31;
+			double dy = (double) y - y31;
+			return Math.sqrt(dx * dx + dy * dy) * metersPer31;
+		}
+	}
+
 	public static class MapObjectStat {
 		public int lastStringNamesSize;
 		public int lastObjectIdSize;
@@ -1560,6 +1711,9 @@ public class BinaryMapIndexReader {
 		public int lastBlockStringTableSize;
 		public int lastBlockHeaderInfo;
 
+		public int blockCacheHits;
+		public int blockCacheMisses;
+
 		public void addBlockHeader(int typesFieldNumber, int sizeL) {
 			lastBlockHeaderInfo +=
 					CodedOutputStream.computeTagSize(typesFieldNumber) +
@@ -1590,6 +1744,12 @@ public class BinaryMapIndexReader {
 
 		private ResultMatcher<T> resultMatcher;
 
+		// top-K search: max heap of the best results by score
+		private int topK = -1;
+		private SearchResultScore<T> topKScore;
+		private PriorityQueue<ScoredResult<T>> topKResults;
+		private boolean topKChanged;
+
 		// 31 zoom tiles
 		// common variables
 		int x = 0;
@@ -1659,7 +1819,49 @@ public class BinaryMapIndexReader {
 			
 		}
 
+		/**
+		 * Keeps only k results with the lowest score, results are sorted by score. Objects which can't get into
+		 * top-K are rejected before result matcher, POI boxes which can't contain such objects are not read.
+		 * Result matcher still receives objects which are pushed out of top-K later.
+		 */
+		public void setTopK(int k, SearchResultScore<T> score) {
+			if (k > 0 && score != null) {
+				topK = k;
+				topKScore = score;
+				topKResults = new PriorityQueue<ScoredResult<T>>(k + 1, new Comparator<ScoredResult<T>>() {
+					@Override
+					public int compare(ScoredResult<T> o1, ScoredResult<T> o2) {
+						return Double.compare(o2.score, o1.score);
+					}
+				});
+			} else {
+				topK = -1;
+				topKScore = null;
+				topKResults = null;
+			}
+			topKChanged = true;
+		}
+
+		public boolean isTopK() {
+			return topKResults != null;
+		}
+
+		public SearchResultScore<T> getTopKScore() {
+			return topKScore;
+		}
+
+		/**
+		 * Returns true if objects within the bbox (31 tile numbers) can't get into top-K results
+		 */
+		public boolean isTopKPruned(int left31, int top31, int right31, int bottom31) {
+			return topKResults != null && topKResults.size() >= topK
+					&& topKScore.getMinScore(left31, top31, right31, bottom31) >= topKResults.peek().score;
+		}
+
 		public boolean publish(T obj) {
+			if (topKResults != null) {
+				return publishTopK(obj);
+			}
 			if (resultMatcher == null || resultMatcher.publish(obj)) {
 				searchResults.add(obj);
 				return true;
@@ -1667,6 +1869,22 @@ public class BinaryMapIndexReader {
 			return false;
 		}
 
+		private boolean publishTopK(T obj) {
+			double score = topKScore.getScore(obj);
+			if (topKResults.size() >= topK && score >= topKResults.peek().score) {
+				return false;
+			}
+			if (resultMatcher != null && !resultMatcher.publish(obj)) {
+				return false;
+			}
+			topKResults.add(new ScoredResult<T>(obj, score));
+			if (topKResults.size() > topK) {
+				topKResults.poll();
+			}
+			topKChanged = true;
+			return true;
+		}
+
 		protected void publishOceanTile(boolean ocean) {
 			if (ocean) {
 				this.ocean = true;
@@ -1676,6 +1894,15 @@ public class BinaryMapIndexReader {
 		}
 
 		public List<T> getSearchResults() {
+			if (topKResults != null && topKChanged) {
+				List<ScoredResult<T>> sorted = new ArrayList<ScoredResult<T>>(topKResults);
+				Collections.sort(sorted, topKResults.comparator());
+				searchResults = new ArrayList<T>(sorted.size());
+				for (int i = sorted.size() - 1; i >= 0; i--) {
+					searchResults.add(sorted.get(i).object);
+				}
+				topKChanged = false;
+			}
 			return searchResults;
 		}
 
@@ -1684,7 +1911,8 @@ public class BinaryMapIndexReader {
 		}
 
 		public boolean limitExceeded() {
-			return limit != -1 && searchResults.size() > limit;
+			int size = topKResults != null ? topKResults.size() : searchResults.size();
+			return limit != -1 && size > limit;
 		}
 
 		public boolean isCancelled() {
@@ -1736,6 +1964,10 @@ public class BinaryMapIndexReader {
 		public void clearSearchResults() {
 			// recreate whole list to allow GC collect old data 
 			searchResults = new ArrayList<T>();
+			if (topKResults != null) {
+				topKResults.clear();
+				topKChanged = true;
+			}
 			cacheCoordinates.clear();
 			cacheTypes.clear();
 			if(stringTable != null) {
@@ -1752,6 +1984,16 @@ public class BinaryMapIndexReader {
 		public boolean isBboxSpecified() {
 			return left != 0 || right != 0;
 		}
+
+		private static class ScoredResult<T> {
+			final T object;
+			final double score;
+
+			ScoredResult(T object, double score) {
+				this.object = object;
+				this.score = score;
+			}
+		}
 	}
 
 
@@ -1920,7 +2162,7 @@ public class BinaryMapIndexReader {
 				bm.namesOrder = new TIntArrayList();
 				for (int i = 0; i < o.namesOrder.size(); i++) {
 					int nameType = o.namesOrder.get(i);
-					String name = o.objectNames.get(nameType);
+					String name = o.getNameByType(nameType);
 					TagValuePair tp = o.mapIndex.decodeType(nameType);
 					Integer r = getRule(tp);
 					if(r != null) {
@@ -2297,54 +2539,49 @@ public class BinaryMapIndexReader {
 
 	}
 
-	int readIndexedStringTable(Collator instance, String query, String prefix, TIntArrayList list, int charMatches) throws IOException {
+	/**
+	 * Searches indexed string table which starts at current position (it should be limited by pushLimit).
+	 * Table is read only first time and kept in memory, next time its bytes are skipped.
+	 */
+	int searchIndexedStringTable(Collator instance, String query, TIntArrayList list) throws IOException {
+		int offset = codedIS.getTotalBytesRead();
+		CollatedStringTable table = stringTables.get(offset);
+		if (table == null) {
+			CollatedStringTable.Builder builder = new CollatedStringTable.Builder();
+			loadIndexedStringTable("", builder);
+			table = builder.build();
+			stringTables.put(offset, table);
+		} else {
+			codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+		}
+		return table.search(instance, query, list);
+	}
+
+	private void loadIndexedStringTable(String prefix, CollatedStringTable.Builder builder) throws IOException {
 		String key = null;
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			switch (tag) {
 			case 0:
-				return charMatches;
+				return;
 			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
-				key = codedIS.readString();
-				if(prefix.length() > 0){
-					key = prefix + key;
-				}
-				// check query is part of key (the best matching)
-				if(CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)){
-					if(query.length() >= charMatches){
-						if(query.length() > charMatches){
-							charMatches = query.length();
-							list.clear();
-						}
-					} else {
-						key = null;
-					}
-					// check key is part of query
-				} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
-					if (key.length() >= charMatches) {
-						if (key.length() > charMatches) {
-							charMatches = key.length();
-							list.clear();
-						}
-					} else {
-						key = null;
-					}
-				} else {
-					key = null;
-				}
+				key = prefix + codedIS.readString();
+				builder.addKey(key);
 				break;
 			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
 				int val = readInt();
 				if (key != null) {
-					list.add(val);
+					builder.addValue(val);
 				}
 				break;
 			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
 				int len = codedIS.readRawVarint32();
 				int oldLim = codedIS.pushLimit(len);
 				if (key != null) {
-					charMatches = readIndexedStringTable(instance, query, key, list, charMatches);
+					int subtable = builder.startSubtable();
+					loadIndexedStringTable(key, builder);
+					builder.endSubtable(subtable);
 				} else {
 					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				}
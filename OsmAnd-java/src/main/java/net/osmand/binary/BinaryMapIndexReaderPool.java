@@ -0,0 +1,134 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import net.osmand.PlatformUtil;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Pool of readers of one obf file. Readers share parsed index structure (map, route, poi, address, transport regions)
+ * with the reference reader, but each of them owns its file handle and coded stream,
+ * so different threads could query the same file in parallel without synchronizing on a single reader.
+ *
+ * Reader is taken with {@link #acquire()} and must be given back with {@link #release(BinaryMapIndexReader)}
+ * or {@link #query(ReaderTask)} could be used.
+ */
+public class BinaryMapIndexReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapIndexReaderPool.class);
+
+	public interface ReaderTask<T> {
+		T run(BinaryMapIndexReader reader) throws IOException;
+	}
+
+	private final BinaryMapIndexReader reference;
+	private final Semaphore permits;
+	private final ConcurrentLinkedQueue<BinaryMapIndexReader> idleReaders = new ConcurrentLinkedQueue<BinaryMapIndexReader>();
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private volatile boolean closed;
+
+	/**
+	 * @param reference initialized reader of the file, it is not handed out by the pool
+	 * @param maxReaders maximum number of readers (threads querying the file at the same time)
+	 */
+	public BinaryMapIndexReaderPool(BinaryMapIndexReader reference, int maxReaders) throws IOException {
+		if (maxReaders <= 0) {
+			throw new IllegalArgumentException("Max readers should be positive: " + maxReaders);
+		}
+		this.reference = reference;
+		this.permits = new Semaphore(maxReaders, true);
+		// shared structures should not be lazily modified by readers afterwards
+		reference.initSharedIndexes();
+	}
+
+	public File getFile() {
+		return reference.getFile();
+	}
+
+	public BinaryMapIndexReader getReference() {
+		return reference;
+	}
+
+	public int getCreatedReaders() {
+		synchronized (readers) {
+			return readers.size();
+		}
+	}
+
+	/**
+	 * Takes idle reader or opens a new one, blocks while maximum number of readers is in use
+	 */
+	public BinaryMapIndexReader acquire() throws IOException, InterruptedException {
+		permits.acquire();
+		try {
+			return pollOrCreate();
+		} catch (IOException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private BinaryMapIndexReader pollOrCreate() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Pool is closed " + reference.getFile().getName());
+		}
+		BinaryMapIndexReader reader = idleReaders.poll();
+		if (reader == null) {
+			reader = new BinaryMapIndexReader(new RandomAccessFile(reference.getFile(), "r"), reference);
+			synchronized (readers) {
+				readers.add(reader);
+			}
+		}
+		return reader;
+	}
+
+	public void release(BinaryMapIndexReader reader) {
+		if (closed) {
+			closeReader(reader);
+		} else {
+			idleReaders.add(reader);
+		}
+		permits.release();
+	}
+
+	public <T> T query(ReaderTask<T> task) throws IOException, InterruptedException {
+		BinaryMapIndexReader reader = acquire();
+		try {
+			return task.run(reader);
+		} finally {
+			release(reader);
+		}
+	}
+
+	/**
+	 * Closes idle readers, readers in use are closed when released. Reference reader is not closed.
+	 */
+	public void close() {
+		closed = true;
+		BinaryMapIndexReader reader;
+		while ((reader = idleReaders.poll()) != null) {
+			closeReader(reader);
+		}
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+		synchronized (readers) {
+			readers.remove(reader);
+		}
+	}
+}
@@ -385,7 +385,7 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLimit = codedIS.pushLimit(length);
 				dataOffsets = new TIntArrayList();
 				offset = codedIS.getTotalBytesRead();
-				map.readIndexedStringTable(instance, query, "", dataOffsets, 0);
+				map.searchIndexedStringTable(instance, query, dataOffsets);
 				codedIS.popLimit(oldLimit);
 				break;
 			}
@@ -481,6 +481,8 @@ public class BinaryMapPoiReaderAdapter {
 		int length;
 		int oldLimit;
 		TIntLongHashMap offsetsMap = new TIntLongHashMap();
+		// data offset -> box (zoom, x, y) to read boxes in order of score
+		TIntLongHashMap boxesMap = req.isTopK() ? new TIntLongHashMap() : null;
 		while (true) {
 			if (req.isCancelled()) {
 				return;
@@ -493,13 +495,16 @@ public class BinaryMapPoiReaderAdapter {
 			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
 				length = readInt();
 				oldLimit = codedIS.pushLimit(length);
-				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, skipTiles, req, region);
+				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, boxesMap, skipTiles, req, region);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
 				int[] offsets = offsetsMap.keys();
 				// also offsets can be randomly skipped by limit
 				Arrays.sort(offsets);
+				if (boxesMap != null) {
+					offsets = sortBoxesByScore(offsets, boxesMap, req);
+				}
 				if (skipTiles != null) {
 					skipTiles.clear();
 				}
@@ -516,6 +521,13 @@ public class BinaryMapPoiReaderAdapter {
 							continue;
 						}
 					}
+					if (boxesMap != null && isBoxPruned(boxesMap.get(offsets[j]), req)) {
+						// boxes are sorted by min score, so next boxes are pruned too
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Top-K poi are found, skip " + (offsets.length - j) + " subtrees");
+						}
+						break;
+					}
 					codedIS.seek(offsets[j] + indexOffset);
 					int len = readInt();
 					int oldLim = codedIS.pushLimit(len);
@@ -852,8 +864,48 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	private static long packBox(int zoom, int x, int y) {
+		return (((long) zoom) << 58) | (((long) x) << 29) | y;
+	}
+
+	// bbox of the packed box: left, top, right, bottom
+	private static int[] unpackBox(long box) {
+		int zoom = (int) (box >>> 58);
+		long x = (box >>> 29) & ((1L << 29) - 1);
+		long y = box & ((1L << 29) - 1);
+		return new int[] { (int) (x << (31 - zoom)), (int) (y << (31 - zoom)),
+				(int) (((x + 1) << (31 - zoom)) - 1), (int) (((y + 1) << (31 - zoom)) - 1) };
+	}
+
+	private static boolean isBoxPruned(long box, SearchRequest<Amenity> req) {
+		int[] b = unpackBox(box);
+		return req.isTopKPruned(b[0], b[1], b[2], b[3]);
+	}
+
+	private static int[] sortBoxesByScore(int[] offsets, TIntLongHashMap boxesMap, SearchRequest<Amenity> req) {
+		final double[] scores = new double[offsets.length];
+		Integer[] order = new Integer[offsets.length];
+		for (int i = 0; i < offsets.length; i++) {
+			order[i] = i;
+			int[] b = unpackBox(boxesMap.get(offsets[i]));
+			scores[i] = req.getTopKScore().getMinScore(b[0], b[1], b[2], b[3]);
+		}
+		// stable sort keeps file order for boxes with same score
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(scores[o1], scores[o2]);
+			}
+		});
+		int[] sorted = new int[offsets.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = offsets[order[i]];
+		}
+		return sorted;
+	}
+
 	private boolean readBoxField(int left31, int right31, int top31, int bottom31,
-			int px, int py, int pzoom, TIntLongHashMap offsetsMap, TLongHashSet skipTiles,
+			int px, int py, int pzoom, TIntLongHashMap offsetsMap, TIntLongHashMap boxesMap, TLongHashSet skipTiles,
 			SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		req.numberOfReadSubtrees++;
 		int zoomToSkip = req.zoom == -1 ? 31 : req.zoom + ZOOM_TO_SKIP_FILTER_READ;
@@ -914,7 +966,8 @@ public class BinaryMapPoiReaderAdapter {
 
 				int length = readInt();
 				int oldLimit = codedIS.pushLimit(length);
-				boolean exists = readBoxField(left31, right31, top31, bottom31, x, y, zoom, offsetsMap, skipTiles, req, region);
+				boolean exists = readBoxField(left31, right31, top31, bottom31, x, y, zoom, offsetsMap, boxesMap, skipTiles,
+						req, region);
 				codedIS.popLimit(oldLimit);
 
 				if (skipTiles != null && zoom >= zoomToSkip && exists) {
@@ -937,6 +990,9 @@ public class BinaryMapPoiReaderAdapter {
 				}
 				int offset = readInt();
 				if (read) {
+					if (boxesMap != null) {
+						boxesMap.put(offset, packBox(zoom, x, y));
+					}
 					if (skipTiles != null && zoom >= zoomToSkip) {
 						long valSkip = ((((long) x) >> (zoom - zoomToSkip)) << zoomToSkip)
 								| (((long) y) >> (zoom - zoomToSkip));
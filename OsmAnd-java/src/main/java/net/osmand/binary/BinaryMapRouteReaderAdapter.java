@@ -366,19 +366,25 @@ public class BinaryMapRouteReaderAdapter {
 				}
 			}
 			if (o.nameIds != null) {
-				rdo.nameIds = new int[o.nameIds.length];
-				rdo.names = new TIntObjectHashMap<>();
+				int[] nameIds = new int[o.nameIds.length];
 				for (int i = 0; i < o.nameIds.length; i++) {
 					RouteTypeRule tp = o.region.routeEncodingRules.get(o.nameIds[i]);
 					int ruleId = searchRouteEncodingRule(tp.getTag(), null);
-					if(ruleId != -1) {
-						rdo.nameIds[i] = ruleId;
-					} else {
+					if(ruleId == -1) {
 						ruleId = routeEncodingRules.size() ;
 						initRouteEncodingRule(ruleId, tp.getTag(), null);
-						rdo.nameIds[i] = ruleId;
 					}
-					rdo.names.put(ruleId, o.names.get(o.nameIds[i]));
+					nameIds[i] = ruleId;
+				}
+				if (o.names == null && o.nameIndexes != null) {
+					// name indexes are parallel to name ids, so string table is shared
+					rdo.setNames(nameIds, o.nameIndexes, o.stringTable);
+				} else {
+					rdo.nameIds = nameIds;
+					rdo.names = new TIntObjectHashMap<>();
+					for (int i = 0; i < o.nameIds.length; i++) {
+						rdo.names.put(nameIds[i], o.names.get(o.nameIds[i]));
+					}
 				}
 			}
 			rdo.pointNames = o.pointNames;
@@ -436,7 +442,6 @@ public class BinaryMapRouteReaderAdapter {
 		public int bottom;
 		public int shiftToData;
 		public List<RouteSubregion> subregions = null;
-		public List<RouteDataObject> dataObjects = null;
 		
 		public int getEstimatedSize(){
 			int shallow = 7 * INT_SIZE + 4*3;
@@ -574,17 +579,16 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.STRINGNAMES_FIELD_NUMBER:
-				o.names = new TIntObjectHashMap<String>();
 				int sizeL = codedIS.readRawVarint32();
 				int old = codedIS.pushLimit(sizeL);
 				TIntArrayList list = new TIntArrayList();
+				TIntArrayList indexes = new TIntArrayList();
 				while (codedIS.getBytesUntilLimit() > 0) {
-					int stag = codedIS.readRawVarint32();
-					int pId = codedIS.readRawVarint32();
-					o.names.put(stag, ((char)pId)+"");
-					list.add(stag);
+					list.add(codedIS.readRawVarint32());
+					indexes.add(codedIS.readRawVarint32());
 				}
-				o.nameIds = list.toArray();
+				// string table is set when the whole block is read
+				o.setNames(list.toArray(), indexes.toArray(), null);
 				codedIS.popLimit(old);
 				break;
 			case RouteData.POINTS_FIELD_NUMBER:
@@ -650,9 +654,10 @@ public class BinaryMapRouteReaderAdapter {
 			}
 		}
 	}
-	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
+	private List<RouteDataObject> readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
 			TLongObjectHashMap<RestrictionInfo> restrictions) throws IOException {
-		routeTree.dataObjects = new ArrayList<RouteDataObject>();
+		// not stored in routeTree: subregions could be shared between readers of the same file
+		List<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
 		List<String> stringTable = null;
@@ -665,7 +670,7 @@ public class BinaryMapRouteReaderAdapter {
 				while (it.hasNext()) {
 					it.advance();
 					int from = (int) it.key();
-					RouteDataObject fromr = routeTree.dataObjects.get(from);
+					RouteDataObject fromr = dataObjects.get(from);
 					fromr.restrictions = new long[it.value().length()];
 					RestrictionInfo val = it.value();
 					for (int k = 0; k < fromr.restrictions.length; k++) {
@@ -680,16 +685,17 @@ public class BinaryMapRouteReaderAdapter {
 					}
 //					fromr.restrictionsVia = new 
 				}
-				for (RouteDataObject o : routeTree.dataObjects) {
+				String[] stringTableArray = null;
+				for (RouteDataObject o : dataObjects) {
 					if (o != null) {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
 						}
-						if (o.names != null && stringTable != null) {
-							int[] keys = o.names.keys();
-							for (int j = 0; j < keys.length; j++) {
-								o.names.put(keys[j], stringTable.get(o.names.get(keys[j]).charAt(0)));
+						if (o.nameIndexes != null && stringTable != null) {
+							if (stringTableArray == null) {
+								stringTableArray = stringTable.toArray(new String[stringTable.size()]);
 							}
+							o.stringTable = stringTableArray;
 						}
 						if (o.pointNames != null && stringTable != null) {
 							for(String[] ar : o.pointNames) {
@@ -702,15 +708,15 @@ public class BinaryMapRouteReaderAdapter {
 						}
 					}
 				}
-				return;
+				return dataObjects;
 			case RouteDataBlock.DATAOBJECTS_FIELD_NUMBER :
 				int length = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(length);
 				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
-				while(obj.id >= routeTree.dataObjects.size()) {
-					routeTree.dataObjects.add(null);
+				while(obj.id >= dataObjects.size()) {
+					dataObjects.add(null);
 				}
-				routeTree.dataObjects.set((int) obj.id,obj);
+				dataObjects.set((int) obj.id,obj);
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteDataBlock.IDTABLE_FIELD_NUMBER :
@@ -900,15 +906,11 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
-		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
+		codedIS.seek(rs.filePointer + rs.shiftToData);
+		int limit = codedIS.readRawVarint32();
+		int oldLimit = codedIS.pushLimit(limit);
+		List<RouteDataObject> res = readRouteTreeData(rs, idMap, restrictionMap);
+		codedIS.popLimit(oldLimit);
 		return res;
 	}
 	
@@ -924,20 +926,16 @@ public class BinaryMapRouteReaderAdapter {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
-			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			codedIS.seek(rs.filePointer + rs.shiftToData);
+			int limit = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(limit);
+			List<RouteDataObject> dataObjects = readRouteTreeData(rs, idMap, restrictionMap);
+			codedIS.popLimit(oldLimit);
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 		}
 	}
 
@@ -1,22 +1,32 @@
 package net.osmand.binary;
 
-import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
-import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
 
 import net.osmand.data.GeometryTile;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
 
 public class BinaryVectorTileReader {
 
+	// streaming reader reuses its buffers between tiles of the loading thread
+	private static final ThreadLocal<MvtStreamReader> READERS = new ThreadLocal<MvtStreamReader>() {
+		@Override
+		protected MvtStreamReader initialValue() {
+			return new MvtStreamReader();
+		}
+	};
+
 	public static GeometryTile readTile(File file) throws IOException {
 		GeometryFactory geomFactory = new GeometryFactory();
-		return new GeometryTile(
-				MvtReader.loadMvt(new FileInputStream(file), geomFactory, new TagKeyValueMapConverter()));
+		InputStream is = new FileInputStream(file);
+		try {
+			return new GeometryTile(READERS.get().loadMvt(is, geomFactory, MvtReader.RING_CLASSIFIER_V2_1));
+		} finally {
+			is.close();
+		}
 	}
 }
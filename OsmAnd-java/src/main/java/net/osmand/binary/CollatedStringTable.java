@@ -0,0 +1,338 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.OsmAndCollator;
+
+/**
+ * Indexed string table (name index of poi and address sections) loaded into memory.
+ * Table is kept as it is stored in file (keys with full prefixes, values and subtables in file order) and keys are
+ * also sorted by primary collation keys of {@link OsmAndCollator#primaryInstance()}. Search looks up candidate keys
+ * in sorted keys and matches them with collator exactly as reading the table from file does
+ * (see {@link BinaryMapIndexReader#searchIndexedStringTable}), so search collator should be the same primary collator.
+ */
+public class CollatedStringTable {
+
+	private static final byte KEY = 0;
+	private static final byte VALUE = 1;
+	private static final byte SUBTABLE = 2;
+
+	private final String[] keys;
+	// items in file order: key (index in keys), value or subtable (index of item after subtable)
+	private final byte[] itemTypes;
+	private final int[] items;
+	// item of key and key which subtable contains key (-1 for top level keys)
+	private final int[] keyItems;
+	private final int[] keyParents;
+	private final java.text.Collator keyCollator;
+	private final byte[] emptyCollationKey;
+	// primary collation keys without terminator, so keys of string prefixes are prefixes of string key
+	private final byte[][] collationKeys;
+	private final int[] sortedKeys;
+
+	static class Builder {
+		private final List<String> keys = new ArrayList<String>();
+		private final TIntArrayList keyItems = new TIntArrayList();
+		private final TIntArrayList keyParents = new TIntArrayList();
+		private final TIntArrayList parents = new TIntArrayList();
+		private int parent = -1;
+		private byte[] itemTypes = new byte[64];
+		private int[] items = new int[64];
+		private int size;
+
+		private int addItem(byte type, int item) {
+			if (size == items.length) {
+				itemTypes = Arrays.copyOf(itemTypes, size * 2);
+				items = Arrays.copyOf(items, size * 2);
+			}
+			itemTypes[size] = type;
+			items[size] = item;
+			return size++;
+		}
+
+		void addKey(String key) {
+			keyItems.add(addItem(KEY, keys.size()));
+			keyParents.add(parent);
+			keys.add(key);
+		}
+
+		void addValue(int value) {
+			addItem(VALUE, value);
+		}
+
+		/**
+		 * Subtable of the last key, items of subtable should be added before {@link #endSubtable(int)}
+		 */
+		int startSubtable() {
+			parents.add(parent);
+			parent = keys.size() - 1;
+			return addItem(SUBTABLE, 0);
+		}
+
+		void endSubtable(int subtable) {
+			items[subtable] = size;
+			parent = parents.removeAt(parents.size() - 1);
+		}
+
+		CollatedStringTable build() {
+			return new CollatedStringTable(keys.toArray(new String[keys.size()]), Arrays.copyOf(itemTypes, size),
+					Arrays.copyOf(items, size), keyItems.toArray(), keyParents.toArray());
+		}
+	}
+
+	private CollatedStringTable(String[] keys, byte[] itemTypes, int[] items, int[] keyItems, int[] keyParents) {
+		this.keys = keys;
+		this.itemTypes = itemTypes;
+		this.items = items;
+		this.keyItems = keyItems;
+		this.keyParents = keyParents;
+		this.keyCollator = OsmAndCollator.primaryInstance();
+		this.emptyCollationKey = keyCollator.getCollationKey("").toByteArray();
+		collationKeys = new byte[keys.length][];
+		Integer[] sorted = new Integer[keys.length];
+		for (int k = 0; k < keys.length; k++) {
+			collationKeys[k] = getCollationKey(keys[k].toLowerCase(Locale.getDefault()));
+			sorted[k] = k;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return compareKeys(collationKeys[o1], collationKeys[o2], Integer.MAX_VALUE);
+			}
+		});
+		sortedKeys = new int[keys.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sortedKeys[i] = sorted[i];
+		}
+	}
+
+	private byte[] getCollationKey(String s) {
+		byte[] key = keyCollator.getCollationKey(s).toByteArray();
+		int len = key.length - emptyCollationKey.length;
+		if (len < 0) {
+			return key;
+		}
+		for (int i = 0; i < emptyCollationKey.length; i++) {
+			if (key[len + i] != emptyCollationKey[i]) {
+				return key;
+			}
+		}
+		return Arrays.copyOf(key, len);
+	}
+
+	// compares at most len first bytes as unsigned
+	private static int compareKeys(byte[] k1, byte[] k2, int len) {
+		int l = Math.min(len, Math.min(k1.length, k2.length));
+		for (int i = 0; i < l; i++) {
+			int c = (k1[i] & 0xff) - (k2[i] & 0xff);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return Math.min(len, k1.length) - Math.min(len, k2.length);
+	}
+
+	// adds keys which collation key is equal to (or starts with) given key
+	private void lookup(byte[] key, boolean prefix, TIntArrayList candidates) {
+		int len = prefix ? key.length : Integer.MAX_VALUE;
+		int lo = 0;
+		int hi = sortedKeys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compareKeys(collationKeys[sortedKeys[mid]], key, Integer.MAX_VALUE) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		for (int i = lo; i < sortedKeys.length && compareKeys(collationKeys[sortedKeys[i]], key, len) == 0; i++) {
+			candidates.add(sortedKeys[i]);
+		}
+	}
+
+	/**
+	 * Adds values of keys which start with query or (if there are no such keys)
+	 * values of the longest keys which query starts with.
+	 * Returns number of matched characters.
+	 */
+	public int search(Collator collator, String query, TIntArrayList list) {
+		TIntArrayList candidates = new TIntArrayList();
+		// keys which start with query
+		lookup(getCollationKey(query), true, candidates);
+		// keys which query starts with
+		String lowerQuery = query.toLowerCase(Locale.getDefault());
+		byte[] prev = null;
+		for (int l = 0; l <= lowerQuery.length(); l++) {
+			byte[] key = getCollationKey(lowerQuery.substring(0, l));
+			if (prev == null || !Arrays.equals(prev, key)) {
+				lookup(key, false, candidates);
+			}
+			prev = key;
+		}
+		// candidates are matched with search collator in file order
+		candidates.sort();
+		TIntArrayList matchedKeys = new TIntArrayList();
+		TIntArrayList matchedLengths = new TIntArrayList();
+		for (int i = 0; i < candidates.size(); i++) {
+			int k = candidates.get(i);
+			if (i > 0 && candidates.get(i - 1) == k) {
+				continue;
+			}
+			String key = keys[k];
+			// check query is part of key (the best matching)
+			if (CollatorStringMatcher.cmatches(collator, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				matchedKeys.add(k);
+				matchedLengths.add(query.length());
+				// check key is part of query
+			} else if (CollatorStringMatcher.cmatches(collator, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				matchedKeys.add(k);
+				matchedLengths.add(key.length());
+			}
+		}
+		return search(matchedKeys.toArray(), matchedLengths.toArray(), new int[1], -1, items.length, list, 0);
+	}
+
+	private int search(int[] matchedKeys, int[] matchedLengths, int[] next, int parent, int to, TIntArrayList list,
+			int charMatches) {
+		while (next[0] < matchedKeys.length && keyItems[matchedKeys[next[0]]] < to) {
+			int k = matchedKeys[next[0]];
+			int length = matchedLengths[next[0]];
+			next[0]++;
+			// keys of subtables which are not searched are skipped
+			if (keyParents[k] != parent || length < charMatches) {
+				continue;
+			}
+			if (length > charMatches) {
+				charMatches = length;
+				list.clear();
+			}
+			int i = keyItems[k] + 1;
+			while (i < to && itemTypes[i] != KEY) {
+				if (itemTypes[i] == VALUE) {
+					list.add(items[i]);
+					i++;
+				} else {
+					charMatches = search(matchedKeys, matchedLengths, next, k, items[i], list, charMatches);
+					i = items[i];
+				}
+			}
+		}
+		return charMatches;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public long getEstimatedMemory() {
+		long m = 32 + items.length * 5;
+		for (int k = 0; k < keys.length; k++) {
+			m += 40 + keys[k].length() * 2 + 28 + collationKeys[k].length;
+		}
+		return m;
+	}
+
+	/**
+	 * Tables of one file by offset. Tables of all files are kept in one LRU list, least recently used tables are
+	 * removed when estimated memory of file tables exceeds limit or memory of all tables exceeds total limit.
+	 */
+	static class Cache {
+		private static final long TOTAL_MEMORY_LIMIT = 32 * 1024 * 1024;
+		private static final LinkedHashMap<TableKey, CollatedStringTable> ALL_TABLES =
+				new LinkedHashMap<TableKey, CollatedStringTable>(16, 0.75f, true);
+		private static long totalMemory;
+
+		private final long memoryLimit;
+		private long memory;
+
+		Cache(long memoryLimit) {
+			this.memoryLimit = memoryLimit;
+		}
+
+		CollatedStringTable get(int offset) {
+			synchronized (ALL_TABLES) {
+				return ALL_TABLES.get(new TableKey(this, offset));
+			}
+		}
+
+		void put(int offset, CollatedStringTable table) {
+			synchronized (ALL_TABLES) {
+				TableKey key = new TableKey(this, offset);
+				CollatedStringTable old = ALL_TABLES.put(key, table);
+				if (old != null) {
+					memory -= old.getEstimatedMemory();
+					totalMemory -= old.getEstimatedMemory();
+				}
+				memory += table.getEstimatedMemory();
+				totalMemory += table.getEstimatedMemory();
+				Iterator<Map.Entry<TableKey, CollatedStringTable>> it = ALL_TABLES.entrySet().iterator();
+				// the last added table is kept even if it is bigger than limit
+				while ((memory > memoryLimit || totalMemory > TOTAL_MEMORY_LIMIT) && it.hasNext()) {
+					Map.Entry<TableKey, CollatedStringTable> e = it.next();
+					if (e.getKey() == key) {
+						break;
+					}
+					if (totalMemory > TOTAL_MEMORY_LIMIT || e.getKey().cache == this) {
+						remove(it, e);
+					}
+				}
+			}
+		}
+
+		void clear() {
+			synchronized (ALL_TABLES) {
+				Iterator<Map.Entry<TableKey, CollatedStringTable>> it = ALL_TABLES.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<TableKey, CollatedStringTable> e = it.next();
+					if (e.getKey().cache == this) {
+						remove(it, e);
+					}
+				}
+			}
+		}
+
+		private static void remove(Iterator<Map.Entry<TableKey, CollatedStringTable>> it,
+				Map.Entry<TableKey, CollatedStringTable> e) {
+			long m = e.getValue().getEstimatedMemory();
+			e.getKey().cache.memory -= m;
+			totalMemory -= m;
+			it.remove();
+		}
+	}
+
+	private static class TableKey {
+		private final Cache cache;
+		private final int offset;
+
+		TableKey(Cache cache, int offset) {
+			this.cache = cache;
+			this.offset = offset;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(cache) + offset;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TableKey)) {
+				return false;
+			}
+			TableKey other = (TableKey) obj;
+			return cache == other.cache && offset == other.offset;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * LRU cache of decoded map data blocks, bounded by estimated size in bytes.
+ * Block is identified by file (path & creation date) and offset of the block inside the file,
+ * offset defines map level (zoom range) as well. Block is cached with all its objects (not filtered by bbox and
+ * search filter of the request), so cached {@link BinaryMapDataObject} are shared and should not be modified.
+ * Cache could be shared between readers and it is thread safe.
+ */
+public class MapDataBlockCache {
+
+	private static final int OBJECT_OVERHEAD = 16;
+	private static final int ARRAY_OVERHEAD = 16;
+	private static final int REFERENCE_SIZE = 8;
+	// BinaryMapDataObject fields, names map and entry bounds
+	private static final int MAP_DATA_OBJECT_SIZE = OBJECT_OVERHEAD + 8 * REFERENCE_SIZE + 16 + 4 * 4;
+
+	private final long maxSizeBytes;
+	private long sizeBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private final LinkedHashMap<BlockKey, CachedBlock> blocks = new LinkedHashMap<BlockKey, CachedBlock>(64, 0.75f, true);
+
+	public MapDataBlockCache(long maxSizeBytes) {
+		this.maxSizeBytes = maxSizeBytes;
+	}
+
+	public static class CachedBlock {
+		final BinaryMapDataObject[] objects;
+		// left, top, right, bottom of (outer) coordinates per object
+		final int[] bounds;
+		final int sizeBytes;
+
+		CachedBlock(List<BinaryMapDataObject> list) {
+			objects = list.toArray(new BinaryMapDataObject[list.size()]);
+			bounds = new int[objects.length * 4];
+			int size = OBJECT_OVERHEAD + 2 * ARRAY_OVERHEAD + objects.length * (REFERENCE_SIZE + 16);
+			for (int i = 0; i < objects.length; i++) {
+				BinaryMapDataObject o = objects[i];
+				int left = Integer.MAX_VALUE;
+				int top = Integer.MAX_VALUE;
+				int right = Integer.MIN_VALUE;
+				int bottom = Integer.MIN_VALUE;
+				for (int k = 0; k + 1 < o.coordinates.length; k += 2) {
+					left = Math.min(left, o.coordinates[k]);
+					right = Math.max(right, o.coordinates[k]);
+					top = Math.min(top, o.coordinates[k + 1]);
+					bottom = Math.max(bottom, o.coordinates[k + 1]);
+				}
+				bounds[i * 4] = left;
+				bounds[i * 4 + 1] = top;
+				bounds[i * 4 + 2] = right;
+				bounds[i * 4 + 3] = bottom;
+				size += estimateSize(o);
+			}
+			sizeBytes = size;
+		}
+
+		public int getSizeBytes() {
+			return sizeBytes;
+		}
+
+		public int getObjectsCount() {
+			return objects.length;
+		}
+	}
+
+	private static int estimateSize(BinaryMapDataObject o) {
+		int size = MAP_DATA_OBJECT_SIZE;
+		size += arraySize(o.coordinates) + arraySize(o.types) + arraySize(o.additionalTypes);
+		if (o.polygonInnerCoordinates != null) {
+			size += ARRAY_OVERHEAD + o.polygonInnerCoordinates.length * REFERENCE_SIZE;
+			for (int[] inner : o.polygonInnerCoordinates) {
+				size += arraySize(inner);
+			}
+		}
+		if (o.objectNames != null) {
+			size += OBJECT_OVERHEAD + 3 * ARRAY_OVERHEAD;
+			for (String s : o.objectNames.valueCollection()) {
+				size += 4 + REFERENCE_SIZE + OBJECT_OVERHEAD + ARRAY_OVERHEAD + (s == null ? 0 : s.length() * 2);
+			}
+		}
+		if (o.namesOrder != null) {
+			size += OBJECT_OVERHEAD + ARRAY_OVERHEAD + o.namesOrder.size() * 4;
+		}
+		if (o.nameIndexes != null) {
+			// string table itself is shared by objects of the block
+			size += arraySize(o.nameIndexes) + REFERENCE_SIZE;
+		}
+		return size;
+	}
+
+	private static int arraySize(int[] ar) {
+		return ar == null ? 0 : ARRAY_OVERHEAD + ar.length * 4;
+	}
+
+	private static class BlockKey {
+		private final String file;
+		private final long dateCreated;
+		private final long offset;
+
+		BlockKey(File file, long dateCreated, long offset) {
+			this.file = file.getAbsolutePath();
+			this.dateCreated = dateCreated;
+			this.offset = offset;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file.hashCode();
+			result = 31 * result + (int) (dateCreated ^ (dateCreated >>> 32));
+			result = 31 * result + (int) (offset ^ (offset >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return offset == other.offset && dateCreated == other.dateCreated && file.equals(other.file);
+		}
+	}
+
+	public synchronized CachedBlock get(BinaryMapIndexReader reader, long blockOffset) {
+		CachedBlock block = blocks.get(new BlockKey(reader.getFile(), reader.getDateCreated(), blockOffset));
+		if (block == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return block;
+	}
+
+	public synchronized CachedBlock put(BinaryMapIndexReader reader, long blockOffset, List<BinaryMapDataObject> objects) {
+		CachedBlock block = new CachedBlock(objects);
+		if (block.sizeBytes > maxSizeBytes) {
+			return block;
+		}
+		CachedBlock old = blocks.put(new BlockKey(reader.getFile(), reader.getDateCreated(), blockOffset), block);
+		if (old != null) {
+			sizeBytes -= old.sizeBytes;
+		}
+		sizeBytes += block.sizeBytes;
+		Iterator<Entry<BlockKey, CachedBlock>> it = blocks.entrySet().iterator();
+		while (sizeBytes > maxSizeBytes && it.hasNext()) {
+			Entry<BlockKey, CachedBlock> e = it.next();
+			if (e.getValue() != block) {
+				sizeBytes -= e.getValue().sizeBytes;
+				evictions++;
+				it.remove();
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Publishes objects of the block which intersect request bbox and are accepted by its search filter
+	 */
+	static void publish(CachedBlock block, BinaryMapIndexReader.SearchRequest<BinaryMapDataObject> req,
+			BinaryMapIndexReader.MapIndex root) {
+		TIntArrayList types = req.cacheTypes;
+		for (int i = 0; i < block.objects.length; i++) {
+			if (req.isCancelled()) {
+				return;
+			}
+			req.numberOfVisitedObjects++;
+			int j = i * 4;
+			if (block.bounds[j + 2] < req.left || block.bounds[j] > req.right || block.bounds[j + 3] < req.top
+					|| block.bounds[j + 1] > req.bottom) {
+				continue;
+			}
+			BinaryMapDataObject o = block.objects[i];
+			if (req.searchFilter != null) {
+				types.clear();
+				types.add(o.types);
+				if (!req.searchFilter.accept(types, root)) {
+					continue;
+				}
+			}
+			req.numberOfAcceptedObjects++;
+			req.publish(o);
+		}
+	}
+
+	public synchronized void clear() {
+		blocks.clear();
+		sizeBytes = 0;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Map data block cache: " + blocks.size() + " blocks " + (sizeBytes >> 10) + " KB (max "
+				+ (maxSizeBytes >> 10) + " KB), hits " + hits + ", misses " + misses + ", evictions " + evictions;
+	}
+}
@@ -0,0 +1,645 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.ITagConverter;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmd;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmdHdr;
+import com.wdtinc.mapbox_vector_tile.encoding.ZigZag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming decoder of Mapbox Vector Tiles (MVT). Unlike {@link MvtReader} it doesn't build
+ * {@link net.osmand.binary.VectorTile.Tile} message: features are decoded straight from the tile bytes into reusable
+ * buffers and passed to {@link FeatureVisitor}. Tile is read by single {@link CodedInputStream} with limits pushed
+ * for layers and features. JTS geometry, keys, values and tag maps are created only on demand. Layers could be
+ * restricted by name.
+ *
+ * <p>Reader keeps its buffers between tiles, so it is not thread safe.</p>
+ */
+public final class MvtStreamReader {
+	private static final int MIN_LINE_STRING_LEN = 6; // MoveTo,1 + LineTo,1
+	private static final int MIN_POLYGON_LEN = 9; // MoveTo,1 + LineTo,2 + ClosePath
+	private static final int DEFAULT_EXTENT = 4096;
+	private static final Object NOT_DECODED = new Object();
+
+	/**
+	 * Receives decoded features. Feature is reused by the reader and valid only during the call.
+	 */
+	public interface FeatureVisitor {
+
+		void visitFeature(Feature feature);
+	}
+
+	private final Set<String> layers;
+	private final Feature feature = new Feature();
+	private byte[] data = new byte[0];
+
+	/**
+	 * Reads all layers.
+	 */
+	public MvtStreamReader() {
+		this(null);
+	}
+
+	/**
+	 * @param layers names of layers to read, null to read all layers
+	 */
+	public MvtStreamReader(Set<String> layers) {
+		this.layers = layers;
+	}
+
+	/**
+	 * Reads tile from the stream (stream is read till the end, but not closed).
+	 */
+	public void read(InputStream is, FeatureVisitor visitor) throws IOException {
+		int len = 0;
+		int read;
+		while ((read = is.read(data, len, data.length - len)) != -1) {
+			len += read;
+			if (len == data.length) {
+				data = Arrays.copyOf(data, Math.max(4096, data.length * 2));
+			}
+		}
+		read(data, 0, len, visitor);
+	}
+
+	public void read(byte[] tile, int off, int len, FeatureVisitor visitor) throws IOException {
+		final CodedInputStream cis = CodedInputStream.newInstance(tile, off, len);
+		feature.startTile(tile, off, len);
+		int tag;
+		while ((tag = cis.readTag()) != 0) {
+			if (tag == lengthDelimited(VectorTile.Tile.LAYERS_FIELD_NUMBER)) {
+				final int oldLimit = cis.pushLimit(cis.readRawVarint32());
+				readLayer(cis, visitor);
+				cis.popLimit(oldLimit);
+			} else {
+				cis.skipField(tag);
+			}
+		}
+	}
+
+	/**
+	 * Load an MVT to JTS geometries using coordinates, same as
+	 * {@link MvtReader#loadMvt(InputStream, GeometryFactory, ITagConverter, MvtReader.RingClassifier)}
+	 * with {@link TagKeyValueMapConverter}.
+	 */
+	public List<Geometry> loadMvt(InputStream is, final GeometryFactory geomFactory,
+			final MvtReader.RingClassifier ringClassifier) throws IOException {
+		final List<Geometry> tileGeoms = new ArrayList<>();
+		read(is, new FeatureVisitor() {
+			@Override
+			public void visitFeature(Feature feature) {
+				final Geometry geom = feature.createGeometry(geomFactory, ringClassifier);
+				if (geom != null) {
+					geom.setUserData(feature.getTags());
+					tileGeoms.add(geom);
+				}
+			}
+		});
+		return tileGeoms;
+	}
+
+	private static int lengthDelimited(int fieldNumber) {
+		return (fieldNumber << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+	}
+
+	private void readLayer(CodedInputStream cis, FeatureVisitor visitor) throws IOException {
+		// keys & values are usually written after features, so positions are collected first
+		final Feature f = feature;
+		f.startLayer();
+		final int layerStart = cis.getTotalBytesRead();
+		int tag;
+		while ((tag = cis.readTag()) != 0) {
+			final int field = WireFormat.getTagFieldNumber(tag);
+			if (field == VectorTile.Tile.Layer.NAME_FIELD_NUMBER) {
+				f.layerName = cis.readString();
+			} else if (field == VectorTile.Tile.Layer.EXTENT_FIELD_NUMBER) {
+				f.extent = cis.readUInt32();
+			} else if (field == VectorTile.Tile.Layer.VERSION_FIELD_NUMBER) {
+				f.version = cis.readUInt32();
+			} else if (tag == lengthDelimited(VectorTile.Tile.Layer.KEYS_FIELD_NUMBER)) {
+				final int len = cis.readRawVarint32();
+				f.addKey(cis.getTotalBytesRead(), len);
+				cis.skipRawBytes(len);
+			} else if (tag == lengthDelimited(VectorTile.Tile.Layer.VALUES_FIELD_NUMBER)) {
+				final int len = cis.readRawVarint32();
+				f.addValue(cis.getTotalBytesRead(), len);
+				cis.skipRawBytes(len);
+			} else {
+				cis.skipField(tag);
+			}
+		}
+		if (layers != null && !layers.contains(f.layerName)) {
+			return;
+		}
+		cis.seek(layerStart);
+		while ((tag = cis.readTag()) != 0) {
+			if (tag == lengthDelimited(VectorTile.Tile.Layer.FEATURES_FIELD_NUMBER)) {
+				final int oldLimit = cis.pushLimit(cis.readRawVarint32());
+				f.read(cis);
+				cis.popLimit(oldLimit);
+				if (f.type != VectorTile.Tile.GeomType.UNKNOWN) {
+					visitor.visitFeature(f);
+				}
+			} else {
+				cis.skipField(tag);
+			}
+		}
+	}
+
+	/**
+	 * Feature of the layer. Geometry commands and tags are kept in reusable buffers,
+	 * coordinates are decoded by {@link #decodeCoordinates()}.
+	 */
+	public static final class Feature {
+		private byte[] tile;
+		private int tileOffset;
+		private int tileLength;
+		// stream of the tile to decode values, positions of keys & values are relative to the tile offset
+		private CodedInputStream valuesStream;
+
+		private String layerName;
+		private int extent;
+		private int version;
+		private int keysCount;
+		private int[] keyPositions = new int[16];
+		private String[] keys = new String[8];
+		private int valuesCount;
+		private int[] valuePositions = new int[16];
+		private Object[] values = new Object[8];
+
+		private boolean hasId;
+		private long id;
+		private VectorTile.Tile.GeomType type;
+		private int geometryLength;
+		private int[] geometry = new int[64];
+		private int tagsLength;
+		private int[] tags = new int[16];
+
+		private boolean coordinatesDecoded;
+		private int partsCount;
+		// start point of every part, last element is number of points
+		private int[] parts = new int[8];
+		private double[] coordinates = new double[64];
+
+		private Feature() {
+		}
+
+		private void startTile(byte[] tile, int off, int len) {
+			this.tile = tile;
+			this.tileOffset = off;
+			this.tileLength = len;
+			valuesStream = null;
+		}
+
+		private void startLayer() {
+			layerName = null;
+			extent = DEFAULT_EXTENT;
+			version = 1;
+			Arrays.fill(keys, 0, keysCount, null);
+			keysCount = 0;
+			Arrays.fill(values, 0, valuesCount, null);
+			valuesCount = 0;
+		}
+
+		private void addKey(int pos, int len) {
+			if (keysCount * 2 == keyPositions.length) {
+				keyPositions = Arrays.copyOf(keyPositions, keyPositions.length * 2);
+				keys = Arrays.copyOf(keys, keys.length * 2);
+			}
+			keyPositions[keysCount * 2] = pos;
+			keyPositions[keysCount * 2 + 1] = len;
+			keys[keysCount++] = null;
+		}
+
+		private void addValue(int pos, int len) {
+			if (valuesCount * 2 == valuePositions.length) {
+				valuePositions = Arrays.copyOf(valuePositions, valuePositions.length * 2);
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			valuePositions[valuesCount * 2] = pos;
+			valuePositions[valuesCount * 2 + 1] = len;
+			values[valuesCount++] = NOT_DECODED;
+		}
+
+		private void read(CodedInputStream cis) throws IOException {
+			hasId = false;
+			id = 0;
+			type = VectorTile.Tile.GeomType.UNKNOWN;
+			geometryLength = 0;
+			tagsLength = 0;
+			coordinatesDecoded = false;
+			int tag;
+			while ((tag = cis.readTag()) != 0) {
+				final int field = WireFormat.getTagFieldNumber(tag);
+				final boolean packed = WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+				if (field == VectorTile.Tile.Feature.ID_FIELD_NUMBER && !packed) {
+					hasId = true;
+					id = cis.readUInt64();
+				} else if (field == VectorTile.Tile.Feature.TYPE_FIELD_NUMBER && !packed) {
+					final VectorTile.Tile.GeomType t = VectorTile.Tile.GeomType.valueOf(cis.readEnum());
+					if (t != null) {
+						type = t;
+					}
+				} else if (field == VectorTile.Tile.Feature.TAGS_FIELD_NUMBER && packed) {
+					final int oldLimit = cis.pushLimit(cis.readRawVarint32());
+					while (cis.getBytesUntilLimit() > 0) {
+						addTag(cis.readUInt32());
+					}
+					cis.popLimit(oldLimit);
+				} else if (field == VectorTile.Tile.Feature.TAGS_FIELD_NUMBER) {
+					addTag(cis.readUInt32());
+				} else if (field == VectorTile.Tile.Feature.GEOMETRY_FIELD_NUMBER && packed) {
+					final int oldLimit = cis.pushLimit(cis.readRawVarint32());
+					while (cis.getBytesUntilLimit() > 0) {
+						addGeometry(cis.readUInt32());
+					}
+					cis.popLimit(oldLimit);
+				} else if (field == VectorTile.Tile.Feature.GEOMETRY_FIELD_NUMBER) {
+					addGeometry(cis.readUInt32());
+				} else {
+					cis.skipField(tag);
+				}
+			}
+		}
+
+		private void addTag(int v) {
+			if (tagsLength == tags.length) {
+				tags = Arrays.copyOf(tags, tags.length * 2);
+			}
+			tags[tagsLength++] = v;
+		}
+
+		private void addGeometry(int v) {
+			if (geometryLength == geometry.length) {
+				geometry = Arrays.copyOf(geometry, geometry.length * 2);
+			}
+			geometry[geometryLength++] = v;
+		}
+
+		public String getLayerName() {
+			return layerName;
+		}
+
+		public int getExtent() {
+			return extent;
+		}
+
+		public int getVersion() {
+			return version;
+		}
+
+		public boolean hasId() {
+			return hasId;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public VectorTile.Tile.GeomType getType() {
+			return type;
+		}
+
+		/**
+		 * @return geometry commands buffer, valid elements are limited by {@link #getGeometryLength()}
+		 */
+		public int[] getGeometry() {
+			return geometry;
+		}
+
+		public int getGeometryLength() {
+			return geometryLength;
+		}
+
+		public int getTagsCount() {
+			return tagsLength / 2;
+		}
+
+		/**
+		 * @return key of the tag or null if key index is invalid
+		 */
+		public String getTagKey(int i) {
+			return getKey(tags[i * 2]);
+		}
+
+		/**
+		 * @return value of the tag (as {@link com.wdtinc.mapbox_vector_tile.encoding.MvtValue#toObject})
+		 *         or null if value index is invalid
+		 */
+		public Object getTagValue(int i) {
+			return getValue(tags[i * 2 + 1]);
+		}
+
+		public Object getTagValue(String key) {
+			for (int i = 0; i + 1 < tagsLength; i += 2) {
+				if (key.equals(getKey(tags[i]))) {
+					return getValue(tags[i + 1]);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Creates map of tags, tags with invalid indexes are ignored (same as {@link TagKeyValueMapConverter})
+		 */
+		public Map<String, Object> getTags() {
+			final Map<String, Object> res = new HashMap<>(((tagsLength + 1) / 2));
+			for (int i = 0; i + 1 < tagsLength; i += 2) {
+				final int keyIndex = tags[i];
+				final int valIndex = tags[i + 1];
+				if (keyIndex >= 0 && keyIndex < keysCount && valIndex >= 0 && valIndex < valuesCount) {
+					res.put(getKey(keyIndex), getValue(valIndex));
+				}
+			}
+			return res;
+		}
+
+		private String getKey(int index) {
+			if (index < 0 || index >= keysCount) {
+				return null;
+			}
+			if (keys[index] == null) {
+				try {
+					keys[index] = new String(tile, tileOffset + keyPositions[index * 2], keyPositions[index * 2 + 1],
+							"UTF-8");
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return keys[index];
+		}
+
+		private Object getValue(int index) {
+			if (index < 0 || index >= valuesCount) {
+				return null;
+			}
+			if (values[index] == NOT_DECODED) {
+				try {
+					if (valuesStream == null) {
+						valuesStream = CodedInputStream.newInstance(tile, tileOffset, tileLength);
+					}
+					valuesStream.seek(valuePositions[index * 2]);
+					final int oldLimit = valuesStream.pushLimit(valuePositions[index * 2 + 1]);
+					values[index] = readValue(valuesStream);
+					valuesStream.popLimit(oldLimit);
+				} catch (IOException e) {
+					values[index] = null;
+					valuesStream = null;
+				}
+			}
+			return values[index];
+		}
+
+		// same priority as MvtValue.toObject
+		private static Object readValue(CodedInputStream cis) throws IOException {
+			Double doubleValue = null;
+			Float floatValue = null;
+			Long intValue = null;
+			Boolean boolValue = null;
+			String stringValue = null;
+			Long sintValue = null;
+			Long uintValue = null;
+			int tag;
+			while ((tag = cis.readTag()) != 0) {
+				switch (WireFormat.getTagFieldNumber(tag)) {
+					case VectorTile.Tile.Value.STRING_VALUE_FIELD_NUMBER:
+						stringValue = cis.readString();
+						break;
+					case VectorTile.Tile.Value.FLOAT_VALUE_FIELD_NUMBER:
+						floatValue = cis.readFloat();
+						break;
+					case VectorTile.Tile.Value.DOUBLE_VALUE_FIELD_NUMBER:
+						doubleValue = cis.readDouble();
+						break;
+					case VectorTile.Tile.Value.INT_VALUE_FIELD_NUMBER:
+						intValue = cis.readInt64();
+						break;
+					case VectorTile.Tile.Value.UINT_VALUE_FIELD_NUMBER:
+						uintValue = cis.readUInt64();
+						break;
+					case VectorTile.Tile.Value.SINT_VALUE_FIELD_NUMBER:
+						sintValue = cis.readSInt64();
+						break;
+					case VectorTile.Tile.Value.BOOL_VALUE_FIELD_NUMBER:
+						boolValue = cis.readBool();
+						break;
+					default:
+						cis.skipField(tag);
+				}
+			}
+			if (doubleValue != null) {
+				return doubleValue;
+			} else if (floatValue != null) {
+				return floatValue;
+			} else if (intValue != null) {
+				return intValue;
+			} else if (boolValue != null) {
+				return boolValue;
+			} else if (stringValue != null) {
+				return stringValue;
+			} else if (sintValue != null) {
+				return sintValue;
+			}
+			return uintValue;
+		}
+
+		/**
+		 * Decodes geometry commands to coordinates in MVT extent (with the same validation as {@link MvtReader}).
+		 * Points are decoded as one part, every line and polygon ring (with closing point) is a separate part.
+		 *
+		 * @return number of parts, -1 if point geometry is invalid
+		 */
+		public int decodeCoordinates() {
+			if (coordinatesDecoded) {
+				return partsCount;
+			}
+			coordinatesDecoded = true;
+			partsCount = 0;
+			parts[0] = 0;
+			switch (type) {
+				case POINT:
+					decodePoints();
+					break;
+				case LINESTRING:
+					decodeParts(MIN_LINE_STRING_LEN, 1, false);
+					break;
+				case POLYGON:
+					decodeParts(MIN_POLYGON_LEN, 2, true);
+					break;
+				default:
+					partsCount = -1;
+			}
+			return partsCount;
+		}
+
+		/**
+		 * @return x, y pairs of decoded points, see {@link #decodeCoordinates()}
+		 */
+		public double[] getCoordinates() {
+			return coordinates;
+		}
+
+		public int getPartStart(int part) {
+			return parts[part];
+		}
+
+		public int getPartPointsCount(int part) {
+			return parts[part + 1] - parts[part];
+		}
+
+		private void decodePoints() {
+			// Guard: must have header
+			if (geometryLength == 0) {
+				partsCount = -1;
+				return;
+			}
+			final int cmdHdr = geometry[0];
+			final int cmdLength = GeomCmdHdr.getCmdLength(cmdHdr);
+			// Guard: command type, minimum command length and data length
+			if (GeomCmdHdr.getCmdId(cmdHdr) != GeomCmd.MoveTo.getCmdId() || cmdLength < 1
+					|| cmdLength * GeomCmd.MoveTo.getParamCount() + 1 > geometryLength) {
+				partsCount = -1;
+				return;
+			}
+			ensureCoordinates(cmdLength);
+			double x = 0;
+			double y = 0;
+			int i = 1;
+			for (int k = 0; k < cmdLength; k++) {
+				x += ZigZag.decode(geometry[i++]);
+				y += ZigZag.decode(geometry[i++]);
+				coordinates[k * 2] = x;
+				coordinates[k * 2 + 1] = y;
+			}
+			partsCount = 1;
+			parts[1] = cmdLength;
+		}
+
+		private void decodeParts(int minLength, int minLineTo, boolean closed) {
+			double x = 0;
+			double y = 0;
+			int points = 0;
+			int i = 0;
+			while (i <= geometryLength - minLength) {
+				// Expected: MoveTo command of length 1
+				int cmdHdr = geometry[i++];
+				if (GeomCmdHdr.getCmdId(cmdHdr) != GeomCmd.MoveTo.getCmdId() || GeomCmdHdr.getCmdLength(cmdHdr) != 1) {
+					break;
+				}
+				x += ZigZag.decode(geometry[i++]);
+				y += ZigZag.decode(geometry[i++]);
+
+				// Expected: LineTo command
+				cmdHdr = geometry[i++];
+				final int cmdLength = GeomCmdHdr.getCmdLength(cmdHdr);
+				if (GeomCmdHdr.getCmdId(cmdHdr) != GeomCmd.LineTo.getCmdId() || cmdLength < minLineTo) {
+					break;
+				}
+				if (cmdLength * GeomCmd.LineTo.getParamCount() + i + (closed ? 1 : 0) > geometryLength) {
+					break;
+				}
+				final int start = points;
+				ensureCoordinates(points + cmdLength + 2);
+				coordinates[points * 2] = x;
+				coordinates[points * 2 + 1] = y;
+				points++;
+				for (int k = 0; k < cmdLength; k++) {
+					x += ZigZag.decode(geometry[i++]);
+					y += ZigZag.decode(geometry[i++]);
+					coordinates[points * 2] = x;
+					coordinates[points * 2 + 1] = y;
+					points++;
+				}
+				if (closed) {
+					// Expected: ClosePath command of length 1
+					cmdHdr = geometry[i++];
+					if (GeomCmdHdr.getCmdId(cmdHdr) != GeomCmd.ClosePath.getCmdId()
+							|| GeomCmdHdr.getCmdLength(cmdHdr) != 1) {
+						break;
+					}
+					coordinates[points * 2] = coordinates[start * 2];
+					coordinates[points * 2 + 1] = coordinates[start * 2 + 1];
+					points++;
+				}
+				if (partsCount + 2 > parts.length) {
+					parts = Arrays.copyOf(parts, parts.length * 2);
+				}
+				parts[++partsCount] = points;
+			}
+		}
+
+		private void ensureCoordinates(int points) {
+			if (points * 2 > coordinates.length) {
+				coordinates = Arrays.copyOf(coordinates, Math.max(points * 2, coordinates.length * 2));
+			}
+		}
+
+		/**
+		 * Creates JTS geometry same as {@link MvtReader} does (without user data).
+		 *
+		 * @return geometry or null if geometry is invalid
+		 */
+		public Geometry createGeometry(GeometryFactory geomFactory, MvtReader.RingClassifier ringClassifier) {
+			final int count = decodeCoordinates();
+			switch (type) {
+				case POINT:
+					if (count < 0) {
+						return null;
+					}
+					final CoordinateSequence points = createSequence(geomFactory, 0);
+					return points.size() == 1 ? geomFactory.createPoint(points) : geomFactory.createMultiPoint(points);
+				case LINESTRING:
+					final LineString[] lines = new LineString[count];
+					for (int i = 0; i < count; i++) {
+						lines[i] = geomFactory.createLineString(createSequence(geomFactory, i));
+					}
+					return count == 1 ? lines[0] : geomFactory.createMultiLineString(lines);
+				case POLYGON:
+					final List<LinearRing> rings = new ArrayList<>(count);
+					for (int i = 0; i < count; i++) {
+						rings.add(geomFactory.createLinearRing(createSequence(geomFactory, i)));
+					}
+					final List<Polygon> polygons = ringClassifier.classifyRings(rings, geomFactory);
+					if (polygons.size() < 1) {
+						return null;
+					} else if (polygons.size() == 1) {
+						return polygons.get(0);
+					}
+					return geomFactory.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
+				default:
+					return null;
+			}
+		}
+
+		private CoordinateSequence createSequence(GeometryFactory geomFactory, int part) {
+			final int start = parts[part];
+			final int size = parts[part + 1] - start;
+			final CoordinateSequence seq = geomFactory.getCoordinateSequenceFactory().create(size, 2);
+			for (int k = 0; k < size; k++) {
+				final Coordinate c = seq.getCoordinate(k);
+				c.setOrdinate(0, coordinates[(start + k) * 2]);
+				c.setOrdinate(1, coordinates[(start + k) * 2 + 1]);
+			}
+			return seq;
+		}
+	}
+}
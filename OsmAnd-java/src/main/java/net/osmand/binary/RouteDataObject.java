@@ -34,6 +34,9 @@ public class RouteDataObject {
 	public TIntObjectHashMap<String> names;
 	public final static float NONE_MAX_SPEED = 40f;
 	public int[] nameIds;
+	// compact names: values of nameIds are indexes in stringTable of the block (names is null)
+	int[] nameIndexes;
+	String[] stringTable;
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
 	
@@ -58,6 +61,9 @@ public class RouteDataObject {
 		this.pointsY = copy.pointsY;
 		this.types = copy.types;
 		this.names = copy.names;
+		if (copy.names == null && copy.nameIndexes != null) {
+			setNames(copy.nameIds, copy.nameIndexes, copy.stringTable);
+		}
 		this.restrictions = copy.restrictions;
 		this.restrictionsVia = copy.restrictionsVia;
 		this.pointTypes = copy.pointTypes;
@@ -104,9 +110,9 @@ public class RouteDataObject {
 				} else {
 					for (int i = 0; i < this.nameIds.length && equals; i++) {
 						String thisTag = region.routeEncodingRules.get(nameIds[i]).getTag();
-						String thisValue = names.get(nameIds[i]);
+						String thisValue = getNameValue(nameIds[i]);
 						String thatTag = thatObj.region.routeEncodingRules.get(thatObj.nameIds[i]).getTag();
-						String thatValue = thatObj.names.get(thatObj.nameIds[i]);
+						String thatValue = thatObj.getNameValue(thatObj.nameIds[i]);
 						equals = (Algorithms.objectEquals(thisTag, thatTag) && Algorithms.objectEquals(thisValue, thatValue));
 					}
 				}
@@ -234,8 +240,8 @@ public class RouteDataObject {
 	}
 	
 	public String getName(){
-		if(names != null ) {
-			return names.get(region.nameTypeRule);
+		if(hasNames()) {
+			return getNameValue(region.nameTypeRule);
 		}
 		return null;
 	}
@@ -246,20 +252,20 @@ public class RouteDataObject {
 	}
 	
 	public String getName(String lang, boolean transliterate){
-		if(names != null ) {
+		if(hasNames()) {
 			if(Algorithms.isEmpty(lang)) {
-				return names.get(region.nameTypeRule);
+				return getNameValue(region.nameTypeRule);
 			}
-			int[] kt = names.keys();
+			int[] kt = getNameKeys();
 			for(int i = 0 ; i < kt.length; i++) {
 				int k = kt[i];
 				if(region.routeEncodingRules.size() > k) {
 					if(("name:"+lang).equals(region.routeEncodingRules.get(k).getTag())) {
-						return names.get(k);
+						return getNameValue(k);
 					}
 				}
 			}
-			String nmDef = names.get(region.nameTypeRule);
+			String nmDef = getNameValue(region.nameTypeRule);
 			if(transliterate && nmDef != null && nmDef.length() > 0) {
 				return Junidecode.unidecode(nmDef);
 			}
@@ -272,28 +278,70 @@ public class RouteDataObject {
 		return nameIds;
 	}
 	
+	/**
+	 * For compact names returns new map on every call (it is not kept by object)
+	 */
 	public TIntObjectHashMap<String> getNames() {
+		if (names == null && nameIndexes != null) {
+			TIntObjectHashMap<String> map = new TIntObjectHashMap<String>(nameIds.length);
+			for (int i = 0; i < nameIds.length; i++) {
+				map.put(nameIds[i], getNameValue(nameIds[i]));
+			}
+			return map;
+		}
 		return names;
 	}
 
+	/**
+	 * Sets names as indexes in the string table shared by all objects of the route data block
+	 */
+	void setNames(int[] nameIds, int[] nameIndexes, String[] stringTable) {
+		this.nameIds = nameIds;
+		this.nameIndexes = nameIndexes;
+		this.stringTable = stringTable;
+		this.names = null;
+	}
+
+	public boolean hasNames() {
+		return names != null || nameIndexes != null;
+	}
+
+	private int[] getNameKeys() {
+		return names != null ? names.keys() : nameIds;
+	}
+
+	String getNameValue(int type) {
+		if (names != null) {
+			return names.get(type);
+		}
+		if (nameIndexes != null && stringTable != null) {
+			for (int i = 0; i < nameIds.length; i++) {
+				if (nameIds[i] == type) {
+					return stringTable[nameIndexes[i]];
+				}
+			}
+		}
+		return null;
+	}
+
 	public String getRef(String lang, boolean transliterate, boolean direction) {
 		//if (getDestinationRef(direction) != null) {
 		//	return getDestinationRef(direction);
 		//}
-		if (names != null) {
+		if (hasNames()) {
 			if(Algorithms.isEmpty(lang)) {
-				return names.get(region.refTypeRule);
+				return getNameValue(region.refTypeRule);
 			}
-			int[] kt = names.keys();
+			int[] kt = getNameKeys();
 			for(int i = 0 ; i < kt.length; i++) {
 				int k = kt[i];
 				if(region.routeEncodingRules.size() > k) {
 					if(("ref:"+lang).equals(region.routeEncodingRules.get(k).getTag())) {
-						return names.get(k);
+						return getNameValue(k);
 					}
 				}
 			}
-			String refDefault = names.get(region.refTypeRule);
+			String refDefault = getNameValue(region.refTypeRule);
 			if(transliterate && refDefault != null && refDefault.length() > 0) {
 				return Junidecode.unidecode(refDefault);
 			}
@@ -303,8 +351,8 @@ public class RouteDataObject {
 	}
 
 	public String getDestinationRef(boolean direction) {
-		if (names != null) {
-			int[] kt = names.keys();
+		if (hasNames()) {
+			int[] kt = getNameKeys();
 			String refTag = (direction == true) ? "destination:ref:forward" : "destination:ref:backward";
 			String refTagDefault = "destination:ref";
 			String refDefault = null;
@@ -313,17 +361,17 @@ public class RouteDataObject {
 				int k = kt[i];
 				if(region.routeEncodingRules.size() > k) {
 					if(refTag.equals(region.routeEncodingRules.get(k).getTag())) {
-						return names.get(k);
+						return getNameValue(k);
 					}
 					if(refTagDefault.equals(region.routeEncodingRules.get(k).getTag())) {
-						refDefault = names.get(k);
+						refDefault = getNameValue(k);
 					}
 				}
 			}
 			if (refDefault != null) {
 				return refDefault;
 			}
-			//return names.get(region.refTypeRule);
+			//return getNameValue(region.refTypeRule);
 		}
 		return null;
 	}
@@ -333,8 +381,8 @@ public class RouteDataObject {
 		String destRef = ((getDestinationRef(direction) == null) || getDestinationRef(direction).equals(getRef(lang, transliterate, direction))) ? "" : getDestinationRef(direction);
 		String destRef1 = ("".equals(destRef)) ? "" : destRef + ", ";
 
-		if(names != null) {
-			int[] kt = names.keys();
+		if(hasNames()) {
+			int[] kt = getNameKeys();
 
 			// Issue #3181: Parse destination keys in this order:
 			//              destination:lang:XX:forward/backward
@@ -358,16 +406,16 @@ public class RouteDataObject {
 				int k = kt[i];
 				if(region.routeEncodingRules.size() > k) {
 					if(!Algorithms.isEmpty(lang) && destinationTagLangFB.equals(region.routeEncodingRules.get(k).getTag())) {
-						return destRef1 + ((transliterate) ? Junidecode.unidecode(names.get(k)) : names.get(k));
+						return destRef1 + ((transliterate) ? Junidecode.unidecode(getNameValue(k)) : getNameValue(k));
 					}
 					if(destinationTagFB.equals(region.routeEncodingRules.get(k).getTag())) {
-						return destRef1 + ((transliterate) ? Junidecode.unidecode(names.get(k)) : names.get(k));
+						return destRef1 + ((transliterate) ? Junidecode.unidecode(getNameValue(k)) : getNameValue(k));
 					}
 					if(!Algorithms.isEmpty(lang) && destinationTagLang.equals(region.routeEncodingRules.get(k).getTag())) {
-						return destRef1 + ((transliterate) ? Junidecode.unidecode(names.get(k)) : names.get(k));
+						return destRef1 + ((transliterate) ? Junidecode.unidecode(getNameValue(k)) : getNameValue(k));
 					}
 					if(destinationTagDefault.equals(region.routeEncodingRules.get(k).getTag())) {
-						destinationDefault = names.get(k);
+						destinationDefault = getNameValue(k);
 					}
 				}
 			}
@@ -0,0 +1,374 @@
+package net.osmand.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+/**
+ * Snapshot of decoded route data of routing subregions (tiles), so route data could be loaded without parsing obf.
+ * Tile is identified by obf file (path & creation date) and file pointer of the subregion. Snapshot file is
+ * memory mapped on {@link #load(File)} and tiles are decoded from it on demand, tiles added by
+ * {@link #putTile(BinaryMapIndexReader, RouteSubregion, List)} are kept serialized until {@link #write(File)}.
+ *
+ * Tile format: string table (names of all objects), objects with id, points, types, restrictions, point types,
+ * name ids with indexes in the string table and point names. Snapshot is limited to 2 GB. It is thread safe.
+ */
+public class RouteTileSnapshot {
+
+	private static final int MAGIC = 0x4f525453; // ORTS
+	private static final int VERSION = 1;
+	// estimated memory of map entry with key
+	private static final int ENTRY_OVERHEAD = 128;
+
+	private final ByteBuffer buffer;
+	// tile key -> position of serialized tile in buffer
+	private final Map<String, Integer> mappedTiles = new LinkedHashMap<String, Integer>();
+	private final Map<String, byte[]> addedTiles = new LinkedHashMap<String, byte[]>();
+	// written under lock, read by search without it
+	private volatile long addedTilesMemory;
+
+	public RouteTileSnapshot() {
+		this.buffer = null;
+	}
+
+	private RouteTileSnapshot(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Unsupported route tile snapshot");
+		}
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String key = readString(buffer);
+			int length = buffer.getInt();
+			mappedTiles.put(key, buffer.position());
+			buffer.position(buffer.position() + length);
+		}
+	}
+
+	/**
+	 * Maps snapshot file into memory, returns empty snapshot if file doesn't exist
+	 */
+	public static RouteTileSnapshot load(File file) throws IOException {
+		if (!file.exists()) {
+			return new RouteTileSnapshot();
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() > Integer.MAX_VALUE) {
+				throw new IOException("Route tile snapshot is too big " + file.getName());
+			}
+			// mapping stays valid after the channel is closed
+			return new RouteTileSnapshot(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static String getKey(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		File f = reader.getFile();
+		if (f == null) {
+			return null;
+		}
+		return f.getAbsolutePath() + ":" + reader.getDateCreated() + ":" + subregion.filePointer;
+	}
+
+	public synchronized boolean containsTile(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		String key = getKey(reader, subregion);
+		return key != null && (mappedTiles.containsKey(key) || addedTiles.containsKey(key));
+	}
+
+	/**
+	 * Returns decoded objects of the tile (same as {@link BinaryMapIndexReader#loadRouteIndexData(RouteSubregion)})
+	 * or null if tile is not in snapshot
+	 */
+	public List<RouteDataObject> getTile(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		String key = getKey(reader, subregion);
+		if (key == null) {
+			return null;
+		}
+		ByteBuffer bf;
+		synchronized (this) {
+			Integer position = mappedTiles.get(key);
+			if (position != null) {
+				bf = buffer.duplicate();
+				bf.position(position);
+			} else {
+				byte[] data = addedTiles.get(key);
+				if (data == null) {
+					return null;
+				}
+				bf = ByteBuffer.wrap(data);
+			}
+		}
+		return readTile(bf, subregion.routeReg);
+	}
+
+	public void putTile(BinaryMapIndexReader reader, RouteSubregion subregion, List<RouteDataObject> objects) {
+		String key = getKey(reader, subregion);
+		if (key == null || containsTile(reader, subregion)) {
+			return;
+		}
+		byte[] data;
+		try {
+			data = writeTile(objects);
+		} catch (IOException e) {
+			// not possible for byte array
+			throw new IllegalStateException(e);
+		}
+		synchronized (this) {
+			if (addedTiles.put(key, data) == null) {
+				addedTilesMemory += ENTRY_OVERHEAD + key.length() * 2 + data.length;
+			}
+		}
+	}
+
+	public synchronized int getTilesCount() {
+		return mappedTiles.size() + addedTiles.size();
+	}
+
+	public synchronized int getAddedTilesCount() {
+		return addedTiles.size();
+	}
+
+	/**
+	 * Estimated memory of added tiles which are kept serialized in heap
+	 */
+	public long getAddedTilesMemory() {
+		return addedTilesMemory;
+	}
+
+	/**
+	 * Writes mapped and added tiles to the file (through temporary file which is renamed)
+	 */
+	public synchronized void write(File file) throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		OutputStream fout = new FileOutputStream(tmp);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(getTilesCount());
+			for (Entry<String, Integer> e : mappedTiles.entrySet()) {
+				ByteBuffer bf = buffer.duplicate();
+				bf.position(e.getValue() - 4);
+				byte[] data = new byte[bf.getInt()];
+				bf.get(data);
+				writeEntry(out, e.getKey(), data);
+			}
+			for (Entry<String, byte[]> e : addedTiles.entrySet()) {
+				writeEntry(out, e.getKey(), e.getValue());
+			}
+			out.flush();
+		} finally {
+			fout.close();
+		}
+		if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+			throw new IOException("Route tile snapshot could not be renamed to " + file.getName());
+		}
+	}
+
+	private static void writeEntry(DataOutputStream out, String key, byte[] data) throws IOException {
+		writeString(out, key);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static byte[] writeTile(List<RouteDataObject> objects) throws IOException {
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(objects.size());
+		for (RouteDataObject o : objects) {
+			out.writeBoolean(o != null);
+			if (o == null) {
+				continue;
+			}
+			out.writeLong(o.id);
+			writeInts(out, o.pointsX);
+			writeInts(out, o.pointsY);
+			writeInts(out, o.types);
+			writeLongs(out, o.restrictions);
+			writeLongs(out, o.restrictionsVia);
+			writeInts(out, o.pointTypes);
+			int[] nameIds = o.hasNames() && o.nameIds != null ? o.nameIds : null;
+			writeInts(out, nameIds);
+			if (nameIds != null) {
+				for (int nameId : nameIds) {
+					out.writeInt(stringId(o.getNameValue(nameId), strings, stringIds));
+				}
+			}
+			writeInts(out, o.pointNameTypes);
+			if (o.pointNameTypes != null) {
+				for (int i = 0; i < o.pointNameTypes.length; i++) {
+					if (o.pointNameTypes[i] != null) {
+						for (int j = 0; j < o.pointNameTypes[i].length; j++) {
+							out.writeInt(stringId(o.pointNames[i][j], strings, stringIds));
+						}
+					}
+				}
+			}
+		}
+		out.flush();
+		ByteArrayOutputStream tile = new ByteArrayOutputStream(bytes.size() + strings.size() * 16);
+		DataOutputStream tout = new DataOutputStream(tile);
+		tout.writeInt(strings.size());
+		for (String s : strings) {
+			writeString(tout, s);
+		}
+		bytes.writeTo(tout);
+		tout.flush();
+		return tile.toByteArray();
+	}
+
+	private static int stringId(String s, List<String> strings, Map<String, Integer> stringIds) {
+		if (s == null) {
+			s = "";
+		}
+		Integer id = stringIds.get(s);
+		if (id != null) {
+			return id;
+		}
+		stringIds.put(s, strings.size());
+		strings.add(s);
+		return strings.size() - 1;
+	}
+
+	private static List<RouteDataObject> readTile(ByteBuffer bf, RouteRegion region) {
+		String[] stringTable = new String[bf.getInt()];
+		for (int i = 0; i < stringTable.length; i++) {
+			stringTable[i] = readString(bf);
+		}
+		int count = bf.getInt();
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(count);
+		for (int k = 0; k < count; k++) {
+			if (bf.get() == 0) {
+				res.add(null);
+				continue;
+			}
+			RouteDataObject o = new RouteDataObject(region);
+			o.id = bf.getLong();
+			o.pointsX = readInts(bf);
+			o.pointsY = readInts(bf);
+			o.types = readInts(bf);
+			o.restrictions = readLongs(bf);
+			o.restrictionsVia = readLongs(bf);
+			o.pointTypes = readIntArrays(bf);
+			int[] nameIds = readInts(bf);
+			if (nameIds != null) {
+				int[] nameIndexes = new int[nameIds.length];
+				for (int i = 0; i < nameIndexes.length; i++) {
+					nameIndexes[i] = bf.getInt();
+				}
+				o.setNames(nameIds, nameIndexes, stringTable);
+			}
+			o.pointNameTypes = readIntArrays(bf);
+			if (o.pointNameTypes != null) {
+				o.pointNames = new String[o.pointNameTypes.length][];
+				for (int i = 0; i < o.pointNameTypes.length; i++) {
+					if (o.pointNameTypes[i] != null) {
+						o.pointNames[i] = new String[o.pointNameTypes[i].length];
+						for (int j = 0; j < o.pointNames[i].length; j++) {
+							o.pointNames[i][j] = stringTable[bf.getInt()];
+						}
+					}
+				}
+			}
+			res.add(o);
+		}
+		return res;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeInt(s.length());
+		out.writeChars(s);
+	}
+
+	private static String readString(ByteBuffer bf) {
+		char[] cs = new char[bf.getInt()];
+		for (int i = 0; i < cs.length; i++) {
+			cs[i] = bf.getChar();
+		}
+		return new String(cs);
+	}
+
+	// arrays are written with length, -1 is null
+	private static void writeInts(DataOutputStream out, int[] ar) throws IOException {
+		out.writeInt(ar == null ? -1 : ar.length);
+		if (ar != null) {
+			for (int v : ar) {
+				out.writeInt(v);
+			}
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[][] ar) throws IOException {
+		out.writeInt(ar == null ? -1 : ar.length);
+		if (ar != null) {
+			for (int[] v : ar) {
+				writeInts(out, v);
+			}
+		}
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] ar) throws IOException {
+		out.writeInt(ar == null ? -1 : ar.length);
+		if (ar != null) {
+			for (long v : ar) {
+				out.writeLong(v);
+			}
+		}
+	}
+
+	private static int[] readInts(ByteBuffer bf) {
+		int l = bf.getInt();
+		if (l < 0) {
+			return null;
+		}
+		int[] ar = new int[l];
+		for (int i = 0; i < l; i++) {
+			ar[i] = bf.getInt();
+		}
+		return ar;
+	}
+
+	private static int[][] readIntArrays(ByteBuffer bf) {
+		int l = bf.getInt();
+		if (l < 0) {
+			return null;
+		}
+		int[][] ar = new int[l][];
+		for (int i = 0; i < l; i++) {
+			ar[i] = readInts(bf);
+		}
+		return ar;
+	}
+
+	private static long[] readLongs(ByteBuffer bf) {
+		int l = bf.getInt();
+		if (l < 0) {
+			return null;
+		}
+		long[] ar = new long[l];
+		for (int i = 0; i < l; i++) {
+			ar[i] = bf.getLong();
+		}
+		return ar;
+	}
+}
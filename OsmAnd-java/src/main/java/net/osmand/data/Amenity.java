@@ -4,6 +4,8 @@ import net.osmand.Location;
 import net.osmand.osm.PoiCategory;
 import net.osmand.osm.edit.Node;
 import net.osmand.util.Algorithms;
+import net.osmand.util.OpeningHoursParser;
+import net.osmand.util.OpeningHoursParser.OpeningHours;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -77,6 +79,13 @@ public class Amenity extends MapObject {
 		return openingHours;
 	}
 
+	/**
+	 * Parsed opening hours (shared through parser cache, shouldn't be modified) or null
+	 */
+	public OpeningHours getParsedOpeningHours() {
+		return OpeningHoursParser.parseOpenedHoursCached(openingHours);
+	}
+
 	public String getAdditionalInfo(String key) {
 		if (additionalInfo == null) {
 			return null;
@@ -0,0 +1,362 @@
+package net.osmand.data;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable point location index of polygons (31 tile numbers). Candidate polygons are found by uniform grid of
+ * polygon bboxes. Each polygon has quad tree: leaves which don't intersect polygon border are marked inside or
+ * outside, border leaves keep their edges and state of the leaf center, so point is tested only with few edges
+ * crossed by path from the center to the point. Queries don't lock and could run from many threads.
+ *
+ * Polygon edges are (i - 1, i) as in ray casting of {@link net.osmand.map.OsmandRegions#contain}, points exactly
+ * on the border could get different result.
+ */
+public class PolygonPointIndex<T> {
+
+	private static final int GRID_ZOOM = 8;
+	private static final int MAX_LEAF_EDGES = 8;
+	private static final int MAX_DEPTH = 18;
+
+	private static final byte OUTSIDE = 0;
+	private static final byte INSIDE = 1;
+	// border leaf, bit 0 is state of the leaf center
+	private static final byte BORDER = 2;
+
+	private static final int[] EMPTY = new int[0];
+
+	private final List<T> objects;
+	private final Polygon[] polygons;
+	// polygons of grid cell i are cellPolygons[cellStart[i]..cellStart[i + 1])
+	private final int[] cellStart;
+	private final int[] cellPolygons;
+
+	private static class Polygon {
+		final int[] x;
+		final int[] y;
+		final int left;
+		final int top;
+		final int right;
+		final int bottom;
+		// quad tree nodes: index of the first of 4 children (-1 for leaf), state and edges of border leaves
+		// (edges[edgeStart[i]..edgeEnd[i]), edge k is segment of points k - 1 and k)
+		int[] child;
+		byte[] state;
+		int[] edgeStart;
+		int[] edgeEnd;
+		int[] edges;
+
+		Polygon(int[] x, int[] y) {
+			this.x = x;
+			this.y = y;
+			int l = x[0], r = x[0], t = y[0], b = y[0];
+			for (int i = 1; i < x.length; i++) {
+				l = Math.min(l, x[i]);
+				r = Math.max(r, x[i]);
+				t = Math.min(t, y[i]);
+				b = Math.max(b, y[i]);
+			}
+			left = l;
+			right = r;
+			top = t;
+			bottom = b;
+		}
+	}
+
+	public static class Builder<T> {
+		private final List<T> objects = new ArrayList<T>();
+		private final List<Polygon> polygons = new ArrayList<Polygon>();
+
+		/**
+		 * Adds polygon (arrays are not copied and shouldn't be modified)
+		 */
+		public Builder<T> addPolygon(T object, int[] x31, int[] y31) {
+			if (x31.length != y31.length) {
+				throw new IllegalArgumentException();
+			}
+			if (x31.length > 1) {
+				objects.add(object);
+				polygons.add(new Polygon(x31, y31));
+			}
+			return this;
+		}
+
+		public PolygonPointIndex<T> build() {
+			for (Polygon p : polygons) {
+				new TreeBuilder(p).build();
+			}
+			return new PolygonPointIndex<T>(objects, polygons.toArray(new Polygon[polygons.size()]));
+		}
+	}
+
+	private static class TreeBuilder {
+		final Polygon p;
+		final TIntArrayList child = new TIntArrayList();
+		final TByteArrayList state = new TByteArrayList();
+		final TIntArrayList edgeStart = new TIntArrayList();
+		final TIntArrayList edgeEnd = new TIntArrayList();
+		final TIntArrayList edges = new TIntArrayList();
+
+		TreeBuilder(Polygon p) {
+			this.p = p;
+		}
+
+		void build() {
+			TIntArrayList all = new TIntArrayList(p.x.length);
+			for (int i = 1; i < p.x.length; i++) {
+				all.add(i);
+			}
+			addNodes(1);
+			int cx = p.left + (p.right - p.left) / 2;
+			int cy = p.top + (p.bottom - p.top) / 2;
+			fill(0, p.left, p.top, p.right, p.bottom, all, 0, cx, cy, rayContains(p, cx, cy));
+			p.child = child.toArray();
+			p.state = state.toArray();
+			p.edgeStart = edgeStart.toArray();
+			p.edgeEnd = edgeEnd.toArray();
+			p.edges = edges.toArray();
+		}
+
+		private int addNodes(int count) {
+			int ind = child.size();
+			for (int i = 0; i < count; i++) {
+				child.add(-1);
+				state.add(OUTSIDE);
+				edgeStart.add(0);
+				edgeEnd.add(0);
+			}
+			return ind;
+		}
+
+		// state of the node center is found from the parent center (path between them is inside parent box)
+		private void fill(int node, int l, int t, int r, int b, TIntArrayList parentEdges, int depth,
+				int pcx, int pcy, boolean parentInside) {
+			int cx = l + (r - l) / 2;
+			int cy = t + (b - t) / 2;
+			boolean inside = parentInside;
+			TIntArrayList nodeEdges = new TIntArrayList();
+			for (int k = 0; k < parentEdges.size(); k++) {
+				int e = parentEdges.get(k);
+				if (crossesPath(p, e, pcx, pcy, cx, cy)) {
+					inside = !inside;
+				}
+				if (intersects(p, e, l, t, r, b)) {
+					nodeEdges.add(e);
+				}
+			}
+			if (nodeEdges.isEmpty()) {
+				state.set(node, inside ? INSIDE : OUTSIDE);
+			} else if (nodeEdges.size() <= MAX_LEAF_EDGES || depth >= MAX_DEPTH || r == l || b == t) {
+				state.set(node, (byte) (BORDER | (inside ? 1 : 0)));
+				edgeStart.set(node, edges.size());
+				edges.addAll(nodeEdges);
+				edgeEnd.set(node, edges.size());
+			} else {
+				int c = addNodes(4);
+				child.set(node, c);
+				fill(c, l, t, cx, cy, nodeEdges, depth + 1, cx, cy, inside);
+				fill(c + 1, cx + 1, t, r, cy, nodeEdges, depth + 1, cx, cy, inside);
+				fill(c + 2, l, cy + 1, cx, b, nodeEdges, depth + 1, cx, cy, inside);
+				fill(c + 3, cx + 1, cy + 1, r, b, nodeEdges, depth + 1, cx, cy, inside);
+			}
+		}
+	}
+
+	private PolygonPointIndex(List<T> objects, Polygon[] polygons) {
+		this.objects = Collections.unmodifiableList(objects);
+		this.polygons = polygons;
+		int size = 1 << GRID_ZOOM;
+		int[] counts = new int[size * size + 1];
+		for (Polygon p : polygons) {
+			for (int cy = p.top >>> (31 - GRID_ZOOM); cy <= p.bottom >>> (31 - GRID_ZOOM); cy++) {
+				for (int cx = p.left >>> (31 - GRID_ZOOM); cx <= p.right >>> (31 - GRID_ZOOM); cx++) {
+					counts[cy * size + cx + 1]++;
+				}
+			}
+		}
+		for (int i = 1; i < counts.length; i++) {
+			counts[i] += counts[i - 1];
+		}
+		cellStart = counts.clone();
+		cellPolygons = new int[counts[counts.length - 1]];
+		for (int i = 0; i < polygons.length; i++) {
+			Polygon p = polygons[i];
+			for (int cy = p.top >>> (31 - GRID_ZOOM); cy <= p.bottom >>> (31 - GRID_ZOOM); cy++) {
+				for (int cx = p.left >>> (31 - GRID_ZOOM); cx <= p.right >>> (31 - GRID_ZOOM); cx++) {
+					cellPolygons[counts[cy * size + cx]++] = i;
+				}
+			}
+		}
+	}
+
+	public int size() {
+		return objects.size();
+	}
+
+	public T getObject(int id) {
+		return objects.get(id);
+	}
+
+	/**
+	 * Returns objects which polygons contain the point
+	 */
+	public List<T> query(int x31, int y31) {
+		List<T> res = new ArrayList<T>();
+		for (int id : queryIds(x31, y31)) {
+			res.add(objects.get(id));
+		}
+		return res;
+	}
+
+	/**
+	 * Returns ids of objects (see {@link #getObject(int)}) which polygons contain the point
+	 */
+	public int[] queryIds(int x31, int y31) {
+		if (x31 < 0 || y31 < 0) {
+			return EMPTY;
+		}
+		int cell = (y31 >>> (31 - GRID_ZOOM)) * (1 << GRID_ZOOM) + (x31 >>> (31 - GRID_ZOOM));
+		int[] res = null;
+		int count = 0;
+		for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+			int id = cellPolygons[k];
+			if (contains(polygons[id], x31, y31)) {
+				if (res == null) {
+					res = new int[cellStart[cell + 1] - k];
+				}
+				res[count++] = id;
+			}
+		}
+		if (res == null) {
+			return EMPTY;
+		}
+		return count == res.length ? res : copyOf(res, count);
+	}
+
+	/**
+	 * Bulk query, returns ids of objects for each point (empty arrays are shared)
+	 */
+	public int[][] queryIds(int[] x31, int[] y31) {
+		int[][] res = new int[x31.length][];
+		for (int i = 0; i < x31.length; i++) {
+			res[i] = queryIds(x31[i], y31[i]);
+		}
+		return res;
+	}
+
+	private static int[] copyOf(int[] ar, int length) {
+		int[] res = new int[length];
+		System.arraycopy(ar, 0, res, 0, length);
+		return res;
+	}
+
+	private static boolean contains(Polygon p, int x, int y) {
+		if (x < p.left || x > p.right || y < p.top || y > p.bottom) {
+			return false;
+		}
+		int node = 0;
+		int l = p.left, t = p.top, r = p.right, b = p.bottom;
+		while (p.child[node] != -1) {
+			int mx = l + (r - l) / 2;
+			int my = t + (b - t) / 2;
+			int q = 0;
+			if (x > mx) {
+				q += 1;
+				l = mx + 1;
+			} else {
+				r = mx;
+			}
+			if (y > my) {
+				q += 2;
+				t = my + 1;
+			} else {
+				b = my;
+			}
+			node = p.child[node] + q;
+		}
+		byte st = p.state[node];
+		if (st < BORDER) {
+			return st == INSIDE;
+		}
+		int cx = l + (r - l) / 2;
+		int cy = t + (b - t) / 2;
+		int crossings = 0;
+		for (int k = p.edgeStart[node]; k < p.edgeEnd[node]; k++) {
+			if (crossesPath(p, p.edges[k], cx, cy, x, y)) {
+				crossings++;
+			}
+		}
+		return ((st & 1) == 1) != (crossings % 2 == 1);
+	}
+
+	// Points are moved to the center of 31 tile (+0.5), so path and ray don't go through polygon vertices.
+
+	// ray from the point to the right crosses polygon border odd times
+	private static boolean rayContains(Polygon p, int x, int y) {
+		boolean inside = false;
+		for (int e = 1; e < p.x.length; e++) {
+			if (crossesHorizontal(p, e, y) && crossX(p, e, y) > x + 0.5) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	// path from (cx, cy) to (x, cy) and then to (x, y) crosses the edge
+	private static boolean crossesPath(Polygon p, int e, int cx, int cy, int x, int y) {
+		boolean res = false;
+		if (cx != x && crossesHorizontal(p, e, cy)) {
+			double c = crossX(p, e, cy);
+			res = c > Math.min(cx, x) + 0.5 && c < Math.max(cx, x) + 0.5;
+		}
+		if (cy != y && crossesVertical(p, e, x)) {
+			double c = crossY(p, e, x);
+			if (c > Math.min(cy, y) + 0.5 && c < Math.max(cy, y) + 0.5) {
+				res = !res;
+			}
+		}
+		return res;
+	}
+
+	private static boolean crossesHorizontal(Polygon p, int e, int y) {
+		return (p.y[e - 1] > y) != (p.y[e] > y);
+	}
+
+	private static boolean crossesVertical(Polygon p, int e, int x) {
+		return (p.x[e - 1] > x) != (p.x[e] > x);
+	}
+
+	private static double crossX(Polygon p, int e, int y) {
+		double x1 = p.x[e - 1], y1 = p.y[e - 1];
+		return x1 + (y + 0.5 - y1) * (p.x[e] - x1) / (p.y[e] - y1);
+	}
+
+	private static double crossY(Polygon p, int e, int x) {
+		double x1 = p.x[e - 1], y1 = p.y[e - 1];
+		return y1 + (x + 0.5 - x1) * (p.y[e] - y1) / (p.x[e] - x1);
+	}
+
+	// edge intersects box of 31 tiles [l, r + 1) x [t, b + 1)
+	private static boolean intersects(Polygon p, int e, int l, int t, int r, int b) {
+		int x1 = p.x[e - 1], y1 = p.y[e - 1], x2 = p.x[e], y2 = p.y[e];
+		if (Math.max(x1, x2) < l || Math.min(x1, x2) > (long) r + 1
+				|| Math.max(y1, y2) < t || Math.min(y1, y2) > (long) b + 1) {
+			return false;
+		}
+		// box corners are not on the same side of the edge line
+		double dx = (double) x2 - x1;
+		double dy = (double) y2 - y1;
+		int sides = side(dx, dy, l - x1, t - y1) + side(dx, dy, r + 1.0 - x1, t - y1)
+				+ side(dx, dy, l - x1, b + 1.0 - y1) + side(dx, dy, r + 1.0 - x1, b + 1.0 - y1);
+		return sides != 4 && sides != -4;
+	}
+
+	private static int side(double dx, double dy, double px, double py) {
+		double cross = dx * py - dy * px;
+		return cross > 0 ? 1 : (cross < 0 ? -1 : 0);
+	}
+}
@@ -8,6 +8,7 @@ import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.MapIndex;
 import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
 import net.osmand.data.LatLon;
+import net.osmand.data.PolygonPointIndex;
 import net.osmand.data.QuadRect;
 import net.osmand.data.QuadTree;
 import net.osmand.util.Algorithms;
@@ -63,6 +64,7 @@ public class OsmandRegions {
 
 
 	QuadTree<String> quadTree;
+	private volatile PolygonPointIndex<BinaryMapDataObject> pointIndex;
 	MapIndexFields mapIndexFields;
 	RegionTranslation translator;
 
@@ -318,9 +320,55 @@ public class OsmandRegions {
 		if (quadTree != null) {
 			return getCountries(tile31x, tile31y);
 		}
+		PolygonPointIndex<BinaryMapDataObject> index = pointIndex;
+		if (index != null) {
+			return index.query(tile31x, tile31y);
+		}
 		return queryNoInit(tile31x, tile31y);
 	}
 
+	/**
+	 * Returns point location index of all region polygons, it is built on first call.
+	 * Index is immutable and queries (including bulk queries) don't lock, so it should be used
+	 * to find regions of many points. After index is built, point queries use it.
+	 */
+	public PolygonPointIndex<BinaryMapDataObject> getPointIndex() throws IOException {
+		PolygonPointIndex<BinaryMapDataObject> index = pointIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = pointIndex;
+				if (index == null) {
+					final PolygonPointIndex.Builder<BinaryMapDataObject> builder = new PolygonPointIndex.Builder<BinaryMapDataObject>();
+					iterateOverAllObjects(new ResultMatcher<BinaryMapDataObject>() {
+						@Override
+						public boolean publish(BinaryMapDataObject object) {
+							if (object.getPointsLength() < 1) {
+								return false;
+							}
+							initTypes(object);
+							int[] x31 = new int[object.getPointsLength()];
+							int[] y31 = new int[object.getPointsLength()];
+							for (int i = 0; i < x31.length; i++) {
+								x31[i] = object.getPoint31XTile(i);
+								y31[i] = object.getPoint31YTile(i);
+							}
+							builder.addPolygon(object, x31, y31);
+							return false;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							return false;
+						}
+					});
+					index = builder.build();
+					pointIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	private synchronized List<BinaryMapDataObject> queryNoInit(final int tile31x, final int tile31y) throws IOException {
 		final List<BinaryMapDataObject> result = new ArrayList<BinaryMapDataObject>();
 		BinaryMapIndexReader.SearchRequest<BinaryMapDataObject> sr = BinaryMapIndexReader.buildSearchRequest(tile31x, tile31x, tile31y, tile31y,
@@ -746,10 +794,15 @@ public class OsmandRegions {
 		int point31y = MapUtils.get31TileNumberY(latLon.getLatitude());
 
 		List<BinaryMapDataObject> mapDataObjects;
-		try {
-			mapDataObjects = queryBbox(point31x, point31x, point31y, point31y);
-		} catch (IOException e) {
-			throw new IOException("Error while calling queryBbox");
+		PolygonPointIndex<BinaryMapDataObject> index = pointIndex;
+		if (index != null) {
+			mapDataObjects = index.query(point31x, point31y);
+		} else {
+			try {
+				mapDataObjects = queryBbox(point31x, point31x, point31y, point31y);
+			} catch (IOException e) {
+				throw new IOException("Error while calling queryBbox");
+			}
 		}
 
 		if (mapDataObjects != null) {
@@ -769,7 +822,7 @@ public class OsmandRegions {
 					if (!isRegion
 							|| downloadRegion == null
 							|| !downloadRegion.isRegionMapDownload()
-							|| !contain(o, point31x, point31y)) {
+							|| (index == null && !contain(o, point31x, point31y))) {
 						it.remove();
 					}
 				}
@@ -784,9 +837,11 @@ public class OsmandRegions {
 		keyNames.clear();
 		int x31 = MapUtils.get31TileNumberX(lon);
 		int y31 = MapUtils.get31TileNumberY(lat);
-		List<BinaryMapDataObject> cs = query(x31, y31);
+		// objects of point index contain the point
+		PolygonPointIndex<BinaryMapDataObject> index = quadTree == null ? pointIndex : null;
+		List<BinaryMapDataObject> cs = index != null ? index.query(x31, y31) : query(x31, y31);
 		for (BinaryMapDataObject b : cs) {
-			if (contain(b, x31, y31)) {
+			if (index != null || contain(b, x31, y31)) {
 				String downloadName = getDownloadName(b);
 				if(!Algorithms.isEmpty(downloadName)) {
 					keyNames.add(downloadName);
@@ -16,7 +16,6 @@ import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -43,6 +42,7 @@ public class MapPoiTypes {
 	Map<String, String> deprecatedTags = new LinkedHashMap<String, String>();
 	Map<String, String> poiAdditionalCategoryIconNames = new LinkedHashMap<String, String>();
 	List<PoiType> textPoiAdditionals = new ArrayList<PoiType>();
+	private volatile PoiTypesIndex index;
 
 
 	public MapPoiTypes(String fileName) {
@@ -137,14 +137,22 @@ public class MapPoiTypes {
 		return otherCategory;
 	}
 
-	public PoiType getPoiTypeByKey(String name) {
-		for (PoiCategory pc : categories) {
-			PoiType pt = pc.getPoiTypeByKeyName(name);
-			if (pt != null && !pt.isReference()) {
-				return pt;
-			}
+	private PoiTypesIndex getIndex() {
+		PoiTypesIndex idx = index;
+		if (idx == null) {
+			idx = new PoiTypesIndex(categories, textPoiAdditionals, otherMapCategory);
+			index = idx;
 		}
-		return null;
+		return idx;
+	}
+
+	private void addCategory(PoiCategory category) {
+		categories.add(category);
+		index = null;
+	}
+
+	public PoiType getPoiTypeByKey(String name) {
+		return getIndex().getPoiTypeByKey(name);
 	}
 
 	public PoiType getPoiTypeByKeyInCategory(PoiCategory category, String keyName) {
@@ -155,83 +163,18 @@ public class MapPoiTypes {
 	}
 
 	public AbstractPoiType getAnyPoiTypeByKey(String name) {
-		for (PoiCategory pc : categories) {
-			if (pc.getKeyName().equals(name)) {
-				return pc;
-			}
-			for (PoiFilter pf : pc.getPoiFilters()) {
-				if (pf.getKeyName().equals(name)) {
-					return pf;
-				}
-			}
-			PoiType pt = pc.getPoiTypeByKeyName(name);
-			if (pt != null && !pt.isReference()) {
-				return pt;
-			}
-		}
-		return null;
+		return getIndex().getAnyPoiTypeByKey(name);
 	}
 
+	/**
+	 * @return unmodifiable map of lower case key names and translations to poi types, shared between calls
+	 */
 	public Map<String, PoiType> getAllTranslatedNames(boolean skipNonEditable) {
-		Map<String, PoiType> translation = new HashMap<String, PoiType>();
-		for (int i = 0; i < categories.size(); i++) {
-			PoiCategory pc = categories.get(i);
-			if (skipNonEditable && pc.isNotEditableOsm()) {
-				continue;
-			}
-			addPoiTypesTranslation(skipNonEditable, translation, pc);
-		}
-		return translation;
-	}
-
-
-	private void addPoiTypesTranslation(boolean skipNonEditable, Map<String, PoiType> translation, PoiFilter pf) {
-		for (PoiType pt : pf.getPoiTypes()) {
-			if (pt.isReference()) {
-				continue;
-			}
-			if (pt.getBaseLangType() != null) {
-				continue;
-			}
-			if (skipNonEditable && pt.isNotEditableOsm()) {
-				continue;
-			}
-			translation.put(pt.getKeyName().replace('_', ' ').toLowerCase(), pt);
-			translation.put(pt.getTranslation().toLowerCase(), pt);
-		}
+		return getIndex().getAllTranslatedNames(skipNonEditable);
 	}
 
 	public List<AbstractPoiType> getAllTypesTranslatedNames(StringMatcher matcher) {
-		List<AbstractPoiType> tm = new ArrayList<AbstractPoiType>();
-		for (PoiCategory pc : categories) {
-			if (pc == otherMapCategory) {
-				continue;
-			}
-			addIf(tm, pc, matcher);
-			for (PoiFilter pt : pc.getPoiFilters()) {
-				addIf(tm, pt, matcher);
-			}
-			for (PoiType pt : pc.getPoiTypes()) {
-				if (pt.isReference()) {
-					continue;
-				}
-				addIf(tm, pt, matcher);
-			}
-		}
-
-		return tm;
-	}
-
-	private void addIf(List<AbstractPoiType> tm, AbstractPoiType pc, StringMatcher matcher) {
-		if (matcher.matches(pc.getTranslation()) || matcher.matches(pc.getKeyName().replace('_', ' '))) {
-			tm.add(pc);
-		}
-		List<PoiType> additionals = pc.getPoiAdditionals();
-		if (additionals != null) {
-			for (PoiType a : additionals) {
-				addIf(tm, a, matcher);
-			}
-		}
+		return getIndex().getAllTypesTranslatedNames(matcher);
 	}
 
 
@@ -259,14 +202,13 @@ public class MapPoiTypes {
 		if (name.equals("historic") && !create) {
 			name = "tourism";
 		}
-		for (PoiCategory p : categories) {
-			if (p.getKeyName().equalsIgnoreCase(name)) {
-				return p;
-			}
+		PoiCategory p = getIndex().getPoiCategoryByName(name);
+		if (p != null) {
+			return p;
 		}
 		if (create) {
 			PoiCategory lastCategory = new PoiCategory(this, name, categories.size());
-			categories.add(lastCategory);
+			addCategory(lastCategory);
 			return lastCategory;
 		}
 		return otherCategory;
@@ -279,6 +221,7 @@ public class MapPoiTypes {
 	public void setPoiTranslator(PoiTranslator poiTranslator) {
 		this.poiTranslator = poiTranslator;
 		sortList(categories);
+		index = null;
 
 	}
 
@@ -317,6 +260,7 @@ public class MapPoiTypes {
 		final Map<String, List<PoiType>> categoryPoiAdditionalMap = new LinkedHashMap<String, List<PoiType>>();
 		final Map<AbstractPoiType, Set<String>> abstractTypeAdditionalCategories = new LinkedHashMap<AbstractPoiType, Set<String>>();
 		this.categories.clear();
+		index = null;
 		try {
 			XmlPullParser parser = PlatformUtil.newXMLPullParser();
 			int tok;
@@ -343,7 +287,7 @@ public class MapPoiTypes {
 							lastCategory.addExcludedPoiAdditionalCategories(parser.getAttributeValue("", "excluded_poi_additional_category").split(","));
 							lastCategoryPoiAdditionalsCategories.removeAll(lastCategory.getExcludedPoiAdditionalCategories());
 						}
-						categories.add(lastCategory);
+						addCategory(lastCategory);
 					} else if (name.equals("poi_filter")) {
 						PoiFilter tp = new PoiFilter(this, lastCategory, parser.getAttributeValue("", "name"));
 						tp.setTopVisible(Boolean.parseBoolean(parser.getAttributeValue("", "top")));
@@ -477,6 +421,7 @@ public class MapPoiTypes {
 				}
 			}
 		}
+		index = null;
 		findDefaultOtherCategory();
 		init = true;
 		log.info("Time to init poi types " + (System.currentTimeMillis() - time)); //$NON-NLS-1$
@@ -643,48 +588,12 @@ public class MapPoiTypes {
 		}
 	}
 
-	private PoiType getPoiAdditionalByKey(AbstractPoiType p, String name) {
-		List<PoiType> pp = p.getPoiAdditionals();
-		if (pp != null) {
-			for (PoiType pt : pp) {
-				if (pt.getKeyName().equals(name)) {
-					return pt;
-				}
-			}
-		}
-		return null;
-	}
-
 	public PoiType getTextPoiAdditionalByKey(String name) {
-		for (PoiType pt : textPoiAdditionals) {
-			if (pt.getKeyName().equals(name)) {
-				return pt;
-			}
-		}
-		return null;
+		return getIndex().getTextPoiAdditionalByKey(name);
 	}
 
 	public AbstractPoiType getAnyPoiAdditionalTypeByKey(String name) {
-		PoiType add = null;
-		for (PoiCategory pc : categories) {
-			add = getPoiAdditionalByKey(pc, name);
-			if (add != null) {
-				return add;
-			}
-			for (PoiFilter pf : pc.getPoiFilters()) {
-				add = getPoiAdditionalByKey(pf, name);
-				if (add != null) {
-					return add;
-				}
-			}
-			for (PoiType p : pc.getPoiTypes()) {
-				add = getPoiAdditionalByKey(p, name);
-				if (add != null) {
-					return add;
-				}
-			}
-		}
-		return null;
+		return getIndex().getAnyPoiAdditionalTypeByKey(name);
 	}
 
 	private static void print(String indent, PoiFilter f) {
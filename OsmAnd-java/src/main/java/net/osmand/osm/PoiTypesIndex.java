@@ -0,0 +1,177 @@
+package net.osmand.osm;
+
+import net.osmand.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Frozen lookup tables of {@link MapPoiTypes}. Built on first lookup from the current categories and
+ * dropped by the registry whenever categories, their order or the translator change.
+ * Every table keeps the first match in registry order, so lookups return the same types as a scan would.
+ */
+class PoiTypesIndex {
+
+	private final List<PoiCategory> categories;
+	private final PoiCategory otherMapCategory;
+
+	private final Map<String, PoiCategory> categoriesByName = new HashMap<String, PoiCategory>();
+	private final Map<String, PoiType> poiTypesByKey = new HashMap<String, PoiType>();
+	private final Map<String, AbstractPoiType> anyPoiTypesByKey = new HashMap<String, AbstractPoiType>();
+	private final Map<String, PoiType> poiAdditionalsByKey = new HashMap<String, PoiType>();
+	private final Map<String, PoiType> textPoiAdditionalsByKey = new HashMap<String, PoiType>();
+
+	// translations are requested from translator, so built only when needed
+	private volatile Map<String, PoiType> translatedNames;
+	private volatile Map<String, PoiType> editableTranslatedNames;
+	private volatile TranslatedTypes translatedTypes;
+
+	PoiTypesIndex(List<PoiCategory> categories, List<PoiType> textPoiAdditionals, PoiCategory otherMapCategory) {
+		this.categories = new ArrayList<PoiCategory>(categories);
+		this.otherMapCategory = otherMapCategory;
+		for (PoiCategory pc : this.categories) {
+			putIfAbsent(categoriesByName, categoryKey(pc.getKeyName()), pc);
+			putIfAbsent(anyPoiTypesByKey, pc.getKeyName(), pc);
+			for (PoiFilter pf : pc.getPoiFilters()) {
+				putIfAbsent(anyPoiTypesByKey, pf.getKeyName(), pf);
+			}
+			for (PoiType pt : pc.getPoiTypes()) {
+				if (!pt.isReference()) {
+					putIfAbsent(poiTypesByKey, pt.getKeyName(), pt);
+					putIfAbsent(anyPoiTypesByKey, pt.getKeyName(), pt);
+				}
+			}
+			putAdditionals(pc);
+			for (PoiFilter pf : pc.getPoiFilters()) {
+				putAdditionals(pf);
+			}
+			for (PoiType pt : pc.getPoiTypes()) {
+				putAdditionals(pt);
+			}
+		}
+		for (PoiType pt : textPoiAdditionals) {
+			putIfAbsent(textPoiAdditionalsByKey, pt.getKeyName(), pt);
+		}
+	}
+
+	private void putAdditionals(AbstractPoiType p) {
+		for (PoiType pt : p.getPoiAdditionals()) {
+			putIfAbsent(poiAdditionalsByKey, pt.getKeyName(), pt);
+		}
+	}
+
+	private static <T> void putIfAbsent(Map<String, T> map, String key, T value) {
+		if (!map.containsKey(key)) {
+			map.put(key, value);
+		}
+	}
+
+	static String categoryKey(String name) {
+		return name.toLowerCase(Locale.US);
+	}
+
+	PoiCategory getPoiCategoryByName(String name) {
+		return categoriesByName.get(categoryKey(name));
+	}
+
+	PoiType getPoiTypeByKey(String name) {
+		return poiTypesByKey.get(name);
+	}
+
+	AbstractPoiType getAnyPoiTypeByKey(String name) {
+		return anyPoiTypesByKey.get(name);
+	}
+
+	PoiType getAnyPoiAdditionalTypeByKey(String name) {
+		return poiAdditionalsByKey.get(name);
+	}
+
+	PoiType getTextPoiAdditionalByKey(String name) {
+		return textPoiAdditionalsByKey.get(name);
+	}
+
+	Map<String, PoiType> getAllTranslatedNames(boolean skipNonEditable) {
+		Map<String, PoiType> names = skipNonEditable ? editableTranslatedNames : translatedNames;
+		if (names == null) {
+			Map<String, PoiType> translation = new HashMap<String, PoiType>();
+			for (PoiCategory pc : categories) {
+				if (skipNonEditable && pc.isNotEditableOsm()) {
+					continue;
+				}
+				addPoiTypesTranslation(skipNonEditable, translation, pc);
+			}
+			names = Collections.unmodifiableMap(translation);
+			if (skipNonEditable) {
+				editableTranslatedNames = names;
+			} else {
+				translatedNames = names;
+			}
+		}
+		return names;
+	}
+
+	private void addPoiTypesTranslation(boolean skipNonEditable, Map<String, PoiType> translation, PoiFilter pf) {
+		for (PoiType pt : pf.getPoiTypes()) {
+			if (pt.isReference()) {
+				continue;
+			}
+			if (pt.getBaseLangType() != null) {
+				continue;
+			}
+			if (skipNonEditable && pt.isNotEditableOsm()) {
+				continue;
+			}
+			translation.put(pt.getKeyName().replace('_', ' ').toLowerCase(), pt);
+			translation.put(pt.getTranslation().toLowerCase(), pt);
+		}
+	}
+
+	List<AbstractPoiType> getAllTypesTranslatedNames(StringMatcher matcher) {
+		TranslatedTypes tt = translatedTypes;
+		if (tt == null) {
+			tt = new TranslatedTypes();
+			for (PoiCategory pc : categories) {
+				if (pc == otherMapCategory) {
+					continue;
+				}
+				tt.add(pc);
+				for (PoiFilter pf : pc.getPoiFilters()) {
+					tt.add(pf);
+				}
+				for (PoiType pt : pc.getPoiTypes()) {
+					if (!pt.isReference()) {
+						tt.add(pt);
+					}
+				}
+			}
+			translatedTypes = tt;
+		}
+		List<AbstractPoiType> tm = new ArrayList<AbstractPoiType>();
+		for (int i = 0; i < tt.types.size(); i++) {
+			if (matcher.matches(tt.translations.get(i)) || matcher.matches(tt.keyNames.get(i))) {
+				tm.add(tt.types.get(i));
+			}
+		}
+		return tm;
+	}
+
+	// flat list of searchable types with their additionals in registry order
+	private static class TranslatedTypes {
+		final List<AbstractPoiType> types = new ArrayList<AbstractPoiType>();
+		final List<String> translations = new ArrayList<String>();
+		final List<String> keyNames = new ArrayList<String>();
+
+		void add(AbstractPoiType p) {
+			types.add(p);
+			translations.add(p.getTranslation());
+			keyNames.add(p.getKeyName().replace('_', ' '));
+			for (PoiType a : p.getPoiAdditionals()) {
+				add(a);
+			}
+		}
+	}
+}
@@ -30,6 +30,14 @@ public class RenderingRule {
 		init(attributes);
 	}
 	
+	// used by RenderingRulesStorageCache, values are set later with setValues
+	RenderingRule(boolean isGroup, RenderingRulesStorage storage) {
+		this.isGroup = isGroup;
+		this.storage = storage;
+		this.properties = new RenderingRuleProperty[0];
+		this.intProperties = new int[0];
+	}
+	
 	public void storeAttributes(Map<String, String> attributes){
 		this.attributes = new HashMap<String, String>(attributes);
 	}
@@ -132,6 +140,26 @@ public class RenderingRule {
 		return floatProperties[ind];
 	}
 	
+	int[] getIntProperties() {
+		return intProperties;
+	}
+	
+	float[] getFloatProperties() {
+		return floatProperties;
+	}
+	
+	RenderingRule[] getAttributesRef() {
+		return attributesRef;
+	}
+	
+	void setValues(RenderingRuleProperty[] properties, int[] intProperties, float[] floatProperties,
+			RenderingRule[] attributesRef) {
+		this.properties = properties;
+		this.intProperties = intProperties;
+		this.floatProperties = floatProperties;
+		this.attributesRef = attributesRef;
+	}
+	
 	public RenderingRuleProperty[] getProperties() {
 		return properties;
 	}
@@ -1,5 +1,17 @@
 package net.osmand.render;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import net.osmand.binary.BinaryMapDataObject;
 import net.osmand.util.Algorithms;
 
@@ -17,6 +29,23 @@ public class RenderingRuleSearchRequest {
 	
 	boolean searchResult = false;
 	
+	// memoized results of search(state), see setResultCacheEnabled
+	private static final int MAX_CACHED_RESULTS = 8192;
+	private static final int[] NOT_CACHEABLE = new int[0];
+	private boolean resultCacheEnabled = true;
+	private boolean resultCacheTimingEnabled = false;
+	private final Map<SearchKey, SearchResult> resultCache = new HashMap<SearchKey, SearchResult>();
+	// (tag, value) -> ids of input properties read by rules of the state
+	private final List<TLongObjectHashMap<int[]>> dependencies;
+	private final SearchKey probe = new SearchKey();
+	private final SearchCacheStats stats;
+	// values written by current search are marked with searchStamp
+	private int[] writeStamp;
+	private int[] fwriteStamp;
+	private int searchStamp;
+	private boolean readsPriorState;
+	// output values are equal to saved state
+	private boolean outputsClean;
 	
 	public final RenderingRuleStorageProperties ALL;
 
@@ -31,23 +60,34 @@ public class RenderingRuleSearchRequest {
 			}
 		}
 		fvalues = new float[props.length];
+		writeStamp = new int[props.length];
+		fwriteStamp = new int[props.length];
+		dependencies = new ArrayList<TLongObjectHashMap<int[]>>(RenderingRulesStorage.LENGTH_RULES);
+		for (int i = 0; i < RenderingRulesStorage.LENGTH_RULES; i++) {
+			dependencies.add(new TLongObjectHashMap<int[]>());
+		}
+		stats = new SearchCacheStats(storage.getName());
 		setBooleanFilter(storage.PROPS.R_TEST, true);
 		saveState();
+		outputsClean = true;
 	}
 
 	public void setStringFilter(RenderingRuleProperty p, String filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = storage.getDictionaryValue(filter);
+		outputsClean &= p.isInputProperty();
 	}
 
 	public void setIntFilter(RenderingRuleProperty p, int filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = filter;
+		outputsClean &= p.isInputProperty();
 	}
 	
 	public void setBooleanFilter(RenderingRuleProperty p, boolean filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = filter ? RenderingRuleProperty.TRUE_VALUE : RenderingRuleProperty.FALSE_VALUE;
+		outputsClean &= p.isInputProperty();
 	}
 
 	public void saveState() {
@@ -55,12 +95,41 @@ public class RenderingRuleSearchRequest {
 		savedFvalues = new float[fvalues.length];
 		System.arraycopy(values, 0, savedValues, 0, values.length);
 		System.arraycopy(fvalues, 0, savedFvalues, 0, fvalues.length);
+		// cached results are based on saved state
+		resultCache.clear();
+		outputsClean = false;
 	}
 
 	public void clearState() {
 		System.arraycopy(savedValues, 0, values, 0, values.length);
 		System.arraycopy(savedFvalues, 0, fvalues, 0, fvalues.length);
 		object = null;
+		outputsClean = true;
+	}
+	
+	/**
+	 * Enables memoization of {@link #search(int, boolean)} results. Result is cached by state, tag, value and values
+	 * of input properties which are checked by rules of the tag & value (zoom, layer, style settings...).
+	 * Rules which check object specific inputs (additional tags, text length) are not cached.
+	 */
+	public void setResultCacheEnabled(boolean resultCacheEnabled) {
+		this.resultCacheEnabled = resultCacheEnabled;
+		resultCache.clear();
+	}
+	
+	public boolean isResultCacheEnabled() {
+		return resultCacheEnabled;
+	}
+	
+	/**
+	 * Measures time of searches to estimate time saved by memoized results (see {@link #getResultCacheStats()})
+	 */
+	public void setResultCacheTimingEnabled(boolean resultCacheTimingEnabled) {
+		this.resultCacheTimingEnabled = resultCacheTimingEnabled;
+	}
+	
+	public SearchCacheStats getResultCacheStats() {
+		return stats;
 	}
 	
 	public void clearValue(RenderingRuleProperty p) {
@@ -100,6 +169,7 @@ public class RenderingRuleSearchRequest {
 	
 	public boolean searchRenderingAttribute(String attribute) {
 		searchResult = false;
+		outputsClean = false;
 		RenderingRule rule = storage.getRenderingAttributeRule(attribute);
 		if(rule == null){
 			return false;
@@ -114,6 +184,113 @@ public class RenderingRuleSearchRequest {
 	}
 	
 	public boolean search(int state, boolean loadOutput) {
+		if (!resultCacheEnabled) {
+			outputsClean = false;
+			return searchFallback(state, loadOutput);
+		}
+		long start = resultCacheTimingEnabled ? System.nanoTime() : 0;
+		int tagKey = values[storage.PROPS.R_TAG.getId()];
+		int valueKey = values[storage.PROPS.R_VALUE.getId()];
+		int[] deps = getDependencies(state, tagKey, valueKey);
+		if (deps == NOT_CACHEABLE) {
+			outputsClean = false;
+			stats.notCacheable++;
+			return searchFallback(state, loadOutput);
+		}
+		probe.set(state, loadOutput, tagKey, valueKey, deps, values);
+		SearchResult cached = resultCache.get(probe);
+		// result which depends on output values set before search is only valid for clean state
+		if (cached != null && (outputsClean || !cached.readsPriorState)) {
+			cached.apply(values, fvalues);
+			outputsClean = false;
+			searchResult = cached.found;
+			stats.hits++;
+			if (resultCacheTimingEnabled) {
+				stats.hitTime += System.nanoTime() - start;
+			}
+			return cached.found;
+		}
+		boolean clean = outputsClean;
+		nextSearchStamp();
+		boolean found = searchFallback(state, loadOutput);
+		outputsClean = false;
+		if (cached == null && (clean || !readsPriorState)) {
+			if (resultCache.size() >= MAX_CACHED_RESULTS) {
+				resultCache.clear();
+			}
+			resultCache.put(probe.copy(), new SearchResult(found, readsPriorState, values, fvalues, writeStamp,
+					fwriteStamp, searchStamp));
+		}
+		stats.misses++;
+		if (resultCacheTimingEnabled) {
+			stats.missTime += System.nanoTime() - start;
+		}
+		return found;
+	}
+	
+	private void nextSearchStamp() {
+		if (searchStamp == Integer.MAX_VALUE) {
+			searchStamp = 0;
+			Arrays.fill(writeStamp, 0);
+			Arrays.fill(fwriteStamp, 0);
+		}
+		searchStamp++;
+		readsPriorState = false;
+	}
+	
+	private int[] getDependencies(int state, int tagKey, int valueKey) {
+		TLongObjectHashMap<int[]> stateDependencies = dependencies.get(state);
+		long key = (((long) tagKey) << 32) | (valueKey & 0xffffffffL);
+		int[] deps = stateDependencies.get(key);
+		if (deps == null) {
+			TIntHashSet ids = new TIntHashSet();
+			Set<RenderingRule> visited = Collections.newSetFromMap(new IdentityHashMap<RenderingRule, Boolean>());
+			boolean cacheable = collectInputs(storage.getRule(state, tagKey, valueKey), ids, visited)
+					&& collectInputs(storage.getRule(state, tagKey, 0), ids, visited)
+					&& collectInputs(storage.getRule(state, 0, 0), ids, visited);
+			if (cacheable) {
+				deps = ids.toArray();
+				Arrays.sort(deps);
+			} else {
+				deps = NOT_CACHEABLE;
+			}
+			stateDependencies.put(key, deps);
+		}
+		return deps;
+	}
+	
+	private boolean collectInputs(RenderingRule rule, TIntHashSet ids, Set<RenderingRule> visited) {
+		if (rule == null || !visited.add(rule)) {
+			return true;
+		}
+		RenderingRuleProperty[] properties = rule.getProperties();
+		for (int i = 0; i < properties.length; i++) {
+			RenderingRuleProperty rp = properties[i];
+			if (rp.isInputProperty()) {
+				int id = rp.getId();
+				if (rp.isFloat() || id == storage.PROPS.R_ADDITIONAL.getId() || id == storage.PROPS.R_TEXT_LENGTH.getId()) {
+					return false;
+				}
+				ids.add(id);
+			}
+			if (!collectInputs(rule.getAttrProp(i), ids, visited)) {
+				return false;
+			}
+		}
+		for (RenderingRule rr : rule.getIfElseChildren()) {
+			if (!collectInputs(rr, ids, visited)) {
+				return false;
+			}
+		}
+		for (RenderingRule rr : rule.getIfChildren()) {
+			if (!collectInputs(rr, ids, visited)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean searchFallback(int state, boolean loadOutput) {
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
@@ -138,9 +315,9 @@ public class RenderingRuleSearchRequest {
 
 
 	private boolean searchInternal(int state, int tagKey, int valueKey, boolean loadOutput) {
-		values[storage.PROPS.R_TAG.getId()] = tagKey;
-		values[storage.PROPS.R_VALUE.getId()] = valueKey;
-		values[storage.PROPS.R_DISABLE.getId()] = 0;
+		setValue(storage.PROPS.R_TAG.getId(), tagKey);
+		setValue(storage.PROPS.R_VALUE.getId(), valueKey);
+		setValue(storage.PROPS.R_DISABLE.getId(), 0);
 		RenderingRule accept = storage.getRule(state, tagKey, valueKey);
 		if (accept == null) {
 			return false;
@@ -190,23 +367,23 @@ public class RenderingRuleSearchRequest {
 		for (int i = 0; i < properties.length; i++) {
 			RenderingRuleProperty rp = properties[i];
 			if (rp.isOutputProperty()) {
-				if (!isSpecified(rp) || override) {
+				if (override || !isSpecifiedInSearch(rp)) {
 					RenderingRule rr = rule.getAttrProp(i);
 					if(rr != null) {
 						visitRule(rr, true);
-						if(isSpecified(storage.PROPS.R_ATTR_COLOR_VALUE)){
-							values[rp.getId()] = getIntPropertyValue(storage.PROPS.R_ATTR_COLOR_VALUE);
-						} else if(isSpecified(storage.PROPS.R_ATTR_INT_VALUE)){
-							values[rp.getId()] = getIntPropertyValue(storage.PROPS.R_ATTR_INT_VALUE);
-							fvalues[rp.getId()] = getFloatPropertyValue(storage.PROPS.R_ATTR_INT_VALUE);
-						} else if(isSpecified(storage.PROPS.R_ATTR_BOOL_VALUE)){
-							values[rp.getId()] = getIntPropertyValue(storage.PROPS.R_ATTR_BOOL_VALUE);
+						if(isSpecifiedInSearch(storage.PROPS.R_ATTR_COLOR_VALUE)){
+							setValue(rp.getId(), getIntPropertyValue(storage.PROPS.R_ATTR_COLOR_VALUE));
+						} else if(isSpecifiedInSearch(storage.PROPS.R_ATTR_INT_VALUE)){
+							setValue(rp.getId(), getIntPropertyValue(storage.PROPS.R_ATTR_INT_VALUE));
+							setFloatValue(rp.getId(), getFloatPropertyValue(storage.PROPS.R_ATTR_INT_VALUE));
+						} else if(isSpecifiedInSearch(storage.PROPS.R_ATTR_BOOL_VALUE)){
+							setValue(rp.getId(), getIntPropertyValue(storage.PROPS.R_ATTR_BOOL_VALUE));
 						}
 					} else if (rp.isFloat()) {
-						fvalues[rp.getId()] = rule.getFloatProp(i);
-						values[rp.getId()] = rule.getIntProp(i);
+						setFloatValue(rp.getId(), rule.getFloatProp(i));
+						setValue(rp.getId(), rule.getIntProp(i));
 					} else {
-						values[rp.getId()] = rule.getIntProp(i);
+						setValue(rp.getId(), rule.getIntProp(i));
 					}
 				}
 			}
@@ -229,12 +406,31 @@ public class RenderingRuleSearchRequest {
 				}
 			} else if(rp == storage.PROPS.R_DISABLE){
 				// quick disable return even without load output
-				values[rp.getId()] = rule.getIntProp(i);
+				setValue(rp.getId(), rule.getIntProp(i));
 			}
 		}
 		return true;
 	}
 	
+	private void setValue(int id, int value) {
+		values[id] = value;
+		writeStamp[id] = searchStamp;
+	}
+	
+	private void setFloatValue(int id, float value) {
+		fvalues[id] = value;
+		fwriteStamp[id] = searchStamp;
+	}
+	
+	// checks value which could be set before the search
+	private boolean isSpecifiedInSearch(RenderingRuleProperty property) {
+		int id = property.getId();
+		if (writeStamp[id] != searchStamp || (property.isFloat() && fwriteStamp[id] != searchStamp)) {
+			readsPriorState = true;
+		}
+		return isSpecified(property);
+	}
+	
 	public boolean isSpecified(RenderingRuleProperty property){
 		if(property.isFloat()){
 			return fvalues[property.getId()] != 0 || values[property.getId()] != -1;
@@ -294,4 +490,145 @@ public class RenderingRuleSearchRequest {
 		return storage;
 	}
 
-}
\ No newline at end of file
+	private static class SearchKey {
+		private int[] key = new int[0];
+		private int hash;
+
+		void set(int state, boolean loadOutput, int tagKey, int valueKey, int[] deps, int[] values) {
+			if (key.length != deps.length + 3) {
+				key = new int[deps.length + 3];
+			}
+			key[0] = (state << 1) | (loadOutput ? 1 : 0);
+			key[1] = tagKey;
+			key[2] = valueKey;
+			for (int i = 0; i < deps.length; i++) {
+				key[i + 3] = values[deps[i]];
+			}
+			hash = Arrays.hashCode(key);
+		}
+
+		SearchKey copy() {
+			SearchKey k = new SearchKey();
+			k.key = key.clone();
+			k.hash = hash;
+			return k;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof SearchKey && Arrays.equals(key, ((SearchKey) obj).key);
+		}
+	}
+
+	// values written by search
+	private static class SearchResult {
+		final boolean found;
+		final boolean readsPriorState;
+		final int[] ids;
+		final int[] intValues;
+		final int[] fids;
+		final float[] floatValues;
+
+		SearchResult(boolean found, boolean readsPriorState, int[] values, float[] fvalues, int[] writeStamp,
+				int[] fwriteStamp, int stamp) {
+			this.found = found;
+			this.readsPriorState = readsPriorState;
+			ids = written(writeStamp, stamp);
+			intValues = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				intValues[i] = values[ids[i]];
+			}
+			fids = written(fwriteStamp, stamp);
+			floatValues = new float[fids.length];
+			for (int i = 0; i < fids.length; i++) {
+				floatValues[i] = fvalues[fids[i]];
+			}
+		}
+
+		private static int[] written(int[] writeStamp, int stamp) {
+			int cnt = 0;
+			for (int s : writeStamp) {
+				if (s == stamp) {
+					cnt++;
+				}
+			}
+			int[] res = new int[cnt];
+			cnt = 0;
+			for (int i = 0; i < writeStamp.length; i++) {
+				if (writeStamp[i] == stamp) {
+					res[cnt++] = i;
+				}
+			}
+			return res;
+		}
+
+		void apply(int[] values, float[] fvalues) {
+			for (int i = 0; i < ids.length; i++) {
+				values[ids[i]] = intValues[i];
+			}
+			for (int i = 0; i < fids.length; i++) {
+				fvalues[fids[i]] = floatValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Hit ratio and estimated time saved by memoized search results of the style
+	 */
+	public static class SearchCacheStats {
+		private final String styleName;
+		int hits;
+		int misses;
+		int notCacheable;
+		long hitTime;
+		long missTime;
+
+		SearchCacheStats(String styleName) {
+			this.styleName = styleName;
+		}
+
+		public int getHits() {
+			return hits;
+		}
+
+		public int getMisses() {
+			return misses;
+		}
+
+		public int getNotCacheable() {
+			return notCacheable;
+		}
+
+		public double getHitRatio() {
+			int total = hits + misses + notCacheable;
+			return total == 0 ? 0 : (double) hits / total;
+		}
+
+		/**
+		 * Estimated by average time of searches which weren't found in cache, search time is measured only
+		 * when it is enabled by {@link RenderingRuleSearchRequest#setResultCacheTimingEnabled(boolean)}
+		 */
+		public long getSavedTimeNanos() {
+			if (misses == 0) {
+				return 0;
+			}
+			return Math.max(0, hits * (missTime / misses) - hitTime);
+		}
+
+		@Override
+		public String toString() {
+			if (missTime == 0) {
+				return String.format("Style %s: cache hit ratio %.1f%% (%d hits, %d misses, %d not cacheable)",
+						styleName, getHitRatio() * 100, hits, misses, notCacheable);
+			}
+			return String.format("Style %s: cache hit ratio %.1f%% (%d hits, %d misses, %d not cacheable), saved %d ms",
+					styleName, getHitRatio() * 100, hits, misses, notCacheable, getSavedTimeNanos() / 1000000);
+		}
+	}
+
+}
@@ -16,6 +16,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Stack;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import net.osmand.PlatformUtil;
 
@@ -54,6 +56,8 @@ public class RenderingRulesStorage {
 	
 	protected String renderingName;
 	protected String internalRenderingName;
+	// style name -> CRC32 of xml source (including dependencies)
+	protected Map<String, Long> sourceHashes = new LinkedHashMap<String, Long>();
 	
 	
 	public static interface RenderingRulesStorageResolver {
@@ -93,14 +97,28 @@ public class RenderingRulesStorage {
 		return internalRenderingName;
 	}
 	
+	/**
+	 * CRC32 checksums of xml sources parsed to create the storage, used to validate {@link RenderingRulesStorageCache}
+	 */
+	public Map<String, Long> getSourceHashes() {
+		return sourceHashes;
+	}
+	
 	
 	public void parseRulesFromXmlInputStream(InputStream is, RenderingRulesStorageResolver resolver) throws XmlPullParserException,
 			IOException {
 		XmlPullParser parser = PlatformUtil.newXMLPullParser();
 		RenderingRulesHandler handler = new RenderingRulesHandler(parser, resolver);
-		handler.parse(is);
+		CheckedInputStream cis = new CheckedInputStream(is, new CRC32());
+		handler.parse(cis);
+		// checksum of the whole source
+		byte[] buf = new byte[4096];
+		while (cis.read(buf) != -1) {
+		}
+		sourceHashes.put(renderingName, cis.getChecksum().getValue());
 		RenderingRulesStorage depends = handler.getDependsStorage();
 		if (depends != null) {
+			sourceHashes.putAll(depends.sourceHashes);
 			// merge results
 			// dictionary and props are already merged
 			Iterator<Entry<String, RenderingRule>> it = depends.renderingAttributes.entrySet().iterator();
@@ -0,0 +1,395 @@
+package net.osmand.render;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled binary form of resolved {@link RenderingRulesStorage} (dictionary, custom properties, rule graph, rendering
+ * attributes and constants), so style could be loaded on startup without parsing xml of the style and its dependencies.
+ * Cache file is memory mapped on {@link #load(File, SourceProvider)} and is valid only while CRC32 of every xml source
+ * is equal to {@link RenderingRulesStorage#getSourceHashes()} at the moment of {@link #write(RenderingRulesStorage, File)}.
+ *
+ * Rules are written as a table (rules are shared between rendering attributes and tag/value roots),
+ * children and attribute references are written as indexes in the table.
+ */
+public class RenderingRulesStorageCache {
+
+	private static final int MAGIC = 0x4f525253; // ORRS
+	private static final int VERSION = 1;
+
+	public static interface SourceProvider {
+
+		/**
+		 * @return xml source of the style by its name or null if it doesn't exist
+		 */
+		InputStream getInputStream(String name) throws IOException;
+	}
+
+	/**
+	 * Loads storage from the cache file, returns null if file doesn't exist or it is outdated
+	 */
+	public static RenderingRulesStorage load(File file, SourceProvider sources) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		ByteBuffer bf;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// mapping stays valid after the channel is closed
+			bf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		if (bf.getInt() != MAGIC || bf.getInt() != VERSION) {
+			return null;
+		}
+		Map<String, Long> hashes = new LinkedHashMap<String, Long>();
+		int sourcesCount = bf.getInt();
+		for (int i = 0; i < sourcesCount; i++) {
+			String name = readString(bf);
+			long hash = bf.getLong();
+			Long actual = getHash(sources, name);
+			if (actual == null || actual.longValue() != hash) {
+				return null;
+			}
+			hashes.put(name, hash);
+		}
+		RenderingRulesStorage storage = new RenderingRulesStorage(readString(bf), null);
+		storage.internalRenderingName = readString(bf);
+		storage.sourceHashes.putAll(hashes);
+		storage.dictionary = new ArrayList<String>(Arrays.asList(readStrings(bf)));
+		storage.dictionaryMap = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < storage.dictionary.size(); i++) {
+			storage.dictionaryMap.put(storage.dictionary.get(i), i);
+		}
+		int constants = bf.getInt();
+		for (int i = 0; i < constants; i++) {
+			storage.renderingConstants.put(readString(bf), readString(bf));
+		}
+		readProperties(bf, storage.PROPS);
+
+		RenderingRule[] rules = new RenderingRule[bf.getInt()];
+		for (int i = 0; i < rules.length; i++) {
+			rules[i] = new RenderingRule(bf.get() != 0, storage);
+		}
+		for (RenderingRule r : rules) {
+			readRule(bf, r, rules, storage.PROPS);
+		}
+		int attributes = bf.getInt();
+		for (int i = 0; i < attributes; i++) {
+			storage.renderingAttributes.put(readString(bf), rules[bf.getInt()]);
+		}
+		for (int i = 0; i < RenderingRulesStorage.LENGTH_RULES; i++) {
+			int size = bf.getInt();
+			if (size >= 0) {
+				TIntObjectHashMap<RenderingRule> map = new TIntObjectHashMap<RenderingRule>();
+				for (int k = 0; k < size; k++) {
+					int key = bf.getInt();
+					map.put(key, rules[bf.getInt()]);
+				}
+				storage.tagValueGlobalRules[i] = map;
+			}
+		}
+		return storage;
+	}
+
+	private static Long getHash(SourceProvider sources, String name) throws IOException {
+		InputStream is = sources.getInputStream(name);
+		if (is == null) {
+			return null;
+		}
+		try {
+			CRC32 crc = new CRC32();
+			byte[] buf = new byte[4096];
+			int read;
+			while ((read = is.read(buf)) != -1) {
+				crc.update(buf, 0, read);
+			}
+			return crc.getValue();
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Writes storage to the file (through temporary file which is renamed)
+	 */
+	public static void write(RenderingRulesStorage storage, File file) throws IOException {
+		List<RenderingRule> rules = new ArrayList<RenderingRule>();
+		Map<RenderingRule, Integer> ruleIds = new IdentityHashMap<RenderingRule, Integer>();
+		for (RenderingRule r : storage.renderingAttributes.values()) {
+			collectRules(r, rules, ruleIds);
+		}
+		for (TIntObjectHashMap<RenderingRule> map : storage.tagValueGlobalRules) {
+			if (map != null) {
+				for (int key : map.keys()) {
+					collectRules(map.get(key), rules, ruleIds);
+				}
+			}
+		}
+
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		OutputStream fout = new FileOutputStream(tmp);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(storage.sourceHashes.size());
+			for (Entry<String, Long> e : storage.sourceHashes.entrySet()) {
+				writeString(out, e.getKey());
+				out.writeLong(e.getValue());
+			}
+			writeString(out, storage.renderingName);
+			writeString(out, storage.internalRenderingName);
+			writeStrings(out, storage.dictionary.toArray(new String[storage.dictionary.size()]));
+			out.writeInt(storage.renderingConstants.size());
+			for (Entry<String, String> e : storage.renderingConstants.entrySet()) {
+				writeString(out, e.getKey());
+				writeString(out, e.getValue());
+			}
+			writeProperties(out, storage.PROPS);
+
+			out.writeInt(rules.size());
+			for (RenderingRule r : rules) {
+				out.writeBoolean(r.isGroup());
+			}
+			for (RenderingRule r : rules) {
+				writeRule(out, r, ruleIds);
+			}
+			out.writeInt(storage.renderingAttributes.size());
+			for (Entry<String, RenderingRule> e : storage.renderingAttributes.entrySet()) {
+				writeString(out, e.getKey());
+				out.writeInt(ruleIds.get(e.getValue()));
+			}
+			for (TIntObjectHashMap<RenderingRule> map : storage.tagValueGlobalRules) {
+				if (map == null) {
+					out.writeInt(-1);
+					continue;
+				}
+				int[] keys = map.keys();
+				out.writeInt(keys.length);
+				for (int key : keys) {
+					out.writeInt(key);
+					out.writeInt(ruleIds.get(map.get(key)));
+				}
+			}
+			out.flush();
+		} finally {
+			fout.close();
+		}
+		if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+			throw new IOException("Rendering style cache could not be renamed to " + file.getName());
+		}
+	}
+
+	private static void collectRules(RenderingRule root, List<RenderingRule> rules, Map<RenderingRule, Integer> ruleIds) {
+		List<RenderingRule> stack = new ArrayList<RenderingRule>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			RenderingRule r = stack.remove(stack.size() - 1);
+			if (r == null || ruleIds.containsKey(r)) {
+				continue;
+			}
+			ruleIds.put(r, rules.size());
+			rules.add(r);
+			stack.addAll(r.getIfElseChildren());
+			stack.addAll(r.getIfChildren());
+			if (r.getAttributesRef() != null) {
+				stack.addAll(Arrays.asList(r.getAttributesRef()));
+			}
+		}
+	}
+
+	// custom properties are registered in order of ids, so ids are the same as in written storage
+	private static void writeProperties(DataOutputStream out, RenderingRuleStorageProperties props) throws IOException {
+		List<RenderingRuleProperty> custom = props.getCustomRules();
+		out.writeInt(custom.size());
+		for (RenderingRuleProperty p : custom) {
+			out.writeInt(p.getId());
+			writeString(out, p.getAttrName());
+			out.writeInt(p.type);
+			out.writeBoolean(p.input);
+			writeString(out, p.getName());
+			writeString(out, p.getDescription());
+			writeString(out, p.getDefaultValueDescription());
+			writeString(out, p.getCategory());
+			writeStrings(out, p.getPossibleValues());
+		}
+	}
+
+	private static void readProperties(ByteBuffer bf, RenderingRuleStorageProperties props) {
+		RenderingRuleProperty[] custom = new RenderingRuleProperty[bf.getInt()];
+		final Map<RenderingRuleProperty, Integer> ids = new HashMap<RenderingRuleProperty, Integer>();
+		for (int i = 0; i < custom.length; i++) {
+			int id = bf.getInt();
+			RenderingRuleProperty p = new RenderingRuleProperty(readString(bf), bf.getInt(), bf.get() != 0);
+			p.setName(readString(bf));
+			p.setDescription(readString(bf));
+			p.setDefaultValueDescription(readString(bf));
+			p.setCategory(readString(bf));
+			p.setPossibleValues(readStrings(bf));
+			ids.put(p, id);
+			custom[i] = p;
+		}
+		RenderingRuleProperty[] sorted = custom.clone();
+		Arrays.sort(sorted, new Comparator<RenderingRuleProperty>() {
+			@Override
+			public int compare(RenderingRuleProperty o1, RenderingRuleProperty o2) {
+				return ids.get(o1).compareTo(ids.get(o2));
+			}
+		});
+		for (RenderingRuleProperty p : sorted) {
+			props.registerRule(p);
+		}
+		props.customRules.clear();
+		props.customRules.addAll(Arrays.asList(custom));
+	}
+
+	private static void writeRule(DataOutputStream out, RenderingRule r, Map<RenderingRule, Integer> ruleIds)
+			throws IOException {
+		RenderingRuleProperty[] props = r.getProperties();
+		out.writeInt(props.length);
+		for (RenderingRuleProperty p : props) {
+			writeString(out, p.getAttrName());
+		}
+		int[] ints = r.getIntProperties();
+		for (int i = 0; i < props.length; i++) {
+			out.writeInt(ints[i]);
+		}
+		float[] floats = r.getFloatProperties();
+		out.writeBoolean(floats != null);
+		if (floats != null) {
+			for (int i = 0; i < props.length; i++) {
+				out.writeFloat(floats[i]);
+			}
+		}
+		RenderingRule[] refs = r.getAttributesRef();
+		out.writeBoolean(refs != null);
+		if (refs != null) {
+			for (int i = 0; i < props.length; i++) {
+				out.writeInt(refs[i] == null ? -1 : ruleIds.get(refs[i]));
+			}
+		}
+		Map<String, String> attrs = r.getAttributes();
+		out.writeInt(attrs.size());
+		for (Entry<String, String> e : attrs.entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+		writeRuleIds(out, r.getIfElseChildren(), ruleIds);
+		writeRuleIds(out, r.getIfChildren(), ruleIds);
+	}
+
+	private static void readRule(ByteBuffer bf, RenderingRule r, RenderingRule[] rules,
+			RenderingRuleStorageProperties storageProps) {
+		RenderingRuleProperty[] props = new RenderingRuleProperty[bf.getInt()];
+		for (int i = 0; i < props.length; i++) {
+			props[i] = storageProps.get(readString(bf));
+		}
+		int[] ints = new int[props.length];
+		for (int i = 0; i < props.length; i++) {
+			ints[i] = bf.getInt();
+		}
+		float[] floats = null;
+		if (bf.get() != 0) {
+			floats = new float[props.length];
+			for (int i = 0; i < props.length; i++) {
+				floats[i] = bf.getFloat();
+			}
+		}
+		RenderingRule[] refs = null;
+		if (bf.get() != 0) {
+			refs = new RenderingRule[props.length];
+			for (int i = 0; i < props.length; i++) {
+				int id = bf.getInt();
+				refs[i] = id < 0 ? null : rules[id];
+			}
+		}
+		r.setValues(props, ints, floats, refs);
+		int attrs = bf.getInt();
+		if (attrs > 0) {
+			Map<String, String> m = new LinkedHashMap<String, String>();
+			for (int i = 0; i < attrs; i++) {
+				m.put(readString(bf), readString(bf));
+			}
+			r.storeAttributes(m);
+		}
+		int ifElse = bf.getInt();
+		for (int i = 0; i < ifElse; i++) {
+			r.addIfElseChildren(rules[bf.getInt()]);
+		}
+		int ifChildren = bf.getInt();
+		for (int i = 0; i < ifChildren; i++) {
+			r.addIfChildren(rules[bf.getInt()]);
+		}
+	}
+
+	private static void writeRuleIds(DataOutputStream out, List<RenderingRule> list, Map<RenderingRule, Integer> ruleIds)
+			throws IOException {
+		out.writeInt(list.size());
+		for (RenderingRule r : list) {
+			out.writeInt(ruleIds.get(r));
+		}
+	}
+
+	// strings are written with length, -1 is null
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeInt(s == null ? -1 : s.length());
+		if (s != null) {
+			out.writeChars(s);
+		}
+	}
+
+	private static String readString(ByteBuffer bf) {
+		int l = bf.getInt();
+		if (l < 0) {
+			return null;
+		}
+		char[] cs = new char[l];
+		for (int i = 0; i < cs.length; i++) {
+			cs[i] = bf.getChar();
+		}
+		return new String(cs);
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] ar) throws IOException {
+		out.writeInt(ar == null ? -1 : ar.length);
+		if (ar != null) {
+			for (String s : ar) {
+				writeString(out, s);
+			}
+		}
+	}
+
+	private static String[] readStrings(ByteBuffer bf) {
+		int l = bf.getInt();
+		if (l < 0) {
+			return null;
+		}
+		String[] ar = new String[l];
+		for (int i = 0; i < l; i++) {
+			ar[i] = readString(bf);
+		}
+		return ar;
+	}
+}
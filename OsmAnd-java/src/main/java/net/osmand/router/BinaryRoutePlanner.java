@@ -12,6 +12,8 @@ import java.util.PriorityQueue;
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.RouteSegmentStore.SegmentHeap;
+import net.osmand.router.RouteSegmentStore.SegmentMap;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -70,12 +72,11 @@ public class BinaryRoutePlanner {
 		// measure time
 		ctx.timeToLoad = 0;
 		ctx.visitedSegments = 0;
-		ctx.memoryOverhead = 1000;
+		ctx.memoryOverhead = 1000 + ctx.getTileSnapshotMemory();
 		ctx.timeToCalculate = System.nanoTime();
 
 
 		// Initializing priority queue to visit way segments 
-		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
 		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
 		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
 
@@ -85,90 +86,572 @@ public class BinaryRoutePlanner {
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
+		SearchGraph graph;
+		if (ctx.useSegmentStore) {
+			graph = new SegmentStoreGraph(ctx, graphDirectSegments, graphReverseSegments);
+		} else {
+			graph = new ObjectSegmentsGraph(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+					visitedOppositeSegments);
+		}
+		FinalRouteSegment finalSegment = searchRoute(ctx, start, end, graph);
+		graph.printDebugInformation();
+		return finalSegment;
+	}
 
+	private FinalRouteSegment searchRoute(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			SearchGraph graph) throws InterruptedException, IOException {
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
-
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
 		boolean onlyForward = ctx.getPlanRoadDirection() > 0;
-		while (!graphSegments.isEmpty()) {
-			RouteSegment segment = graphSegments.poll();
-			// use accumulative approach
-			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
-					(graphDirectSegments.size() +
-					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
-			
-			if (TRACE_ROUTING) {
-				printRoad(">", segment, !forwardSearch);
-			}
-//			if(segment.getParentRoute() != null)
-//			System.out.println(segment.getRoad().getId() + " - " + segment.getParentRoute().getRoad().getId());
-			if (segment instanceof FinalRouteSegment) {
-				if (RoutingContext.SHOW_GC_SIZE) {
-					log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
-					printMemoryConsumption("Memory occupied after calculation : ");
+		// search itself stays in this thread, tiles of waiting frontier are decoded in background
+		RouteTilePrefetcher prefetcher = null;
+		if (ctx.config.parallelBidirectionalSearch && ctx.planRouteIn2Directions()) {
+			prefetcher = new RouteTilePrefetcher(ctx);
+			prefetcher.start();
+		}
+		try {
+			while (!graph.isEmpty(!forwardSearch)) {
+				graph.poll(!forwardSearch);
+				// use accumulative approach
+				ctx.memoryOverhead = graph.getMemoryOverhead() + ctx.getTileSnapshotMemory();
+				finalSegment = graph.getFinalSegment();
+				if (finalSegment != null) {
+					if (RoutingContext.SHOW_GC_SIZE) {
+						log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
+						printMemoryConsumption("Memory occupied after calculation : ");
+					}
+					if (TRACE_ROUTING) {
+						println("Final segment found");
+					}
+					break;
 				}
-				finalSegment = (FinalRouteSegment) segment;
-				if (TRACE_ROUTING) {
-					println("Final segment found");
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95 && RoutingContext.SHOW_GC_SIZE) {
+					printMemoryConsumption("Memory occupied before exception : ");
+				}
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				ctx.visitedSegments++;
+				if (forwardSearch) {
+					boolean doNotAddIntersections = onlyBackward;
+					graph.processSegment(false, doNotAddIntersections);
+				} else {
+					boolean doNotAddIntersections = onlyForward;
+					graph.processSegment(true, doNotAddIntersections);
+				}
+				graph.updateProgress();
+
+				graph.checkIfEmpty(ctx.getPlanRoadDirection() <= 0, true, end, "Route is not found to selected target point.");
+				graph.checkIfEmpty(ctx.getPlanRoadDirection() >= 0, false, start, "Route is not found from selected start point.");
+				if (ctx.planRouteIn2Directions()) {
+					forwardSearch = graph.compareQueueHeads() < 0;
+//					if (graphDirectSegments.size() * 2 > graphReverseSegments.size()) {
+//						forwardSearch = false;
+//					} else if (graphDirectSegments.size() < 2 * graphReverseSegments.size()) {
+//						forwardSearch = true;
+//					}
+				} else {
+					// different strategy : use onedirectional graph
+					forwardSearch = onlyForward;
+					if (onlyBackward && !graph.isEmpty(false)) {
+						forwardSearch = true;
+					}
+					if (onlyForward && !graph.isEmpty(true)) {
+						forwardSearch = false;
+					}
+				}
+				// tiles around queue heads are kept by eviction strategy
+				ctx.setQueueHeads(graph.peekRoad(false), graph.peekSegmentStart(false), graph.peekRoad(true),
+						graph.peekSegmentStart(true));
+				if (prefetcher != null) {
+					prefetcher.prefetch(graph.peekRoad(forwardSearch));
+				}
+				// check if interrupted
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
 				}
-				break;
 			}
-			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95 && RoutingContext.SHOW_GC_SIZE) {
-				printMemoryConsumption("Memory occupied before exception : ");
+		} finally {
+			if (prefetcher != null) {
+				prefetcher.stop();
 			}
-			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
-				throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+		}
+		return finalSegment;
+	}
+
+	/**
+	 * Queues and visited segments of both search directions, A* loop ({@link #searchRoute}) runs over it.
+	 * Segment polled from the queue becomes current segment which is checked and processed.
+	 */
+	private interface SearchGraph {
+
+		boolean isEmpty(boolean reverseWaySearch);
+
+		void poll(boolean reverseWaySearch);
+
+		// current segment if it is final or null
+		FinalRouteSegment getFinalSegment();
+
+		void processSegment(boolean reverseWaySearch, boolean doNotAddIntersections) throws IOException;
+
+		int getMemoryOverhead();
+
+		void updateProgress();
+
+		void checkIfEmpty(boolean allowDirection, boolean reverseWaySearch, RouteSegmentPoint pnt, String msg);
+
+		// compares heads of queues by g + 0.5 h, negative if head of direct queue goes first
+		int compareQueueHeads();
+
+		RouteDataObject peekRoad(boolean reverseWaySearch);
+
+		// segment start of the queue head, -1 if queue is empty
+		int peekSegmentStart(boolean reverseWaySearch);
+
+		void printDebugInformation();
+	}
+
+	private class ObjectSegmentsGraph implements SearchGraph {
+		private final RoutingContext ctx;
+		private final Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
+		private final PriorityQueue<RouteSegment> graphDirectSegments;
+		private final PriorityQueue<RouteSegment> graphReverseSegments;
+		private final TLongObjectHashMap<RouteSegment> visitedDirectSegments;
+		private final TLongObjectHashMap<RouteSegment> visitedOppositeSegments;
+		private RouteSegment segment;
+
+		ObjectSegmentsGraph(RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
+				PriorityQueue<RouteSegment> graphReverseSegments, TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+				TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+			this.ctx = ctx;
+			this.graphDirectSegments = graphDirectSegments;
+			this.graphReverseSegments = graphReverseSegments;
+			this.visitedDirectSegments = visitedDirectSegments;
+			this.visitedOppositeSegments = visitedOppositeSegments;
+		}
+
+		@Override
+		public boolean isEmpty(boolean reverseWaySearch) {
+			return (reverseWaySearch ? graphReverseSegments : graphDirectSegments).isEmpty();
+		}
+
+		@Override
+		public void poll(boolean reverseWaySearch) {
+			segment = (reverseWaySearch ? graphReverseSegments : graphDirectSegments).poll();
+			if (TRACE_ROUTING) {
+				printRoad(">", segment, reverseWaySearch);
 			}
-			ctx.visitedSegments++;
-			if (forwardSearch) {
-				boolean doNotAddIntersections = onlyBackward;
-				processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments,
-						segment, visitedOppositeSegments, doNotAddIntersections);
+		}
+
+		@Override
+		public FinalRouteSegment getFinalSegment() {
+			return segment instanceof FinalRouteSegment ? (FinalRouteSegment) segment : null;
+		}
+
+		@Override
+		public void processSegment(boolean reverseWaySearch, boolean doNotAddIntersections) throws IOException {
+			if (!reverseWaySearch) {
+				processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments, segment,
+						visitedOppositeSegments, doNotAddIntersections);
 			} else {
-				boolean doNotAddIntersections = onlyForward;
 				processRouteSegment(ctx, true, graphReverseSegments, visitedOppositeSegments, segment,
 						visitedDirectSegments, doNotAddIntersections);
 			}
+		}
+
+		@Override
+		public int getMemoryOverhead() {
+			return (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD
+					+ (graphDirectSegments.size() + graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+		}
+
+		@Override
+		public void updateProgress() {
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
+		}
+
+		@Override
+		public void checkIfEmpty(boolean allowDirection, boolean reverseWaySearch, RouteSegmentPoint pnt, String msg) {
+			checkIfGraphIsEmpty(ctx, allowDirection, reverseWaySearch ? graphReverseSegments : graphDirectSegments, pnt,
+					reverseWaySearch ? visitedOppositeSegments : visitedDirectSegments, msg);
+		}
+
+		@Override
+		public int compareQueueHeads() {
+			return nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(), graphReverseSegments.peek());
+		}
+
+		@Override
+		public RouteDataObject peekRoad(boolean reverseWaySearch) {
+			RouteSegment s = (reverseWaySearch ? graphReverseSegments : graphDirectSegments).peek();
+			return s == null ? null : s.road;
+		}
 
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, graphReverseSegments, end, visitedOppositeSegments,
-					"Route is not found to selected target point.");
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, graphDirectSegments, start, visitedDirectSegments,
-					"Route is not found from selected start point.");
-			if (ctx.planRouteIn2Directions()) {
-				forwardSearch = (nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(), graphReverseSegments.peek()) < 0);
-//				if (graphDirectSegments.size() * 2 > graphReverseSegments.size()) {
-//					forwardSearch = false;
-//				} else if (graphDirectSegments.size() < 2 * graphReverseSegments.size()) {
-//					forwardSearch = true;
-//				}
+		@Override
+		public int peekSegmentStart(boolean reverseWaySearch) {
+			RouteSegment s = (reverseWaySearch ? graphReverseSegments : graphDirectSegments).peek();
+			return s == null ? -1 : s.getSegmentStart();
+		}
+
+		@Override
+		public void printDebugInformation() {
+			printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+					visitedOppositeSegments);
+		}
+	}
+
+	/**
+	 * Segments are kept in {@link RouteSegmentStore} and referenced by handles. Queues are kept the same way as
+	 * {@link PriorityQueue} keeps them (including segments added several times), so segments are visited in the
+	 * same order as by {@link ObjectSegmentsGraph} and route is the same.
+	 */
+	private class SegmentStoreGraph implements SearchGraph {
+		private final RoutingContext ctx;
+		private final RouteSegmentStore store;
+		private final SegmentHeap directHeap;
+		private final SegmentHeap reverseHeap;
+		private final SegmentMap visitedDirectSegments = new SegmentMap();
+		private final SegmentMap visitedOppositeSegments = new SegmentMap();
+		private int segment = RouteSegmentStore.NULL;
+
+		SegmentStoreGraph(RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
+				PriorityQueue<RouteSegment> graphReverseSegments) {
+			this.ctx = ctx;
+			store = new RouteSegmentStore(ctx);
+			directHeap = store.new SegmentHeap();
+			reverseHeap = store.new SegmentHeap();
+			// queue array is a valid heap, so heaps get the same order
+			for (RouteSegment s : graphDirectSegments) {
+				directHeap.add(store.importSegment(s));
+			}
+			for (RouteSegment s : graphReverseSegments) {
+				reverseHeap.add(store.importSegment(s));
+			}
+			graphDirectSegments.clear();
+			graphReverseSegments.clear();
+		}
+
+		@Override
+		public boolean isEmpty(boolean reverseWaySearch) {
+			return (reverseWaySearch ? reverseHeap : directHeap).isEmpty();
+		}
+
+		@Override
+		public void poll(boolean reverseWaySearch) {
+			segment = (reverseWaySearch ? reverseHeap : directHeap).poll();
+		}
+
+		@Override
+		public FinalRouteSegment getFinalSegment() {
+			return store.isFinal(segment) ? (FinalRouteSegment) store.materialize(segment) : null;
+		}
+
+		@Override
+		public void processSegment(boolean reverseWaySearch, boolean doNotAddIntersections) throws IOException {
+			boolean processed;
+			if (!reverseWaySearch) {
+				processed = processRouteSegment(ctx, false, store, directHeap, visitedDirectSegments, segment,
+						visitedOppositeSegments, doNotAddIntersections);
+			} else {
+				processed = processRouteSegment(ctx, true, store, reverseHeap, visitedOppositeSegments, segment,
+						visitedDirectSegments, doNotAddIntersections);
+			}
+			if (!processed) {
+				// segment is not referenced (it is not visited and has no children)
+				store.release(segment);
+			}
+		}
+
+		@Override
+		public int getMemoryOverhead() {
+			long memory = store.getEstimatedMemory() + directHeap.getEstimatedMemory() + reverseHeap.getEstimatedMemory()
+					+ visitedDirectSegments.getEstimatedMemory() + visitedOppositeSegments.getEstimatedMemory();
+			return (int) Math.min(memory, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public void updateProgress() {
+			updateCalculationProgress(ctx, store, directHeap, false);
+			updateCalculationProgress(ctx, store, reverseHeap, true);
+		}
+
+		@Override
+		public void checkIfEmpty(boolean allowDirection, boolean reverseWaySearch, RouteSegmentPoint pnt, String msg) {
+			checkIfGraphIsEmpty(ctx, allowDirection, store, reverseWaySearch ? reverseHeap : directHeap, pnt,
+					reverseWaySearch ? visitedOppositeSegments : visitedDirectSegments, msg);
+		}
+
+		@Override
+		public int compareQueueHeads() {
+			int d = directHeap.peek();
+			int r = reverseHeap.peek();
+			if (d == RouteSegmentStore.NULL || r == RouteSegmentStore.NULL) {
+				return d == RouteSegmentStore.NULL ? 1 : -1;
+			}
+			return roadPriorityComparator(store.getDistanceFromStart(d), store.getDistanceToEnd(d),
+					store.getDistanceFromStart(r), store.getDistanceToEnd(r), 0.5);
+		}
+
+		@Override
+		public RouteDataObject peekRoad(boolean reverseWaySearch) {
+			int h = (reverseWaySearch ? reverseHeap : directHeap).peek();
+			return h == RouteSegmentStore.NULL ? null : store.getRoad(h);
+		}
+
+		@Override
+		public int peekSegmentStart(boolean reverseWaySearch) {
+			int h = (reverseWaySearch ? reverseHeap : directHeap).peek();
+			return h == RouteSegmentStore.NULL ? -1 : store.getSegmentStart(h);
+		}
+
+		@Override
+		public void printDebugInformation() {
+			printDebugMemoryInformation(ctx, null, null, null, null);
+			printInfo("Segment store : " + store.size() + " segments, queues " + directHeap.size() + "/"
+					+ reverseHeap.size() + ", visited " + visitedDirectSegments.size() + "/"
+					+ visitedOppositeSegments.size() + ", estimated memory " + (ctx.memoryOverhead >> 10) + " KB");
+		}
+	}
+
+	/**
+	 * Returns false if segment was not visited (the same as processRouteSegment with objects)
+	 */
+	private boolean processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch, RouteSegmentStore store,
+			SegmentHeap graphSegments, SegmentMap visitedSegments, int segment, SegmentMap oppositeSegments,
+			boolean doNotAddIntersections) throws IOException {
+		final RouteDataObject road = store.getRoad(segment);
+		final boolean positive = store.isPositive(segment);
+		short segmentPoint = store.getSegmentStart(segment);
+		boolean initDirectionAllowed = checkOneway(ctx, reverseWaySearch, road, positive)
+				&& !visitedSegments.containsKey(calculateRoutePointId(road, positive ? segmentPoint : segmentPoint - 1, positive));
+		if (!initDirectionAllowed) {
+			return false;
+		}
+		boolean directionAllowed = true;
+		float obstaclesTime = 0;
+		float segmentDist = 0;
+		boolean[] processFurther = new boolean[1];
+		int previous = segment;
+		while (directionAllowed) {
+			// mark previous interval as visited and move to next intersection
+			short prevInd = segmentPoint;
+			if (positive) {
+				segmentPoint++;
 			} else {
-				// different strategy : use onedirectional graph
-				forwardSearch = onlyForward;
-				if (onlyBackward && !graphDirectSegments.isEmpty()) {
-					forwardSearch = true;
+				segmentPoint--;
+			}
+			if (segmentPoint < 0 || segmentPoint >= road.getPointsLength()) {
+				directionAllowed = false;
+				continue;
+			}
+			visitedSegments.put(calculateRoutePointId(road, positive ? segmentPoint - 1 : segmentPoint, positive),
+					previous != RouteSegmentStore.NULL ? previous : segment);
+			final int x = road.getPoint31XTile(segmentPoint);
+			final int y = road.getPoint31YTile(segmentPoint);
+			final int prevx = road.getPoint31XTile(prevInd);
+			final int prevy = road.getPoint31YTile(prevInd);
+			if (x == prevx && y == prevy) {
+				continue;
+			}
+			segmentDist += squareRootDist(x, y, prevx, prevy);
+			double obstacle = ctx.getRouter().defineRoutingObstacle(road, segmentPoint);
+			if (obstacle < 0) {
+				directionAllowed = false;
+				continue;
+			}
+			double heightObstacle = ctx.getRouter().defineHeightObstacle(road, !reverseWaySearch ? prevInd : segmentPoint,
+					!reverseWaySearch ? segmentPoint : prevInd);
+			if (heightObstacle < 0) {
+				directionAllowed = false;
+				continue;
+			}
+			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, store, graphSegments, segment,
+					oppositeSegments, segmentPoint, segmentDist, obstaclesTime);
+			obstaclesTime += obstacle;
+			obstaclesTime += heightObstacle;
+			if (alreadyVisited) {
+				directionAllowed = false;
+				continue;
+			}
+			final RouteSegment roadNext = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
+			float distStartObstacles = store.getDistanceFromStart(segment)
+					+ calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+			if (ctx.precalculatedRouteDirection != null && ctx.precalculatedRouteDirection.isFollowNext()) {
+				distStartObstacles = ctx.precalculatedRouteDirection.getDeviationDistance(x, y) / ctx.getRouter().getMaxDefaultSpeed();
+			}
+			previous = processIntersections(ctx, store, graphSegments, visitedSegments, distStartObstacles,
+					segment, segmentPoint, roadNext, reverseWaySearch, doNotAddIntersections, processFurther);
+			if (!processFurther[0]) {
+				directionAllowed = false;
+				continue;
+			}
+		}
+		if (ctx.visitor != null) {
+			ctx.visitor.visitSegment(store.materialize(segment), segmentPoint, true);
+		}
+		return true;
+	}
+
+	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
+			RouteSegmentStore store, SegmentHeap graphSegments, int segment, SegmentMap oppositeSegments,
+			int segmentPoint, float segmentDist, float obstaclesTime) {
+		RouteDataObject road = store.getRoad(segment);
+		boolean positive = store.isPositive(segment);
+		int opposite = oppositeSegments.get(calculateRoutePointId(road, positive ? segmentPoint - 1 : segmentPoint, !positive));
+		if (opposite != RouteSegmentStore.NULL) {
+			int segmentParent = store.getParentDiffId(segment);
+			int oppositeParent = store.getParentDiffId(opposite);
+			int to = reverseWaySearch ? segmentParent : oppositeParent;
+			int from = !reverseWaySearch ? segmentParent : oppositeParent;
+			if (checkViaRestrictions(from == RouteSegmentStore.NULL ? null : store.getRoad(from),
+					to == RouteSegmentStore.NULL ? null : store.getRoad(to))) {
+				int frs = store.createFinal(road, segmentPoint, reverseWaySearch, opposite);
+				float distStartObstacles = store.getDistanceFromStart(segment)
+						+ calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+				store.setParent(frs, segment, segmentPoint);
+				store.setDistance(frs, store.getDistanceFromStart(opposite) + distStartObstacles, 0);
+				graphSegments.add(frs);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int processIntersections(RoutingContext ctx, RouteSegmentStore store, SegmentHeap graphSegments,
+			SegmentMap visitedSegments, float distFromStart, int segment, short segmentPoint,
+			RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, boolean[] processFurther) {
+		RouteDataObject road = store.getRoad(segment);
+		boolean positive = store.isPositive(segment);
+		int itself = RouteSegmentStore.NULL;
+		processFurther[0] = true;
+		Iterator<RouteSegment> nextIterator = null;
+		if (inputNext == null || inputNext.getRoad().getId() != road.getId() || inputNext.next != null) {
+			int parent = store.getParentDiffId(segment);
+			if (proccessRestrictions(ctx, road, parent == RouteSegmentStore.NULL ? null : store.getRoad(parent),
+					inputNext, reverseWaySearch)) {
+				nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+			}
+		}
+		int targetEndX = reverseWaySearch ? ctx.startX : ctx.targetX;
+		int targetEndY = reverseWaySearch ? ctx.startY : ctx.targetY;
+		float distanceToEnd = h(ctx, road.getPoint31XTile(segmentPoint), road.getPoint31YTile(segmentPoint),
+				targetEndX, targetEndY);
+		// segment object is created only to calculate turn time
+		RouteSegment segmentObject = null;
+		RouteSegment next = inputNext;
+		boolean hasNext = nextIterator != null ? nextIterator.hasNext() : next != null;
+		while (hasNext) {
+			if (nextIterator != null) {
+				next = nextIterator.next();
+			}
+			if (next.getSegmentStart() == segmentPoint && next.getRoad().getId() == road.id) {
+				// find segment itself and process it immediately
+				if (!isEndOfRoad(next, positive)) {
+					itself = store.create(next.getRoad(), segmentPoint, (byte) (positive ? 1 : -1));
+					store.setDistance(itself, distFromStart, distanceToEnd);
+					store.setParent(itself, segment, segmentPoint);
 				}
-				if (onlyForward && !graphReverseSegments.isEmpty()) {
-					forwardSearch = false;
+			} else if (!doNotAddIntersections) {
+				if (segmentObject == null) {
+					segmentObject = store.toSimpleSegment(segment);
 				}
+				processOneRoadIntersection(ctx, store, graphSegments, visitedSegments, distFromStart,
+						distanceToEnd, segment, segmentObject, segmentPoint, next, true);
+				processOneRoadIntersection(ctx, store, graphSegments, visitedSegments, distFromStart,
+						distanceToEnd, segment, segmentObject, segmentPoint, next, false);
 			}
+			// iterate to next road
+			if (nextIterator == null) {
+				next = next.next;
+				hasNext = next != null;
+			} else {
+				hasNext = nextIterator.hasNext();
+			}
+		}
+		return itself;
+	}
 
-			if (forwardSearch) {
-				graphSegments = graphDirectSegments;
+	private static boolean isEndOfRoad(RouteSegment s, boolean positive) {
+		return positive ? s.getSegmentStart() == s.getRoad().getPointsLength() - 1 : s.getSegmentStart() == 0;
+	}
+
+	private void processOneRoadIntersection(RoutingContext ctx, RouteSegmentStore store, SegmentHeap graphSegments,
+			SegmentMap visitedSegments, float distFromStart, float distanceToEnd,
+			int segment, RouteSegment segmentObject, int segmentPoint, RouteSegment next, boolean positive) {
+		if (isEndOfRoad(next, positive)) {
+			return;
+		}
+		distFromStart += (float) ctx.getRouter().calculateTurnTime(next,
+				positive ? next.getRoad().getPointsLength() - 1 : 0, segmentObject, segmentPoint);
+		long id = calculateRoutePointId(next.getRoad(), positive ? next.getSegmentStart() : next.getSegmentStart() - 1,
+				positive);
+		if (visitedSegments.containsKey(id)) {
+			return;
+		}
+		// segment could be queued several times, duplicates with worse priority are skipped when polled
+		int h = store.create(next.getRoad(), next.getSegmentStart(), (byte) (positive ? 1 : -1));
+		store.setDistance(h, distFromStart, distanceToEnd);
+		store.setParent(h, segment, segmentPoint);
+		graphSegments.add(h);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentStore store, SegmentHeap graphSegments,
+			boolean reverseWaySearch) {
+		if (ctx.calculationProgress != null) {
+			int peek = graphSegments.peek();
+			if (!reverseWaySearch) {
+				ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+				if (peek != RouteSegmentStore.NULL && ctx.getPlanRoadDirection() >= 0) {
+					ctx.calculationProgress.distanceFromBegin = Math.max(store.getDistanceFromStart(peek),
+							ctx.calculationProgress.distanceFromBegin);
+					ctx.calculationProgress.directDistance = store.getDistanceFromStart(peek) + store.getDistanceToEnd(peek);
+				}
 			} else {
-				graphSegments = graphReverseSegments;
+				ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+				if (peek != RouteSegmentStore.NULL && ctx.getPlanRoadDirection() <= 0) {
+					float dist = store.getDistanceFromStart(peek) + store.getDistanceToEnd(peek);
+					ctx.calculationProgress.distanceFromEnd = Math.max(dist, ctx.calculationProgress.distanceFromEnd);
+					ctx.calculationProgress.reverseDistance = dist;
+				}
 			}
-			// check if interrupted
-			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
-				throw new InterruptedException("Route calculation interrupted");
+		}
+	}
+
+	private void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection, RouteSegmentStore store,
+			SegmentHeap graphSegments, RouteSegmentPoint pnt, SegmentMap visited, String msg) {
+		if (allowDirection && graphSegments.isEmpty() && pnt.others != null) {
+			Iterator<RouteSegmentPoint> pntIterator = pnt.others.iterator();
+			while (pntIterator.hasNext()) {
+				RouteSegmentPoint next = pntIterator.next();
+				boolean visitedAlready = false;
+				if (next.getSegmentStart() > 0 && visited.containsKey(calculateRoutePointId(next, false))) {
+					visitedAlready = true;
+				} else if (next.getSegmentStart() < next.getRoad().getPointsLength() - 1
+						&& visited.containsKey(calculateRoutePointId(next, true))) {
+					visitedAlready = true;
+				}
+				pntIterator.remove();
+				if (!visitedAlready) {
+					float estimatedDistance = estimatedDistance(ctx, ctx.targetX, ctx.targetY, ctx.startX, ctx.startY);
+					for (int i = 0; i < 2; i++) {
+						boolean positive = i == 0;
+						if (!isEndOfRoad(next, positive)) {
+							int h = store.create(next.getRoad(), next.getSegmentStart(), (byte) (positive ? 1 : -1));
+							store.setDistance(h, 0, estimatedDistance);
+							graphSegments.add(h);
+						}
+					}
+					println("Reiterate point with new start/destination " + next.getRoad());
+					break;
+				}
+			}
+			if (graphSegments.isEmpty()) {
+				throw new IllegalArgumentException(msg);
 			}
 		}
-		printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
-		return finalSegment;
 	}
 
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
@@ -241,6 +724,24 @@ public class BinaryRoutePlanner {
 	}
 
 
+	/**
+	 * Returns 1 if positive direction of start segment is close to initial direction, -1 if negative direction is close
+	 * and 0 if none of them or initial direction is not set
+	 */
+	static int getInitialDirection(RoutingContext ctx, RouteSegment start) {
+		if (ctx.config.initialDirection != null) {
+			// mark here as positive for further check
+			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
+			double diff = plusDir - ctx.config.initialDirection;
+			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
+				return 1;
+			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
+				return -1;
+			}
+		}
+		return 0;
+	}
+
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
 			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
@@ -249,18 +750,14 @@ public class BinaryRoutePlanner {
 		RouteSegment endPos = initRouteSegment(ctx, end, true);
 		RouteSegment endNeg = initRouteSegment(ctx, end, false);
 		// for start : f(start) = g(start) + h(start) = 0 + h(start) = h(start)
-		if (ctx.config.initialDirection != null) {
-			// mark here as positive for further check
-			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
-			double diff = plusDir - ctx.config.initialDirection;
-			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
-				if (startNeg != null) {
-					startNeg.distanceFromStart += 500;
-				}
-			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
-				if (startPos != null) {
-					startPos.distanceFromStart += 500;
-				}
+		int initialDirection = getInitialDirection(ctx, start);
+		if (initialDirection > 0) {
+			if (startNeg != null) {
+				startNeg.distanceFromStart += 500;
+			}
+		} else if (initialDirection < 0) {
+			if (startPos != null) {
+				startPos.distanceFromStart += 500;
 			}
 		}
 		if (recalculationEnd != null) {
@@ -306,20 +803,29 @@ public class BinaryRoutePlanner {
 
 	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
 			PriorityQueue<RouteSegment> graphReverseSegments) {
+		updateCalculationProgress(ctx, graphDirectSegments, false);
+		updateCalculationProgress(ctx, graphReverseSegments, true);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+			boolean reverseWaySearch) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (graphDirectSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek();
-				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
-						ctx.calculationProgress.distanceFromBegin);
-				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
-			}
-			if (graphReverseSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek();
-				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+			if (!reverseWaySearch) {
+				ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+				if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
+					RouteSegment peek = graphSegments.peek();
+					ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+							ctx.calculationProgress.distanceFromBegin);
+					ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
+			} else {
+				ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+				if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
+					RouteSegment peek = graphSegments.peek();
+					ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
-				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+					ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
 			}
 		}
 	}
@@ -377,7 +883,7 @@ public class BinaryRoutePlanner {
 		printInfo("Current loaded tiles : " + ctx.getCurrentlyLoadedTiles() + ", maximum loaded tiles " + maxLoadedTiles);
 		printInfo("Loaded tiles " + ctx.loadedTiles + " (distinct " + ctx.distinctLoadedTiles + "), unloaded tiles " + ctx.unloadedTiles +
 				", loaded more than once same tiles "
-				+ ctx.loadedPrevUnloadedTiles);
+				+ ctx.loadedPrevUnloadedTiles + ", reloaded tiles " + ctx.reloadedTiles);
 		printInfo("Visited roads " + ctx.visitedSegments + ", relaxed roads " + ctx.relaxedSegments);
 		if (graphDirectSegments != null && graphReverseSegments != null) {
 			printInfo("Priority queues sizes : " + graphDirectSegments.size() + "/" + graphReverseSegments.size());
@@ -389,8 +895,11 @@ public class BinaryRoutePlanner {
 	}
 
 
+	/**
+	 * Returns false if segment was already visited or movement in its direction is not allowed
+	 */
 	@SuppressWarnings("unused")
-	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
+	boolean processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
 			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
 		final RouteDataObject road = segment.road;
@@ -403,7 +912,7 @@ public class BinaryRoutePlanner {
 			if (TRACE_ROUTING) {
 				println("  >> Already visited");
 			}
-			return;
+			return false;
 		}
 		// Go through all point of the way and find ways to continue
 		// ! Actually there is small bug when there is restriction to move forward on the way (it doesn't take into account)
@@ -494,40 +1003,47 @@ public class BinaryRoutePlanner {
 		if (initDirectionAllowed && ctx.visitor != null) {
 			ctx.visitor.visitSegment(segment, segmentPoint, true);
 		}
+		return true;
 	}
 
 	private boolean checkIfInitialMovementAllowedOnSegment(final RoutingContext ctx, boolean reverseWaySearch,
 			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, final RouteDataObject road) {
-		boolean directionAllowed;
+		boolean directionAllowed = checkOneway(ctx, reverseWaySearch, road, segment.isPositive());
+		if (directionAllowed && visitedSegments.containsKey(calculateRoutePointId(segment, segment.isPositive()))) {
+			directionAllowed = false;
+		}
+		return directionAllowed;
+	}
+
+	private boolean checkOneway(final RoutingContext ctx, boolean reverseWaySearch, RouteDataObject road, boolean positive) {
 		int oneway = ctx.getRouter().isOneWay(road);
 		// use positive direction as agreed
 		if (!reverseWaySearch) {
-			if (segment.isPositive()) {
-				directionAllowed = oneway >= 0;
+			if (positive) {
+				return oneway >= 0;
 			} else {
-				directionAllowed = oneway <= 0;
+				return oneway <= 0;
 			}
 		} else {
-			if (segment.isPositive()) {
-				directionAllowed = oneway <= 0;
+			if (positive) {
+				return oneway <= 0;
 			} else {
-				directionAllowed = oneway >= 0;
+				return oneway >= 0;
 			}
 		}
-
-		if (directionAllowed && visitedSegments.containsKey(calculateRoutePointId(segment, segment.isPositive()))) {
-			directionAllowed = false;
-		}
-		return directionAllowed;
 	}
 
 	private boolean checkViaRestrictions(RouteSegment from, RouteSegment to) {
+		return checkViaRestrictions(from == null ? null : from.getRoad(), to == null ? null : to.getRoad());
+	}
+
+	private boolean checkViaRestrictions(RouteDataObject from, RouteDataObject to) {
 		if (from != null && to != null) {
-			long fid = to.getRoad().getId();
-			for (int i = 0; i < from.getRoad().getRestrictionLength(); i++) {
-				long id = from.getRoad().getRestrictionId(i);
+			long fid = to.getId();
+			for (int i = 0; i < from.getRestrictionLength(); i++) {
+				long id = from.getRestrictionId(i);
 				if (fid == id) {
-					int tp = from.getRoad().getRestrictionType(i);
+					int tp = from.getRestrictionType(i);
 					if (tp == MapRenderingTypes.RESTRICTION_NO_LEFT_TURN ||
 							tp == MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN ||
 							tp == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON ||
@@ -578,7 +1094,7 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
+	float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
 		float priority = ctx.getRouter().defineSpeedPriority(road);
 		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
 		if (speed == 0) {
@@ -591,7 +1107,7 @@ public class BinaryRoutePlanner {
 		return obstaclesTime + distOnRoadToPass / speed;
 	}
 
-	private long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
+	long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
 		if (intervalId < 0) {
 			// should be assert
 			throw new IllegalStateException("Assert failed");
@@ -612,20 +1128,24 @@ public class BinaryRoutePlanner {
 
 
 	private boolean proccessRestrictions(RoutingContext ctx, RouteSegment segment, RouteSegment inputNext, boolean reverseWay) {
+		RouteSegment parent = getParentDiffId(segment);
+		return proccessRestrictions(ctx, segment.getRoad(), parent == null ? null : parent.getRoad(), inputNext, reverseWay);
+	}
+
+	private boolean proccessRestrictions(RoutingContext ctx, RouteDataObject road, RouteDataObject parentRoad,
+			RouteSegment inputNext, boolean reverseWay) {
 		if (!ctx.getRouter().restrictionsAware()) {
 			return false;
 		}
-		RouteDataObject road = segment.getRoad();
-		RouteSegment parent = getParentDiffId(segment);
 		if (!reverseWay && road.getRestrictionLength() == 0 &&
-				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
+				(parentRoad == null || parentRoad.getRestrictionLength() == 0)) {
 			return false;
 		}
 		ctx.segmentsToVisitPrescripted.clear();
 		ctx.segmentsToVisitNotForbidden.clear();
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
-		if (parent != null) {
-			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
+		if (parentRoad != null) {
+			processRestriction(ctx, inputNext, reverseWay, road.id, parentRoad);
 		}
 		return true;
 	}
@@ -0,0 +1,613 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RouteSegmentStore.SegmentMap;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Contraction hierarchy of routing graph of one obf file built for one routing profile
+ * by {@link ContractionHierarchyBuilder} and stored as sidecar file next to the obf.
+ * Nodes are road junctions and road ends, original edges are parts of roads between them.
+ * Query is bidirectional dijkstra which goes only upward in the hierarchy. Turn costs are not taken into account,
+ * route which breaks turn restrictions is rejected (so it is calculated by A*).
+ */
+public class ContractionHierarchy {
+
+	protected static final Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+
+	public static final String SIDECAR_EXT = ".chg";
+	private static final int MAGIC = 0x4f434847;
+	private static final int VERSION = 1;
+
+	private final String routerName;
+	private final String routerParameters;
+	private final long dateCreated;
+	final int[] nodeX;
+	final int[] nodeY;
+	// upward edges u -> v (rank(v) > rank(u)) stored at u
+	final EdgeList upOut;
+	// upward edges u -> v (rank(u) > rank(v)) stored at v
+	final EdgeList upIn;
+	private final SegmentMap pointNodes = new SegmentMap();
+
+	/**
+	 * Edges grouped by node, for each edge adjacent node is stored (target for out edges, source for in edges).
+	 * Shortcut has middle node, original edge has road id and its start and end point indexes.
+	 */
+	static class EdgeList {
+		final int[] start;
+		final int[] adjacent;
+		final float[] weight;
+		final int[] middle;
+		final long[] roadId;
+		final int[] startPoint;
+		final int[] endPoint;
+
+		EdgeList(int nodes, int edges) {
+			start = new int[nodes + 1];
+			adjacent = new int[edges];
+			weight = new float[edges];
+			middle = new int[edges];
+			roadId = new long[edges];
+			startPoint = new int[edges];
+			endPoint = new int[edges];
+		}
+
+		int find(int node, int adjacentNode) {
+			int res = -1;
+			for (int e = start[node]; e < start[node + 1]; e++) {
+				if (adjacent[e] == adjacentNode && (res == -1 || weight[e] < weight[res])) {
+					res = e;
+				}
+			}
+			return res;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(adjacent.length);
+			for (int i = 0; i < start.length; i++) {
+				out.writeInt(start[i]);
+			}
+			for (int e = 0; e < adjacent.length; e++) {
+				out.writeInt(adjacent[e]);
+				out.writeFloat(weight[e]);
+				out.writeInt(middle[e]);
+				out.writeLong(roadId[e]);
+				out.writeInt(startPoint[e]);
+				out.writeInt(endPoint[e]);
+			}
+		}
+
+		static EdgeList read(DataInputStream in, int nodes) throws IOException {
+			EdgeList l = new EdgeList(nodes, in.readInt());
+			for (int i = 0; i < l.start.length; i++) {
+				l.start[i] = in.readInt();
+			}
+			for (int e = 0; e < l.adjacent.length; e++) {
+				l.adjacent[e] = in.readInt();
+				l.weight[e] = in.readFloat();
+				l.middle[e] = in.readInt();
+				l.roadId[e] = in.readLong();
+				l.startPoint[e] = in.readInt();
+				l.endPoint[e] = in.readInt();
+			}
+			return l;
+		}
+	}
+
+	ContractionHierarchy(String routerName, String routerParameters, long dateCreated, int[] nodeX, int[] nodeY,
+			EdgeList upOut, EdgeList upIn) {
+		this.routerName = routerName;
+		this.routerParameters = routerParameters;
+		this.dateCreated = dateCreated;
+		this.nodeX = nodeX;
+		this.nodeY = nodeY;
+		this.upOut = upOut;
+		this.upIn = upIn;
+		for (int i = 0; i < nodeX.length; i++) {
+			pointNodes.put(pointId(nodeX[i], nodeY[i]), i);
+		}
+	}
+
+	public static File getSidecarFile(File obf, String routerName) {
+		return new File(obf.getParentFile(), obf.getName() + "." + routerName + SIDECAR_EXT);
+	}
+
+	static String getRouterParameters(VehicleRouter router) {
+		if (!(router instanceof GeneralRouter)) {
+			return "";
+		}
+		StringBuilder b = new StringBuilder();
+		for (Map.Entry<String, String> e : new TreeMap<String, String>(((GeneralRouter) router).getParameterValues())
+				.entrySet()) {
+			b.append(e.getKey()).append('=').append(e.getValue()).append(';');
+		}
+		return b.toString();
+	}
+
+	static long pointId(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+
+	/**
+	 * Travel time in seconds between 2 points of the road (same as A* uses without turn costs), -1 if impassable
+	 */
+	static float calculateTime(VehicleRouter router, RouteDataObject road, int from, int to) {
+		float speed = defineSpeed(router, road);
+		float distance = 0;
+		float obstacles = 0;
+		int step = from < to ? 1 : -1;
+		for (int i = from; i != to; i += step) {
+			int next = i + step;
+			distance += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+					road.getPoint31XTile(next), road.getPoint31YTile(next));
+			float obstacle = router.defineRoutingObstacle(road, next);
+			if (obstacle < 0) {
+				return -1;
+			}
+			obstacles += obstacle;
+		}
+		return obstacles + distance / speed;
+	}
+
+	/**
+	 * Speed (m/s) used by A* for the road
+	 */
+	static float defineSpeed(VehicleRouter router, RouteDataObject road) {
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getMinDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxDefaultSpeed()) {
+			speed = router.getMaxDefaultSpeed();
+		}
+		return speed;
+	}
+
+	public String getRouterName() {
+		return routerName;
+	}
+
+	public int getNodesCount() {
+		return nodeX.length;
+	}
+
+	public int getEdgesCount() {
+		return upOut.adjacent.length + upIn.adjacent.length;
+	}
+
+	/**
+	 * @return true if hierarchy was built for that version of obf and same routing profile & parameters
+	 */
+	public boolean isApplicable(RoutingConfiguration config, long obfDateCreated) {
+		return dateCreated == obfDateCreated && routerName.equals(config.routerName)
+				&& routerParameters.equals(getRouterParameters(config.router))
+				&& config.router.getImpassableRoadIds().length == 0;
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(routerName);
+			out.writeUTF(routerParameters);
+			out.writeLong(dateCreated);
+			out.writeInt(nodeX.length);
+			for (int i = 0; i < nodeX.length; i++) {
+				out.writeInt(nodeX[i]);
+				out.writeInt(nodeY[i]);
+			}
+			upOut.write(out);
+			upIn.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a contraction hierarchy file " + file.getName());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported contraction hierarchy version " + version + " " + file.getName());
+			}
+			String routerName = in.readUTF();
+			String routerParameters = in.readUTF();
+			long dateCreated = in.readLong();
+			int nodes = in.readInt();
+			int[] nodeX = new int[nodes];
+			int[] nodeY = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				nodeX[i] = in.readInt();
+				nodeY[i] = in.readInt();
+			}
+			EdgeList upOut = EdgeList.read(in, nodes);
+			EdgeList upIn = EdgeList.read(in, nodes);
+			return new ContractionHierarchy(routerName, routerParameters, dateCreated, nodeX, nodeY, upOut, upIn);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class QueueEntry {
+		final int node;
+		final float dist;
+
+		QueueEntry(int node, float dist) {
+			this.node = node;
+			this.dist = dist;
+		}
+	}
+
+	private static final Comparator<QueueEntry> QUEUE_COMPARATOR = new Comparator<QueueEntry>() {
+		@Override
+		public int compare(QueueEntry o1, QueueEntry o2) {
+			return Float.compare(o1.dist, o2.dist);
+		}
+	};
+
+	// part of the road between 2 points, road is identified by id and coordinates of the end point
+	// as one road could be stored in several parts with different geometry
+	private static class RoadPiece {
+		final long roadId;
+		final int startPoint;
+		int endPoint;
+		int endX;
+		int endY;
+
+		RoadPiece(long roadId, int startPoint, int endPoint, int endX, int endY) {
+			this.roadId = roadId;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+			this.endX = endX;
+			this.endY = endY;
+		}
+
+		RoadPiece(RouteDataObject road, int startPoint, int endPoint) {
+			this(road.getId(), startPoint, endPoint, road.getPoint31XTile(endPoint), road.getPoint31YTile(endPoint));
+		}
+	}
+
+	private static class NodeState {
+		float dist;
+		// parent edge index (in edges), -1 for initial nodes
+		int parentEdge = -1;
+		int parentNode = -1;
+		// point index of the road where route starts (ends) for initial nodes
+		int initialPoint;
+
+		NodeState(float dist) {
+			this.dist = dist;
+		}
+	}
+
+	private static class Search {
+		final EdgeList edges;
+		final TIntObjectHashMap<NodeState> nodes = new TIntObjectHashMap<NodeState>();
+		final PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>(64, QUEUE_COMPARATOR);
+
+		Search(EdgeList edges) {
+			this.edges = edges;
+		}
+
+		void init(int node, float d, int point) {
+			NodeState st = nodes.get(node);
+			if (st == null || st.dist > d) {
+				st = new NodeState(d);
+				st.initialPoint = point;
+				nodes.put(node, st);
+				queue.add(new QueueEntry(node, d));
+			}
+		}
+
+		float peek() {
+			return queue.isEmpty() ? Float.POSITIVE_INFINITY : queue.peek().dist;
+		}
+
+		// returns settled node or -1
+		int settleNext() {
+			QueueEntry q = queue.poll();
+			if (q.dist > nodes.get(q.node).dist) {
+				return -1;
+			}
+			for (int e = edges.start[q.node]; e < edges.start[q.node + 1]; e++) {
+				int next = edges.adjacent[e];
+				float d = q.dist + edges.weight[e];
+				NodeState st = nodes.get(next);
+				if (st == null || st.dist > d) {
+					st = new NodeState(d);
+					st.parentEdge = e;
+					st.parentNode = q.node;
+					nodes.put(next, st);
+					queue.add(new QueueEntry(next, d));
+				}
+			}
+			return q.node;
+		}
+	}
+
+	/**
+	 * Calculates route between road points, returns null if points are not covered by the graph or route is not found
+	 */
+	public List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException {
+		long time = System.nanoTime();
+		VehicleRouter router = ctx.getRouter();
+		Search forward = new Search(upOut);
+		Search backward = new Search(upIn);
+		RouteDataObject sroad = start.getRoad();
+		RouteDataObject eroad = end.getRoad();
+		int s = start.getSegmentStart();
+		int e = end.getSegmentStart();
+		int soneway = router.isOneWay(sroad);
+		int eoneway = router.isOneWay(eroad);
+		// route from start point to the closest nodes of the road
+		if (soneway >= 0) {
+			initNode(forward, router, sroad, s, findNodePoint(sroad, s, 1), false);
+		}
+		if (soneway <= 0) {
+			initNode(forward, router, sroad, s, findNodePoint(sroad, s, -1), false);
+		}
+		// route from the closest nodes of the road to end point
+		if (eoneway >= 0) {
+			initNode(backward, router, eroad, e, findNodePoint(eroad, e, -1), true);
+		}
+		if (eoneway <= 0) {
+			initNode(backward, router, eroad, e, findNodePoint(eroad, e, 1), true);
+		}
+		float best = Float.POSITIVE_INFINITY;
+		int meet = -1;
+		if (sroad.getId() == eroad.getId() && s != e && (s < e ? soneway >= 0 : soneway <= 0)) {
+			best = calculateTime(router, sroad, s, e);
+			if (best < 0) {
+				best = Float.POSITIVE_INFINITY;
+			}
+		}
+		int settled = 0;
+		while (Math.min(forward.peek(), backward.peek()) < best) {
+			boolean fwd = forward.peek() <= backward.peek();
+			Search search = fwd ? forward : backward;
+			Search opposite = fwd ? backward : forward;
+			int node = search.settleNext();
+			if (node != -1) {
+				settled++;
+				NodeState op = opposite.nodes.get(node);
+				if (op != null) {
+					float d = search.nodes.get(node).dist + op.dist;
+					if (d < best) {
+						best = d;
+						meet = node;
+					}
+				}
+			}
+		}
+		ctx.visitedSegments += settled;
+		if (best == Float.POSITIVE_INFINITY) {
+			return null;
+		}
+		List<RoadPiece> pieces = new ArrayList<RoadPiece>();
+		if (meet == -1) {
+			pieces.add(new RoadPiece(sroad, s, e));
+		} else {
+			List<RoadPiece> fwdPieces = new ArrayList<RoadPiece>();
+			int node = meet;
+			NodeState st = forward.nodes.get(node);
+			while (st.parentEdge != -1) {
+				List<RoadPiece> edgePieces = new ArrayList<RoadPiece>();
+				unpack(upOut, st.parentEdge, st.parentNode, node, edgePieces);
+				Collections.reverse(edgePieces);
+				fwdPieces.addAll(edgePieces);
+				node = st.parentNode;
+				st = forward.nodes.get(node);
+			}
+			fwdPieces.add(new RoadPiece(sroad, s, st.initialPoint));
+			Collections.reverse(fwdPieces);
+			pieces.addAll(fwdPieces);
+			node = meet;
+			st = backward.nodes.get(node);
+			while (st.parentEdge != -1) {
+				unpack(upIn, st.parentEdge, node, st.parentNode, pieces);
+				node = st.parentNode;
+				st = backward.nodes.get(node);
+			}
+			pieces.add(new RoadPiece(eroad, st.initialPoint, e));
+		}
+		List<RouteSegmentResult> result = convertToResult(ctx, pieces, sroad, eroad);
+		if (result == null) {
+			return null;
+		}
+		if (!checkRestrictions(ctx, result)) {
+			log.info("Route found using contraction hierarchy breaks turn restriction");
+			return null;
+		}
+		ctx.routingTime = best;
+		ctx.timeToCalculate = System.nanoTime() - time;
+		log.info("Route is found using contraction hierarchy " + (ctx.timeToCalculate / 1e6) + " ms, settled nodes "
+				+ settled);
+		return new RouteResultPreparation().prepareResult(ctx, result);
+	}
+
+	// closest point of the road (including itself) in direction which is a graph node
+	private int findNodePoint(RouteDataObject road, int point, int dir) {
+		for (int i = point; i >= 0 && i < road.getPointsLength(); i += dir) {
+			if (pointNodes.containsKey(pointId(road.getPoint31XTile(i), road.getPoint31YTile(i)))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void initNode(Search search, VehicleRouter router, RouteDataObject road, int point, int nodePoint,
+			boolean toPoint) {
+		if (nodePoint == -1) {
+			return;
+		}
+		float d = nodePoint == point ? 0 : (toPoint ? calculateTime(router, road, nodePoint, point) : calculateTime(
+				router, road, point, nodePoint));
+		if (d >= 0) {
+			int node = pointNodes.get(pointId(road.getPoint31XTile(nodePoint), road.getPoint31YTile(nodePoint)));
+			search.init(node, d, nodePoint);
+		}
+	}
+
+	// adds original pieces of edge from -> to
+	private void unpack(EdgeList list, int edge, int from, int to, List<RoadPiece> pieces) {
+		int middle = list.middle[edge];
+		if (middle == -1) {
+			pieces.add(new RoadPiece(list.roadId[edge], list.startPoint[edge], list.endPoint[edge], nodeX[to], nodeY[to]));
+			return;
+		}
+		// middle node is lower than both ends
+		int first = upIn.find(middle, from);
+		int second = upOut.find(middle, to);
+		if (first == -1 || second == -1) {
+			throw new IllegalStateException("Shortcut " + from + " -> " + to + " can't be unpacked");
+		}
+		unpack(upIn, first, from, middle, pieces);
+		unpack(upOut, second, middle, to, pieces);
+	}
+
+	private List<RouteSegmentResult> convertToResult(RoutingContext ctx, List<RoadPiece> pieces, RouteDataObject sroad,
+			RouteDataObject eroad) {
+		List<RoadPiece> merged = new ArrayList<RoadPiece>();
+		for (RoadPiece p : pieces) {
+			if (p.startPoint == p.endPoint) {
+				continue;
+			}
+			RoadPiece last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && last.roadId == p.roadId && last.endPoint == p.startPoint
+					&& (last.startPoint < last.endPoint) == (p.startPoint < p.endPoint)) {
+				last.endPoint = p.endPoint;
+				last.endX = p.endX;
+				last.endY = p.endY;
+			} else {
+				merged.add(p);
+			}
+		}
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		int x = sroad.getPoint31XTile(merged.isEmpty() ? 0 : merged.get(0).startPoint);
+		int y = sroad.getPoint31YTile(merged.isEmpty() ? 0 : merged.get(0).startPoint);
+		for (RoadPiece p : merged) {
+			RouteDataObject road = null;
+			if (matches(sroad, p, x, y)) {
+				road = sroad;
+			} else if (matches(eroad, p, x, y)) {
+				road = eroad;
+			} else {
+				road = loadRoad(ctx, p, x, y);
+			}
+			if (road == null) {
+				log.warn("Road " + (p.roadId >> 6) + " of contraction hierarchy is not found in the map");
+				return null;
+			}
+			result.add(new RouteSegmentResult(road, p.startPoint, p.endPoint));
+			x = p.endX;
+			y = p.endY;
+		}
+		return result;
+	}
+
+	private static boolean matches(RouteDataObject road, RoadPiece p, int x31, int y31) {
+		return road.getId() == p.roadId && p.startPoint < road.getPointsLength() && p.endPoint < road.getPointsLength()
+				&& road.getPoint31XTile(p.startPoint) == x31 && road.getPoint31YTile(p.startPoint) == y31
+				&& road.getPoint31XTile(p.endPoint) == p.endX && road.getPoint31YTile(p.endPoint) == p.endY;
+	}
+
+	private RouteDataObject loadRoad(RoutingContext ctx, RoadPiece p, int x31, int y31) {
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, ctx.config.memoryLimitation - ctx.memoryOverhead);
+		while (s != null) {
+			if (matches(s.getRoad(), p, x31, y31)) {
+				return s.getRoad();
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	/**
+	 * Checks turns between roads of the route same as A* does: no_* restriction forbids turn to the road,
+	 * only_* restriction forbids other turns if its road is at the junction, no_* restriction via road is checked
+	 * for 3 consecutive roads.
+	 */
+	private boolean checkRestrictions(RoutingContext ctx, List<RouteSegmentResult> result) {
+		if (!ctx.getRouter().restrictionsAware()) {
+			return true;
+		}
+		RouteDataObject prevFrom = null;
+		for (int i = 1; i < result.size(); i++) {
+			RouteDataObject from = result.get(i - 1).getObject();
+			RouteDataObject to = result.get(i).getObject();
+			if (from.getId() == to.getId()) {
+				continue;
+			}
+			int x = to.getPoint31XTile(result.get(i).getStartPointIndex());
+			int y = to.getPoint31YTile(result.get(i).getStartPointIndex());
+			RouteSegment junction = null;
+			for (int k = 0; k < from.getRestrictionLength(); k++) {
+				long via = from.getRestrictionVia(k);
+				if (via != 0) {
+					continue;
+				}
+				int type = from.getRestrictionType(k);
+				long restrictedTo = from.getRestrictionId(k);
+				if (restrictedTo == to.getId()) {
+					if (!isOnlyRestriction(type)) {
+						return false;
+					}
+				} else if (isOnlyRestriction(type)) {
+					if (junction == null) {
+						junction = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
+					}
+					for (RouteSegment s = junction; s != null; s = s.getNext()) {
+						if (s.getRoad().getId() == restrictedTo) {
+							return false;
+						}
+					}
+				}
+			}
+			if (prevFrom != null) {
+				for (int k = 0; k < prevFrom.getRestrictionLength(); k++) {
+					if (prevFrom.getRestrictionVia(k) == from.getId() && prevFrom.getRestrictionId(k) == to.getId()
+							&& !isOnlyRestriction(prevFrom.getRestrictionType(k))) {
+						return false;
+					}
+				}
+			}
+			prevFrom = from;
+		}
+		return true;
+	}
+
+	private static boolean isOnlyRestriction(int type) {
+		return type == MapRenderingTypes.RESTRICTION_ONLY_LEFT_TURN || type == MapRenderingTypes.RESTRICTION_ONLY_RIGHT_TURN
+				|| type == MapRenderingTypes.RESTRICTION_ONLY_STRAIGHT_ON;
+	}
+}
@@ -0,0 +1,442 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.ContractionHierarchy.EdgeList;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Builds {@link ContractionHierarchy} of all routing data of obf file for a routing profile.
+ * Usage: ContractionHierarchyBuilder path_to_obf [router, default car] [param=value ...]
+ * Sidecar file is written next to the obf (see {@link ContractionHierarchy#getSidecarFile(File, String)}).
+ */
+public class ContractionHierarchyBuilder {
+
+	protected static final Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+
+	// limits local witness search, missing witness adds unnecessary shortcut but keeps graph correct
+	private static final int WITNESS_SETTLED_LIMIT = 500;
+
+	private static class Edge {
+		final int from;
+		final int to;
+		float weight;
+		int middle;
+		long roadId;
+		int startPoint;
+		int endPoint;
+
+		Edge(int from, int to, float weight, int middle, long roadId, int startPoint, int endPoint) {
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+			this.middle = middle;
+			this.roadId = roadId;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+		}
+	}
+
+	private static class NodePriority {
+		final int node;
+		final int priority;
+
+		NodePriority(int node, int priority) {
+			this.node = node;
+			this.priority = priority;
+		}
+	}
+
+	private final VehicleRouter router;
+	private int[] nodeX;
+	private int[] nodeY;
+	private List<List<Edge>> out = new ArrayList<List<Edge>>();
+	private List<List<Edge>> in = new ArrayList<List<Edge>>();
+	private boolean[] contracted;
+	private int[] contractedNeighbours;
+	private int shortcuts;
+	// witness search state, distances are reset after each search
+	private float[] witnessDist;
+	private TIntArrayList witnessVisited = new TIntArrayList();
+
+	public ContractionHierarchyBuilder(VehicleRouter router) {
+		this.router = router;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File obf = new File(args[0]);
+		String routerName = args.length > 1 ? args[1] : "car";
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		for (int i = 2; i < args.length; i++) {
+			int ind = args[i].indexOf('=');
+			params.put(ind == -1 ? args[i] : args[i].substring(0, ind), ind == -1 ? "true" : args[i].substring(ind + 1));
+		}
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(routerName,
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT, params);
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		try {
+			long time = System.currentTimeMillis();
+			ContractionHierarchy ch = new ContractionHierarchyBuilder(config.router).build(reader, config.routerName);
+			File sidecar = ContractionHierarchy.getSidecarFile(obf, config.routerName);
+			ch.write(sidecar);
+			System.out.println(String.format("Contraction hierarchy %s: %d nodes, %d edges, built in %.1f s",
+					sidecar.getName(), ch.getNodesCount(), ch.getEdgesCount(),
+					(System.currentTimeMillis() - time) / 1e3));
+		} finally {
+			reader.close();
+		}
+	}
+
+	public ContractionHierarchy build(BinaryMapIndexReader reader, String routerName) throws IOException {
+		List<RouteDataObject> roads = loadRoads(reader);
+		buildGraph(roads);
+		log.info("Routing graph: " + nodeX.length + " nodes from " + roads.size() + " roads");
+		int[] rank = contract();
+		log.info("Contraction added " + shortcuts + " shortcuts");
+		return createHierarchy(routerName, reader.getDateCreated(), rank);
+	}
+
+	private List<RouteDataObject> loadRoads(BinaryMapIndexReader reader) throws IOException {
+		// road crossing tiles is stored in several parts with the same id, so same road is recognized by geometry
+		TLongObjectHashMap<List<RouteDataObject>> roadsById = new TLongObjectHashMap<List<RouteDataObject>>();
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+			List<RouteSubregion> subregs = reader.searchRouteIndexTree(request,
+					new ArrayList<RouteSubregion>(reg.getSubregions()));
+			for (RouteSubregion s : subregs) {
+				for (RouteDataObject ro : reader.loadRouteIndexData(s)) {
+					if (ro == null || !router.acceptLine(ro)) {
+						continue;
+					}
+					List<RouteDataObject> parts = roadsById.get(ro.getId());
+					if (parts == null) {
+						parts = new ArrayList<RouteDataObject>(1);
+						roadsById.put(ro.getId(), parts);
+					}
+					if (!containsGeometry(parts, ro)) {
+						parts.add(ro);
+						roads.add(ro);
+					}
+				}
+			}
+		}
+		return roads;
+	}
+
+	private static boolean containsGeometry(List<RouteDataObject> parts, RouteDataObject ro) {
+		for (RouteDataObject p : parts) {
+			if (Arrays.equals(p.pointsX, ro.pointsX) && Arrays.equals(p.pointsY, ro.pointsY)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void buildGraph(List<RouteDataObject> roads) {
+		// points shared by several roads or ends of roads are nodes
+		TLongHashSet points = new TLongHashSet();
+		TLongHashSet nodePoints = new TLongHashSet();
+		for (RouteDataObject ro : roads) {
+			int len = ro.getPointsLength();
+			for (int i = 0; i < len; i++) {
+				long id = ContractionHierarchy.pointId(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+				if (!points.add(id) || i == 0 || i == len - 1) {
+					nodePoints.add(id);
+				}
+			}
+		}
+		points = null;
+		TLongObjectHashMap<Integer> nodes = new TLongObjectHashMap<Integer>();
+		List<int[]> coordinates = new ArrayList<int[]>();
+		for (RouteDataObject ro : roads) {
+			int oneway = router.isOneWay(ro);
+			int prev = -1;
+			int prevNode = -1;
+			for (int i = 0; i < ro.getPointsLength(); i++) {
+				int x = ro.getPoint31XTile(i);
+				int y = ro.getPoint31YTile(i);
+				long id = ContractionHierarchy.pointId(x, y);
+				if (!nodePoints.contains(id)) {
+					continue;
+				}
+				int node;
+				if (nodes.containsKey(id)) {
+					node = nodes.get(id);
+				} else {
+					node = coordinates.size();
+					nodes.put(id, node);
+					coordinates.add(new int[] { x, y });
+					out.add(new ArrayList<Edge>(3));
+					in.add(new ArrayList<Edge>(3));
+				}
+				if (prevNode != -1 && prevNode != node) {
+					if (oneway >= 0) {
+						float w = ContractionHierarchy.calculateTime(router, ro, prev, i);
+						if (w >= 0) {
+							addEdge(prevNode, node, w, -1, ro.getId(), prev, i);
+						}
+					}
+					if (oneway <= 0) {
+						float w = ContractionHierarchy.calculateTime(router, ro, i, prev);
+						if (w >= 0) {
+							addEdge(node, prevNode, w, -1, ro.getId(), i, prev);
+						}
+					}
+				}
+				prev = i;
+				prevNode = node;
+			}
+		}
+		nodeX = new int[coordinates.size()];
+		nodeY = new int[coordinates.size()];
+		for (int i = 0; i < nodeX.length; i++) {
+			nodeX[i] = coordinates.get(i)[0];
+			nodeY[i] = coordinates.get(i)[1];
+		}
+	}
+
+	// adds edge or improves existing parallel edge
+	private void addEdge(int from, int to, float weight, int middle, long roadId, int startPoint, int endPoint) {
+		for (Edge e : out.get(from)) {
+			if (e.to == to) {
+				if (weight < e.weight) {
+					e.weight = weight;
+					e.middle = middle;
+					e.roadId = roadId;
+					e.startPoint = startPoint;
+					e.endPoint = endPoint;
+				}
+				return;
+			}
+		}
+		Edge e = new Edge(from, to, weight, middle, roadId, startPoint, endPoint);
+		out.get(from).add(e);
+		in.get(to).add(e);
+	}
+
+	private int[] contract() {
+		int n = nodeX.length;
+		contracted = new boolean[n];
+		contractedNeighbours = new int[n];
+		witnessDist = new float[n];
+		Arrays.fill(witnessDist, Float.POSITIVE_INFINITY);
+		int[] rank = new int[n];
+		PriorityQueue<NodePriority> queue = new PriorityQueue<NodePriority>(Math.max(n, 1),
+				new Comparator<NodePriority>() {
+					@Override
+					public int compare(NodePriority o1, NodePriority o2) {
+						return o1.priority < o2.priority ? -1 : (o1.priority == o2.priority ? 0 : 1);
+					}
+				});
+		for (int i = 0; i < n; i++) {
+			queue.add(new NodePriority(i, priority(i)));
+		}
+		int order = 0;
+		while (!queue.isEmpty()) {
+			NodePriority np = queue.poll();
+			if (contracted[np.node]) {
+				continue;
+			}
+			// lazy update : priority could grow since node was added to queue
+			int p = priority(np.node);
+			if (!queue.isEmpty() && p > queue.peek().priority) {
+				queue.add(new NodePriority(np.node, p));
+				continue;
+			}
+			contractNode(np.node, false);
+			contracted[np.node] = true;
+			rank[np.node] = order++;
+			if (order % 100000 == 0) {
+				log.info("Contracted " + order + " nodes of " + n);
+			}
+		}
+		return rank;
+	}
+
+	// edge difference + contracted neighbours
+	private int priority(int node) {
+		int degree = 0;
+		for (Edge e : in.get(node)) {
+			if (!contracted[e.from]) {
+				degree++;
+			}
+		}
+		for (Edge e : out.get(node)) {
+			if (!contracted[e.to]) {
+				degree++;
+			}
+		}
+		return contractNode(node, true) - degree + contractedNeighbours[node];
+	}
+
+	// returns number of shortcuts needed to contract node
+	private int contractNode(int node, boolean simulate) {
+		int added = 0;
+		float maxOut = 0;
+		for (Edge e : out.get(node)) {
+			if (!contracted[e.to]) {
+				maxOut = Math.max(maxOut, e.weight);
+			}
+		}
+		for (Edge ein : new ArrayList<Edge>(in.get(node))) {
+			int u = ein.from;
+			if (contracted[u]) {
+				continue;
+			}
+			witnessSearch(u, node, ein.weight + maxOut);
+			for (Edge eout : new ArrayList<Edge>(out.get(node))) {
+				int x = eout.to;
+				if (contracted[x] || x == u) {
+					continue;
+				}
+				float w = ein.weight + eout.weight;
+				if (witnessDist[x] > w) {
+					added++;
+					if (!simulate) {
+						addEdge(u, x, w, node, 0, 0, 0);
+						shortcuts++;
+					}
+				}
+			}
+			resetWitnessSearch();
+			if (!simulate) {
+				contractedNeighbours[u]++;
+			}
+		}
+		if (!simulate) {
+			for (Edge e : out.get(node)) {
+				if (!contracted[e.to]) {
+					contractedNeighbours[e.to]++;
+				}
+			}
+		}
+		return added;
+	}
+
+	// dijkstra from u in not contracted graph without node, fills witnessDist
+	private void witnessSearch(int u, int excluded, float maxDist) {
+		PriorityQueue<NodeDist> queue = new PriorityQueue<NodeDist>();
+		witnessDist[u] = 0;
+		witnessVisited.add(u);
+		queue.add(new NodeDist(u, 0));
+		int settled = 0;
+		while (!queue.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+			NodeDist nd = queue.poll();
+			if (nd.dist > witnessDist[nd.node]) {
+				continue;
+			}
+			if (nd.dist > maxDist) {
+				break;
+			}
+			settled++;
+			for (Edge e : out.get(nd.node)) {
+				if (e.to == excluded || contracted[e.to]) {
+					continue;
+				}
+				float d = nd.dist + e.weight;
+				if (witnessDist[e.to] > d) {
+					if (witnessDist[e.to] == Float.POSITIVE_INFINITY) {
+						witnessVisited.add(e.to);
+					}
+					witnessDist[e.to] = d;
+					queue.add(new NodeDist(e.to, d));
+				}
+			}
+		}
+	}
+
+	private void resetWitnessSearch() {
+		for (int i = 0; i < witnessVisited.size(); i++) {
+			witnessDist[witnessVisited.get(i)] = Float.POSITIVE_INFINITY;
+		}
+		witnessVisited.clear();
+	}
+
+	private static class NodeDist implements Comparable<NodeDist> {
+		final int node;
+		final float dist;
+
+		NodeDist(int node, float dist) {
+			this.node = node;
+			this.dist = dist;
+		}
+
+		@Override
+		public int compareTo(NodeDist o) {
+			return Float.compare(dist, o.dist);
+		}
+	}
+
+	private ContractionHierarchy createHierarchy(String routerName, long dateCreated, int[] rank) {
+		int n = nodeX.length;
+		int[] outCount = new int[n];
+		int[] inCount = new int[n];
+		for (int u = 0; u < n; u++) {
+			for (Edge e : out.get(u)) {
+				if (rank[e.to] > rank[u]) {
+					outCount[u]++;
+				} else {
+					inCount[e.to]++;
+				}
+			}
+		}
+		EdgeList upOut = createEdgeList(outCount);
+		EdgeList upIn = createEdgeList(inCount);
+		int[] outPos = new int[n];
+		int[] inPos = new int[n];
+		for (int u = 0; u < n; u++) {
+			for (Edge e : out.get(u)) {
+				if (rank[e.to] > rank[u]) {
+					setEdge(upOut, upOut.start[u] + outPos[u]++, e.to, e);
+				} else {
+					setEdge(upIn, upIn.start[e.to] + inPos[e.to]++, u, e);
+				}
+			}
+		}
+		return new ContractionHierarchy(routerName, ContractionHierarchy.getRouterParameters(router), dateCreated,
+				nodeX, nodeY, upOut, upIn);
+	}
+
+	private static EdgeList createEdgeList(int[] counts) {
+		int total = 0;
+		for (int c : counts) {
+			total += c;
+		}
+		EdgeList l = new EdgeList(counts.length, total);
+		for (int i = 0; i < counts.length; i++) {
+			l.start[i + 1] = l.start[i] + counts[i];
+		}
+		return l;
+	}
+
+	private static void setEdge(EdgeList l, int ind, int adjacent, Edge e) {
+		l.adjacent[ind] = adjacent;
+		l.weight[ind] = e.weight;
+		l.middle[ind] = e.middle;
+		l.roadId[ind] = e.roadId;
+		l.startPoint[ind] = e.startPoint;
+		l.endPoint[ind] = e.endPoint;
+	}
+}
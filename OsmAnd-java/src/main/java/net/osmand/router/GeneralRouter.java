@@ -9,8 +9,8 @@ import net.osmand.util.MapUtils;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gnu.trove.set.hash.TLongHashSet;
 
@@ -36,6 +37,7 @@ public class GeneralRouter implements VehicleRouter {
 	private final RouteAttributeContext[] objectAttributes;
 	public final Map<String, String> attributes;
 	private final Map<String, RoutingParameter> parameters; 
+	private final Map<String, String> parameterValues;
 	private final Map<String, Integer> universalRules;
 	private final List<String> universalRulesById;
 	private final Map<String, BitSet> tagRuleMask;
@@ -44,7 +46,7 @@ public class GeneralRouter implements VehicleRouter {
 	private boolean heightObstacles;
 	private boolean allowPrivate;
 
-	private Map<RouteRegion, Map<Integer, Integer>> regionConvert = new LinkedHashMap<RouteRegion, Map<Integer,Integer>>();
+	private ConcurrentHashMap<RouteRegion, Map<Integer, Integer>> regionConvert = new ConcurrentHashMap<RouteRegion, Map<Integer,Integer>>();
 	
 	// cached values
 	private boolean restrictionsAware = true;
@@ -113,9 +115,10 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		universalRules = new LinkedHashMap<String, Integer>();
 		universalRulesById = new ArrayList<String>();
-		tagRuleMask = new LinkedHashMap<String, BitSet>();
+		tagRuleMask = new ConcurrentHashMap<String, BitSet>();
 		ruleToValue = new ArrayList<Object>();
 		parameters = new LinkedHashMap<String, GeneralRouter.RoutingParameter>();
+		parameterValues = new LinkedHashMap<String, String>();
 	}
 	
 	public GeneralRouter(GeneralRouter parent, Map<String, String> params) {
@@ -132,6 +135,7 @@ public class GeneralRouter implements VehicleRouter {
 		tagRuleMask = parent.tagRuleMask;
 		ruleToValue = parent.ruleToValue;
 		parameters = parent.parameters;
+		parameterValues = new LinkedHashMap<String, String>(params);
 		
 		objectAttributes = new RouteAttributeContext[RouteDataObjectAttribute.values().length];
 		for (int i = 0; i < objectAttributes.length; i++) {
@@ -158,6 +162,10 @@ public class GeneralRouter implements VehicleRouter {
 		return parameters;
 	}
 
+	public Map<String, String> getParameterValues() {
+		return parameterValues;
+	}
+
 	public void addAttribute(String k, String v) {
 		attributes.put(k, v);
 		if(k.equals("restrictionsAware")) {
@@ -225,17 +233,23 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private int registerTagValueAttribute(String tag, String value) {
 		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
-		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
+		// shared with derived routers which could be used by route calculations in other threads
+		synchronized (universalRules) {
+			if(universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			// copy on write as masks are read without lock
+			BitSet mask = new BitSet();
+			if(tagRuleMask.containsKey(tag)) {
+				mask.or(tagRuleMask.get(tag));
+			}
+			mask.set(id);
+			tagRuleMask.put(tag, mask);
+			return id;
 		}
-		tagRuleMask.get(tag).set(id);
-		return id;
 	}
 	
 	
@@ -262,18 +276,21 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		synchronized (universalRules) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v = universalRulesById.get(id);
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
@@ -331,8 +348,9 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					ParameterContext inclineContext = new ParameterContext(objContext.paramContext);
+					inclineContext.incline = diff > 0 ? percentIncl : -percentIncl;
+					sum += objContext.evaluateFloat(road, inclineContext, 0) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -509,11 +527,72 @@ public class GeneralRouter implements VehicleRouter {
 	private class ParameterContext {
 		private Map<String, String> vars;
 		private double incline = 0;
+
+		ParameterContext() {
+		}
+
+		ParameterContext(ParameterContext copy) {
+			if (copy != null) {
+				vars = copy.vars;
+				incline = copy.incline;
+			}
+		}
+	}
+
+	// key of evaluation memo, road types array is not copied for lookups
+	private static class TypesKey {
+		private final RouteRegion region;
+		private final int[] types;
+		private final int hash;
+
+		TypesKey(RouteRegion region, int[] types) {
+			this(region, types, 31 * System.identityHashCode(region) + Arrays.hashCode(types));
+		}
+
+		private TypesKey(RouteRegion region, int[] types, int hash) {
+			this.region = region;
+			this.types = types;
+			this.hash = hash;
+		}
+
+		TypesKey copy() {
+			return new TypesKey(region, types.clone(), hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TypesKey)) {
+				return false;
+			}
+			TypesKey other = (TypesKey) obj;
+			return region == other.region && Arrays.equals(types, other.types);
+		}
+	}
+
+	private static final Object NULL_VALUE = new Object();
+
+	private static int firstCommonBit(BitSet mask, BitSet types) {
+		for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+			if (types.get(i)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 	
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// evaluation results by road types, rules and parameters are not changed after router is built
+		private final ConcurrentHashMap<TypesKey, Object> evaluationCache = new ConcurrentHashMap<TypesKey, Object>();
 		
 		public RouteAttributeContext(){
 		}
@@ -548,7 +627,17 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types);
+		}
+
+		private Object evaluate(RouteRegion region, int[] types) {
+			TypesKey key = new TypesKey(region, types);
+			Object o = evaluationCache.get(key);
+			if (o == null) {
+				o = evaluate(convert(region, types), paramContext);
+				evaluationCache.put(key.copy(), o == null ? NULL_VALUE : o);
+			}
+			return o == NULL_VALUE ? null : o;
 		}
 
 		public void printRules(PrintStream out) {
@@ -561,6 +650,7 @@ public class GeneralRouter implements VehicleRouter {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
 			rules.add(ev);	
+			evaluationCache.clear();
 			return ev;
 		}
 		
@@ -568,7 +658,7 @@ public class GeneralRouter implements VehicleRouter {
 			return rules.get(rules.size() - 1);
 		}
 
-		private Object evaluate(BitSet types) {
+		private Object evaluate(BitSet types, ParameterContext paramContext) {
 			for (int k = 0; k < rules.size(); k++) {
 				RouteAttributeEvalRule r = rules.get(k);
 				Object o = r.eval(types, paramContext);
@@ -607,7 +697,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -623,7 +713,16 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
+			if(!(o instanceof Number)) {
+				return defValue;
+			}
+			return ((Number)o).floatValue();
+		}
+		
+		// uncached evaluation with specific parameters (incline)
+		private float evaluateFloat(RouteDataObject ro, ParameterContext paramContext, float defValue) {
+			Object o = evaluate(convert(ro.region, ro.types), paramContext);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
@@ -634,8 +733,11 @@ public class GeneralRouter implements VehicleRouter {
 			BitSet b = new BitSet(universalRules.size());
 			Map<Integer, Integer> map = regionConvert.get(reg);
 			if(map == null){
-				map = new HashMap<Integer, Integer>();
-				regionConvert.put(reg, map);
+				map = new ConcurrentHashMap<Integer, Integer>();
+				Map<Integer, Integer> existing = regionConvert.putIfAbsent(reg, map);
+				if (existing != null) {
+					map = existing;
+				}
 			}
 			for(int k = 0; k < types.length; k++) {
 				Integer nid = map.get(types[k]);
@@ -704,11 +806,8 @@ public class GeneralRouter implements VehicleRouter {
 			Object o = null;
 			if (value instanceof String && value.toString().startsWith("$")) {
 				BitSet mask = tagRuleMask.get(value.toString().substring(1));
-				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int v = findBit.nextSetBit(0);
+				int v = mask == null ? -1 : firstCommonBit(mask, types);
+				if (v >= 0) {
 					o = parseValueFromTag(v, valueType);
 				}
 			} else if (value instanceof String && value.equals(":incline")) {
@@ -740,7 +839,6 @@ public class GeneralRouter implements VehicleRouter {
 		protected String selectType = null;
 		protected BitSet filterTypes = new BitSet();
 		protected BitSet filterNotTypes = new BitSet();
-		protected BitSet evalFilterTypes = new BitSet();
 		
 		protected Set<String> onlyTags = new LinkedHashSet<String>();
 		protected Set<String> onlyNotTags = new LinkedHashSet<String>();
@@ -856,7 +954,8 @@ public class GeneralRouter implements VehicleRouter {
 			parameters.add(param);
 		}
 
-		public synchronized Object eval(BitSet types, ParameterContext paramContext) {
+		// rule is not modified by evaluation and could be evaluated concurrently
+		public Object eval(BitSet types, ParameterContext paramContext) {
 			if (matches(types, paramContext)) {
 				return calcSelectValue(types, paramContext);
 			}
@@ -867,17 +966,14 @@ public class GeneralRouter implements VehicleRouter {
 		protected Object calcSelectValue(BitSet types, ParameterContext paramContext) {
 			if (selectValue instanceof String && selectValue.toString().startsWith("$")) {
 				BitSet mask = tagRuleMask.get(selectValue.toString().substring(1));
-				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int value = findBit.nextSetBit(0);
+				int value = mask == null ? -1 : firstCommonBit(mask, types);
+				if (value >= 0) {
 					return parseValueFromTag(value, selectType);
 				}
 			} else if (selectValue instanceof String && selectValue.toString().startsWith(":")) {
 				String p = ((String) selectValue).substring(1);
 				if (paramContext != null && paramContext.vars.containsKey(p)) {
-					selectValue = parseValue(paramContext.vars.get(p), selectType);
+					return parseValue(paramContext.vars.get(p), selectType);
 				} else {
 					return null;
 				}
@@ -941,14 +1037,11 @@ public class GeneralRouter implements VehicleRouter {
 		}
 
 		private boolean checkAllTypesShouldBePresent(BitSet types) {
-			// Bitset method subset is missing "filterTypes.isSubset(types)"    
-			// reset previous evaluation
-			// evalFilterTypes.clear(); // not needed same as or()
-			evalFilterTypes.or(filterTypes);
-			// evaluate bit intersection and check if filterTypes contained as set in types
-			evalFilterTypes.and(types);
-			if(!evalFilterTypes.equals(filterTypes)) {
-				return false;
+			// Bitset method subset is missing "filterTypes.isSubset(types)"
+			for (int i = filterTypes.nextSetBit(0); i >= 0; i = filterTypes.nextSetBit(i + 1)) {
+				if (!types.get(i)) {
+					return false;
+				}
 			}
 			return true;
 		}
@@ -0,0 +1,204 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Calculates travel time and distance between all sources and targets (many to many).
+ * One-to-many Dijkstra runs from each source over road segments with the same expansion as A* in
+ * {@link BinaryRoutePlanner} (turn costs, obstacles and restrictions) and stops as soon as all targets are reached.
+ * All searches use the same routing context, so tiles loaded for one source are reused by others.
+ */
+public class RouteMatrixCalculator {
+
+	protected static final Log log = PlatformUtil.getLog(RouteMatrixCalculator.class);
+
+	public static class RouteMatrix {
+		// seconds, Float.POSITIVE_INFINITY if target isn't reachable from source (or not reached in memory limit)
+		public final float[][] time;
+		// meters along the fastest route
+		public final float[][] distance;
+
+		RouteMatrix(int sources, int targets) {
+			time = new float[sources][targets];
+			distance = new float[sources][targets];
+			for (int i = 0; i < sources; i++) {
+				Arrays.fill(time[i], Float.POSITIVE_INFINITY);
+				Arrays.fill(distance[i], Float.POSITIVE_INFINITY);
+			}
+		}
+	}
+
+	// Dijkstra order, distanceToEnd is not used
+	private static final Comparator<RouteSegment> SEGMENTS_COMPARATOR = new Comparator<RouteSegment>() {
+		@Override
+		public int compare(RouteSegment o1, RouteSegment o2) {
+			return Float.compare(o1.distanceFromStart, o2.distanceFromStart);
+		}
+	};
+
+	private final BinaryRoutePlanner planner = new BinaryRoutePlanner();
+
+	public RouteMatrix calculate(RoutingContext ctx, List<LatLon> sources, List<LatLon> targets) throws IOException,
+			InterruptedException {
+		long tm = System.nanoTime();
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RouteMatrix matrix = new RouteMatrix(sources.size(), targets.size());
+		RouteSegmentPoint[] targetPoints = new RouteSegmentPoint[targets.size()];
+		// targets by road id
+		TLongObjectHashMap<List<Integer>> targetRoads = new TLongObjectHashMap<List<Integer>>();
+		for (int t = 0; t < targets.size(); t++) {
+			LatLon l = targets.get(t);
+			RouteSegmentPoint p = fe.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			targetPoints[t] = p;
+			if (p != null) {
+				List<Integer> list = targetRoads.get(p.getRoad().getId());
+				if (list == null) {
+					list = new ArrayList<Integer>(1);
+					targetRoads.put(p.getRoad().getId(), list);
+				}
+				list.add(t);
+			}
+		}
+		int visited = 0;
+		for (int s = 0; s < sources.size(); s++) {
+			LatLon l = sources.get(s);
+			RouteSegmentPoint p = fe.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			if (p != null) {
+				visited += search(ctx, p, targetPoints, targetRoads, matrix.time[s], matrix.distance[s]);
+			}
+		}
+		log.info("Route matrix " + sources.size() + "x" + targets.size() + " is calculated "
+				+ (System.nanoTime() - tm) / 1e6 + " ms, visited segments " + visited);
+		return matrix;
+	}
+
+	private int search(RoutingContext ctx, RouteSegmentPoint source, RouteSegmentPoint[] targetPoints,
+			TLongObjectHashMap<List<Integer>> targetRoads, float[] time, float[] distance) throws IOException,
+			InterruptedException {
+		PriorityQueue<RouteSegment> queue = new PriorityQueue<RouteSegment>(50, SEGMENTS_COMPARATOR);
+		TLongObjectHashMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> oppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		for (int i = 0; i < 2; i++) {
+			RouteSegment s = planner.initRouteSegment(ctx, source, i == 0);
+			if (s != null) {
+				// time is counted from the first point of segment, so time to the source point is subtracted
+				s.distanceFromStart = -planner.calculateTimeWithObstacles(ctx, s.getRoad(),
+						distanceToPoint(s, source), 0);
+				queue.add(s);
+			}
+		}
+		float maxTime = maxTime(time, targetPoints);
+		int visited = 0;
+		while (!queue.isEmpty()) {
+			RouteSegment segment = queue.poll();
+			// all targets are reached
+			if (segment.distanceFromStart >= maxTime) {
+				break;
+			}
+			ctx.memoryOverhead = visitedSegments.size() * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD
+					+ queue.size() * BinaryRoutePlanner.STANDARD_ROAD_IN_QUEUE_OVERHEAD + ctx.getTileSnapshotMemory();
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				log.warn("Route matrix search is stopped, there is no enough memory "
+						+ ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				break;
+			}
+			List<Integer> targetsOnRoad = targetRoads.get(segment.getRoad().getId());
+			long[] targetIntervals = null;
+			if (targetsOnRoad != null) {
+				targetIntervals = new long[targetsOnRoad.size()];
+				for (int i = 0; i < targetIntervals.length; i++) {
+					RouteSegmentPoint target = targetPoints[targetsOnRoad.get(i)];
+					targetIntervals[i] = planner.calculateRoutePointId(segment.getRoad(), target.getSegmentStart() - 1,
+							segment.isPositive());
+					if (visitedSegments.containsKey(targetIntervals[i])) {
+						// visited before with better time
+						targetIntervals[i] = -1;
+					}
+				}
+			}
+			if (!planner.processRouteSegment(ctx, false, queue, visitedSegments, segment, oppositeSegments, false)) {
+				continue;
+			}
+			visited++;
+			if (targetsOnRoad != null) {
+				for (int i = 0; i < targetIntervals.length; i++) {
+					// interval with target is passed by segment
+					if (targetIntervals[i] != -1 && visitedSegments.containsKey(targetIntervals[i])) {
+						int t = targetsOnRoad.get(i);
+						reachTarget(ctx, segment, targetPoints[t], source, t, time, distance);
+					}
+				}
+				maxTime = maxTime(time, targetPoints);
+			}
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+		ctx.visitedSegments += visited;
+		return visited;
+	}
+
+	private void reachTarget(RoutingContext ctx, RouteSegment segment, RouteSegmentPoint target,
+			RouteSegmentPoint source, int t, float[] time, float[] distance) {
+		float d = distanceToPoint(segment, target);
+		float tm = segment.distanceFromStart + planner.calculateTimeWithObstacles(ctx, segment.getRoad(), d, 0);
+		if (tm < 0) {
+			// target is on the same road behind the source
+			return;
+		}
+		if (tm < time[t]) {
+			time[t] = tm;
+			RouteSegment s = segment;
+			while (s.getParentRoute() != null) {
+				RouteSegment parent = s.getParentRoute();
+				d += distanceAlongRoad(parent.getRoad(), parent.getSegmentStart(), s.getParentSegmentEnd());
+				s = parent;
+			}
+			distance[t] = d - distanceToPoint(s, source);
+		}
+	}
+
+	// distance from the first point of segment along its direction to the precise point on the same road
+	private static float distanceToPoint(RouteSegment s, RouteSegmentPoint p) {
+		RouteDataObject road = s.getRoad();
+		// precise point is between segmentStart - 1 and segmentStart
+		int ind = s.isPositive() ? p.getSegmentStart() - 1 : p.getSegmentStart();
+		return distanceAlongRoad(road, s.getSegmentStart(), ind)
+				+ (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(ind), road.getPoint31YTile(ind),
+						p.preciseX, p.preciseY);
+	}
+
+	private static float distanceAlongRoad(RouteDataObject road, int from, int to) {
+		double l = 0;
+		for (int i = Math.min(from, to); i < Math.max(from, to); i++) {
+			l += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+					road.getPoint31XTile(i + 1), road.getPoint31YTile(i + 1));
+		}
+		return (float) l;
+	}
+
+	private static float maxTime(float[] time, RouteSegmentPoint[] targetPoints) {
+		float m = 0;
+		for (int t = 0; t < time.length; t++) {
+			if (targetPoints[t] != null) {
+				m = Math.max(m, time[t]);
+			}
+		}
+		return m;
+	}
+}
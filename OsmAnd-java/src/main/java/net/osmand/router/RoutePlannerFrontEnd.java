@@ -1,13 +1,16 @@
 package net.osmand.router;
 
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
@@ -27,6 +30,11 @@ public class RoutePlannerFrontEnd {
 
 	protected static final Log log = PlatformUtil.getLog(RoutePlannerFrontEnd.class);
 	public boolean useSmartRouteRecalculation = true;
+	// use contraction hierarchy sidecar files (see ContractionHierarchyBuilder) when they are present
+	public boolean useContractionHierarchy = false;
+	// guarded by itself
+	private final Map<String, ContractionHierarchy> contractionHierarchies = new HashMap<String, ContractionHierarchy>();
+	private RouteResultCache routeResultCache;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -108,6 +116,14 @@ public class RoutePlannerFrontEnd {
 		useSmartRouteRecalculation = use;
 	}
 
+	public void setRouteResultCache(RouteResultCache routeResultCache) {
+		this.routeResultCache = routeResultCache;
+	}
+
+	public RouteResultCache getRouteResultCache() {
+		return routeResultCache;
+	}
+
 
 	private boolean needRequestPrivateAccessRouting(RoutingContext ctx, List<LatLon> points) throws IOException {
 		boolean res = false;
@@ -155,7 +171,40 @@ public class RoutePlannerFrontEnd {
 				b = l;
 			}
 		}
-		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
+		List<RouteSegmentPoint> points = null;
+		String cacheKey = null;
+		if (routeResultCache != null && routeDirection == null && ctx.nativeLib == null) {
+			points = findRouteSegmentPoints(ctx, start, end, intermediates);
+			if (points == null) {
+				return null;
+			}
+			cacheKey = routeResultCache.getKey(ctx, points);
+			List<RouteSegmentResult> cached = cacheKey == null ? null : routeResultCache.get(ctx, cacheKey);
+			if (cached != null) {
+				makeStartEndPointsPrecise(cached, start, end, intermediates);
+				return cached;
+			}
+		}
+		List<RouteSegmentResult> res = null;
+		if (intermediatesEmpty && routeDirection == null && ctx.nativeLib == null && ctx.previouslyCalculatedRoute == null) {
+			List<ContractionHierarchy> hierarchies = getContractionHierarchies(ctx);
+			if (!hierarchies.isEmpty()) {
+				if (points == null) {
+					points = findRouteSegmentPoints(ctx, start, end, intermediates);
+					if (points == null) {
+						return null;
+					}
+				}
+				for (ContractionHierarchy ch : hierarchies) {
+					res = ch.searchRoute(ctx, points.get(0), points.get(1));
+					if (res != null) {
+						break;
+					}
+				}
+			}
+		}
+		// base pass is not needed when route is found by contraction hierarchy
+		if (res == null && ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
 				&& maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
 			ctx.calculationProgress.totalIterations++;
 			RoutingContext nctx = buildRoutingContext(ctx.config, ctx.nativeLib, ctx.getMaps(), RouteCalculationMode.BASE);
@@ -176,30 +225,26 @@ public class RoutePlannerFrontEnd {
 				ctx.precalculatedRouteDirection = routeDirection.adopt(ctx);
 			}
 			ctx.calculationProgress.nextIteration();
-			List<RouteSegmentResult> res = runNativeRouting(ctx, recalculationEnd);
+			res = runNativeRouting(ctx, recalculationEnd);
 			if (res != null) {
 				new RouteResultPreparation().printResults(ctx, start, end, res);
 			}
 			makeStartEndPointsPrecise(res, start, end, intermediates);
 			return res;
 		}
-		int indexNotFound = 0;
-		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
-		if (!addSegment(start, ctx, indexNotFound++, points)) {
-			return null;
-		}
-		if (intermediates != null) {
-			for (LatLon l : intermediates) {
-				if (!addSegment(l, ctx, indexNotFound++, points)) {
-					return null;
-				}
+		if (points == null) {
+			points = findRouteSegmentPoints(ctx, start, end, intermediates);
+			if (points == null) {
+				return null;
 			}
 		}
-		if (!addSegment(end, ctx, indexNotFound++, points)) {
-			return null;
+		if (res == null) {
+			ctx.calculationProgress.nextIteration();
+			res = searchRoute(ctx, points, routeDirection);
+		}
+		if (cacheKey != null && res != null && !res.isEmpty()) {
+			routeResultCache.put(ctx, cacheKey, res);
 		}
-		ctx.calculationProgress.nextIteration();
-		List<RouteSegmentResult> res = searchRoute(ctx, points, routeDirection);
 		// make start and end more precise
 		makeStartEndPointsPrecise(res, start, end, intermediates);
 		if (res != null) {
@@ -315,6 +360,55 @@ public class RoutePlannerFrontEnd {
 
 	}
 
+	private List<ContractionHierarchy> getContractionHierarchies(RoutingContext ctx) {
+		List<ContractionHierarchy> res = new ArrayList<ContractionHierarchy>();
+		if (!useContractionHierarchy || ctx.nativeLib != null || ctx.calculationMode == RouteCalculationMode.BASE) {
+			return res;
+		}
+		for (BinaryMapIndexReader reader : ctx.getMaps()) {
+			if (reader.getFile() == null) {
+				continue;
+			}
+			File sidecar = ContractionHierarchy.getSidecarFile(reader.getFile(), ctx.config.routerName);
+			ContractionHierarchy ch;
+			synchronized (contractionHierarchies) {
+				ch = contractionHierarchies.get(sidecar.getAbsolutePath());
+				if (ch == null && sidecar.exists()) {
+					try {
+						ch = ContractionHierarchy.read(sidecar);
+						contractionHierarchies.put(sidecar.getAbsolutePath(), ch);
+					} catch (IOException e) {
+						log.error("Contraction hierarchy is not loaded " + sidecar.getName(), e);
+					}
+				}
+			}
+			if (ch != null && ch.isApplicable(ctx.config, reader.getDateCreated())) {
+				res.add(ch);
+			}
+		}
+		return res;
+	}
+
+	private List<RouteSegmentPoint> findRouteSegmentPoints(RoutingContext ctx, LatLon start, LatLon end,
+			List<LatLon> intermediates) throws IOException {
+		int indexNotFound = 0;
+		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
+		if (!addSegment(start, ctx, indexNotFound++, points)) {
+			return null;
+		}
+		if (intermediates != null) {
+			for (LatLon l : intermediates) {
+				if (!addSegment(l, ctx, indexNotFound++, points)) {
+					return null;
+				}
+			}
+		}
+		if (!addSegment(end, ctx, indexNotFound++, points)) {
+			return null;
+		}
+		return points;
+	}
+
 	private boolean addSegment(LatLon s, RoutingContext ctx, int indexNotFound, List<RouteSegmentPoint> res) throws IOException {
 		RouteSegmentPoint f = findRouteSegment(s.getLatitude(), s.getLongitude(), ctx, null);
 		if (f == null) {
@@ -478,6 +572,7 @@ public class RoutePlannerFrontEnd {
 			ctx.loadedTiles += local.loadedTiles;
 			ctx.visitedSegments += local.visitedSegments;
 			ctx.loadedPrevUnloadedTiles += local.loadedPrevUnloadedTiles;
+			ctx.reloadedTiles += local.reloadedTiles;
 			ctx.timeToCalculate += local.timeToCalculate;
 			ctx.timeToLoad += local.timeToLoad;
 			ctx.timeToLoadHeaders += local.timeToLoadHeaders;
@@ -0,0 +1,135 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+/**
+ * LRU cache of calculated routes (see {@link RoutePlannerFrontEnd#setRouteResultCache(RouteResultCache)}).
+ * Route is identified by roads and segments where start, intermediate and end points are snapped to
+ * (with direction preferred by initial direction), router profile with its parameters and impassable roads. Cache is cleared when other set of maps
+ * (files or their creation dates) is used. Routes are stored and returned as copies, so they could be modified.
+ * Cache could be shared between front ends and it is thread safe.
+ */
+public class RouteResultCache {
+
+	private final int maxRoutes;
+	private String mapsSignature;
+	private long hits;
+	private long misses;
+	private final LinkedHashMap<String, List<RouteSegmentResult>> routes =
+			new LinkedHashMap<String, List<RouteSegmentResult>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, List<RouteSegmentResult>> eldest) {
+			return size() > maxRoutes;
+		}
+	};
+
+	public RouteResultCache(int maxRoutes) {
+		this.maxRoutes = maxRoutes;
+	}
+
+	/**
+	 * Returns key of the route or null if route shouldn't be cached
+	 */
+	String getKey(RoutingContext ctx, List<RouteSegmentPoint> points) {
+		if (ctx.previouslyCalculatedRoute != null || ctx.nativeLib != null) {
+			return null;
+		}
+		StringBuilder b = new StringBuilder();
+		b.append(ctx.config.routerName).append('|');
+		VehicleRouter router = ctx.getRouter();
+		b.append(ContractionHierarchy.getRouterParameters(router)).append('|');
+		if (router instanceof GeneralRouter) {
+			long[] impassable = ((GeneralRouter) router).getImpassableRoadIds();
+			Arrays.sort(impassable);
+			b.append(Arrays.toString(impassable));
+		}
+		b.append('|');
+		b.append(ctx.calculationMode).append('|').append(ctx.leftSideNavigation).append('|');
+		for (RouteSegmentPoint p : points) {
+			b.append(p.getRoad().getId()).append(':').append(p.getSegmentStart());
+			// initial direction (bearing) only penalizes one of directions of the road from the point
+			b.append(':').append(BinaryRoutePlanner.getInitialDirection(ctx, p)).append(';');
+		}
+		return b.toString();
+	}
+
+	private static String getMapsSignature(BinaryMapIndexReader[] maps) {
+		TreeSet<String> files = new TreeSet<String>();
+		for (BinaryMapIndexReader r : maps) {
+			File f = r.getFile();
+			files.add((f == null ? r.getRegionName() : f.getAbsolutePath()) + ":" + r.getDateCreated());
+		}
+		return files.toString();
+	}
+
+	private void checkMaps(RoutingContext ctx) {
+		String signature = getMapsSignature(ctx.getMaps());
+		if (!signature.equals(mapsSignature)) {
+			routes.clear();
+			mapsSignature = signature;
+		}
+	}
+
+	public synchronized List<RouteSegmentResult> get(RoutingContext ctx, String key) {
+		checkMaps(ctx);
+		List<RouteSegmentResult> route = routes.get(key);
+		if (route == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return copy(route);
+	}
+
+	public synchronized void put(RoutingContext ctx, String key, List<RouteSegmentResult> route) {
+		checkMaps(ctx);
+		routes.put(key, copy(route));
+	}
+
+	private static List<RouteSegmentResult> copy(List<RouteSegmentResult> route) {
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>(route.size());
+		for (RouteSegmentResult r : route) {
+			// road geometry is changed to make start, intermediate and end points precise
+			RouteDataObject o = new RouteDataObject(r.getObject());
+			o.nameIds = r.getObject().nameIds;
+			o.heightDistanceArray = r.getObject().heightDistanceArray;
+			res.add(new RouteSegmentResult(r, o));
+		}
+		return res;
+	}
+
+	public synchronized void clear() {
+		routes.clear();
+		mapsSignature = null;
+	}
+
+	public synchronized int size() {
+		return routes.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Route result cache: " + routes.size() + " routes (max " + maxRoutes + "), hits " + hits + ", misses "
+				+ misses;
+	}
+}
@@ -33,6 +33,35 @@ public class RouteSegmentResult {
 		this.endPointIndex = endPointIndex;
 		updateCapacity();
 	}
+
+	/**
+	 * Copy of the segment result with given road object (lists of attached routes are copied, routes are shared)
+	 */
+	public RouteSegmentResult(RouteSegmentResult copy, RouteDataObject object) {
+		this.object = object;
+		this.startPointIndex = copy.startPointIndex;
+		this.endPointIndex = copy.endPointIndex;
+		this.attachedRoutes = copy.attachedRoutes.clone();
+		for (int i = 0; i < attachedRoutes.length; i++) {
+			if (attachedRoutes[i] != null) {
+				attachedRoutes[i] = new ArrayList<RouteSegmentResult>(attachedRoutes[i]);
+			}
+		}
+		if (copy.preAttachedRoutes != null) {
+			this.preAttachedRoutes = copy.preAttachedRoutes.clone();
+			for (int i = 0; i < preAttachedRoutes.length; i++) {
+				if (preAttachedRoutes[i] != null) {
+					preAttachedRoutes[i] = preAttachedRoutes[i].clone();
+				}
+			}
+		}
+		this.segmentTime = copy.segmentTime;
+		this.routingTime = copy.routingTime;
+		this.speed = copy.speed;
+		this.distance = copy.distance;
+		this.description = copy.description;
+		this.turnType = copy.turnType;
+	}
 	
 	public float[] getHeightValues() {
 		float[] pf = object.calculateHeightArray();
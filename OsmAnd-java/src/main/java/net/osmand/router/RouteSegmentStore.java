@@ -0,0 +1,390 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.Arrays;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Pooled storage of route segments visited by A* (see {@link RoutingContext#useSegmentStore}).
+ * Segment is referenced by int handle and all its fields are stored in parallel primitive arrays,
+ * so the search doesn't allocate and keep an object per queued or visited segment.
+ * Handles of segments which were polled and not visited are released and reused.
+ * Objects ({@link RouteSegment}) are materialized only for the found route.
+ */
+class RouteSegmentStore {
+
+	static final int NULL = -1;
+
+	private static final byte FLAG_FINAL = 1;
+	private static final byte FLAG_REVERSE_SEARCH = 2;
+	private static final int INITIAL_CAPACITY = 1024;
+	// bytes per segment in arrays: reference, 2 shorts, 2 bytes, 3 ints (with free list), 2 floats
+	private static final int SEGMENT_SIZE = 8 + 2 * 2 + 2 + 3 * 4 + 2 * 4;
+
+	private RouteDataObject[] roads = new RouteDataObject[INITIAL_CAPACITY];
+	private short[] segmentStart = new short[INITIAL_CAPACITY];
+	private short[] parentSegmentEnd = new short[INITIAL_CAPACITY];
+	private byte[] direction = new byte[INITIAL_CAPACITY];
+	private byte[] flags = new byte[INITIAL_CAPACITY];
+	private int[] parent = new int[INITIAL_CAPACITY];
+	// opposite segment for final segments
+	private int[] opposite = new int[INITIAL_CAPACITY];
+	private float[] distanceFromStart = new float[INITIAL_CAPACITY];
+	private float[] distanceToEnd = new float[INITIAL_CAPACITY];
+	// released handles
+	private int[] free = new int[INITIAL_CAPACITY];
+	private int freeSize;
+	private int size;
+
+	private final RoutingContext ctx;
+
+	RouteSegmentStore(RoutingContext ctx) {
+		this.ctx = ctx;
+	}
+
+	int create(RouteDataObject road, int segStart, byte directionAssgn) {
+		int h = freeSize > 0 ? free[--freeSize] : allocate();
+		roads[h] = road;
+		segmentStart[h] = (short) segStart;
+		parentSegmentEnd[h] = 0;
+		direction[h] = directionAssgn;
+		flags[h] = 0;
+		parent[h] = NULL;
+		opposite[h] = NULL;
+		distanceFromStart[h] = 0;
+		distanceToEnd[h] = 0;
+		return h;
+	}
+
+	private int allocate() {
+		if (size == roads.length) {
+			int capacity = roads.length * 2;
+			roads = Arrays.copyOf(roads, capacity);
+			segmentStart = Arrays.copyOf(segmentStart, capacity);
+			parentSegmentEnd = Arrays.copyOf(parentSegmentEnd, capacity);
+			direction = Arrays.copyOf(direction, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			opposite = Arrays.copyOf(opposite, capacity);
+			distanceFromStart = Arrays.copyOf(distanceFromStart, capacity);
+			distanceToEnd = Arrays.copyOf(distanceToEnd, capacity);
+			free = Arrays.copyOf(free, capacity);
+		}
+		return size++;
+	}
+
+	/**
+	 * Handle could be released only if it is not queued and not referenced by other segments or maps
+	 */
+	void release(int h) {
+		roads[h] = null;
+		free[freeSize++] = h;
+	}
+
+	int createFinal(RouteDataObject road, int segStart, boolean reverseWaySearch, int oppositeSegment) {
+		int h = create(road, segStart, (byte) 0);
+		flags[h] = (byte) (FLAG_FINAL | (reverseWaySearch ? FLAG_REVERSE_SEARCH : 0));
+		opposite[h] = oppositeSegment;
+		return h;
+	}
+
+	/**
+	 * Copies segment with its parent chain into the store
+	 */
+	int importSegment(RouteSegment s) {
+		int h = create(s.getRoad(), s.getSegmentStart(), s.getDirectionAssigned());
+		distanceFromStart[h] = s.distanceFromStart;
+		distanceToEnd[h] = s.distanceToEnd;
+		parentSegmentEnd[h] = (short) s.getParentSegmentEnd();
+		int child = h;
+		RouteSegment p = s.getParentRoute();
+		while (p != null) {
+			int ph = create(p.getRoad(), p.getSegmentStart(), p.getDirectionAssigned());
+			distanceFromStart[ph] = p.distanceFromStart;
+			distanceToEnd[ph] = p.distanceToEnd;
+			parentSegmentEnd[ph] = (short) p.getParentSegmentEnd();
+			parent[child] = ph;
+			child = ph;
+			p = p.getParentRoute();
+		}
+		return h;
+	}
+
+	RouteDataObject getRoad(int h) {
+		return roads[h];
+	}
+
+	short getSegmentStart(int h) {
+		return segmentStart[h];
+	}
+
+	boolean isPositive(int h) {
+		return direction[h] == 1;
+	}
+
+	boolean isFinal(int h) {
+		return (flags[h] & FLAG_FINAL) != 0;
+	}
+
+	int getParent(int h) {
+		return parent[h];
+	}
+
+	void setParent(int h, int parentSegment, int segmentEnd) {
+		parent[h] = parentSegment;
+		parentSegmentEnd[h] = (short) segmentEnd;
+	}
+
+	float getDistanceFromStart(int h) {
+		return distanceFromStart[h];
+	}
+
+	float getDistanceToEnd(int h) {
+		return distanceToEnd[h];
+	}
+
+	void setDistance(int h, float fromStart, float toEnd) {
+		distanceFromStart[h] = fromStart;
+		distanceToEnd[h] = toEnd;
+	}
+
+	/**
+	 * Returns parent with other road (the same as BinaryRoutePlanner.getParentDiffId)
+	 */
+	int getParentDiffId(int h) {
+		while (parent[h] != NULL && roads[parent[h]].getId() == roads[h].getId()) {
+			h = parent[h];
+		}
+		return parent[h];
+	}
+
+	// number of segments in use
+	int size() {
+		return size - freeSize;
+	}
+
+	long getEstimatedMemory() {
+		return (long) roads.length * SEGMENT_SIZE;
+	}
+
+	/**
+	 * Creates segment object without parent route (to be used as argument of router methods)
+	 */
+	RouteSegment toSimpleSegment(int h) {
+		RouteSegment s = new RouteSegment(roads[h], segmentStart[h]);
+		s.directionAssgn = direction[h];
+		s.distanceFromStart = distanceFromStart[h];
+		s.distanceToEnd = distanceToEnd[h];
+		return s;
+	}
+
+	/**
+	 * Materializes segment with whole parent chain (and opposite chain for final segment)
+	 */
+	RouteSegment materialize(int h) {
+		if (h == NULL) {
+			return null;
+		}
+		TIntObjectHashMap<RouteSegment> created = new TIntObjectHashMap<RouteSegment>();
+		return materialize(h, created);
+	}
+
+	private RouteSegment materialize(int h, TIntObjectHashMap<RouteSegment> created) {
+		RouteSegment first = null;
+		RouteSegment child = null;
+		while (h != NULL) {
+			RouteSegment s = created.get(h);
+			boolean exists = s != null;
+			if (!exists) {
+				if (isFinal(h)) {
+					FinalRouteSegment frs = new FinalRouteSegment(roads[h], segmentStart[h]);
+					frs.reverseWaySearch = (flags[h] & FLAG_REVERSE_SEARCH) != 0;
+					created.put(h, frs);
+					frs.opposite = materialize(opposite[h], created);
+					s = frs;
+				} else {
+					s = new RouteSegment(roads[h], segmentStart[h]);
+					created.put(h, s);
+				}
+				s.directionAssgn = direction[h];
+				s.distanceFromStart = distanceFromStart[h];
+				s.distanceToEnd = distanceToEnd[h];
+				s.parentSegmentEnd = parentSegmentEnd[h];
+			}
+			if (child != null) {
+				child.parentRoute = s;
+			} else {
+				first = s;
+			}
+			if (exists) {
+				break;
+			}
+			child = s;
+			h = parent[h];
+		}
+		return first;
+	}
+
+	/**
+	 * Binary heap of segment handles ordered by A* priority. Elements are sifted exactly as by
+	 * {@link java.util.PriorityQueue}, so segments with equal priority are polled in the same order.
+	 */
+	class SegmentHeap {
+		private int[] heap = new int[64];
+		private int heapSize;
+
+		boolean isEmpty() {
+			return heapSize == 0;
+		}
+
+		int size() {
+			return heapSize;
+		}
+
+		int peek() {
+			return heapSize == 0 ? NULL : heap[0];
+		}
+
+		int poll() {
+			if (heapSize == 0) {
+				return NULL;
+			}
+			int h = heap[0];
+			heapSize--;
+			if (heapSize > 0) {
+				siftDown(0, heap[heapSize]);
+			}
+			return h;
+		}
+
+		void add(int h) {
+			if (heapSize == heap.length) {
+				heap = Arrays.copyOf(heap, heapSize * 2);
+			}
+			siftUp(heapSize++, h);
+		}
+
+		private int compare(int h1, int h2) {
+			return ctx.roadPriorityComparator(distanceFromStart[h1], distanceToEnd[h1], distanceFromStart[h2],
+					distanceToEnd[h2]);
+		}
+
+		private void siftUp(int i, int h) {
+			while (i > 0) {
+				int p = (i - 1) >>> 1;
+				if (compare(h, heap[p]) >= 0) {
+					break;
+				}
+				heap[i] = heap[p];
+				i = p;
+			}
+			heap[i] = h;
+		}
+
+		private void siftDown(int i, int h) {
+			int half = heapSize >>> 1;
+			while (i < half) {
+				int c = 2 * i + 1;
+				if (c + 1 < heapSize && compare(heap[c], heap[c + 1]) > 0) {
+					c++;
+				}
+				if (compare(h, heap[c]) <= 0) {
+					break;
+				}
+				heap[i] = heap[c];
+				i = c;
+			}
+			heap[i] = h;
+		}
+
+		long getEstimatedMemory() {
+			return (long) heap.length * 4;
+		}
+	}
+
+	/**
+	 * Open addressing map of route point id to segment handle
+	 */
+	static class SegmentMap {
+		private static final long EMPTY = Long.MIN_VALUE;
+		private long[] keys;
+		private int[] values;
+		private int mapSize;
+
+		SegmentMap() {
+			keys = new long[256];
+			values = new int[256];
+			Arrays.fill(keys, EMPTY);
+		}
+
+		private static int mix(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		int get(long key) {
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (keys[i] != EMPTY) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return NULL;
+		}
+
+		boolean containsKey(long key) {
+			return get(key) != NULL;
+		}
+
+		void put(long key, int value) {
+			if (2 * (mapSize + 1) > keys.length) {
+				rehash(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (keys[i] != EMPTY) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = value;
+			mapSize++;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new long[capacity];
+			values = new int[capacity];
+			Arrays.fill(keys, EMPTY);
+			int mask = capacity - 1;
+			for (int j = 0; j < oldKeys.length; j++) {
+				if (oldKeys[j] != EMPTY) {
+					int i = mix(oldKeys[j]) & mask;
+					while (keys[i] != EMPTY) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[j];
+					values[i] = oldValues[j];
+				}
+			}
+		}
+
+		int size() {
+			return mapSize;
+		}
+
+		long getEstimatedMemory() {
+			return (long) keys.length * 12;
+		}
+	}
+}
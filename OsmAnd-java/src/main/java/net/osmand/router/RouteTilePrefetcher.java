@@ -0,0 +1,145 @@
+package net.osmand.router;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReaderPool;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Decodes route tiles in a background thread for bidirectional search. While one frontier is expanded,
+ * tiles under the head of the waiting frontier are decoded into {@link RoutingContext#preloadedTiles}.
+ * Queues, visited segments and loaded tiles are changed only by the search thread, so search visits
+ * segments in the same order and finds the same route as without prefetching.
+ */
+class RouteTilePrefetcher implements Runnable {
+
+	private static final Log log = PlatformUtil.getLog(RouteTilePrefetcher.class);
+	// decoded tiles are not counted by memory limit until search loads them
+	private static final int MAX_PRELOADED_TILES = 16;
+
+	private final RoutingContext ctx;
+	private final Map<BinaryMapIndexReader, BinaryMapIndexReaderPool> pools = new HashMap<BinaryMapIndexReader, BinaryMapIndexReaderPool>();
+	private final TLongHashSet requestedTiles = new TLongHashSet();
+	private Thread thread;
+	// accessed only by search thread
+	private RouteDataObject lastRoad;
+	// guarded by this
+	private RouteDataObject road;
+	private boolean stopped;
+
+	RouteTilePrefetcher(RoutingContext ctx) {
+		this.ctx = ctx;
+	}
+
+	void start() throws IOException {
+		// created in search thread, pool reads shared indexes of live reader which is not locked
+		for (BinaryMapIndexReader reader : ctx.reverseMap.values()) {
+			if (reader.getFile() != null && !pools.containsKey(reader)) {
+				pools.put(reader, new BinaryMapIndexReaderPool(reader, 1));
+			}
+		}
+		thread = new Thread(this, "Route tiles prefetch");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Called by search thread with the road of the frontier head which is not expanded now
+	 */
+	void prefetch(RouteDataObject head) {
+		if (head == null || head == lastRoad) {
+			return;
+		}
+		lastRoad = head;
+		synchronized (this) {
+			road = head;
+			notifyAll();
+		}
+	}
+
+	void stop() throws InterruptedException {
+		synchronized (this) {
+			stopped = true;
+			notifyAll();
+		}
+		thread.join();
+		for (BinaryMapIndexReaderPool pool : pools.values()) {
+			pool.close();
+		}
+		ctx.preloadedTiles.clear();
+	}
+
+	@Override
+	public void run() {
+		try {
+			RouteDataObject next;
+			while ((next = nextRoad()) != null) {
+				prefetchRoad(next);
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} catch (IOException e) {
+			// search loads tiles itself
+			log.error(e.getMessage(), e);
+		} catch (RuntimeException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	private synchronized RouteDataObject nextRoad() throws InterruptedException {
+		while (!stopped && road == null) {
+			wait();
+		}
+		RouteDataObject next = road;
+		road = null;
+		return stopped ? null : next;
+	}
+
+	private synchronized boolean isStopped() {
+		return stopped;
+	}
+
+	private void prefetchRoad(RouteDataObject ro) throws IOException, InterruptedException {
+		int zoomToLoad = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		for (int i = 0; i < ro.getPointsLength() && !isStopped(); i++) {
+			int x31 = ro.getPoint31XTile(i);
+			int y31 = ro.getPoint31YTile(i);
+			long tileId = ((long) (x31 >> zoomToLoad) << ctx.config.ZOOM_TO_LOAD_TILES) + (y31 >> zoomToLoad);
+			if (!requestedTiles.add(tileId)) {
+				continue;
+			}
+			List<RoutingSubregionTile> tiles = ctx.getSubregionTilesToPreload(x31, y31, MAX_PRELOADED_TILES);
+			if (tiles == null) {
+				// wait till search loads decoded tiles
+				requestedTiles.remove(tileId);
+				return;
+			}
+			for (RoutingSubregionTile ts : tiles) {
+				if (isStopped()) {
+					return;
+				}
+				BinaryMapIndexReader reader = ctx.reverseMap.get(ts.subregion.routeReg);
+				BinaryMapIndexReaderPool pool = pools.get(reader);
+				if (pool == null) {
+					continue;
+				}
+				BinaryMapIndexReader r = pool.acquire();
+				try {
+					ctx.preloadSubregionTile(ts, ctx.decodeSubregionTile(r, ts.subregion));
+				} finally {
+					pool.release(r);
+				}
+			}
+		}
+	}
+}
@@ -37,6 +37,8 @@ public class RoutingConfiguration {
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// decode tiles under the head of waiting frontier in background thread (only for 2 ways planning)
+	public boolean parallelBidirectionalSearch = false;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -100,6 +102,7 @@ public class RoutingConfiguration {
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
 //			i.planRoadDirection = 1;
+			i.parallelBidirectionalSearch = "true".equals(getAttribute(i.router, "parallelBidirectionalSearch"));
 			
 			return i;
 		}
@@ -12,25 +12,37 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.osmand.NativeLibrary;
 import net.osmand.NativeLibrary.NativeRouteSearchResult;
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapIndexReaderPool;
 import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.RouteDataObject;
+import net.osmand.binary.RouteTileSnapshot;
+import net.osmand.data.LatLon;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
 import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
 
@@ -67,6 +79,10 @@ public class RoutingContext {
 	public boolean leftSideNavigation;
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
+	// keep A* frontier and visited segments in primitive arrays (see RouteSegmentStore)
+	public boolean useSegmentStore = false;
+	// decoded route data is taken from (and new tiles are added to) snapshot
+	public RouteTileSnapshot tileSnapshot;
 
 	// 2. Routing memory cache (big objects)
 	TLongObjectHashMap<List<RoutingSubregionTile>> indexedSubregions = new TLongObjectHashMap<List<RoutingSubregionTile>>();
@@ -74,6 +90,11 @@ public class RoutingContext {
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
+	TileEvictionStrategy evictionStrategy = new TileEvictionStrategy.AccessCountStrategy();
+	// points (x, y) of heads of direct and reverse search queues, 0 if queue is empty
+	private final int[] queueHeads = new int[4];
+	// route data decoded in parallel by warmup or prefetch, consumed by loadSubregionTile
+	Map<RoutingSubregionTile, List<RouteDataObject>> preloadedTiles = new ConcurrentHashMap<RoutingSubregionTile, List<RouteDataObject>>();
 	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
@@ -95,6 +116,8 @@ public class RoutingContext {
 	int distinctLoadedTiles = 0;
 	int maxLoadedTiles = 0;
 	int loadedPrevUnloadedTiles = 0;
+	// loads of tiles which were unloaded before (any number of times)
+	public int reloadedTiles = 0;
 	int unloadedTiles = 0;
 	public float routingTime = 0;
 	public int loadedTiles = 0;
@@ -114,6 +137,9 @@ public class RoutingContext {
 		this.map.putAll(cp.map);
 		this.calculationMode = cp.calculationMode;
 		this.leftSideNavigation = cp.leftSideNavigation;
+		this.useSegmentStore = cp.useSegmentStore;
+		this.tileSnapshot = cp.tileSnapshot;
+		this.evictionStrategy = cp.evictionStrategy;
 		this.reverseMap.putAll(cp.reverseMap);
 		this.nativeLib = cp.nativeLib;
 		// copy local data and clear caches
@@ -154,6 +180,35 @@ public class RoutingContext {
 	}
 	
 	
+	public TileEvictionStrategy getTileEvictionStrategy() {
+		return evictionStrategy;
+	}
+
+	public void setTileEvictionStrategy(TileEvictionStrategy evictionStrategy) {
+		this.evictionStrategy = evictionStrategy;
+	}
+
+	/**
+	 * Sets heads of direct and reverse search queues (road and segment start, null road if queue is empty)
+	 */
+	public synchronized void setQueueHeads(RouteDataObject direct, int directStart, RouteDataObject reverse,
+			int reverseStart) {
+		setQueueHead(0, direct, directStart);
+		setQueueHead(2, reverse, reverseStart);
+	}
+
+	private void setQueueHead(int i, RouteDataObject road, int pointInd) {
+		queueHeads[i] = road == null ? 0 : road.getPoint31XTile(pointInd);
+		queueHeads[i + 1] = road == null ? 0 : road.getPoint31YTile(pointInd);
+	}
+
+	/**
+	 * Returns points (x, y pairs) of direct and reverse queue heads, 0 if queue is empty
+	 */
+	public synchronized int[] getQueueHeads() {
+		return queueHeads.clone();
+	}
+
 	public RouteSegmentVisitor getVisitor() {
 		return visitor;
 	}
@@ -171,6 +226,14 @@ public class RoutingContext {
 	public int getCurrentEstimatedSize(){
 		return global.size;
 	}
+
+	/**
+	 * Memory of tiles added to {@link #tileSnapshot}, they are kept until snapshot is released
+	 * and are counted by {@link #memoryOverhead}
+	 */
+	public int getTileSnapshotMemory() {
+		return tileSnapshot == null ? 0 : (int) Math.min(Integer.MAX_VALUE, tileSnapshot.getAddedTilesMemory());
+	}
 	
 	
 	public void setVisitor(RouteSegmentVisitor visitor) {
@@ -272,7 +335,8 @@ public class RoutingContext {
 	
 	
 
-	public RouteSegment loadRouteSegment(int x31, int y31, int memoryLimit) {
+	// synchronized as tile headers and preloaded tiles are also read by route tiles prefetcher
+	public synchronized RouteSegment loadRouteSegment(int x31, int y31, int memoryLimit) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit, OPTION_SMART_LOAD);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -312,7 +376,10 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res = preloadedTiles.remove(ts);
+				if (res == null) {
+					res = decodeSubregionTile(reader, ts.subregion);
+				}
 //				System.out.println(ts.subregion.shiftToData + " " + res);
 				if(toLoad != null) {
 					toLoad.addAll(res);
@@ -348,6 +415,7 @@ public class RoutingContext {
 		}
 		loadedTiles++;
 		if (wasUnloaded) {
+			reloadedTiles++;
 			if(ucount == 1) {
 				loadedPrevUnloadedTiles++;
 			}
@@ -361,6 +429,198 @@ public class RoutingContext {
 		global.size += ts.tileStatistics.size;
 	}
 
+	List<RouteDataObject> decodeSubregionTile(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		List<RouteDataObject> res = null;
+		if (tileSnapshot != null) {
+			res = tileSnapshot.getTile(reader, subregion);
+		}
+		if (res == null) {
+			res = reader.loadRouteIndexData(subregion);
+			if (tileSnapshot != null) {
+				tileSnapshot.putTile(reader, subregion, res);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns not loaded and not decoded subregion tiles at the point (tile headers are loaded if needed)
+	 * or null if there are already maxPreloaded decoded tiles waiting to be loaded
+	 */
+	synchronized List<RoutingSubregionTile> getSubregionTilesToPreload(int x31, int y31, int maxPreloaded) {
+		if (preloadedTiles.size() >= maxPreloaded) {
+			return null;
+		}
+		List<RoutingSubregionTile> res = new ArrayList<RoutingSubregionTile>();
+		if (nativeLib != null) {
+			return res;
+		}
+		long tileId = getRoutingTile(x31, y31, 0, OPTION_NO_LOAD);
+		if (!indexedSubregions.containsKey(tileId)) {
+			indexedSubregions.put(tileId, loadTileHeaders(x31, y31));
+		}
+		List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+		if (subregions != null) {
+			for (RoutingSubregionTile ts : subregions) {
+				if (!ts.isLoaded() && !preloadedTiles.containsKey(ts) && reverseMap.get(ts.subregion.routeReg).getFile() != null) {
+					res.add(ts);
+				}
+			}
+		}
+		return res;
+	}
+
+	synchronized void preloadSubregionTile(RoutingSubregionTile ts, List<RouteDataObject> routes) {
+		if (!ts.isLoaded()) {
+			preloadedTiles.put(ts, routes);
+		}
+	}
+
+	/**
+	 * Loads all tiles intersecting the bbox (31 coordinates). Route data of the tiles is decoded in parallel
+	 * by threads (each of them reads files with its own reader, see {@link BinaryMapIndexReaderPool}) and
+	 * then tiles are loaded as they are loaded by search. Stops when memory limit is almost reached.
+	 * Returns number of loaded tiles.
+	 */
+	public int warmupTiles(int left31, int top31, int right31, int bottom31, int threads) throws IOException,
+			InterruptedException {
+		int zoomToLoad = 31 - config.ZOOM_TO_LOAD_TILES;
+		TLongHashSet tiles = new TLongHashSet();
+		for (int tileX = left31 >> zoomToLoad; tileX <= right31 >> zoomToLoad; tileX++) {
+			for (int tileY = top31 >> zoomToLoad; tileY <= bottom31 >> zoomToLoad; tileY++) {
+				tiles.add(((long) tileX << config.ZOOM_TO_LOAD_TILES) + tileY);
+			}
+		}
+		return warmupTiles(tiles, threads);
+	}
+
+	/**
+	 * Loads all tiles around the route points (corridor) within radius, see {@link #warmupTiles(int, int, int, int, int)}
+	 */
+	public int warmupTiles(List<LatLon> corridor, double radiusMeters, int threads) throws IOException,
+			InterruptedException {
+		int zoomToLoad = 31 - config.ZOOM_TO_LOAD_TILES;
+		int tileSize = 1 << zoomToLoad;
+		TLongHashSet tiles = new TLongHashSet();
+		for (int i = 0; i < corridor.size(); i++) {
+			LatLon l = corridor.get(i);
+			LatLon n = i + 1 < corridor.size() ? corridor.get(i + 1) : l;
+			int x1 = MapUtils.get31TileNumberX(l.getLongitude());
+			int y1 = MapUtils.get31TileNumberY(l.getLatitude());
+			int x2 = MapUtils.get31TileNumberX(n.getLongitude());
+			int y2 = MapUtils.get31TileNumberY(n.getLatitude());
+			int r = (int) (radiusMeters / MapUtils.measuredDist31(x1, y1, x1 + tileSize, y1) * tileSize);
+			int steps = Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)) / tileSize + 1;
+			for (int k = 0; k <= steps; k++) {
+				int x = (int) (x1 + (long) (x2 - x1) * k / steps);
+				int y = (int) (y1 + (long) (y2 - y1) * k / steps);
+				for (int tileX = (x - r) >> zoomToLoad; tileX <= (x + r) >> zoomToLoad; tileX++) {
+					for (int tileY = (y - r) >> zoomToLoad; tileY <= (y + r) >> zoomToLoad; tileY++) {
+						tiles.add(((long) tileX << config.ZOOM_TO_LOAD_TILES) + tileY);
+					}
+				}
+			}
+		}
+		return warmupTiles(tiles, threads);
+	}
+
+	private int warmupTiles(TLongHashSet tiles, int threads) throws IOException, InterruptedException {
+		int zoomToLoad = 31 - config.ZOOM_TO_LOAD_TILES;
+		int mask = (1 << config.ZOOM_TO_LOAD_TILES) - 1;
+		long[] ids = tiles.toArray();
+		// subregions to decode grouped by file
+		Map<BinaryMapIndexReader, List<RoutingSubregionTile>> toDecode = new LinkedHashMap<BinaryMapIndexReader, List<RoutingSubregionTile>>();
+		Set<RoutingSubregionTile> added = new HashSet<RoutingSubregionTile>();
+		synchronized (this) {
+			for (long tileId : ids) {
+				if (!indexedSubregions.containsKey(tileId)) {
+					int tileX = (int) (tileId >> config.ZOOM_TO_LOAD_TILES);
+					int tileY = (int) (tileId & mask);
+					indexedSubregions.put(tileId, loadTileHeaders(zoomToLoad, tileX, tileY));
+				}
+				List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+				if (subregions == null || nativeLib != null) {
+					continue;
+				}
+				for (RoutingSubregionTile ts : subregions) {
+					BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
+					if (!ts.isLoaded() && reader.getFile() != null && added.add(ts)) {
+						List<RoutingSubregionTile> list = toDecode.get(reader);
+						if (list == null) {
+							list = new ArrayList<RoutingSubregionTile>();
+							toDecode.put(reader, list);
+						}
+						list.add(ts);
+					}
+				}
+			}
+		}
+		long now = System.nanoTime();
+		decodeSubregionTiles(toDecode, threads);
+		timeToLoad += (System.nanoTime() - now);
+		int loaded = loadedTiles;
+		try {
+			for (long tileId : ids) {
+				if (checkIfMemoryLimitCritical(config.memoryLimitation - getTileSnapshotMemory())) {
+					break;
+				}
+				int x31 = (int) (tileId >> config.ZOOM_TO_LOAD_TILES) << zoomToLoad;
+				int y31 = (int) (tileId & mask) << zoomToLoad;
+				synchronized (this) {
+					getRoutingTile(x31, y31, 0, OPTION_SMART_LOAD);
+				}
+			}
+		} finally {
+			preloadedTiles.clear();
+		}
+		return loadedTiles - loaded;
+	}
+
+	private void decodeSubregionTiles(Map<BinaryMapIndexReader, List<RoutingSubregionTile>> toDecode, int threads)
+			throws IOException, InterruptedException {
+		if (toDecode.isEmpty() || threads <= 1) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<BinaryMapIndexReaderPool> pools = new ArrayList<BinaryMapIndexReaderPool>();
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (Entry<BinaryMapIndexReader, List<RoutingSubregionTile>> e : toDecode.entrySet()) {
+				final BinaryMapIndexReaderPool pool = new BinaryMapIndexReaderPool(e.getKey(), Math.max(1, threads));
+				pools.add(pool);
+				for (final RoutingSubregionTile ts : e.getValue()) {
+					futures.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							BinaryMapIndexReader reader = pool.acquire();
+							try {
+								preloadedTiles.put(ts, decodeSubregionTile(reader, ts.subregion));
+							} finally {
+								pool.release(reader);
+							}
+							return null;
+						}
+					}));
+				}
+			}
+			for (Future<?> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new RuntimeException("Loading data exception", e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			for (BinaryMapIndexReaderPool pool : pools) {
+				pool.close();
+			}
+		}
+	}
+
 	private List<RoutingSubregionTile> loadTileHeaders(final int x31, final int y31) {
 		final int zoomToLoad = 31 - config.ZOOM_TO_LOAD_TILES;
 		int tileX = x31 >> zoomToLoad;
@@ -554,21 +814,7 @@ public class RoutingContext {
 			}
 		}
 		maxLoadedTiles = Math.max(maxLoadedTiles, getCurrentlyLoadedTiles());
-		Collections.sort(list, new Comparator<RoutingSubregionTile>() {
-			private int pow(int base, int pw) {
-				int r = 1;
-				for (int i = 0; i < pw; i++) {
-					r *= base;
-				}
-				return r;
-			}
-			@Override
-			public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
-				int v1 = (o1.access + 1) * pow(10, o1.getUnloadCont() -1);
-				int v2 = (o2.access + 1) * pow(10, o2.getUnloadCont() -1);
-				return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
-			}
-		});
+		evictionStrategy.sortTilesToUnload(this, list);
 		int i = 0;
 		while(getCurrentEstimatedSize() >= desirableSize && (list.size() - i) > loaded / 5 && i < list.size()) {
 			RoutingSubregionTile unload = list.get(i);
@@ -811,6 +1057,9 @@ public class RoutingContext {
 				sz += 12 + vl.length();
 			}
 			sz += 12 + o.names.size() * 25;
+		} else if (o.nameIds != null) {
+			// name indexes in the string table shared by objects of the block
+			sz += (8 + 4 + 4 * o.nameIds.length) * 2 + 4;
 		}
 		sz += 8; // id
 		// coordinates
@@ -0,0 +1,120 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+/**
+ * Defines which routing tiles are unloaded first when routing context reaches memory limit
+ * (see {@link RoutingContext#setTileEvictionStrategy(TileEvictionStrategy)}).
+ */
+public interface TileEvictionStrategy {
+
+	/**
+	 * Sorts loaded tiles, first tiles are unloaded first
+	 */
+	public void sortTilesToUnload(RoutingContext ctx, List<RoutingSubregionTile> loaded);
+
+	/**
+	 * Tiles which were accessed less and unloaded less times are unloaded first
+	 */
+	public static class AccessCountStrategy implements TileEvictionStrategy {
+
+		private static int pow(int base, int pw) {
+			int r = 1;
+			for (int i = 0; i < pw; i++) {
+				r *= base;
+			}
+			return r;
+		}
+
+		@Override
+		public void sortTilesToUnload(RoutingContext ctx, List<RoutingSubregionTile> loaded) {
+			Collections.sort(loaded, new Comparator<RoutingSubregionTile>() {
+				@Override
+				public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
+					int v1 = (o1.access + 1) * pow(10, o1.getUnloadCont() - 1);
+					int v2 = (o2.access + 1) * pow(10, o2.getUnloadCont() - 1);
+					return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Tiles far from the search frontiers (heads of direct and reverse queues, see
+	 * {@link RoutingContext#setQueueHeads}) and from start & target (goals of A* heuristic) are unloaded first. Tiles within keep radius are ordered by access count
+	 * and unloaded only after all other tiles, so tiles around queue heads are not unloaded and loaded again.
+	 */
+	public static class FrontierDistanceStrategy implements TileEvictionStrategy {
+
+		private final int keepRadius31;
+
+		/**
+		 * @param keepRadiusTiles radius in routing tiles (of {@link RoutingConfiguration#ZOOM_TO_LOAD_TILES} zoom)
+		 */
+		public FrontierDistanceStrategy(RoutingConfiguration config, int keepRadiusTiles) {
+			this.keepRadius31 = keepRadiusTiles << (31 - config.ZOOM_TO_LOAD_TILES);
+		}
+
+		@Override
+		public void sortTilesToUnload(RoutingContext ctx, List<RoutingSubregionTile> loaded) {
+			int[] frontier = ctx.getQueueHeads();
+			int[] points = new int[frontier.length + 4];
+			System.arraycopy(frontier, 0, points, 0, frontier.length);
+			points[frontier.length] = ctx.startX;
+			points[frontier.length + 1] = ctx.startY;
+			points[frontier.length + 2] = ctx.targetX;
+			points[frontier.length + 3] = ctx.targetY;
+			final double[] dist = new double[loaded.size()];
+			Integer[] order = new Integer[loaded.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+				dist[i] = distance(loaded.get(i).subregion, points);
+			}
+			final List<RoutingSubregionTile> tiles = loaded;
+			final double keep = keepRadius31;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					boolean k1 = dist[o1] <= keep;
+					boolean k2 = dist[o2] <= keep;
+					if (k1 != k2) {
+						return k1 ? 1 : -1;
+					}
+					if (!k1 && dist[o1] != dist[o2]) {
+						return dist[o1] > dist[o2] ? -1 : 1;
+					}
+					int a1 = tiles.get(o1).access;
+					int a2 = tiles.get(o2).access;
+					return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+				}
+			});
+			RoutingSubregionTile[] sorted = new RoutingSubregionTile[order.length];
+			for (int i = 0; i < order.length; i++) {
+				sorted[i] = loaded.get(order[i]);
+			}
+			for (int i = 0; i < sorted.length; i++) {
+				loaded.set(i, sorted[i]);
+			}
+		}
+
+		// distance from the subregion bbox to the nearest point (0 if point is inside)
+		private static double distance(RouteSubregion s, int[] points) {
+			double min = Double.POSITIVE_INFINITY;
+			for (int i = 0; i + 1 < points.length; i += 2) {
+				if (points[i] == 0 && points[i + 1] == 0) {
+					continue;
+				}
+				double dx = Math.max(0, Math.max((double) s.left - points[i], (double) points[i] - s.right));
+				double dy = Math.max(0, Math.max((double) s.top - points[i + 1], (double) points[i + 1] - s.bottom));
+				min = Math.min(min, Math.sqrt(dx * dx + dy * dy));
+			}
+			return min;
+		}
+	}
+}
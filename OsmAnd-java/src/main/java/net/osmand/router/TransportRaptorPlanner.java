@@ -0,0 +1,506 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.RouteSegmentStore.SegmentMap;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResult;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Round based public transport search (RAPTOR), alternative to {@link TransportRoutePlanner#buildRoute}
+ * (see {@link TransportRoutingConfiguration#useRaptor}).
+ * Round k finds the earliest arrival to every stop using k routes, each route is scanned once per round.
+ * Stops, routes and walking transfers are stored in flat arrays of {@link RaptorNetwork} which is built
+ * while tiles are loaded and kept in routing context, so next searches reuse it.
+ * Result contains only Pareto optimal routes: every next route has more changes and arrives earlier.
+ */
+public class TransportRaptorPlanner {
+
+	protected static final Log log = PlatformUtil.getLog(TransportRaptorPlanner.class);
+
+	private static final int UNUSABLE_ROUTE = -2;
+
+	private static final byte LABEL_NONE = 0;
+	private static final byte LABEL_WALK = 1;
+	private static final byte LABEL_TRANSIT = 2;
+	private static final byte LABEL_FOOTPATH = 3;
+
+	/**
+	 * Stops are identified by their ids, so the same stop of different routes is one stop of the network.
+	 * Route stops, stop routes (pairs of route and stop position) and footpaths (pairs of stop and distance)
+	 * are int arrays indexed by stop or route index.
+	 */
+	static class RaptorNetwork {
+		private final TransportRoutingConfiguration cfg;
+		private final SegmentMap stopIds = new SegmentMap();
+		private final SegmentMap routeIds = new SegmentMap();
+
+		int stopsSize;
+		TransportStop[] stops = new TransportStop[256];
+		TIntArrayList[] stopRoutes = new TIntArrayList[256];
+		TIntArrayList[] footpaths = new TIntArrayList[256];
+		boolean[] expanded = new boolean[256];
+
+		int routesSize;
+		TransportRoute[] routes = new TransportRoute[64];
+		int[][] routeStops = new int[64][];
+		// travel time in seconds from the first stop
+		float[][] routeTimes = new float[64][];
+		// departure times from the first stop in seconds since schedule time of day (schedule only)
+		int[][] routeTrips = new int[64][];
+
+		RaptorNetwork(TransportRoutingConfiguration cfg) {
+			this.cfg = cfg;
+		}
+
+		int addStop(TransportStop st) {
+			long id = st.getId() != null ? st.getId() : ContractionHierarchy.pointId(st.x31, st.y31);
+			int s = stopIds.get(id);
+			if (s != RouteSegmentStore.NULL) {
+				return s;
+			}
+			if (stopsSize == stops.length) {
+				int capacity = stopsSize * 2;
+				stops = Arrays.copyOf(stops, capacity);
+				stopRoutes = Arrays.copyOf(stopRoutes, capacity);
+				footpaths = Arrays.copyOf(footpaths, capacity);
+				expanded = Arrays.copyOf(expanded, capacity);
+			}
+			s = stopsSize++;
+			stopIds.put(id, s);
+			stops[s] = st;
+			stopRoutes[s] = new TIntArrayList(4);
+			footpaths[s] = new TIntArrayList(4);
+			return s;
+		}
+
+		/**
+		 * Returns route index or negative value if route couldn't be used
+		 */
+		int addRoute(TransportRoute route) {
+			int r = routeIds.get(route.getId());
+			if (r != RouteSegmentStore.NULL) {
+				return r;
+			}
+			List<TransportStop> fw = route.getForwardStops();
+			TransportSchedule schedule = route.getSchedule();
+			int length = fw.size();
+			float[] times = new float[length];
+			int[] trips = null;
+			if (cfg.useSchedule) {
+				if (schedule == null) {
+					routeIds.put(route.getId(), UNUSABLE_ROUTE);
+					return UNUSABLE_ROUTE;
+				}
+				TIntArrayList intervals = schedule.avgStopIntervals;
+				for (int i = 1; i < length; i++) {
+					if (intervals.size() < i) {
+						length = i;
+						break;
+					}
+					times[i] = times[i - 1] + intervals.getQuick(i - 1) * 10;
+				}
+				TIntArrayList ti = schedule.tripIntervals;
+				trips = new int[ti.size()];
+				int t = 0;
+				for (int i = 0; i < trips.length; i++) {
+					t += ti.getQuick(i);
+					trips[i] = (t - cfg.scheduleTimeOfDay) * 10;
+				}
+			} else {
+				for (int i = 1; i < length; i++) {
+					double d = MapUtils.getDistance(fw.get(i - 1).getLocation(), fw.get(i).getLocation());
+					times[i] = times[i - 1] + (float) (cfg.stopTime + d / cfg.travelSpeed);
+				}
+			}
+			if (routesSize == routes.length) {
+				int capacity = routesSize * 2;
+				routes = Arrays.copyOf(routes, capacity);
+				routeStops = Arrays.copyOf(routeStops, capacity);
+				routeTimes = Arrays.copyOf(routeTimes, capacity);
+				routeTrips = Arrays.copyOf(routeTrips, capacity);
+			}
+			r = routesSize++;
+			routeIds.put(route.getId(), r);
+			int[] rs = new int[length];
+			for (int i = 0; i < length; i++) {
+				rs[i] = addStop(fw.get(i));
+				stopRoutes[rs[i]].add(r);
+				stopRoutes[rs[i]].add(i);
+			}
+			routes[r] = route;
+			routeStops[r] = rs;
+			routeTimes[r] = times;
+			routeTrips[r] = trips;
+			return r;
+		}
+
+		/**
+		 * Returns network stop of transport segment or -1 if its route couldn't be used
+		 */
+		int addSegment(TransportRouteSegment sgm) {
+			int r = addRoute(sgm.road);
+			if (r < 0 || sgm.segStart >= routeStops[r].length) {
+				return -1;
+			}
+			return routeStops[r][sgm.segStart];
+		}
+
+		/**
+		 * Loads routes of stops around the stop and footpaths from the stop (only once per stop)
+		 */
+		void expand(TransportRoutingContext ctx, int s) throws IOException {
+			if (expanded[s]) {
+				return;
+			}
+			expanded[s] = true;
+			TransportStop stop = stops[s];
+			List<TransportRouteSegment> sgms = ctx.getTransportStops(stop.x31, stop.y31, true,
+					new ArrayList<TransportRouteSegment>());
+			TIntHashSet connected = new TIntHashSet();
+			for (TransportRouteSegment sgm : sgms) {
+				int q = addSegment(sgm);
+				if (q < 0 || q == s || connected.contains(q)) {
+					continue;
+				}
+				connected.add(q);
+				double d = MapUtils.getDistance(stop.getLocation(), stops[q].getLocation());
+				if (d <= cfg.walkChangeRadius) {
+					footpaths[s].add(q);
+					footpaths[s].add((int) Math.ceil(d));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Arrival labels of one round with data to restore the journey
+	 */
+	private static class Labels {
+		float[] arrival = new float[0];
+		byte[] kind = new byte[0];
+		// boarding stop for transit, previous stop for footpath
+		int[] from = new int[0];
+		int[] route = new int[0];
+		int[] boardPos = new int[0];
+		int[] alightPos = new int[0];
+		int[] depTime = new int[0];
+		float[] walk = new float[0];
+
+		void ensureCapacity(int size) {
+			if (size > arrival.length) {
+				int l = arrival.length;
+				arrival = Arrays.copyOf(arrival, size);
+				Arrays.fill(arrival, l, size, Float.POSITIVE_INFINITY);
+				kind = Arrays.copyOf(kind, size);
+				from = Arrays.copyOf(from, size);
+				route = Arrays.copyOf(route, size);
+				boardPos = Arrays.copyOf(boardPos, size);
+				alightPos = Arrays.copyOf(alightPos, size);
+				depTime = Arrays.copyOf(depTime, size);
+				walk = Arrays.copyOf(walk, size);
+			}
+		}
+	}
+
+	private static class RaptorSearch {
+		final Labels[] labels;
+		// best arrival with any number of routes and its round
+		float[] best = new float[0];
+		int[] bestRound = new int[0];
+		boolean[] marked = new boolean[0];
+		TIntArrayList markedStops = new TIntArrayList();
+
+		RaptorSearch(int rounds) {
+			labels = new Labels[rounds + 1];
+			for (int k = 0; k <= rounds; k++) {
+				labels[k] = new Labels();
+			}
+		}
+
+		void ensureCapacity(int size) {
+			if (size > best.length) {
+				int l = best.length;
+				best = Arrays.copyOf(best, size);
+				Arrays.fill(best, l, size, Float.POSITIVE_INFINITY);
+				bestRound = Arrays.copyOf(bestRound, size);
+				marked = Arrays.copyOf(marked, size);
+			}
+			for (Labels lb : labels) {
+				lb.ensureCapacity(size);
+			}
+		}
+
+		boolean improve(int round, int s, float arrival) {
+			if (arrival >= best[s]) {
+				return false;
+			}
+			best[s] = arrival;
+			bestRound[s] = round;
+			labels[round].arrival[s] = arrival;
+			if (!marked[s]) {
+				marked[s] = true;
+				markedStops.add(s);
+			}
+			return true;
+		}
+
+		TIntArrayList pollMarked() {
+			TIntArrayList res = markedStops;
+			markedStops = new TIntArrayList();
+			for (int i = 0; i < res.size(); i++) {
+				marked[res.getQuick(i)] = false;
+			}
+			return res;
+		}
+
+		int findRound(int s, int maxRound) {
+			for (int k = maxRound; k >= 0; k--) {
+				if (labels[k].kind[s] != LABEL_NONE) {
+					return k;
+				}
+			}
+			return -1;
+		}
+	}
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException {
+		ctx.startCalcTime = System.currentTimeMillis();
+		TransportRoutingConfiguration cfg = ctx.cfg;
+		if (ctx.raptorNetwork == null) {
+			ctx.raptorNetwork = new RaptorNetwork(cfg);
+		}
+		RaptorNetwork net = ctx.raptorNetwork;
+		int rounds = cfg.maxNumberOfChanges + 1;
+		RaptorSearch search = new RaptorSearch(rounds);
+
+		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
+		List<TransportRouteSegment> endStops = ctx.getTransportStops(end);
+		TIntArrayList startList = new TIntArrayList();
+		for (TransportRouteSegment sgm : startStops) {
+			startList.add(net.addSegment(sgm));
+		}
+		TIntHashSet endSet = new TIntHashSet();
+		TIntArrayList endList = new TIntArrayList();
+		for (TransportRouteSegment sgm : endStops) {
+			int s = net.addSegment(sgm);
+			if (s >= 0 && !endSet.contains(s)
+					&& MapUtils.getDistance(net.stops[s].getLocation(), end) < cfg.walkRadius) {
+				endSet.add(s);
+				endList.add(s);
+			}
+		}
+		search.ensureCapacity(net.stopsSize);
+		Labels initial = search.labels[0];
+		for (int i = 0; i < startList.size(); i++) {
+			int s = startList.get(i);
+			if (s < 0) {
+				continue;
+			}
+			double walk = MapUtils.getDistance(net.stops[s].getLocation(), start);
+			if (walk <= cfg.walkRadius && search.improve(0, s, (float) (walk / cfg.walkSpeed))) {
+				initial.kind[s] = LABEL_WALK;
+				initial.walk[s] = (float) walk;
+			}
+		}
+
+		float bestFinish = cfg.maxRouteTime;
+		List<int[]> finishes = new ArrayList<int[]>();
+		for (int k = 1; k <= rounds && !search.markedStops.isEmpty(); k++) {
+			TIntArrayList marked = search.pollMarked();
+			for (int i = 0; i < marked.size(); i++) {
+				net.expand(ctx, marked.getQuick(i));
+			}
+			search.ensureCapacity(net.stopsSize);
+			// earliest marked position of every route
+			int[] boardFrom = new int[net.routesSize];
+			Arrays.fill(boardFrom, -1);
+			TIntArrayList routes = new TIntArrayList();
+			for (int i = 0; i < marked.size(); i++) {
+				TIntArrayList sr = net.stopRoutes[marked.getQuick(i)];
+				for (int j = 0; j < sr.size(); j += 2) {
+					int r = sr.getQuick(j);
+					int pos = sr.getQuick(j + 1);
+					if (boardFrom[r] == -1) {
+						routes.add(r);
+						boardFrom[r] = pos;
+					} else if (pos < boardFrom[r]) {
+						boardFrom[r] = pos;
+					}
+				}
+			}
+			float[] bestBefore = Arrays.copyOf(search.best, search.best.length);
+			int[] bestRoundBefore = Arrays.copyOf(search.bestRound, search.bestRound.length);
+			for (int i = 0; i < routes.size(); i++) {
+				int r = routes.getQuick(i);
+				scanRoute(cfg, net, search, k, r, boardFrom[r], bestBefore, bestRoundBefore, bestFinish);
+			}
+			ctx.visitedRoutesCount += routes.size();
+
+			TIntArrayList transitMarked = new TIntArrayList(search.markedStops.toArray());
+			for (int i = 0; i < transitMarked.size(); i++) {
+				int s = transitMarked.getQuick(i);
+				net.expand(ctx, s);
+			}
+			search.ensureCapacity(net.stopsSize);
+			Labels labels = search.labels[k];
+			for (int i = 0; i < transitMarked.size(); i++) {
+				int s = transitMarked.getQuick(i);
+				TIntArrayList fp = net.footpaths[s];
+				for (int j = 0; j < fp.size(); j += 2) {
+					int q = fp.getQuick(j);
+					int d = fp.getQuick(j + 1);
+					float arrival = (float) (labels.arrival[s] + d / cfg.walkSpeed);
+					if (arrival < bestFinish && search.improve(k, q, arrival)) {
+						labels.kind[q] = LABEL_FOOTPATH;
+						labels.from[q] = s;
+						labels.walk[q] = d;
+					}
+				}
+			}
+
+			int finishStop = -1;
+			for (int i = 0; i < endList.size(); i++) {
+				int s = endList.getQuick(i);
+				if (labels.kind[s] != LABEL_NONE) {
+					double walk = MapUtils.getDistance(net.stops[s].getLocation(), end);
+					float finish = (float) (labels.arrival[s] + walk / cfg.walkSpeed);
+					if (finish < bestFinish) {
+						bestFinish = finish;
+						finishStop = s;
+					}
+				}
+			}
+			if (finishStop != -1) {
+				finishes.add(new int[] { k, finishStop });
+			}
+		}
+
+		List<TransportRouteResult> lst = new ArrayList<TransportRouteResult>();
+		for (int[] f : finishes) {
+			lst.add(prepareResult(ctx, net, search, f[0], f[1], end));
+		}
+		Collections.sort(lst, new Comparator<TransportRouteResult>() {
+			@Override
+			public int compare(TransportRouteResult o1, TransportRouteResult o2) {
+				return Double.compare(o1.routeTime, o2.routeTime);
+			}
+		});
+		log.info(String.format("RAPTOR calculated %.1f seconds, found %d results, visited %d routes, "
+				+ "network %d stops %d routes, loaded %d tiles (%d ms read, %d ms total)",
+				(System.currentTimeMillis() - ctx.startCalcTime) / 1000.0, lst.size(), ctx.visitedRoutesCount,
+				net.stopsSize, net.routesSize, ctx.quadTree.size(), ctx.readTime / (1000 * 1000),
+				ctx.loadTime / (1000 * 1000)));
+		return lst;
+	}
+
+	private void scanRoute(TransportRoutingConfiguration cfg, RaptorNetwork net, RaptorSearch search, int k, int r,
+			int fromPos, float[] bestBefore, int[] bestRoundBefore, float bound) {
+		int[] stops = net.routeStops[r];
+		float[] times = net.routeTimes[r];
+		int[] trips = net.routeTrips[r];
+		Labels labels = search.labels[k];
+		int trip = -1;
+		// departure time from the first stop of boarded trip (or virtual trip without schedule)
+		float tripStart = Float.POSITIVE_INFINITY;
+		int boardPos = -1;
+		for (int i = fromPos; i < stops.length; i++) {
+			int s = stops[i];
+			if (boardPos >= 0) {
+				float arrival = tripStart + times[i];
+				if (arrival < bound && search.improve(k, s, arrival)) {
+					labels.kind[s] = LABEL_TRANSIT;
+					labels.from[s] = stops[boardPos];
+					labels.route[s] = r;
+					labels.boardPos[s] = boardPos;
+					labels.alightPos[s] = i;
+					labels.depTime[s] = trip == -1 ? -1 : (int) (tripStart + times[boardPos]) / 10 + cfg.scheduleTimeOfDay;
+				}
+			}
+			if (s >= bestBefore.length || bestBefore[s] == Float.POSITIVE_INFINITY) {
+				continue;
+			}
+			float ready = bestBefore[s] + (bestRoundBefore[s] > 0 ? cfg.getChangeTime() : 0);
+			if (trips == null) {
+				if (ready - times[i] < tripStart) {
+					tripStart = ready - times[i];
+					boardPos = i;
+				}
+			} else {
+				int t = findTrip(trips, ready - times[i]);
+				if (t != -1 && (trip == -1 || t < trip)) {
+					trip = t;
+					tripStart = trips[t];
+					boardPos = i;
+				}
+			}
+		}
+	}
+
+	// first trip which departs from the first stop not earlier than time
+	private static int findTrip(int[] trips, float time) {
+		int lo = 0;
+		int hi = trips.length;
+		while (lo < hi) {
+			int m = (lo + hi) >>> 1;
+			if (trips[m] < time) {
+				lo = m + 1;
+			} else {
+				hi = m;
+			}
+		}
+		return lo < trips.length ? lo : -1;
+	}
+
+	private TransportRouteResult prepareResult(TransportRoutingContext ctx, RaptorNetwork net, RaptorSearch search,
+			int round, int stop, LatLon end) {
+		TransportRouteResult res = new TransportRouteResult(ctx);
+		Labels labels = search.labels[round];
+		double finishWalk = MapUtils.getDistance(net.stops[stop].getLocation(), end);
+		res.routeTime = labels.arrival[stop] + finishWalk / ctx.cfg.walkSpeed;
+		while (labels.kind[stop] == LABEL_FOOTPATH) {
+			finishWalk += labels.walk[stop];
+			stop = labels.from[stop];
+		}
+		res.finishWalkDist = finishWalk;
+		while (round > 0) {
+			labels = search.labels[round];
+			int b = labels.from[stop];
+			int pr = search.findRound(b, round - 1);
+			Labels prev = search.labels[pr];
+			int next = b;
+			double walk = 0;
+			while (prev.kind[next] == LABEL_FOOTPATH) {
+				walk += prev.walk[next];
+				next = prev.from[next];
+			}
+			if (prev.kind[next] == LABEL_WALK) {
+				walk += prev.walk[next];
+			}
+			int r = labels.route[stop];
+			res.segments.add(0, new TransportRouteResultSegment(net.routes[r], labels.boardPos[stop],
+					labels.alightPos[stop], walk, labels.depTime[stop]));
+			round = pr;
+			stop = next;
+		}
+		return res;
+	}
+}
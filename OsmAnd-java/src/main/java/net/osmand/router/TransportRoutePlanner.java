@@ -29,6 +29,9 @@ public class TransportRoutePlanner {
 
 
 	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException {
+		if (ctx.cfg.useRaptor) {
+			return new TransportRaptorPlanner().buildRoute(ctx, start, end);
+		}
 		ctx.startCalcTime = System.currentTimeMillis();
 		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
 		List<TransportRouteSegment> endStops = ctx.getTransportStops(end);
@@ -526,6 +529,10 @@ public class TransportRoutePlanner {
 		
 		
 		public TLongObjectHashMap<List<TransportRouteSegment>> quadTree;
+		// cache of decoded stops and routes which could be shared by contexts, null to decode tiles for every context
+		public TransportTileCache tileCache;
+		// stops, routes and transfers loaded by RAPTOR search
+		TransportRaptorPlanner.RaptorNetwork raptorNetwork;
 		public final Map<BinaryMapIndexReader, TIntObjectHashMap<TransportRoute>> routeMap = 
 				new LinkedHashMap<BinaryMapIndexReader, TIntObjectHashMap<TransportRoute>>();
 		
@@ -607,11 +614,10 @@ public class TransportRoutePlanner {
 			// should it be global?
 			TLongObjectHashMap<TransportStop> loadedTransportStops = new TLongObjectHashMap<TransportStop>();
 			for(BinaryMapIndexReader r : routeMap.keySet()) {
-				sr.clearSearchResults();
 				allPoints.clear();
 				allPointsLoad.clear();
 				
-				List<TransportStop> stops = r.searchTransportIndex(sr);
+				List<TransportStop> stops = loadTransportStops(r, sr, x, y);
 				for(TransportStop s : stops) {
 					if(!loadedTransportStops.contains(s.getId())) {
 						loadedTransportStops.put(s.getId(), s);
@@ -628,14 +634,18 @@ public class TransportRoutePlanner {
 					while(it.hasNext()) {
 						int nxt = it.next();
 						if (p != nxt) {
-							if (loadedRoutes.contains(nxt)) {
-								routes.put(nxt, loadedRoutes.get(nxt));
+							TransportRoute route = loadedRoutes.get(nxt);
+							if (route == null && tileCache != null) {
+								route = tileCache.getRoute(r, nxt);
+							}
+							if (route != null) {
+								routes.put(nxt, route);
 							} else {
 								allPointsLoad.add(nxt);
 							}
 						}
 					}
-					r.loadTransportRoutes(allPointsLoad.toArray(), routes);
+					loadTransportRoutes(r, allPointsLoad, routes);
 					loadedRoutes.putAll(routes);
 					loadTransportSegments(routes, r, stops, lst);
 				}
@@ -644,6 +654,37 @@ public class TransportRoutePlanner {
 			return lst;
 		}
 
+		private List<TransportStop> loadTransportStops(BinaryMapIndexReader r, SearchRequest<TransportStop> sr,
+				int x, int y) throws IOException {
+			List<TransportStop> stops = tileCache == null ? null : tileCache.getStops(r, cfg.ZOOM_TO_LOAD_TILES, x, y);
+			if (stops == null) {
+				sr.clearSearchResults();
+				stops = r.searchTransportIndex(sr);
+				if (tileCache != null) {
+					tileCache.putStops(r, cfg.ZOOM_TO_LOAD_TILES, x, y, stops);
+				}
+			}
+			return stops;
+		}
+
+		private void loadTransportRoutes(BinaryMapIndexReader r, TIntArrayList filePointers,
+				TIntObjectHashMap<TransportRoute> routes) throws IOException {
+			if (filePointers.isEmpty()) {
+				return;
+			}
+			r.loadTransportRoutes(filePointers.toArray(), routes);
+			if (tileCache != null) {
+				for (int i = 0; i < filePointers.size(); i++) {
+					TransportRoute route = routes.get(filePointers.get(i));
+					if (route != null) {
+						// cached routes are shared, so geometry is merged before they are used
+						route.mergeForwardWays();
+						tileCache.putRoute(r, filePointers.get(i), route);
+					}
+				}
+			}
+		}
+
 		private void loadTransportSegments(TIntObjectHashMap<TransportRoute> routes, BinaryMapIndexReader r,
 				List<TransportStop> stops, List<TransportRouteSegment> lst) throws IOException {
 			for(TransportStop s : stops) {
@@ -25,6 +25,9 @@ public class TransportRoutingConfiguration {
 	public int maxRouteTime = 60 * 60 * 1000; // 1000 hours
 
 	public boolean useSchedule;
+
+	// use round based search (TransportRaptorPlanner)
+	public boolean useRaptor;
 	
 	// 10 seconds based
 	public int scheduleTimeOfDay = 12 * 60 * 6; // 12:00 - 60*6*12
@@ -0,0 +1,172 @@
+package net.osmand.router;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.osm.edit.Way;
+
+/**
+ * LRU cache of decoded transport stops (by file and tile) and routes (by file and file pointer) which could be
+ * shared by transport routing contexts (see {@link TransportRoutePlanner.TransportRoutingContext#tileCache}).
+ * Files are identified by path and creation date, so data is reused by new readers of the same file
+ * and data of closed readers is evicted as least recently used (or by {@link #removeReader(BinaryMapIndexReader)}).
+ * Cache is bounded by estimated memory of cached objects and it is thread safe.
+ * Cached objects are shared between contexts, so they shouldn't be modified.
+ */
+public class TransportTileCache {
+
+	public static final int DEFAULT_MEMORY_LIMIT = 32 * 1024 * 1024;
+
+	// estimated bytes per object
+	private static final int ENTRY_SIZE = 64;
+	private static final int STOP_SIZE = 120;
+	private static final int ROUTE_SIZE = 200;
+	private static final int NODE_SIZE = 40;
+
+	private static class Key {
+		// file path with creation date (or reader itself if it isn't read from file)
+		final Object file;
+		final boolean route;
+		final long id;
+
+		Key(BinaryMapIndexReader reader, boolean route, long id) {
+			this.file = getFileKey(reader);
+			this.route = route;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return (file.hashCode() * 31 + (int) (id ^ (id >>> 32))) * 2 + (route ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) obj;
+			return file.equals(o.file) && route == o.route && id == o.id;
+		}
+	}
+
+	private static class Entry {
+		final Object value;
+		final int memory;
+
+		Entry(Object value, int memory) {
+			this.value = value;
+			this.memory = memory;
+		}
+	}
+
+	private final long memoryLimit;
+	private long memory;
+	private long hits;
+	private long misses;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(256, 0.75f, true);
+
+	public TransportTileCache(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	private static Object getFileKey(BinaryMapIndexReader reader) {
+		if (reader.getFile() == null) {
+			return reader;
+		}
+		return reader.getFile().getAbsolutePath() + ":" + reader.getDateCreated();
+	}
+
+	private static long tileId(int zoom, int x, int y) {
+		return ((long) zoom << 50) | ((long) x << 25) | y;
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<TransportStop> getStops(BinaryMapIndexReader reader, int zoom, int x, int y) {
+		return (List<TransportStop>) get(new Key(reader, false, tileId(zoom, x, y)));
+	}
+
+	public void putStops(BinaryMapIndexReader reader, int zoom, int x, int y, List<TransportStop> stops) {
+		int mem = ENTRY_SIZE + stops.size() * STOP_SIZE;
+		put(new Key(reader, false, tileId(zoom, x, y)), Collections.unmodifiableList(stops), mem);
+	}
+
+	public TransportRoute getRoute(BinaryMapIndexReader reader, int filePointer) {
+		return (TransportRoute) get(new Key(reader, true, filePointer));
+	}
+
+	public void putRoute(BinaryMapIndexReader reader, int filePointer, TransportRoute route) {
+		int mem = ENTRY_SIZE + ROUTE_SIZE + route.getForwardStops().size() * STOP_SIZE;
+		for (Way w : route.getForwardWays()) {
+			mem += w.getNodes().size() * NODE_SIZE;
+		}
+		put(new Key(reader, true, filePointer), route, mem);
+	}
+
+	private synchronized Object get(Key key) {
+		Entry e = entries.get(key);
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.value;
+	}
+
+	private synchronized void put(Key key, Object value, int mem) {
+		Entry old = entries.put(key, new Entry(value, mem));
+		if (old != null) {
+			memory -= old.memory;
+		}
+		memory += mem;
+		Iterator<Entry> it = entries.values().iterator();
+		while (memory > memoryLimit && it.hasNext()) {
+			memory -= it.next().memory;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Removes data of the reader file (for example when file is deleted or updated)
+	 */
+	public synchronized void removeReader(BinaryMapIndexReader reader) {
+		Object file = getFileKey(reader);
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			if (e.getKey().file.equals(file)) {
+				memory -= e.getValue().memory;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		memory = 0;
+	}
+
+	public synchronized long getEstimatedMemory() {
+		return memory;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Transport tile cache: " + entries.size() + " entries, " + (memory >> 10) + " KB (max "
+				+ (memoryLimit >> 10) + " KB), hits " + hits + ", misses " + misses;
+	}
+}
@@ -30,9 +30,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -46,9 +49,14 @@ public class SearchUICore {
 	private static final Log LOG = PlatformUtil.getLog(SearchUICore.class);
 	private SearchPhrase phrase;
 	private SearchResultCollection  currentSearchResult;
+	// last search which was finished and not limited and its results by api (used only by search thread)
+	private SearchPhrase completePhrase;
+	private Map<SearchCoreAPI, List<SearchResult>> completeApiResults;
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	// searches region files in parallel, null if they are searched sequentially
+	private ThreadPoolExecutor regionsExecutor;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
@@ -273,6 +281,23 @@ public class SearchUICore {
 		this.totalLimit = totalLimit;
 	}
 
+	/**
+	 * Number of threads to search region files in parallel (1 to search them sequentially).
+	 * APIs are still run one by one in order of priority as they share region files and
+	 * file reader could be used only by one thread.
+	 */
+	public void setSearchThreads(int threads) {
+		if (regionsExecutor != null) {
+			regionsExecutor.shutdown();
+			regionsExecutor = null;
+		}
+		if (threads > 1) {
+			regionsExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			regionsExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getApiByClass(Class<T> cl) {
 		for (SearchCoreAPI a : apis) {
@@ -294,6 +319,7 @@ public class SearchUICore {
 			preparePhrase(sphrase);
 			AtomicInteger ai = new AtomicInteger();
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, sphrase, ai.get(), ai, totalLimit);
+			rm.setExecutor(regionsExecutor);
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(
@@ -420,6 +446,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					rm.setExecutor(regionsExecutor);
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -479,7 +506,8 @@ public class SearchUICore {
 						}
 						return;
 					}
-					searchInBackground(phrase, rm);
+					Map<SearchCoreAPI, List<SearchResult>> apiResults = new HashMap<>();
+					searchInBackground(phrase, rm, apiResults);
 					if (!rm.isCancelled()) {
 						SearchResultCollection collection = new SearchResultCollection(
 								phrase);
@@ -491,6 +519,13 @@ public class SearchUICore {
 							LOG.info("Finishing search <" + phrase + "> Results=" + rm.getRequestResults().size());
 						}
 						currentSearchResult = collection;
+						if (rm.isLimitReached()) {
+							completePhrase = null;
+							completeApiResults = null;
+						} else {
+							completePhrase = phrase;
+							completeApiResults = apiResults;
+						}
 						rm.searchFinished(phrase);
 						if (onResultsComplete != null) {
 							onResultsComplete.run();
@@ -542,7 +577,54 @@ public class SearchUICore {
 		return radius;
 	}
 
-	private void searchInBackground(final SearchPhrase phrase, SearchResultMatcher matcher) {
+	/**
+	 * Returns results of api found by previous complete search if they could be narrowed instead of reading files again
+	 */
+	private List<SearchResult> getRefinableResults(SearchCoreAPI api, SearchPhrase phrase) {
+		if (completePhrase == null || !phrase.isRefinementOf(completePhrase)
+				|| !api.isSearchRefinable(phrase, completePhrase)) {
+			return null;
+		}
+		return completeApiResults.get(api);
+	}
+
+	private void refineResults(List<SearchResult> results, SearchPhrase phrase, SearchResultMatcher matcher) {
+		for (SearchResult r : results) {
+			if (matcher.isCancelled()) {
+				return;
+			}
+			if (filterOneResult(r, phrase)) {
+				// previous results could be still displayed, so they are not modified
+				SearchResult res = copyForPhrase(r, phrase);
+				phrase.countUnknownWordsMatch(res);
+				SearchResult prev = matcher.setParentSearchResult(r.parentSearchResult);
+				matcher.publish(res);
+				matcher.setParentSearchResult(prev);
+			}
+		}
+	}
+
+	private static SearchResult copyForPhrase(SearchResult r, SearchPhrase phrase) {
+		SearchResult res = new SearchResult(phrase);
+		res.object = r.object;
+		res.objectType = r.objectType;
+		res.file = r.file;
+		res.priority = r.priority;
+		res.priorityDistance = r.priorityDistance;
+		res.wordsSpan = r.wordsSpan;
+		res.parentSearchResult = r.parentSearchResult;
+		res.location = r.location;
+		res.preferredZoom = r.preferredZoom;
+		res.localeName = r.localeName;
+		res.otherNames = r.otherNames;
+		res.localeRelatedObjectName = r.localeRelatedObjectName;
+		res.relatedObject = r.relatedObject;
+		res.distRelatedObjectName = r.distRelatedObjectName;
+		return res;
+	}
+
+	private void searchInBackground(final SearchPhrase phrase, SearchResultMatcher matcher,
+									Map<SearchCoreAPI, List<SearchResult>> apiResults) {
 		preparePhrase(phrase);
 		ArrayList<SearchCoreAPI> lst = new ArrayList<>(apis);
 		Collections.sort(lst, new Comparator<SearchCoreAPI>() {
@@ -561,10 +643,21 @@ public class SearchUICore {
 				continue;
 			}
 			try {
-				if (debugMode) {
-					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+				List<SearchResult> results = matcher.getRequestResults();
+				int start = results.size();
+				List<SearchResult> refinableResults = getRefinableResults(api, phrase);
+				if (refinableResults != null) {
+					if (debugMode) {
+						LOG.info("Refine API results <" + completePhrase + "> to <" + phrase + "> API=<" + api + ">");
+					}
+					refineResults(refinableResults, phrase, matcher);
+				} else {
+					if (debugMode) {
+						LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+					}
+					api.search(phrase, matcher);
 				}
-				api.search(phrase, matcher);
+				apiResults.put(api, new ArrayList<>(results.subList(start, results.size())));
 				if (debugMode) {
 					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
 				}
@@ -606,6 +699,8 @@ public class SearchUICore {
 		private final AtomicInteger requestNumber;
 		int count = 0;
 		private SearchPhrase phrase;
+		private ExecutorService executor;
+		private boolean limitReached;
 
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
@@ -623,15 +718,38 @@ public class SearchUICore {
 			return prev;
 		}
 
-		public List<SearchResult> getRequestResults() {
+		/**
+		 * Executor to search region files in parallel or null.
+		 * Matcher is thread safe, so it could be used by region searches at the same time.
+		 */
+		public ExecutorService getExecutor() {
+			return executor;
+		}
+
+		public void setExecutor(ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		/**
+		 * Should be called by API if it skipped some results because of its limit
+		 */
+		public synchronized void setLimitReached() {
+			limitReached = true;
+		}
+
+		public synchronized boolean isLimitReached() {
+			return limitReached;
+		}
+
+		public synchronized List<SearchResult> getRequestResults() {
 			return requestResults;
 		}
 
-		public int getCount() {
+		public synchronized int getCount() {
 			return requestResults.size();
 		}
 
-		public void searchStarted(SearchPhrase phrase) {
+		public synchronized void searchStarted(SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_STARTED;
@@ -639,7 +757,7 @@ public class SearchUICore {
 			}
 		}
 
-		public void filterFinished(SearchPhrase phrase) {
+		public synchronized void filterFinished(SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.FILTER_FINISHED;
@@ -647,7 +765,7 @@ public class SearchUICore {
 			}
 		}
 
-		public void searchFinished(SearchPhrase phrase) {
+		public synchronized void searchFinished(SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_FINISHED;
@@ -655,7 +773,7 @@ public class SearchUICore {
 			}
 		}
 
-		public void apiSearchFinished(SearchCoreAPI api, SearchPhrase phrase) {
+		public synchronized void apiSearchFinished(SearchCoreAPI api, SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_API_FINISHED;
@@ -665,7 +783,7 @@ public class SearchUICore {
 			}
 		}
 
-		public void apiSearchRegionFinished(SearchCoreAPI api, BinaryMapIndexReader region, SearchPhrase phrase) {
+		public synchronized void apiSearchRegionFinished(SearchCoreAPI api, BinaryMapIndexReader region, SearchPhrase phrase) {
 			if(matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_API_REGION_FINISHED;
@@ -680,7 +798,7 @@ public class SearchUICore {
 		}
 
 		@Override
-		public boolean publish(SearchResult object) {
+		public synchronized boolean publish(SearchResult object) {
 			if (phrase != null && object.otherNames != null && !phrase.getNameStringMatcher().matches(object.localeName)) {
 				for (String s : object.otherNames) {
 					if (phrase.getNameStringMatcher().matches(s)) {
@@ -698,6 +816,8 @@ public class SearchUICore {
 				object.parentSearchResult = parentSearchResult;
 				if (totalLimit == -1 || count < totalLimit) {
 					requestResults.add(object);
+				} else {
+					limitReached = true;
 				}
 				return true;
 			}
@@ -33,4 +33,11 @@ public interface SearchCoreAPI {
 	 * @return next search radius in meters
 	 */
 	int getNextSearchRadius(SearchPhrase phrase);
+
+	/**
+	 * @param phrase
+	 * @param prevPhrase phrase which is refined by phrase (see {@link SearchPhrase#isRefinementOf(SearchPhrase)})
+	 * @return true if results of phrase are results of prevPhrase which match name of phrase
+	 */
+	boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase);
 }
@@ -47,6 +47,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -83,6 +88,10 @@ public class SearchCoreFactory {
 	protected static final double SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE = 0.001;
 	protected static final double SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE = 0.005;
 
+	protected interface RegionSearch {
+		void search(BinaryMapIndexReader r) throws IOException;
+	}
+
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
 		private ObjectType[] searchTypes;
@@ -133,6 +142,11 @@ public class SearchCoreFactory {
 		public int getMinimalSearchRadius(SearchPhrase phrase) {
 			return 0;
 		}
+
+		@Override
+		public boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase) {
+			return false;
+		}
 		
 		@Override
 		public int getNextSearchRadius(SearchPhrase phrase) {
@@ -163,6 +177,68 @@ public class SearchCoreFactory {
 //			}
 		}
 
+		/**
+		 * Searches regions in parallel by executor of result matcher (or sequentially if it is not set)
+		 * and waits for all of them. Each region is searched by one thread, so search should be thread
+		 * safe only for objects which are shared between regions.
+		 */
+		protected void searchRegions(Iterator<BinaryMapIndexReader> regions, final SearchPhrase phrase,
+									 final SearchResultMatcher resultMatcher, final RegionSearch search) throws IOException {
+			ExecutorService executor = resultMatcher.getExecutor();
+			if (executor == null) {
+				while (regions.hasNext()) {
+					BinaryMapIndexReader r = regions.next();
+					search.search(r);
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+				}
+				return;
+			}
+			// matchers are created lazily and regions are searched in parallel
+			phrase.initNameStringMatchers();
+			List<Future<Void>> futures = new ArrayList<>();
+			while (regions.hasNext()) {
+				final BinaryMapIndexReader r = regions.next();
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						if (!resultMatcher.isCancelled()) {
+							search.search(r);
+							resultMatcher.apiSearchRegionFinished(SearchBaseAPI.this, r, phrase);
+						}
+						return null;
+					}
+				}));
+			}
+			Throwable error = null;
+			boolean interrupted = false;
+			for (Future<Void> f : futures) {
+				// all region searches should be finished before readers are used again
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						if (error == null) {
+							error = e.getCause();
+						}
+						break;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			} else if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error != null) {
+				throw new IOException(error);
+			}
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
@@ -204,6 +280,11 @@ public class SearchCoreFactory {
 			return false;
 		}
 
+		@Override
+		public boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase) {
+			return true;
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if(!p.isNoSelectedType()) {
@@ -272,6 +353,12 @@ public class SearchCoreFactory {
 		public int getMinimalSearchRadius(SearchPhrase phrase) {
 			return phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 		}
+
+		@Override
+		public boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase) {
+			// streets and villages are not searched by short words (see searchByName)
+			return prevPhrase.getRadiusLevel() > 1 || prevPhrase.getUnknownSearchWordLength() > 3;
+		}
 		
 		@Override
 		public int getNextSearchRadius(SearchPhrase phrase) {
@@ -340,6 +427,7 @@ public class SearchCoreFactory {
 						subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
 					}
 					if (limit++ > LIMIT * phrase.getRadiusLevel()) {
+						resultMatcher.setLimitReached();
 						break;
 					}
 				}
@@ -447,7 +535,9 @@ public class SearchCoreFactory {
 						} else {
 							return false;
 						}
-						limit ++;
+						if (limit++ == LIMIT * phrase.getRadiusLevel()) {
+							resultMatcher.setLimitReached();
+						}
 						immediateResults.add(sr);
 						return false;
 					}
@@ -510,26 +600,38 @@ public class SearchCoreFactory {
 			if(!phrase.isUnknownSearchWordPresent()) {
 				return false;
 			}
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
 			final NameStringMatcher nm = phrase.getNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
-			final Set<String> ids = new HashSet<String>();
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+			final AtomicInteger limit = new AtomicInteger();
+			searchRegions(offlineIterator, phrase, resultMatcher, new RegionSearch() {
+				@Override
+				public void search(BinaryMapIndexReader r) throws IOException {
+					r.searchPoiByName(buildRequest(phrase, resultMatcher, r, nm, bbox, ids, limit));
+				}
+			});
+			return true;
+		}
+
+		private SearchRequest<Amenity> buildRequest(final SearchPhrase phrase, final SearchResultMatcher resultMatcher,
+													final BinaryMapIndexReader currentFile, final NameStringMatcher nm,
+													QuadRect bbox, final Set<String> ids, final AtomicInteger limit) {
+			return BinaryMapIndexReader.buildSearchPoiRequest(
 					(int)bbox.centerX(), (int)bbox.centerY(),
 					phrase.getUnknownSearchWord(),
 					(int)bbox.left, (int)bbox.right,
 					(int)bbox.top, (int)bbox.bottom,
 					new ResultMatcher<Amenity>() {
-						int limit = 0;
 						@Override
 						public boolean publish(Amenity object) {
-							if (limit ++ > LIMIT) {
+							if (limit.getAndIncrement() > LIMIT) {
+								resultMatcher.setLimitReached();
 								return false;
 							}
 							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
+							if (!ids.add(poiID)) {
 								return false;
 							}
 							SearchResult sr = new SearchResult(phrase);
@@ -543,7 +645,7 @@ public class SearchCoreFactory {
 							}
 							sr.object = object;
 							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
+							sr.file = currentFile;
 							sr.location = object.getLocation();
 							if (object.getSubType().equals("city") ||
 									object.getSubType().equals("country")) {
@@ -558,24 +660,14 @@ public class SearchCoreFactory {
 							phrase.countUnknownWordsMatch(sr);
 							sr.objectType = ObjectType.POI;
 							resultMatcher.publish(sr);
-							ids.add(poiID);
 							return false;
 						}
 
 						@Override
 						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT) ;
+							return resultMatcher.isCancelled() && (limit.get() < LIMIT) ;
 						}
 					});
-
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
-
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
-			return true;
 		}
 
 		@Override
@@ -602,6 +694,11 @@ public class SearchCoreFactory {
 		public int getMinimalSearchRadius(SearchPhrase phrase) {
 			return phrase.getRadiusSearch(BBOX_RADIUS);
 		}
+
+		@Override
+		public boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase) {
+			return true;
+		}
 		
 		@Override
 		public int getNextSearchRadius(SearchPhrase phrase) {
@@ -643,7 +740,7 @@ public class SearchCoreFactory {
 				categories = types.getCategories(false);
 			}
 //			results.clear();
-			List<AbstractPoiType> results = new ArrayList<AbstractPoiType>();
+			Set<AbstractPoiType> results = new LinkedHashSet<AbstractPoiType>();
 			NameStringMatcher nm = phrase.getNameStringMatcher();
 			for (PoiFilter pf : topVisibleFilters) {
 				if (!phrase.isUnknownSearchWordPresent()
@@ -783,7 +880,7 @@ public class SearchCoreFactory {
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (phrase.isLastWord(ObjectType.POI_TYPE)) {
-				Object obj = phrase.getLastSelectedWord().getResult().object;
+				final Object obj = phrase.getLastSelectedWord().getResult().object;
 				SearchPoiTypeFilter ptf;
 				if (obj instanceof AbstractPoiType) {
 					ptf = getPoiTypeFilter((AbstractPoiType) obj);
@@ -793,21 +890,24 @@ public class SearchCoreFactory {
 					throw new UnsupportedOperationException();
 				}
 
-				QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS);
+				final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS);
 				List<BinaryMapIndexReader> oo = phrase.getOfflineIndexes();
-				Set<String> searchedPois = new TreeSet<>();
-				for (BinaryMapIndexReader o : oo) {
-					ResultMatcher<Amenity> rm = getResultMatcher(phrase, resultMatcher, o, searchedPois);
-					if (obj instanceof CustomSearchPoiFilter) {
-						rm = ((CustomSearchPoiFilter) obj).wrapResultMatcher(rm);
+				final Set<String> searchedPois = Collections.synchronizedSet(new TreeSet<String>());
+				final SearchPoiTypeFilter filter = ptf;
+				searchRegions(oo.iterator(), phrase, resultMatcher, new RegionSearch() {
+					@Override
+					public void search(BinaryMapIndexReader o) throws IOException {
+						ResultMatcher<Amenity> rm = getResultMatcher(phrase, resultMatcher, o, searchedPois);
+						if (obj instanceof CustomSearchPoiFilter) {
+							rm = ((CustomSearchPoiFilter) obj).wrapResultMatcher(rm);
+						}
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
+								(int)bbox.left, (int)bbox.right,
+								(int)bbox.top, (int)bbox.bottom, -1, filter,
+								rm);
+						o.searchPoi(req);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
-							(int)bbox.left, (int)bbox.right,
-							(int)bbox.top, (int)bbox.bottom, -1, ptf,
-							rm);
-					o.searchPoi(req);
-					resultMatcher.apiSearchRegionFinished(this, o, phrase);
-				}
+				});
 			}
 			return true;
 		}
@@ -959,6 +1059,7 @@ public class SearchCoreFactory {
 					res.objectType = ObjectType.STREET;
 					subSearchApiOrPublish(phrase, resultMatcher, res, streetsAPI);
 					if (limit++ > LIMIT) {
+						resultMatcher.setLimitReached();
 						break;
 					}
 
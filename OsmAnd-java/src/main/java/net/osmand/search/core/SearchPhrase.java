@@ -487,6 +487,19 @@ public class SearchPhrase {
 		return getStringRerpresentation();
 	}
 
+	/**
+	 * Returns true if this phrase only extends last unknown word of previous phrase (and uses the same settings),
+	 * so search results of this phrase are subset of previous search results
+	 */
+	public boolean isRefinementOf(SearchPhrase prev) {
+		return prev != null && settings == prev.settings && words.equals(prev.words)
+				&& unknownWords.isEmpty() && prev.unknownWords.isEmpty()
+				&& !lastUnknownSearchWordComplete && !prev.lastUnknownSearchWordComplete
+				&& prev.unknownSearchWordTrim.length() > 0
+				&& unknownSearchWordTrim.length() > prev.unknownSearchWordTrim.length()
+				&& unknownSearchWordTrim.startsWith(prev.unknownSearchWordTrim);
+	}
+
 	public boolean isNoSelectedType() {
 		return words.isEmpty();
 	}
@@ -635,14 +648,28 @@ public class SearchPhrase {
 		countUnknownWordsMatch(sr, sr.localeName, sr.otherNames);
 	}
 	
+	/**
+	 * Creates matchers which are created lazily otherwise, should be called before phrase is used by several threads
+	 */
+	public void initNameStringMatchers() {
+		getNameStringMatcher();
+		initUnknownWordsMatchers();
+	}
+
+	private void initUnknownWordsMatchers() {
+		for (int i = unknownWordsMatcher.size(); i < unknownWords.size(); i++) {
+			unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i),
+					i < unknownWords.size() - 1 ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
+						StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+		}
+	}
+
 	public void countUnknownWordsMatch(SearchResult sr, String localeName, Collection<String> otherNames) {
 		if(unknownWords.size() > 0) {
+			if (unknownWordsMatcher.size() < unknownWords.size()) {
+				initUnknownWordsMatchers();
+			}
 			for(int i = 0; i < unknownWords.size(); i++) {
-				if(unknownWordsMatcher.size() == i) {
-					unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i), 
-							i < unknownWords.size() - 1 ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
-								StringMatcherMode.CHECK_STARTS_FROM_SPACE));
-				}
 				NameStringMatcher ms = unknownWordsMatcher.get(i);
 				if(ms.matches(localeName) || ms.matches(otherNames)) {
 					if(sr.otherWordsMatch == null) {
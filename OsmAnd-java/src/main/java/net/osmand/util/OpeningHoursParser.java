@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -33,6 +34,18 @@ public class OpeningHoursParser {
 	private static final int WITHOUT_TIME_LIMIT = -1;
 	private static final int CURRENT_DAY_TIME_LIMIT = -2;
 
+	private static final int PARSED_CACHE_SIZE = 4096;
+	// marks strings which couldn't be parsed in cache
+	private static final OpeningHours UNPARSEABLE = new OpeningHours();
+	private static final Map<String, OpeningHours> parsedCache = new LinkedHashMap<String, OpeningHours>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, OpeningHours> eldest) {
+			return size() > PARSED_CACHE_SIZE;
+		}
+	};
+
 	static {
 		DateFormatSymbols dateFormatSymbols = DateFormatSymbols.getInstance(Locale.US);
 		monthsStr = dateFormatSymbols.getShortMonths();
@@ -116,6 +129,7 @@ public class OpeningHoursParser {
 		private ArrayList<OpeningHoursRule> rules;
 		private String original;
 		private int sequenceCount;
+		private transient volatile CompiledOpeningHours compiled;
 
 		public static class Info {
 
@@ -226,6 +240,7 @@ public class OpeningHoursParser {
 		 */
 		public void addRule(OpeningHoursRule r) {
 			rules.add(r);
+			compiled = null;
 		}
 
 		/**
@@ -235,6 +250,7 @@ public class OpeningHoursParser {
 		 */
 		public void addRules(List<? extends OpeningHoursRule> rules) {
 			this.rules.addAll(rules);
+			compiled = null;
 		}
 
 		public int getSequenceCount() {
@@ -535,6 +551,227 @@ public class OpeningHoursParser {
 		public String getOriginal() {
 			return original;
 		}
+
+		/**
+		 * Returns compiled form of the rules (it is created once and reset when rules are added)
+		 */
+		public CompiledOpeningHours getCompiled() {
+			CompiledOpeningHours c = compiled;
+			if (c == null) {
+				c = new CompiledOpeningHours(rules);
+				compiled = c;
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * Opening hours compiled to answer {@link OpeningHours#isOpenedForTime(Calendar)} without allocations.
+	 * Rule days, months and day of months are bit masks and times are int arrays. Months which are covered by the
+	 * same rules (and rules don't have day of months) share weekly bitmap of opened minutes (7 * 24 * 60 bits),
+	 * other months are evaluated by rules, same way as {@link OpeningHours#isOpenedForTimeV2(Calendar, int)} does.
+	 */
+	public static class CompiledOpeningHours {
+		private static final int MINUTES_IN_DAY = 24 * 60;
+		private static final int MINUTES_IN_WEEK = 7 * MINUTES_IN_DAY;
+
+		private final int rulesCount;
+		// -1 for rules which are not basic rules (they never contain time)
+		private final int[] months;
+		private final int[] days;
+		private final int[] dayMonths;
+		private final boolean[] off;
+		private final int[][] startTimes;
+		private final int[][] endTimes;
+		// times of rule i overlap with times of rule i - 1
+		private final boolean[] overlapPrevious;
+		private final boolean overlap;
+		// weekly bitmap (index in weekBitmaps) for each month or -1
+		private final int[] monthBitmap = new int[12];
+		private final List<long[]> weekBitmaps = new ArrayList<long[]>();
+
+		CompiledOpeningHours(List<OpeningHoursRule> rules) {
+			rulesCount = rules.size();
+			months = new int[rulesCount];
+			days = new int[rulesCount];
+			dayMonths = new int[rulesCount];
+			off = new boolean[rulesCount];
+			startTimes = new int[rulesCount][];
+			endTimes = new int[rulesCount][];
+			overlapPrevious = new boolean[rulesCount];
+			boolean overlap = false;
+			for (int i = 0; i < rulesCount; i++) {
+				OpeningHoursRule r = rules.get(i);
+				overlap |= r.hasOverlapTimes();
+				if (r instanceof BasicOpeningHourRule) {
+					BasicOpeningHourRule b = (BasicOpeningHourRule) r;
+					months[i] = toMask(b.months);
+					days[i] = toMask(b.days);
+					dayMonths[i] = toMask(b.dayMonths);
+					off[i] = b.off;
+					startTimes[i] = b.startTimes.toArray();
+					endTimes[i] = b.endTimes.toArray();
+					if (i > 0 && rules.get(i - 1) instanceof BasicOpeningHourRule) {
+						overlapPrevious[i] = timesOverlap(b, (BasicOpeningHourRule) rules.get(i - 1));
+					}
+				} else {
+					startTimes[i] = new int[0];
+					endTimes[i] = new int[0];
+				}
+			}
+			this.overlap = overlap;
+			Map<Integer, Integer> bitmapsByRules = new HashMap<Integer, Integer>();
+			for (int m = 0; m < 12; m++) {
+				monthBitmap[m] = -1;
+				int monthRules = 0;
+				boolean withDayMonths = false;
+				for (int i = 0; i < rulesCount && i < 31; i++) {
+					if ((months[i] & (1 << m)) != 0) {
+						monthRules |= 1 << i;
+						withDayMonths |= dayMonths[i] != 0;
+					}
+				}
+				if (withDayMonths || rulesCount > 31) {
+					continue;
+				}
+				Integer ind = bitmapsByRules.get(monthRules);
+				if (ind == null) {
+					ind = weekBitmaps.size();
+					weekBitmaps.add(buildWeekBitmap(m));
+					bitmapsByRules.put(monthRules, ind);
+				}
+				monthBitmap[m] = ind;
+			}
+		}
+
+		private static int toMask(boolean[] ar) {
+			int mask = 0;
+			for (int i = 0; i < ar.length; i++) {
+				if (ar[i]) {
+					mask |= 1 << i;
+				}
+			}
+			return mask;
+		}
+
+		// same as BasicOpeningHourRule.hasOverlapTimes(cal, r) when r contains time
+		private static boolean timesOverlap(BasicOpeningHourRule rule, BasicOpeningHourRule r) {
+			if (rule.off) {
+				return true;
+			}
+			for (int i = 0; i < rule.startTimes.size(); i++) {
+				int startTime = rule.startTimes.get(i);
+				int endTime = rule.endTimes.get(i);
+				if (endTime == -1) {
+					endTime = MINUTES_IN_DAY;
+				} else if (startTime >= endTime) {
+					endTime = MINUTES_IN_DAY + endTime;
+				}
+				for (int k = 0; k < r.startTimes.size(); k++) {
+					int rStartTime = r.startTimes.get(k);
+					int rEndTime = r.endTimes.get(k);
+					if (rEndTime == -1) {
+						rEndTime = MINUTES_IN_DAY;
+					} else if (rStartTime >= rEndTime) {
+						rEndTime = MINUTES_IN_DAY + rEndTime;
+					}
+					if ((rStartTime >= startTime && rStartTime < endTime)
+							|| (startTime >= rStartTime && startTime < rEndTime)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private long[] buildWeekBitmap(int month) {
+			long[] bitmap = new long[(MINUTES_IN_WEEK + 63) / 64];
+			for (int day = 0; day < 7; day++) {
+				for (int time = 0; time < MINUTES_IN_DAY; time++) {
+					if (evaluate(month, 0, day, time)) {
+						int ind = day * MINUTES_IN_DAY + time;
+						bitmap[ind >> 6] |= 1L << (ind & 63);
+					}
+				}
+			}
+			return bitmap;
+		}
+
+		public boolean isOpenedForTime(Calendar cal) {
+			return isOpenedForTime(cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH),
+					cal.get(Calendar.DAY_OF_WEEK), cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE));
+		}
+
+		/**
+		 * @param month Calendar.MONTH (0 is January)
+		 * @param dayOfMonth Calendar.DAY_OF_MONTH (starts with 1)
+		 * @param dayOfWeek Calendar.DAY_OF_WEEK (1 is Sunday)
+		 * @param minutes minutes from the start of the day
+		 */
+		public boolean isOpenedForTime(int month, int dayOfMonth, int dayOfWeek, int minutes) {
+			int day = (dayOfWeek + 5) % 7;
+			int bitmap = monthBitmap[month];
+			if (bitmap >= 0) {
+				int ind = day * MINUTES_IN_DAY + minutes;
+				return (weekBitmaps.get(bitmap)[ind >> 6] & (1L << (ind & 63))) != 0;
+			}
+			return evaluate(month, dayOfMonth - 1, day, minutes);
+		}
+
+		// OpeningHours.isOpenedForTimeV2 for all sequences
+		private boolean evaluate(int month, int dmonth, int day, int time) {
+			for (int i = rulesCount - 1; i >= 0; i--) {
+				int c = calculate(i, month, dmonth, day, time);
+				if (c != 0) {
+					boolean checkNext = false;
+					if (i > 0) {
+						checkNext = !(off[i] || (overlapPrevious[i] && calculate(i - 1, month, dmonth, day, time) != 0));
+					}
+					boolean open = c > 0;
+					if (open || (!overlap && !checkNext)) {
+						return open;
+					}
+				}
+			}
+			return false;
+		}
+
+		// BasicOpeningHourRule.calculate
+		private int calculate(int i, int month, int dmonth, int day, int time) {
+			if ((months[i] & (1 << month)) == 0) {
+				return 0;
+			}
+			int previous = (day + 6) % 7;
+			boolean thisDay = (days[i] & (1 << day)) != 0 || (dayMonths[i] & (1 << dmonth)) != 0;
+			boolean previousDay = (days[i] & (1 << previous)) != 0
+					|| (dmonth > 0 && (dayMonths[i] & (1 << (dmonth - 1))) != 0);
+			if (!thisDay && !previousDay) {
+				return 0;
+			}
+			int[] starts = startTimes[i];
+			int[] ends = endTimes[i];
+			for (int k = 0; k < starts.length; k++) {
+				int startTime = starts[k];
+				int endTime = ends[k];
+				if (startTime < endTime || endTime == -1) {
+					if (time >= startTime && (endTime == -1 || time <= endTime) && thisDay) {
+						return off[i] ? -1 : 1;
+					}
+				} else {
+					if (time >= startTime && thisDay) {
+						return off[i] ? -1 : 1;
+					} else if (time < endTime && previousDay) {
+						return off[i] ? -1 : 1;
+					}
+				}
+			}
+			if (thisDay && starts.length == 0 && !off[i]) {
+				return 1;
+			} else if (thisDay && (starts.length == 0 || !off[i])) {
+				return -1;
+			}
+			return 0;
+		}
 	}
 
 	/**
@@ -1804,6 +2041,30 @@ public class OpeningHoursParser {
 		return rs.rules.size() > 0 ? rs : null;
 	}
 
+	/**
+	 * Same as {@link #parseOpenedHours(String)}, but opening hours are cached by string (LRU),
+	 * so returned object is shared and shouldn't be modified. Thread safe.
+	 */
+	public static OpeningHours parseOpenedHoursCached(String format) {
+		if (format == null) {
+			return null;
+		}
+		OpeningHours rs;
+		synchronized (parsedCache) {
+			rs = parsedCache.get(format);
+		}
+		if (rs == null) {
+			rs = parseOpenedHours(format);
+			if (rs == null) {
+				rs = UNPARSEABLE;
+			}
+			synchronized (parsedCache) {
+				parsedCache.put(format, rs);
+			}
+		}
+		return rs == UNPARSEABLE ? null : rs;
+	}
+
 	/**
 	 * parse OSM opening_hours string to an OpeningHours object.
 	 * Does not return null when parsing unsuccessful. When parsing rule is unsuccessful,
@@ -0,0 +1,137 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.OsmAndCollator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CollatedStringTableTest {
+
+	private static final String[] PARTS = { "a", "b", "ab", "str", "Str", "stra", "ä", "ß", "e", "é",
+			"ch", "h", "c", " ", "-" };
+
+	@Test
+	public void testSearchAsLinearScan() {
+		Random rnd = new Random(1);
+		Collator collator = OsmAndCollator.primaryCollator();
+		for (int t = 0; t < 300; t++) {
+			// table as it is stored in file: key (String), value (Integer), subtable (List)
+			List<Object> items = generateTable(rnd, 0);
+			CollatedStringTable.Builder builder = new CollatedStringTable.Builder();
+			build(builder, "", items);
+			CollatedStringTable table = builder.build();
+			for (int q = 0; q < 30; q++) {
+				String query = randomString(rnd, 1 + rnd.nextInt(4));
+				TIntArrayList expected = new TIntArrayList();
+				int expectedMatches = readIndexedStringTable(collator, query, "", items, expected, 0);
+				TIntArrayList list = new TIntArrayList();
+				int matches = table.search(collator, query, list);
+				Assert.assertEquals(query, expectedMatches, matches);
+				Assert.assertEquals(query, expected, list);
+			}
+		}
+	}
+
+	private static String randomString(Random rnd, int parts) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts; i++) {
+			sb.append(PARTS[rnd.nextInt(PARTS.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static List<Object> generateTable(Random rnd, int depth) {
+		List<Object> items = new ArrayList<Object>();
+		int keys = 1 + rnd.nextInt(depth == 0 ? 30 : 6);
+		for (int k = 0; k < keys; k++) {
+			if (rnd.nextInt(10) == 0) {
+				items.add(rnd.nextInt(1000));
+			}
+			items.add(randomString(rnd, 1 + rnd.nextInt(2)));
+			for (int v = rnd.nextInt(3); v >= 0; v--) {
+				items.add(rnd.nextInt(1000));
+			}
+			if (depth < 3 && rnd.nextInt(3) == 0) {
+				items.add(generateTable(rnd, depth + 1));
+				if (rnd.nextBoolean()) {
+					items.add(rnd.nextInt(1000));
+				}
+			}
+		}
+		return items;
+	}
+
+	// the same as BinaryMapIndexReader.loadIndexedStringTable
+	@SuppressWarnings("unchecked")
+	private static void build(CollatedStringTable.Builder builder, String prefix, List<Object> items) {
+		String key = null;
+		for (Object o : items) {
+			if (o instanceof String) {
+				key = prefix + o;
+				builder.addKey(key);
+			} else if (o instanceof Integer) {
+				if (key != null) {
+					builder.addValue((Integer) o);
+				}
+			} else if (key != null) {
+				int subtable = builder.startSubtable();
+				build(builder, key, (List<Object>) o);
+				builder.endSubtable(subtable);
+			}
+		}
+	}
+
+	// linear scan of table while it is read from file (as it was done before tables were kept in memory)
+	@SuppressWarnings("unchecked")
+	private static int readIndexedStringTable(Collator instance, String query, String prefix, List<Object> items,
+			TIntArrayList list, int charMatches) {
+		String key = null;
+		for (Object o : items) {
+			if (o instanceof String) {
+				key = (String) o;
+				if (prefix.length() > 0) {
+					key = prefix + key;
+				}
+				// check query is part of key (the best matching)
+				if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					if (query.length() >= charMatches) {
+						if (query.length() > charMatches) {
+							charMatches = query.length();
+							list.clear();
+						}
+					} else {
+						key = null;
+					}
+					// check key is part of query
+				} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					if (key.length() >= charMatches) {
+						if (key.length() > charMatches) {
+							charMatches = key.length();
+							list.clear();
+						}
+					} else {
+						key = null;
+					}
+				} else {
+					key = null;
+				}
+			} else if (o instanceof Integer) {
+				if (key != null) {
+					list.add((Integer) o);
+				}
+			} else if (key != null) {
+				charMatches = readIndexedStringTable(instance, query, key, (List<Object>) o, list, charMatches);
+			}
+		}
+		return charMatches;
+	}
+}
@@ -0,0 +1,112 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactNamesTest {
+
+	private static final int OBJECTS = 200000;
+	private static final String[] TABLE = new String[1000];
+	static {
+		for (int i = 0; i < TABLE.length; i++) {
+			TABLE[i] = "Street " + i;
+		}
+	}
+
+	@Test
+	public void testRouteNames() {
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "name", "");
+		region.initRouteEncodingRule(1, "name:en", "");
+		region.initRouteEncodingRule(2, "ref", "");
+		int[] nameIds = { 0, 1, 2 };
+		RouteDataObject map = new RouteDataObject(region, nameIds, new String[] { TABLE[5], TABLE[6], TABLE[7] });
+		RouteDataObject compact = new RouteDataObject(region);
+		compact.setNames(nameIds, new int[] { 5, 6, 7 }, TABLE);
+
+		Assert.assertEquals(map.getName(), compact.getName());
+		Assert.assertEquals(map.getName("en"), compact.getName("en"));
+		Assert.assertEquals(map.getName("de", true), compact.getName("de", true));
+		Assert.assertEquals(map.getNames(), compact.getNames());
+		// map is not kept by compact object
+		Assert.assertNotSame(compact.getNames(), compact.getNames());
+		Assert.assertNull(compact.names);
+		RouteDataObject copy = new RouteDataObject(compact);
+		Assert.assertEquals(map.getNames(), copy.getNames());
+		Assert.assertNull(copy.names);
+	}
+
+	@Test
+	public void testMapObjectNames() {
+		MapIndex mapIndex = new MapIndex();
+		mapIndex.nameEncodingType = 1;
+		BinaryMapDataObject compact = new BinaryMapDataObject();
+		compact.setMapIndex(mapIndex);
+		compact.setNames(new TIntArrayList(new int[] { 1, 2 }), new int[] { 3, 4 }, TABLE);
+		BinaryMapDataObject map = new BinaryMapDataObject();
+		map.setMapIndex(mapIndex);
+		map.putObjectName(1, TABLE[3]);
+		map.putObjectName(2, TABLE[4]);
+
+		Assert.assertEquals(map.getName(), compact.getName());
+		Assert.assertEquals(map.getNameByType(2), compact.getNameByType(2));
+		Assert.assertEquals(map.getObjectNames(), compact.getObjectNames());
+		Assert.assertEquals(map.getOrderedObjectNames(), compact.getOrderedObjectNames());
+		Assert.assertNotSame(compact.getObjectNames(), compact.getObjectNames());
+
+		map.putObjectName(3, TABLE[8]);
+		compact.putObjectName(3, TABLE[8]);
+		Assert.assertEquals(map.getObjectNames(), compact.getObjectNames());
+		Assert.assertEquals(map.getNamesOrder(), compact.getNamesOrder());
+	}
+
+	@Test
+	public void testCompactNamesMemory() {
+		long mapSize = 0;
+		long compactSize = 0;
+		// heap measurement could be disturbed by other allocations, so it is repeated
+		for (int attempt = 0; attempt < 3 && (attempt == 0 || compactSize >= mapSize); attempt++) {
+			mapSize = measureRouteObjects(false);
+			compactSize = measureRouteObjects(true);
+		}
+		Assert.assertTrue("Compact " + compactSize + " bytes, map " + mapSize + " bytes", compactSize < mapSize);
+	}
+
+	// retained memory per route object with 3 names
+	private static long measureRouteObjects(boolean compact) {
+		RouteRegion region = new RouteRegion();
+		RouteDataObject[] keep = new RouteDataObject[OBJECTS];
+		long m0 = usedMemory();
+		for (int i = 0; i < OBJECTS; i++) {
+			RouteDataObject o = new RouteDataObject(region);
+			if (compact) {
+				o.setNames(new int[] { 1, 2, 3 }, new int[] { (i + 1) % TABLE.length, (i + 2) % TABLE.length,
+						(i + 3) % TABLE.length }, TABLE);
+			} else {
+				o.nameIds = new int[] { 1, 2, 3 };
+				o.names = new TIntObjectHashMap<String>();
+				for (int j = 1; j <= 3; j++) {
+					o.names.put(j, TABLE[(i + j) % TABLE.length]);
+				}
+			}
+			keep[i] = o;
+		}
+		long size = (usedMemory() - m0) / OBJECTS;
+		Assert.assertTrue(keep[OBJECTS - 1].hasNames());
+		return size;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,174 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmd;
+import com.wdtinc.mapbox_vector_tile.encoding.GeomCmdHdr;
+import com.wdtinc.mapbox_vector_tile.encoding.ZigZag;
+
+import net.osmand.binary.MvtStreamReader.Feature;
+import net.osmand.binary.MvtStreamReader.FeatureVisitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MvtStreamReaderTest {
+
+	private static final int TILES = 100;
+	private static final int LAYERS = 3;
+	private static final int FEATURES = 200;
+
+	private final GeometryFactory geomFactory = new GeometryFactory();
+
+	@Test
+	public void testDecodeAsMvtReader() throws IOException {
+		Random rnd = new Random(7);
+		MvtStreamReader reader = new MvtStreamReader();
+		for (int t = 0; t < TILES; t++) {
+			byte[] tile = createTile(rnd, null).toByteArray();
+			List<Geometry> expected = MvtReader.loadMvt(new ByteArrayInputStream(tile), geomFactory,
+					new TagKeyValueMapConverter());
+			List<Geometry> geoms = reader.loadMvt(new ByteArrayInputStream(tile), geomFactory,
+					MvtReader.RING_CLASSIFIER_V2_1);
+			assertGeometries(expected, geoms);
+		}
+	}
+
+	@Test
+	public void testLayerFilter() throws IOException {
+		Random rnd = new Random(11);
+		final String layer = "layer1";
+		final MvtStreamReader reader = new MvtStreamReader(Collections.singleton(layer));
+		for (int t = 0; t < TILES; t++) {
+			List<VectorTile.Tile.Layer> layers = new ArrayList<VectorTile.Tile.Layer>();
+			VectorTile.Tile tile = createTile(rnd, layers);
+			// tile with the only layer is decoded by MvtReader
+			VectorTile.Tile layerTile = VectorTile.Tile.newBuilder().addLayers(layers.get(1)).build();
+			List<Geometry> expected = MvtReader.loadMvt(new ByteArrayInputStream(layerTile.toByteArray()),
+					geomFactory, new TagKeyValueMapConverter());
+			final List<Geometry> geoms = new ArrayList<Geometry>();
+			reader.read(new ByteArrayInputStream(tile.toByteArray()), new FeatureVisitor() {
+				@Override
+				public void visitFeature(Feature feature) {
+					Assert.assertEquals(layer, feature.getLayerName());
+					Geometry geom = feature.createGeometry(geomFactory, MvtReader.RING_CLASSIFIER_V2_1);
+					if (geom != null) {
+						geom.setUserData(feature.getTags());
+						geoms.add(geom);
+					}
+				}
+			});
+			assertGeometries(expected, geoms);
+		}
+	}
+
+	private static void assertGeometries(List<Geometry> expected, List<Geometry> geoms) {
+		Assert.assertEquals(expected.size(), geoms.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Geometry e = expected.get(i);
+			Geometry g = geoms.get(i);
+			Assert.assertEquals(e.getClass(), g.getClass());
+			Assert.assertTrue(e + " " + g, e.equalsExact(g));
+			Assert.assertEquals(e.getUserData(), g.getUserData());
+		}
+	}
+
+	private static VectorTile.Tile createTile(Random rnd, List<VectorTile.Tile.Layer> layers) {
+		VectorTile.Tile.Builder tile = VectorTile.Tile.newBuilder();
+		for (int l = 0; l < LAYERS; l++) {
+			VectorTile.Tile.Layer.Builder lb = VectorTile.Tile.Layer.newBuilder().setName("layer" + l).setVersion(2)
+					.setExtent(4096);
+			for (int k = 0; k < 6; k++) {
+				lb.addKeys("key" + k);
+			}
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setStringValue("str"));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setDoubleValue(1.5));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setFloatValue(2.5f));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setIntValue(-7));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setUintValue(1234567890123L));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setSintValue(-99));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setBoolValue(true));
+			lb.addValues(VectorTile.Tile.Value.newBuilder().setStringValue("x").setIntValue(3));
+			for (int f = 0; f < FEATURES; f++) {
+				lb.addFeatures(createFeature(rnd));
+			}
+			VectorTile.Tile.Layer layer = lb.build();
+			tile.addLayers(layer);
+			if (layers != null) {
+				layers.add(layer);
+			}
+		}
+		return tile.build();
+	}
+
+	private static VectorTile.Tile.Feature createFeature(Random rnd) {
+		VectorTile.Tile.Feature.Builder fb = VectorTile.Tile.Feature.newBuilder();
+		if (rnd.nextBoolean()) {
+			fb.setId(rnd.nextInt(100000));
+		}
+		// tags with invalid key & value indexes
+		for (int i = rnd.nextInt(4); i > 0; i--) {
+			fb.addTags(rnd.nextInt(7));
+			fb.addTags(rnd.nextInt(9));
+		}
+		if (rnd.nextInt(20) == 0) {
+			fb.addTags(1);
+		}
+		int type = rnd.nextInt(4);
+		fb.setType(VectorTile.Tile.GeomType.valueOf(type));
+		List<Integer> g = new ArrayList<Integer>();
+		int parts = 1 + rnd.nextInt(3);
+		if (type == VectorTile.Tile.GeomType.POINT_VALUE) {
+			int n = 1 + rnd.nextInt(3);
+			g.add(GeomCmdHdr.cmdHdr(GeomCmd.MoveTo, n));
+			addPoints(rnd, g, n);
+		} else if (type == VectorTile.Tile.GeomType.LINESTRING_VALUE) {
+			for (int p = 0; p < parts; p++) {
+				g.add(GeomCmdHdr.cmdHdr(GeomCmd.MoveTo, 1));
+				addPoints(rnd, g, 1);
+				int n = 1 + rnd.nextInt(5);
+				g.add(GeomCmdHdr.cmdHdr(GeomCmd.LineTo, n));
+				addPoints(rnd, g, n);
+			}
+		} else if (type == VectorTile.Tile.GeomType.POLYGON_VALUE) {
+			for (int p = 0; p < parts; p++) {
+				// square ring, clockwise rings are holes
+				int s = 5 + rnd.nextInt(20);
+				boolean hole = p > 0 && rnd.nextBoolean();
+				g.add(GeomCmdHdr.cmdHdr(GeomCmd.MoveTo, 1));
+				g.add(ZigZag.encode(rnd.nextInt(50)));
+				g.add(ZigZag.encode(rnd.nextInt(50)));
+				g.add(GeomCmdHdr.cmdHdr(GeomCmd.LineTo, 3));
+				int[][] d = hole ? new int[][] { { s, 0 }, { 0, s }, { -s, 0 } }
+						: new int[][] { { 0, s }, { s, 0 }, { 0, -s } };
+				for (int[] dd : d) {
+					g.add(ZigZag.encode(dd[0]));
+					g.add(ZigZag.encode(dd[1]));
+				}
+				g.add(GeomCmdHdr.cmdHdr(GeomCmd.ClosePath, 1));
+			}
+		}
+		if (rnd.nextInt(15) == 0 && !g.isEmpty()) {
+			// broken geometry
+			g.remove(g.size() - 1);
+		}
+		fb.addAllGeometry(g);
+		return fb.build();
+	}
+
+	private static void addPoints(Random rnd, List<Integer> g, int n) {
+		for (int i = 0; i < n; i++) {
+			g.add(ZigZag.encode(rnd.nextInt(200) - 100));
+			g.add(ZigZag.encode(rnd.nextInt(200) - 100));
+		}
+	}
+}
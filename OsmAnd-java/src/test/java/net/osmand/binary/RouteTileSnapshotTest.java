@@ -0,0 +1,115 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteTileSnapshotTest {
+
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		File obf = File.createTempFile("snapshot", ".obf");
+		File file = File.createTempFile("snapshot", ".tiles");
+		RandomAccessFile raf = new RandomAccessFile(obf, "r");
+		try {
+			Assert.assertTrue(file.delete());
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, obf, false);
+			RouteRegion region = new RouteRegion();
+			region.initRouteEncodingRule(0, "highway", "primary");
+			region.initRouteEncodingRule(1, "name", "");
+			region.initRouteEncodingRule(2, "ref", "");
+			region.initRouteEncodingRule(3, "highway", "traffic_signals");
+			RouteSubregion sub1 = subregion(region, 100);
+			RouteSubregion sub2 = subregion(region, 200);
+			List<RouteDataObject> tile1 = createTile(region, 1);
+			List<RouteDataObject> tile2 = createTile(region, 2);
+
+			RouteTileSnapshot snapshot = RouteTileSnapshot.load(file);
+			Assert.assertEquals(0, snapshot.getTilesCount());
+			Assert.assertNull(snapshot.getTile(reader, sub1));
+			snapshot.putTile(reader, sub1, tile1);
+			Assert.assertTrue(snapshot.containsTile(reader, sub1));
+			Assert.assertFalse(snapshot.containsTile(reader, sub2));
+			Assert.assertTrue(snapshot.getAddedTilesMemory() > 0);
+			assertTile(tile1, snapshot.getTile(reader, sub1));
+			snapshot.write(file);
+
+			// mapped tile and added tile are written together
+			RouteTileSnapshot loaded = RouteTileSnapshot.load(file);
+			Assert.assertEquals(1, loaded.getTilesCount());
+			Assert.assertEquals(0, loaded.getAddedTilesCount());
+			Assert.assertEquals(0, loaded.getAddedTilesMemory());
+			assertTile(tile1, loaded.getTile(reader, sub1));
+			loaded.putTile(reader, sub2, tile2);
+			loaded.write(file);
+
+			RouteTileSnapshot reloaded = RouteTileSnapshot.load(file);
+			Assert.assertEquals(2, reloaded.getTilesCount());
+			assertTile(tile1, reloaded.getTile(reader, sub1));
+			assertTile(tile2, reloaded.getTile(reader, sub2));
+		} finally {
+			raf.close();
+			obf.delete();
+			file.delete();
+		}
+	}
+
+	private static RouteSubregion subregion(RouteRegion region, int filePointer) {
+		RouteSubregion sub = new RouteSubregion(region);
+		sub.filePointer = filePointer;
+		return sub;
+	}
+
+	private static List<RouteDataObject> createTile(RouteRegion region, int seed) {
+		List<RouteDataObject> tile = new ArrayList<RouteDataObject>();
+		// names as they are read from map
+		RouteDataObject compact = new RouteDataObject(region);
+		compact.setNames(new int[] { 1, 2 }, new int[] { 1, 0 }, new String[] { "M" + seed, "Main street " + seed });
+		tile.add(fill(compact, seed * 10));
+		tile.add(null);
+		RouteDataObject map = new RouteDataObject(region, new int[] { 1 }, new String[] { "Main street " + seed });
+		map.restrictions = new long[] { seed * 20L << 6 | 1 };
+		map.restrictionsVia = new long[] { 0 };
+		tile.add(fill(map, seed * 10 + 1));
+		tile.add(fill(new RouteDataObject(region), seed * 10 + 2));
+		return tile;
+	}
+
+	private static RouteDataObject fill(RouteDataObject o, long id) {
+		o.id = id;
+		o.pointsX = new int[] { 1000, 2000, 3000 };
+		o.pointsY = new int[] { 5000, 6000, (int) id };
+		o.types = new int[] { 0 };
+		o.pointTypes = new int[][] { null, { 3 }, null };
+		o.pointNameTypes = new int[][] { null, { 1 }, null };
+		o.pointNames = new String[][] { null, { "Crossing " + id }, null };
+		return o;
+	}
+
+	private static void assertTile(List<RouteDataObject> expected, List<RouteDataObject> actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RouteDataObject e = expected.get(i);
+			RouteDataObject a = actual.get(i);
+			if (e == null) {
+				Assert.assertNull(a);
+				continue;
+			}
+			Assert.assertTrue("Object " + e.id, e.compareRoute(a));
+			Assert.assertEquals(e.getName(), a.getName());
+			Assert.assertEquals(e.getNames(), a.getNames());
+			Assert.assertTrue(Arrays.deepEquals(e.pointNameTypes, a.pointNameTypes));
+			Assert.assertTrue(Arrays.deepEquals(e.pointNames, a.pointNames));
+		}
+	}
+}
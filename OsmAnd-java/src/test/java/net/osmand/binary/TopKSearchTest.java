@@ -0,0 +1,87 @@
+package net.osmand.binary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.AmenityDistanceScore;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TopKSearchTest {
+
+	private static final double LAT = 52.5;
+	private static final double LON = 13.4;
+
+	@Test
+	public void testTopKAsSortedFullResults() {
+		Random rnd = new Random(1);
+		final AmenityDistanceScore score = new AmenityDistanceScore(LAT, LON);
+		for (int t = 0; t < 50; t++) {
+			int k = 1 + rnd.nextInt(50);
+			List<Amenity> all = new ArrayList<Amenity>();
+			for (int i = rnd.nextInt(2000); i >= 0; i--) {
+				Amenity a = new Amenity();
+				a.setId((long) i);
+				a.setLocation(LAT + rnd.nextGaussian() * 0.05, LON + rnd.nextGaussian() * 0.05);
+				all.add(a);
+			}
+			// every third object is rejected by matcher
+			ResultMatcher<Amenity> matcher = new ResultMatcher<Amenity>() {
+				@Override
+				public boolean publish(Amenity object) {
+					return object.getId() % 3 != 0;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			};
+			SearchRequest<Amenity> full = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, 0, 0, -1, null, matcher);
+			SearchRequest<Amenity> topK = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, 0, 0, -1, null, matcher);
+			topK.setTopK(k, score);
+			for (Amenity a : all) {
+				full.publish(a);
+				topK.publish(a);
+			}
+			List<Amenity> expected = new ArrayList<Amenity>(full.getSearchResults());
+			Collections.sort(expected, new Comparator<Amenity>() {
+				@Override
+				public int compare(Amenity o1, Amenity o2) {
+					return Double.compare(score.getScore(o1), score.getScore(o2));
+				}
+			});
+			expected = expected.subList(0, Math.min(k, expected.size()));
+			Assert.assertEquals(expected, topK.getSearchResults());
+		}
+	}
+
+	@Test
+	public void testTopKPruned() {
+		AmenityDistanceScore score = new AmenityDistanceScore(LAT, LON);
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, 0, 0, -1, null, null);
+		req.setTopK(2, score);
+		int x = MapUtils.get31TileNumberX(LON);
+		int y = MapUtils.get31TileNumberY(LAT);
+		Assert.assertFalse(req.isTopKPruned(x + 100000000, y, x + 200000000, y + 10));
+		for (int i = 0; i < 3; i++) {
+			Amenity a = new Amenity();
+			a.setLocation(LAT + 0.001 * i, LON);
+			req.publish(a);
+		}
+		Assert.assertEquals(2, req.getSearchResults().size());
+		Assert.assertTrue(req.isTopKPruned(x + 100000000, y, x + 200000000, y + 10));
+		Assert.assertFalse(req.isTopKPruned(x - 10, y - 10, x + 10, y + 10));
+		req.clearSearchResults();
+		Assert.assertEquals(0, req.getSearchResults().size());
+		Assert.assertFalse(req.isTopKPruned(x + 100000000, y, x + 200000000, y + 10));
+	}
+}
@@ -0,0 +1,91 @@
+package net.osmand.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.map.OsmandRegions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PolygonPointIndexTest {
+
+	private static final int POLYGONS = 300;
+	private static final int POINTS = 50000;
+
+	@Test
+	public void testQueryAsContain() {
+		Random rnd = new Random(7);
+		OsmandRegions regions = new OsmandRegions();
+		List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		List<int[]> bboxes = new ArrayList<int[]>();
+		PolygonPointIndex.Builder<Integer> builder = new PolygonPointIndex.Builder<Integer>();
+		for (int k = 0; k < POLYGONS; k++) {
+			int n = 20 + rnd.nextInt(3000);
+			double cx = (0.1 + 0.8 * rnd.nextDouble()) * (1L << 31);
+			double cy = (0.1 + 0.8 * rnd.nextDouble()) * (1L << 31);
+			double radius = rnd.nextDouble() * (1 << 27);
+			int[] x31 = new int[n + 1];
+			int[] y31 = new int[n + 1];
+			int[] coordinates = new int[2 * (n + 1)];
+			int[] bbox = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+			for (int i = 0; i <= n; i++) {
+				if (i < n) {
+					double angle = 2 * Math.PI * i / n;
+					double r = radius * (0.3 + 0.7 * rnd.nextDouble());
+					x31[i] = (int) (cx + r * Math.cos(angle));
+					y31[i] = (int) (cy + r * Math.sin(angle));
+				} else {
+					x31[i] = x31[0];
+					y31[i] = y31[0];
+				}
+				coordinates[2 * i] = x31[i];
+				coordinates[2 * i + 1] = y31[i];
+				bbox[0] = Math.min(bbox[0], x31[i]);
+				bbox[1] = Math.min(bbox[1], y31[i]);
+				bbox[2] = Math.max(bbox[2], x31[i]);
+				bbox[3] = Math.max(bbox[3], y31[i]);
+			}
+			builder.addPolygon(k, x31, y31);
+			objects.add(new BinaryMapDataObject(k, coordinates, null, 0, true, new int[0], null));
+			bboxes.add(bbox);
+		}
+		PolygonPointIndex<Integer> index = builder.build();
+		Assert.assertEquals(POLYGONS, index.size());
+
+		// points near polygon borders
+		int[] px = new int[POINTS];
+		int[] py = new int[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			BinaryMapDataObject o = objects.get(rnd.nextInt(POLYGONS));
+			int j = rnd.nextInt(o.getPointsLength());
+			px[i] = o.getPoint31XTile(j) + rnd.nextInt(1 << 22) - (1 << 21);
+			py[i] = o.getPoint31YTile(j) + rnd.nextInt(1 << 22) - (1 << 21);
+		}
+		int[][] ids = index.queryIds(px, py);
+		int inside = 0;
+		for (int i = 0; i < POINTS; i++) {
+			Set<Integer> expected = new TreeSet<Integer>();
+			for (int k = 0; k < POLYGONS; k++) {
+				int[] b = bboxes.get(k);
+				if (px[i] >= b[0] && px[i] <= b[2] && py[i] >= b[1] && py[i] <= b[3]
+						&& regions.contain(objects.get(k), px[i], py[i])) {
+					expected.add(k);
+				}
+			}
+			Set<Integer> found = new TreeSet<Integer>();
+			for (int id : ids[i]) {
+				found.add(index.getObject(id));
+			}
+			Assert.assertEquals("Point " + px[i] + " " + py[i], expected, found);
+			Assert.assertEquals(expected, new TreeSet<Integer>(index.query(px[i], py[i])));
+			inside += expected.size();
+		}
+		// points are not trivially outside of all polygons
+		Assert.assertTrue(inside > POINTS / 10);
+	}
+}
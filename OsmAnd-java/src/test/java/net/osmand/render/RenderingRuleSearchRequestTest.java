@@ -0,0 +1,102 @@
+package net.osmand.render;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+public class RenderingRuleSearchRequestTest {
+
+	static final String[][] TAGS = {
+			{ "highway", "primary" }, { "highway", "residential" }, { "highway", "track" },
+			{ "highway", "footway" }, { "landuse", "forest" }, { "waterway", "river" },
+			{ "amenity", "cafe" }, { "amenity", "bar" }, { "building", "yes" }, { "natural", "tree" } };
+
+	@Test
+	public void testCachedSearchAsUncached() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = loadStyle("default");
+		RenderingRuleSearchRequest cached = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest uncached = new RenderingRuleSearchRequest(storage);
+		uncached.setResultCacheEnabled(false);
+		RenderingRuleSearchRequest[] requests = { cached, uncached };
+		for (RenderingRuleSearchRequest r : requests) {
+			for (RenderingRuleProperty p : storage.PROPS.getCustomRules()) {
+				if (p.isBoolean()) {
+					r.setBooleanFilter(p, true);
+				} else if (p.isString() && p.getPossibleValues() != null && p.getPossibleValues().length > 0) {
+					r.setStringFilter(p, p.getPossibleValues()[0]);
+				}
+			}
+			r.saveState();
+		}
+		Random rnd = new Random(1);
+		for (int it = 0; it < 200000; it++) {
+			int op = rnd.nextInt(10);
+			String[] tag = TAGS[rnd.nextInt(TAGS.length)];
+			int zoom = 10 + rnd.nextInt(8);
+			int layer = rnd.nextInt(3) - 1;
+			boolean point = rnd.nextBoolean();
+			boolean area = rnd.nextBoolean();
+			int textLength = rnd.nextInt(8);
+			int state = 1 + rnd.nextInt(RenderingRulesStorage.LENGTH_RULES - 1);
+			boolean loadOutput = rnd.nextInt(5) != 0;
+			boolean night = rnd.nextInt(10) == 0;
+			boolean[] found = new boolean[requests.length];
+			for (int k = 0; k < requests.length; k++) {
+				// same sequence of calls as renderer does, state is not always cleared between searches
+				RenderingRuleSearchRequest r = requests[k];
+				if (op < 2) {
+					r.clearState();
+				}
+				if (op < 6) {
+					r.setInitialTagValueZoom(tag[0], tag[1], zoom, null);
+				} else {
+					r.setTagValueZoomLayer(tag[0], tag[1], zoom, layer, null);
+				}
+				if (op % 2 == 0) {
+					r.setBooleanFilter(r.ALL.R_POINT, point);
+					r.setBooleanFilter(r.ALL.R_AREA, area);
+				}
+				if (op == 3) {
+					r.setIntFilter(r.ALL.R_TEXT_LENGTH, textLength);
+				}
+				if (night) {
+					r.setBooleanFilter(r.ALL.R_NIGHT_MODE, true);
+				}
+				if (op == 9) {
+					r.searchRenderingAttribute("defaultColor");
+				}
+				found[k] = r.search(state, loadOutput);
+			}
+			String msg = "Search " + it + " " + Arrays.toString(tag) + " state " + state;
+			Assert.assertEquals(msg, found[1], found[0]);
+			Assert.assertArrayEquals(msg, uncached.values, cached.values);
+			Assert.assertArrayEquals(msg, uncached.fvalues, cached.fvalues, 0);
+		}
+		Assert.assertTrue(cached.getResultCacheStats().getHits() > 0);
+	}
+
+	static RenderingRulesStorage loadStyle(String name) throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage(name, null);
+		RenderingRulesStorageResolver resolver = new RenderingRulesStorageResolver() {
+			@Override
+			public RenderingRulesStorage resolve(String dependency, RenderingRulesStorageResolver ref)
+					throws XmlPullParserException, IOException {
+				return loadStyle(dependency);
+			}
+		};
+		InputStream is = RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml");
+		try {
+			storage.parseRulesFromXmlInputStream(is, resolver);
+		} finally {
+			is.close();
+		}
+		return storage;
+	}
+}
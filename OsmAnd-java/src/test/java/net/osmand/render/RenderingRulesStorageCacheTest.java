@@ -0,0 +1,176 @@
+package net.osmand.render;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.render.RenderingRulesStorageCache.SourceProvider;
+import net.osmand.util.Algorithms;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+public class RenderingRulesStorageCacheTest {
+
+	private static final SourceProvider RESOURCES = new SourceProvider() {
+		@Override
+		public InputStream getInputStream(String name) throws IOException {
+			return RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml");
+		}
+	};
+
+	private RenderingRulesStorage storage;
+	private File cache;
+
+	@Before
+	public void setUp() throws XmlPullParserException, IOException {
+		storage = RenderingRuleSearchRequestTest.loadStyle("default");
+		cache = File.createTempFile("default", ".render.cache");
+		RenderingRulesStorageCache.write(storage, cache);
+	}
+
+	@After
+	public void tearDown() {
+		cache.delete();
+	}
+
+	@Test
+	public void testLoadAsXml() throws IOException {
+		RenderingRulesStorage loaded = RenderingRulesStorageCache.load(cache, RESOURCES);
+		Assert.assertNotNull(loaded);
+		Assert.assertEquals(storage.getName(), loaded.getName());
+		Assert.assertEquals(storage.getInternalRenderingName(), loaded.getInternalRenderingName());
+		Assert.assertEquals(storage.getSourceHashes(), loaded.getSourceHashes());
+
+		List<RenderingRuleProperty> props = storage.PROPS.getCustomRules();
+		List<RenderingRuleProperty> loadedProps = loaded.PROPS.getCustomRules();
+		Assert.assertEquals(props.size(), loadedProps.size());
+		for (int i = 0; i < props.size(); i++) {
+			RenderingRuleProperty p = props.get(i);
+			RenderingRuleProperty l = loadedProps.get(i);
+			Assert.assertEquals(p.getAttrName(), l.getAttrName());
+			Assert.assertEquals(p.getId(), l.getId());
+			Assert.assertEquals(p.getName(), l.getName());
+			Assert.assertEquals(p.getCategory(), l.getCategory());
+			Assert.assertEquals(p.getDescription(), l.getDescription());
+			Assert.assertEquals(p.isString(), l.isString());
+			Assert.assertEquals(p.isBoolean(), l.isBoolean());
+			Assert.assertArrayEquals(p.getPossibleValues(), l.getPossibleValues());
+		}
+
+		String[] attributes = storage.getRenderingAttributeNames();
+		Assert.assertArrayEquals(attributes, loaded.getRenderingAttributeNames());
+		for (String a : attributes) {
+			Assert.assertEquals(a, storage.getRenderingAttributeRule(a).toString(),
+					loaded.getRenderingAttributeRule(a).toString());
+		}
+		for (int state = 0; state < RenderingRulesStorage.LENGTH_RULES; state++) {
+			TIntObjectHashMap<RenderingRule> rules = storage.tagValueGlobalRules[state];
+			TIntObjectHashMap<RenderingRule> loadedRules = loaded.tagValueGlobalRules[state];
+			if (rules == null) {
+				Assert.assertNull(loadedRules);
+				continue;
+			}
+			Assert.assertEquals(rules.size(), loadedRules.size());
+			for (int key : rules.keys()) {
+				String msg = "State " + state + " " + storage.getTagString(key) + " " + storage.getValueString(key);
+				Assert.assertTrue(msg, loadedRules.containsKey(key));
+				Assert.assertEquals(msg, rules.get(key).toString(), loadedRules.get(key).toString());
+			}
+		}
+		assertSearchAsXml(storage, loaded);
+	}
+
+	private static void assertSearchAsXml(RenderingRulesStorage storage, RenderingRulesStorage loaded) {
+		RenderingRuleSearchRequest expected = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest request = new RenderingRuleSearchRequest(loaded);
+		Random rnd = new Random(1);
+		for (int it = 0; it < 20000; it++) {
+			String[] tag = RenderingRuleSearchRequestTest.TAGS[rnd.nextInt(RenderingRuleSearchRequestTest.TAGS.length)];
+			int zoom = 10 + rnd.nextInt(8);
+			int state = 1 + rnd.nextInt(RenderingRulesStorage.LENGTH_RULES - 1);
+			boolean night = rnd.nextBoolean();
+			String attribute = rnd.nextInt(10) == 0 ? "defaultColor" : null;
+			boolean[] found = new boolean[2];
+			RenderingRuleSearchRequest[] requests = { expected, request };
+			for (int k = 0; k < requests.length; k++) {
+				RenderingRuleSearchRequest r = requests[k];
+				r.clearState();
+				r.setInitialTagValueZoom(tag[0], tag[1], zoom, null);
+				r.setBooleanFilter(r.ALL.R_NIGHT_MODE, night);
+				if (attribute != null) {
+					found[k] = r.searchRenderingAttribute(attribute);
+				} else {
+					found[k] = r.search(state);
+				}
+			}
+			String msg = "Search " + it + " " + Arrays.toString(tag) + " state " + state;
+			Assert.assertEquals(msg, found[0], found[1]);
+			Assert.assertArrayEquals(msg, expected.values, request.values);
+			Assert.assertArrayEquals(msg, expected.fvalues, request.fvalues, 0);
+		}
+	}
+
+	@Test
+	public void testChangedSource() throws XmlPullParserException, IOException {
+		final String changed = storage.getSourceHashes().keySet().iterator().next();
+		SourceProvider sources = new SourceProvider() {
+			@Override
+			public InputStream getInputStream(String name) throws IOException {
+				InputStream is = RESOURCES.getInputStream(name);
+				if (!name.equals(changed)) {
+					return is;
+				}
+				// the same xml with one more space
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				try {
+					Algorithms.streamCopy(is, out);
+				} finally {
+					is.close();
+				}
+				out.write(' ');
+				return new ByteArrayInputStream(out.toByteArray());
+			}
+		};
+		Assert.assertNull(RenderingRulesStorageCache.load(cache, sources));
+
+		SourceProvider missing = new SourceProvider() {
+			@Override
+			public InputStream getInputStream(String name) throws IOException {
+				return name.equals(changed) ? null : RESOURCES.getInputStream(name);
+			}
+		};
+		Assert.assertNull(RenderingRulesStorageCache.load(cache, missing));
+		// style is parsed from xml again and cache is rewritten
+		RenderingRulesStorageCache.write(RenderingRuleSearchRequestTest.loadStyle("default"), cache);
+		Assert.assertNotNull(RenderingRulesStorageCache.load(cache, RESOURCES));
+	}
+
+	@Test
+	public void testChangedVersion() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(cache, "rw");
+		int version;
+		try {
+			// magic is followed by version
+			raf.seek(4);
+			version = raf.readInt();
+			raf.seek(4);
+			raf.writeInt(version + 1);
+		} finally {
+			raf.close();
+		}
+		Assert.assertNull(RenderingRulesStorageCache.load(cache, RESOURCES));
+		Assert.assertNull(RenderingRulesStorageCache.load(new File(cache.getPath() + ".missing"), RESOURCES));
+	}
+}
@@ -16,6 +16,7 @@ import java.util.TreeSet;
 import net.osmand.binary.BinaryMapIndexReader;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +27,9 @@ import com.google.gson.GsonBuilder;
 
 @RunWith(Parameterized.class)
 public class RouteTestingTest {
+	// contraction hierarchy finds the shortest route, A* could find a bit longer one
+	private static final float CONTRACTION_HIERARCHY_TOLERANCE = 0.02f;
+
 	private TestEntry te;
 
 
@@ -58,19 +62,7 @@ public class RouteTestingTest {
 
     @Test
 	public void testRouting() throws Exception {
-		String fl = "src/test/resources/Routing_test.obf";
-		RandomAccessFile raf = new RandomAccessFile(fl, "r");
-		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
-
-		BinaryMapIndexReader[] binaryMapIndexReaders = { new BinaryMapIndexReader(raf, new File(fl)) };
-		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
-		Map<String, String> params = te.getParams();
-		RoutingConfiguration config = builder.build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
-				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
-		RoutingContext ctx = fe.buildRoutingContext(config, null, binaryMapIndexReaders,
-				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
-		ctx.leftSideNavigation = false;
-		List<RouteSegmentResult> routeSegments = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+		List<RouteSegmentResult> routeSegments = calculateRoute(false, false, false);
 		Set<Long> reachedSegments = new TreeSet<Long>();
 		Assert.assertNotNull(routeSegments);
 		int prevSegment = -1;
@@ -102,6 +94,97 @@ public class RouteTestingTest {
 
 	}
 
+	@Test
+	public void testParallelBidirectionalSearch() throws Exception {
+		List<RouteSegmentResult> expected = calculateRoute(false, false, false);
+		List<RouteSegmentResult> routeSegments = calculateRoute(true, false, false);
+		Assert.assertNotNull(routeSegments);
+		Assert.assertEquals(toString(expected), toString(routeSegments));
+	}
+
+	@Test
+	public void testSegmentStore() throws Exception {
+		List<RouteSegmentResult> expected = calculateRoute(false, false, false);
+		List<RouteSegmentResult> routeSegments = calculateRoute(false, true, false);
+		Assert.assertNotNull(routeSegments);
+		Assert.assertEquals(toString(expected), toString(routeSegments));
+	}
+
+	@Test
+	public void testContractionHierarchy() throws Exception {
+		// contraction hierarchy is used only without intermediate points
+		Assume.assumeTrue(te.getTransitPoint().isEmpty());
+		List<RouteSegmentResult> expected = calculateRoute(false, false, false);
+		List<RouteSegmentResult> routeSegments = calculateRoute(false, false, true);
+		Assert.assertNotNull(routeSegments);
+		float distance = getDistance(expected);
+		float time = getTime(expected);
+		Assert.assertEquals(distance, getDistance(routeSegments), distance * CONTRACTION_HIERARCHY_TOLERANCE);
+		Assert.assertEquals(time, getTime(routeSegments), time * CONTRACTION_HIERARCHY_TOLERANCE);
+	}
 
+	private List<RouteSegmentResult> calculateRoute(boolean parallelBidirectionalSearch, boolean useSegmentStore,
+			boolean useContractionHierarchy) throws Exception {
+		String fl = "src/test/resources/Routing_test.obf";
+		RandomAccessFile raf = new RandomAccessFile(fl, "r");
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+
+		BinaryMapIndexReader[] binaryMapIndexReaders = { new BinaryMapIndexReader(raf, new File(fl)) };
+		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+		Map<String, String> params = te.getParams();
+		RoutingConfiguration config = builder.build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
+		config.parallelBidirectionalSearch = parallelBidirectionalSearch;
+		File sidecar = null;
+		if (useContractionHierarchy) {
+			ContractionHierarchy ch = new ContractionHierarchyBuilder(config.router).build(binaryMapIndexReaders[0],
+					config.routerName);
+			sidecar = ContractionHierarchy.getSidecarFile(new File(fl), config.routerName);
+			ch.write(sidecar);
+			fe.useContractionHierarchy = true;
+		}
+		try {
+			RoutingContext ctx = fe.buildRoutingContext(config, null, binaryMapIndexReaders,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			ctx.useSegmentStore = useSegmentStore;
+			List<RouteSegmentResult> res = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(),
+					te.getTransitPoint());
+			if (useContractionHierarchy) {
+				// A* iteration is not started when route is found by contraction hierarchy
+				Assert.assertEquals(-1, ctx.calculationProgress.iteration);
+			}
+			return res;
+		} finally {
+			if (sidecar != null) {
+				sidecar.delete();
+			}
+		}
+	}
+
+	private static float getDistance(List<RouteSegmentResult> routeSegments) {
+		float d = 0;
+		for (RouteSegmentResult r : routeSegments) {
+			d += r.getDistance();
+		}
+		return d;
+	}
+
+	private static float getTime(List<RouteSegmentResult> routeSegments) {
+		float t = 0;
+		for (RouteSegmentResult r : routeSegments) {
+			t += r.getSegmentTime();
+		}
+		return t;
+	}
+
+	private static String toString(List<RouteSegmentResult> routeSegments) {
+		StringBuilder sb = new StringBuilder();
+		for (RouteSegmentResult r : routeSegments) {
+			sb.append(r.getObject().getId()).append(' ').append(r.getStartPointIndex()).append(' ')
+					.append(r.getEndPointIndex()).append('\n');
+		}
+		return sb.toString();
+	}
 
 }
@@ -0,0 +1,188 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResult;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransportRaptorPlannerTest {
+
+	private static final double LAT = 52.0;
+	private static final double LON = 4.0;
+	private static final double TIME_DELTA = 1;
+
+	private final LatLon start = location(0, 0);
+	private final LatLon end = location(10000, 0);
+
+	@Test
+	public void testParetoRoutesContainBestRoute() throws IOException {
+		TransportStop s = stop(1, 0, 0);
+		TransportStop e = stop(2, 10000, 0);
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		// no changes: long detour
+		routes.add(route(10, s, stop(3, 5000, 10000), e));
+		// 1 change: shorter detour
+		TransportStop q = stop(4, 5000, 6000);
+		routes.add(route(20, s, q));
+		routes.add(route(21, q, e));
+		// 2 changes: straight line
+		TransportStop p1 = stop(5, 3333, 0);
+		TransportStop p2 = stop(6, 6667, 0);
+		routes.add(route(30, s, p1));
+		routes.add(route(31, p1, p2));
+		routes.add(route(32, p2, e));
+
+		long[][][] expected = {
+				{ { 10 } },
+				{ { 20, 21 }, { 10 } },
+				{ { 30, 31, 32 }, { 20, 21 }, { 10 } },
+				{ { 30, 31, 32 }, { 20, 21 }, { 10 } } };
+		for (int maxChanges = 0; maxChanges < expected.length; maxChanges++) {
+			List<TransportRouteResult> raptor = buildRoute(routes, maxChanges, true);
+			assertPareto(raptor, maxChanges);
+			Assert.assertEquals("Max changes " + maxChanges, expected[maxChanges].length, raptor.size());
+			for (int i = 0; i < raptor.size(); i++) {
+				Assert.assertArrayEquals(expected[maxChanges][i], getRouteIds(raptor.get(i)));
+			}
+			// classic search limits number of routes by max changes, so its routes have one change less
+			List<TransportRouteResult> classic = buildRoute(routes, maxChanges, false);
+			if (maxChanges == 0) {
+				Assert.assertTrue(classic.isEmpty());
+			} else {
+				Assert.assertEquals(maxChanges - 1, classic.get(0).getChanges());
+				assertContains(raptor, classic.get(0));
+			}
+		}
+	}
+
+	@Test
+	public void testWalkingTransfer() throws IOException {
+		TransportStop s = stop(1, 0, 0);
+		TransportStop e = stop(2, 10000, 0);
+		// stops of change are different, but close enough to walk
+		TransportStop x = stop(3, 5000, 0);
+		TransportStop y = stop(4, 5000, 150);
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		routes.add(route(10, s, stop(5, 5000, 8000), e));
+		routes.add(route(20, s, x));
+		routes.add(route(21, y, e));
+
+		List<TransportRouteResult> raptor = buildRoute(routes, 5, true);
+		assertPareto(raptor, 5);
+		Assert.assertEquals(2, raptor.size());
+		TransportRouteResult best = raptor.get(0);
+		Assert.assertArrayEquals(new long[] { 20, 21 }, getRouteIds(best));
+		double walk = MapUtils.getDistance(x.getLocation(), y.getLocation());
+		Assert.assertEquals(walk, best.getSegments().get(1).walkDist, 1);
+		Assert.assertEquals(walk, best.getWalkDist(), 1);
+
+		List<TransportRouteResult> classic = buildRoute(routes, 5, false);
+		Assert.assertFalse(classic.isEmpty());
+		assertContains(raptor, classic.get(0));
+
+		// stops are too far to walk
+		List<TransportRouteResult> noWalk = buildRoute(routes, 5, true, 100);
+		Assert.assertEquals(1, noWalk.size());
+		Assert.assertArrayEquals(new long[] { 10 }, getRouteIds(noWalk.get(0)));
+	}
+
+	// results are sorted by time and every next route has less changes
+	private static void assertPareto(List<TransportRouteResult> results, int maxChanges) {
+		for (int i = 0; i < results.size(); i++) {
+			TransportRouteResult r = results.get(i);
+			Assert.assertTrue(r.getChanges() <= maxChanges);
+			if (i > 0) {
+				TransportRouteResult prev = results.get(i - 1);
+				Assert.assertTrue(prev.getRouteTime() < r.getRouteTime());
+				Assert.assertTrue(prev.getChanges() > r.getChanges());
+			}
+		}
+	}
+
+	private static void assertContains(List<TransportRouteResult> results, TransportRouteResult route) {
+		for (TransportRouteResult r : results) {
+			if (Arrays.equals(getRouteIds(route), getRouteIds(r))) {
+				Assert.assertEquals(route.getRouteTime(), r.getRouteTime(), TIME_DELTA);
+				return;
+			}
+		}
+		Assert.fail("Route " + Arrays.toString(getRouteIds(route)) + " is not found");
+	}
+
+	private static long[] getRouteIds(TransportRouteResult r) {
+		List<TransportRouteResultSegment> segments = r.getSegments();
+		long[] ids = new long[segments.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = segments.get(i).route.getId();
+		}
+		return ids;
+	}
+
+	private List<TransportRouteResult> buildRoute(List<TransportRoute> routes, int maxChanges, boolean raptor)
+			throws IOException {
+		return buildRoute(routes, maxChanges, raptor, 300);
+	}
+
+	private List<TransportRouteResult> buildRoute(List<TransportRoute> routes, int maxChanges, boolean raptor,
+			int walkChangeRadius) throws IOException {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(null);
+		cfg.maxNumberOfChanges = maxChanges;
+		cfg.walkChangeRadius = walkChangeRadius;
+		cfg.useRaptor = raptor;
+		TransportRoutingContext ctx = new TransportRoutingContext(cfg);
+		// route segments are put to loaded tiles, so context has no readers
+		for (TransportRoute route : routes) {
+			for (int i = 0; i < route.getForwardStops().size(); i++) {
+				TransportStop st = route.getForwardStops().get(i);
+				int x = st.x31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+				int y = st.y31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+				// the same tile id as TransportRoutingContext uses
+				int tileId = x << (cfg.ZOOM_TO_LOAD_TILES + 1) + y;
+				List<TransportRouteSegment> list = ctx.quadTree.get(tileId);
+				if (list == null) {
+					list = new ArrayList<TransportRouteSegment>();
+					ctx.quadTree.put(tileId, list);
+				}
+				list.add(new TransportRouteSegment(route, i));
+			}
+		}
+		return new TransportRoutePlanner().buildRoute(ctx, start, end);
+	}
+
+	private static LatLon location(double east, double north) {
+		double lat = LAT + north / 111320;
+		double lon = LON + east / (111320 * Math.cos(Math.toRadians(LAT)));
+		return new LatLon(lat, lon);
+	}
+
+	private static TransportStop stop(long id, double east, double north) {
+		LatLon l = location(east, north);
+		TransportStop st = new TransportStop();
+		st.setId(id);
+		st.setName("Stop " + id);
+		st.setLocation(l.getLatitude(), l.getLongitude());
+		st.x31 = MapUtils.get31TileNumberX(l.getLongitude());
+		st.y31 = MapUtils.get31TileNumberY(l.getLatitude());
+		return st;
+	}
+
+	private static TransportRoute route(long id, TransportStop... stops) {
+		TransportRoute r = new TransportRoute();
+		r.setId(id);
+		r.setName("Route " + id);
+		r.getForwardStops().addAll(Arrays.asList(stops));
+		return r;
+	}
+}
@@ -3,10 +3,18 @@ package net.osmand.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import net.osmand.OsmAndCollator;
+import net.osmand.ResultMatcher;
 import net.osmand.data.LatLon;
 import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
 import net.osmand.search.core.SearchPhrase;
 import net.osmand.search.core.SearchResult;
 import net.osmand.search.core.SearchSettings;
@@ -92,6 +100,100 @@ public class SearchCoreUITest {
 		
 	}
 
+	@Test
+	public void testRefineSearch() throws InterruptedException {
+		SearchUICore core = new SearchUICore(null, "en", false);
+		NamesAPI refinable = new NamesAPI(true, "cafe", "cafeteria", "cabin");
+		NamesAPI notRefinable = new NamesAPI(false, "cafe bar", "car");
+		core.registerAPI(refinable);
+		core.registerAPI(notRefinable);
+
+		Assert.assertEquals(names("cabin", "cafe", "cafe bar", "cafeteria", "car"), search(core, "ca"));
+		List<SearchResult> previous = core.getCurrentSearchResult().getCurrentSearchResults();
+		SearchPhrase previousPhrase = previous.get(0).requiredSearchPhrase;
+		Assert.assertEquals(names("cafe", "cafe bar", "cafeteria"), search(core, "caf"));
+		Assert.assertEquals(1, refinable.searches);
+		Assert.assertEquals(2, notRefinable.searches);
+		for (SearchResult r : core.getCurrentSearchResult().getCurrentSearchResults()) {
+			Assert.assertSame(core.getPhrase(), r.requiredSearchPhrase);
+			Assert.assertTrue(r.firstUnknownWordMatches);
+		}
+		// published results of previous search are not modified
+		for (SearchResult r : previous) {
+			Assert.assertSame(previousPhrase, r.requiredSearchPhrase);
+		}
+		// not a refinement of previous search
+		Assert.assertEquals(names("cabin", "cafe", "cafe bar", "cafeteria", "car"), search(core, "c"));
+		Assert.assertEquals(2, refinable.searches);
+	}
+
+	private Set<String> search(SearchUICore core, String text) throws InterruptedException {
+		final CountDownLatch finished = new CountDownLatch(1);
+		core.setOnResultsComplete(new Runnable() {
+			@Override
+			public void run() {
+				finished.countDown();
+			}
+		});
+		core.search(text, false, new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+		Set<String> names = new TreeSet<>();
+		for (SearchResult r : core.getCurrentSearchResult().getCurrentSearchResults()) {
+			names.add(r.localeName);
+		}
+		return names;
+	}
+
+	private Set<String> names(String... names) {
+		Set<String> s = new TreeSet<>();
+		for (String n : names) {
+			s.add(n);
+		}
+		return s;
+	}
+
+	private static class NamesAPI extends SearchBaseAPI {
+		private final boolean refinable;
+		private final String[] names;
+		int searches;
+
+		NamesAPI(boolean refinable, String... names) {
+			super(ObjectType.POI);
+			this.refinable = refinable;
+			this.names = names;
+		}
+
+		@Override
+		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) {
+			searches++;
+			for (String name : names) {
+				if (phrase.getNameStringMatcher().matches(name)) {
+					SearchResult sr = new SearchResult(phrase);
+					sr.localeName = name;
+					sr.objectType = ObjectType.POI;
+					sr.location = new LatLon(0, 0);
+					resultMatcher.publish(sr);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isSearchRefinable(SearchPhrase phrase, SearchPhrase prevPhrase) {
+			return refinable;
+		}
+	}
+
 	private SearchResult searchResult(List<SearchResult> rs, SearchPhrase phrase, String text, int dist) {
 		SearchResult res = new SearchResult(phrase);
 		res.localeName = text;
@@ -50,6 +50,7 @@ public class OpeningHoursParserTest {
 				hours.getCurrentRuleTime(cal, OpeningHours.ALL_SEQUENCES));
 		System.out.println(fmt);
 		org.junit.Assert.assertEquals(fmt, expected, calculated);
+		org.junit.Assert.assertEquals("Compiled: " + fmt, calculated, hours.getCompiled().isOpenedForTime(cal));
 	}
 
 	/**
@@ -394,11 +394,11 @@ public class PoiUIFilter implements SearchPoiTypeFilter, Comparable<PoiUIFilter>
 					}
 				}
 				if (open) {
-					OpeningHours rs = OpeningHoursParser.parseOpenedHours(a.getOpeningHours());
+					OpeningHours rs = a.getParsedOpeningHours();
 					if (rs != null) {
 						Calendar inst = Calendar.getInstance();
 						inst.setTimeInMillis(System.currentTimeMillis());
-						boolean work = rs.isOpenedForTime(inst);
+						boolean work = rs.getCompiled().isOpenedForTime(inst);
 						if (!work) {
 							return false;
 						}
@@ -632,6 +632,7 @@ public class MapRenderRepositories {
 			// boolean moreDetail = prefs.SHOW_MORE_MAP_DETAIL.get();
 			RenderingRulesStorage storage = app.getRendererRegistry().getCurrentSelectedRenderer();
 			RenderingRuleSearchRequest renderingReq = new RenderingRuleSearchRequest(storage);
+			renderingReq.setResultCacheTimingEnabled(prefs.DEBUG_RENDERING_INFO.get());
 			renderingReq.setBooleanFilter(renderingReq.ALL.R_NIGHT_MODE, nightMode);
 			for (RenderingRuleProperty customProp : storage.PROPS.getCustomRules()) {
 				if (customProp.isBoolean()) {
@@ -825,6 +826,7 @@ public class MapRenderRepositories {
 			this.prevBmpLocation = null;
 			if (prefs.DEBUG_RENDERING_INFO.get() && OsmandPlugin.getEnabledPlugin(OsmandDevelopmentPlugin.class) != null) {
 				String timeInfo = "Searching: " + searchTime + " ms"; //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+				timeInfo += "\n" + renderingReq.getResultCacheStats();
 				if (renderingDebugInfo != null) {
 					timeInfo += "\n" + renderingDebugInfo;
 				}
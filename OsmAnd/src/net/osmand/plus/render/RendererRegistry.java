@@ -10,6 +10,7 @@ import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.R;
 import net.osmand.render.RenderingRuleProperty;
 import net.osmand.render.RenderingRulesStorage;
+import net.osmand.render.RenderingRulesStorageCache;
 import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
 import net.osmand.util.Algorithms;
 
@@ -37,6 +38,7 @@ public class RendererRegistry {
 	
 	public final static String DEFAULT_RENDER = "OsmAnd";  //$NON-NLS-1$
 	public final static String DEFAULT_RENDER_FILE_PATH = "default.render.xml";
+	private final static String RENDER_CACHE_EXT = ".render.cache";
 	public final static String TOURING_VIEW = "Touring view (contrast and details)";  //$NON-NLS-1$
 	public final static String WINTER_SKI_RENDER = "Winter and ski";  //$NON-NLS-1$
 	public final static String NAUTICAL_RENDER = "Nautical";  //$NON-NLS-1$
@@ -90,7 +92,11 @@ public class RendererRegistry {
 			return null;
 		}
 		try {
-			RenderingRulesStorage r = loadRenderer(name, new LinkedHashMap<String, RenderingRulesStorage>(), new LinkedHashMap<String, String>());
+			RenderingRulesStorage r = loadCachedRenderer(name);
+			if (r == null) {
+				r = loadRenderer(name, new LinkedHashMap<String, RenderingRulesStorage>(), new LinkedHashMap<String, String>());
+				writeCachedRenderer(name, r);
+			}
 			renderers.put(name, r);
 			return r;
 		} catch (IOException e) {
@@ -101,6 +107,41 @@ public class RendererRegistry {
 		return null;
 	}
 
+	private File getCacheFile(String name) {
+		return new File(app.getAppPath(IndexConstants.RENDERERS_DIR), name.replace(' ', '_') + RENDER_CACHE_EXT);
+	}
+
+	private RenderingRulesStorage loadCachedRenderer(String name) {
+		// native renderer is loaded from xml sources of all styles
+		if (rendererLoadedEventListener != null) {
+			return null;
+		}
+		try {
+			return RenderingRulesStorageCache.load(getCacheFile(name), new RenderingRulesStorageCache.SourceProvider() {
+				@Override
+				public InputStream getInputStream(String name) throws IOException {
+					return RendererRegistry.this.getInputStream(name);
+				}
+			});
+		} catch (IOException e) {
+			log.warn("Error loading cached renderer " + name, e); //$NON-NLS-1$
+		} catch (RuntimeException e) {
+			log.warn("Error loading cached renderer " + name, e); //$NON-NLS-1$
+		}
+		return null;
+	}
+
+	private void writeCachedRenderer(String name, RenderingRulesStorage r) {
+		if (r == null) {
+			return;
+		}
+		try {
+			RenderingRulesStorageCache.write(r, getCacheFile(name));
+		} catch (IOException e) {
+			log.warn("Error writing cached renderer " + name, e); //$NON-NLS-1$
+		}
+	}
+
 	private boolean hasRender(String name) {
 		return externalRenderers.containsKey(name) || getInternalRender(name) != null;
 	}
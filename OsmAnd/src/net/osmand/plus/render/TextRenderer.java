@@ -1,7 +1,6 @@
 package net.osmand.plus.render;
 
-import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.procedure.TIntObjectProcedure;
+import gnu.trove.list.array.TIntArrayList;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -355,21 +354,19 @@ public class TextRenderer {
 				final TextDrawInfo text = new TextDrawInfo(name);
 				text.fillProperties(rc, render, xMid, yMid);
 				final String tagName2 = render.getStringPropertyValue(render.ALL.R_NAME_TAG2);
-				if (!Algorithms.isEmpty(tagName2)) {
-					o.getObjectNames().forEachEntry(new TIntObjectProcedure<String>() {
-						@Override
-						public boolean execute(int tagid, String nname) {
-							String tagNameN2 = o.getMapIndex().decodeType(tagid).tag;
-							if (tagName2.equals(tagNameN2)) {
-								if (nname != null && nname.trim().length() > 0) {
-									text.text += " (" + nname +")";
-								}
-								return false;
+				TIntArrayList namesOrder = o.getNamesOrder();
+				if (!Algorithms.isEmpty(tagName2) && namesOrder != null) {
+					for (int i = 0; i < namesOrder.size(); i++) {
+						int tagid = namesOrder.get(i);
+						String tagNameN2 = o.getMapIndex().decodeType(tagid).tag;
+						if (tagName2.equals(tagNameN2)) {
+							String nname = o.getNameByType(tagid);
+							if (nname != null && nname.trim().length() > 0) {
+								text.text += " (" + nname +")";
 							}
-							return true;
+							break;
 						}
-					});
-
+					}
 				}
 				paintText.setTextSize(text.textSize);
 				Rect bs = new Rect();
@@ -398,30 +395,29 @@ public class TextRenderer {
 	
 	public void renderText(final BinaryMapDataObject obj, final RenderingRuleSearchRequest render, final RenderingContext rc, 
 			final TagValuePair pair, final float xMid, final float yMid, final Path path, final PointF[] points) {
-		final TIntObjectHashMap<String> map = obj.getObjectNames();
-		if (map != null) {
-			map.forEachEntry(new TIntObjectProcedure<String>() {
-				@Override
-				public boolean execute(int tag, String name) {
-					if (name != null && name.trim().length() > 0) {
-						boolean isName = tag == obj.getMapIndex().nameEncodingType;
-						String nameTag = isName ? "" : obj.getMapIndex().decodeType(tag).tag;
-						boolean skip = false;
-						// not completely correct we should check "name"+rc.preferredLocale
-						if (isName && !rc.preferredLocale.equals("") && 
-								map.containsKey(obj.getMapIndex().nameEnEncodingType)) {
-							skip = true;
-						} 
-//						if (tag == obj.getMapIndex().nameEnEncodingType && !rc.useEnglishNames) {
-//							skip = true;
-//						}
-						if(!skip) {
-							createTextDrawInfo(obj, render, rc, pair, xMid, yMid, path, points, name, nameTag);
-						}
+		// names are resolved by type, so names map is not created for every rendered object
+		TIntArrayList namesOrder = obj.getNamesOrder();
+		if (namesOrder != null) {
+			for (int i = 0; i < namesOrder.size(); i++) {
+				int tag = namesOrder.get(i);
+				String name = obj.getNameByType(tag);
+				if (name != null && name.trim().length() > 0) {
+					boolean isName = tag == obj.getMapIndex().nameEncodingType;
+					String nameTag = isName ? "" : obj.getMapIndex().decodeType(tag).tag;
+					boolean skip = false;
+					// not completely correct we should check "name"+rc.preferredLocale
+					if (isName && !rc.preferredLocale.equals("") && 
+							obj.getNameByType(obj.getMapIndex().nameEnEncodingType) != null) {
+						skip = true;
+					} 
+//					if (tag == obj.getMapIndex().nameEnEncodingType && !rc.useEnglishNames) {
+//						skip = true;
+//					}
+					if(!skip) {
+						createTextDrawInfo(obj, render, rc, pair, xMid, yMid, path, points, name, nameTag);
 					}
-					return true;
 				}
-			});
+			}
 		}
 	}
 
@@ -403,7 +403,7 @@ public class QuickSearchListAdapter extends ArrayAdapter<QuickSearchListItem> {
 			if (listItem.getSearchResult().object instanceof Amenity
 					&& ((Amenity) listItem.getSearchResult().object).getOpeningHours() != null) {
 				Amenity amenity = (Amenity) listItem.getSearchResult().object;
-				OpeningHoursParser.OpeningHours rs = OpeningHoursParser.parseOpenedHours(amenity.getOpeningHours());
+				OpeningHoursParser.OpeningHours rs = amenity.getParsedOpeningHours();
 				if (rs != null) {
 					Calendar inst = Calendar.getInstance();
 					inst.setTimeInMillis(System.currentTimeMillis());